@@ -42,7 +42,9 @@ import org.jetbrains.annotations.Nullable;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import static com.android.SdkConstants.SUPPORT_LIB_GROUP_ID;
 import static com.android.tools.idea.gradle.dsl.model.dependencies.CommonConfigurationNames.COMPILE;
@@ -107,6 +109,14 @@ public class GradleDependencyManager {
       }
     }
 
+    // The "group:name" of the dependencies in the build file, so each lookup below does not go through all of them.
+    Set<String> declaredDependencies = new HashSet<>();
+    if (compileDependencies != null) {
+      for (ArtifactDependencyModel dependency : compileDependencies) {
+        declaredDependencies.add(dependency.group().value() + ":" + dependency.name().value());
+      }
+    }
+
     Project project = module.getProject();
     RepositoryUrlManager manager = RepositoryUrlManager.get();
     List<GradleCoordinate> missingLibraries = Lists.newArrayList();
@@ -142,15 +152,9 @@ public class GradleDependencyManager {
         // TODO: Consider updating it to also check for java library dependencies.
         dependencyFound = true;
       }
-      else if (compileDependencies != null) {
-        // Now, check in the model obtained from the gradle files.
-        for (ArtifactDependencyModel dependency : compileDependencies) {
-          if (Objects.equal(groupId, dependency.group().value()) &&
-              Objects.equal(artifactId, dependency.name().value())) {
-            dependencyFound = true;
-            break;
-          }
-        }
+      else if (declaredDependencies.contains(groupId + ':' + artifactId)) {
+        // Found in the model obtained from the gradle files.
+        dependencyFound = true;
       }
 
       if (!dependencyFound) {
@@ -52,6 +52,7 @@ import org.jetbrains.plugins.groovy.lang.psi.GroovyElementVisitor;
 import org.jetbrains.plugins.groovy.lang.psi.GroovyFile;
 import org.jetbrains.plugins.groovy.lang.psi.GroovyPsiElement;
 import org.jetbrains.plugins.groovy.lang.psi.GroovyPsiElementVisitor;
+import org.jetbrains.plugins.groovy.lang.psi.api.statements.blocks.GrClosableBlock;
 import org.jetbrains.plugins.groovy.lang.psi.api.statements.expressions.GrApplicationStatement;
 import org.jetbrains.plugins.groovy.lang.psi.api.statements.expressions.GrAssignmentExpression;
 import org.jetbrains.plugins.groovy.lang.psi.api.statements.expressions.path.GrMethodCallExpression;
@@ -113,7 +114,9 @@ public class GradleBuildModel extends GradleFileModel {
   }
 
   private static void populateWithParentModuleSubProjectsProperties(@NotNull GradleBuildDslFile buildDslFile) {
-    GradleSettingsModel gradleSettingsModel = GradleSettingsModel.get(buildDslFile.getProject());
+    // settings.gradle and the parent modules are only read here, so the shared (cached) models are used instead of parsing them again.
+    GradleDslFileCache cache = GradleDslFileCache.getInstance(buildDslFile.getProject());
+    GradleSettingsModel gradleSettingsModel = cache.getSettingsModel();
     if (gradleSettingsModel == null) {
       return;
     }
@@ -123,20 +126,32 @@ public class GradleBuildModel extends GradleFileModel {
       return;
     }
 
-    GradleBuildModel parentModuleModel = gradleSettingsModel.getParentModuleModel(modulePath);
-    if (parentModuleModel == null) {
+    String parentModulePath = gradleSettingsModel.parentModule(modulePath);
+    if (parentModulePath == null) {
       return;
     }
-
-    GradleDslFile parentModuleDslFile = parentModuleModel.myGradleDslFile;
+    File parentBuildFilePath = gradleSettingsModel.buildFile(parentModulePath);
+    VirtualFile parentBuildFile = parentBuildFilePath != null ? findFileByIoFile(parentBuildFilePath, true) : null;
+    if (parentBuildFile == null) {
+      return;
+    }
+    String parentModuleName = parentModulePath.substring(parentModulePath.lastIndexOf(':') + 1);
+    GradleDslFile parentModuleDslFile = cache.getBuildModel(parentBuildFile, parentModuleName).myGradleDslFile;
     buildDslFile.setParentModuleDslFile(parentModuleDslFile);
 
-    SubProjectsDslElement subProjectsDslElement =
+    SubProjectsDslElement parentSubProjectsDslElement =
       parentModuleDslFile.getPropertyElement(SUBPROJECTS_BLOCK_NAME, SubProjectsDslElement.class);
-    if (subProjectsDslElement == null) {
+    if (parentSubProjectsDslElement == null) {
       return;
     }
 
+    // The parent module is shared, so its elements are parsed again instead of being moved to this file.
+    SubProjectsDslElement subProjectsDslElement = new SubProjectsDslElement(buildDslFile);
+    subProjectsDslElement.setPsiElement(parentSubProjectsDslElement.getPsiElement());
+    for (GrClosableBlock closure : parentSubProjectsDslElement.getClosures()) {
+      GradleDslParser.parseSubProjectsClosure(closure, subProjectsDslElement);
+    }
+
     buildDslFile.setParsedElement(SUBPROJECTS_BLOCK_NAME, subProjectsDslElement);
     for (Map.Entry<String, GradleDslElement> entry : subProjectsDslElement.getPropertyElements().entrySet()) {
       buildDslFile.setParsedElement(entry.getKey(), entry.getValue());
@@ -0,0 +1,233 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.vete_l.support.gradle.dsl.model;
+
+import com.android.tools.idea.gradle.dsl.parser.GradleDslFile;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static com.android.SdkConstants.FN_GRADLE_PROPERTIES;
+import static com.android.tools.idea.gradle.util.GradleUtil.getGradleSettingsFile;
+import static com.android.tools.idea.gradle.util.Projects.getBaseDirPath;
+import static com.android.tools.idea.gradle.util.PropertiesFiles.getProperties;
+import static com.intellij.openapi.vfs.VfsUtilCore.virtualToIoFile;
+
+/**
+ * Caches the files a build.gradle file needs to be parsed: settings.gradle, the build.gradle files of the parent modules and the
+ * gradle.properties files. Parsing a build.gradle file only parses that file, instead of parsing again settings.gradle and the whole chain of
+ * parent modules.
+ * <p>
+ * Entries are invalidated when the modification stamp of their file (in the VFS or in the PSI) changes, when settings.gradle changes, when
+ * the parent module they were parsed against is invalidated, or when they have uncommitted changes.
+ * <p>
+ * The cached models are shared, and must not be modified. Callers that need a model they can modify (e.g.
+ * {@link GradleBuildModel#get(com.intellij.openapi.module.Module)} and {@link GradleSettingsModel#get(Project)}) always get their own copy,
+ * parsed on top of the shared entries. The shared entries only reference those copies weakly (see
+ * {@link GradleDslFile#getChildModuleDslFiles()}) and never share elements with them, so uncommitted changes made to a copy are not
+ * visible to other callers.
+ * <p>
+ * Callers must have read access.
+ */
+public class GradleDslFileCache {
+  @NotNull private final Project myProject;
+  @NotNull private final PsiManager myPsiManager;
+
+  // Guarded by "this".
+  @NotNull private final Map<VirtualFile, BuildModelEntry> myBuildModels = new HashMap<>();
+  @NotNull private final Map<VirtualFile, PropertiesEntry> myProperties = new HashMap<>();
+  @Nullable private BuildModelEntry mySettingsModel;
+
+  @NotNull private final AtomicInteger myHitCount = new AtomicInteger();
+  @NotNull private final AtomicInteger myMissCount = new AtomicInteger();
+
+  @NotNull
+  public static GradleDslFileCache getInstance(@NotNull Project project) {
+    return ServiceManager.getService(project, GradleDslFileCache.class);
+  }
+
+  public GradleDslFileCache(@NotNull Project project, @NotNull PsiManager psiManager) {
+    myProject = project;
+    myPsiManager = psiManager;
+  }
+
+  /**
+   * @return the shared model of the project's settings.gradle file, or {@code null} if the project does not have one. The returned model
+   * must not be modified.
+   */
+  @Nullable
+  public GradleSettingsModel getSettingsModel() {
+    VirtualFile file = getGradleSettingsFile(getBaseDirPath(myProject));
+    if (file == null) {
+      clear();
+      return null;
+    }
+    synchronized (this) {
+      if (mySettingsModel != null && mySettingsModel.myFile.equals(file) && isUpToDate(mySettingsModel)) {
+        myHitCount.incrementAndGet();
+        return (GradleSettingsModel)mySettingsModel.myModel;
+      }
+      // All the build models were parsed against the previous version of settings.gradle.
+      mySettingsModel = null;
+      myBuildModels.clear();
+    }
+    myMissCount.incrementAndGet();
+    BuildModelEntry entry = createEntry(file, () -> GradleSettingsModel.parseBuildFile(file, myProject, "settings"));
+    synchronized (this) {
+      if (mySettingsModel == null) {
+        mySettingsModel = entry;
+      }
+      return (GradleSettingsModel)mySettingsModel.myModel;
+    }
+  }
+
+  /**
+   * @return the shared model of the given build.gradle file. The returned model must not be modified.
+   */
+  @NotNull
+  GradleBuildModel getBuildModel(@NotNull VirtualFile file, @NotNull String moduleName) {
+    synchronized (this) {
+      BuildModelEntry entry = myBuildModels.get(file);
+      if (entry != null && isUpToDate(entry)) {
+        myHitCount.incrementAndGet();
+        return (GradleBuildModel)entry.myModel;
+      }
+      myBuildModels.remove(file);
+    }
+    // Parsed outside the lock: parsing a build file looks up the entries of its parent modules.
+    myMissCount.incrementAndGet();
+    BuildModelEntry entry = createEntry(file, () -> GradleBuildModel.parseBuildFile(file, myProject, moduleName));
+    synchronized (this) {
+      BuildModelEntry existing = myBuildModels.get(file);
+      if (existing != null && isUpToDate(existing)) {
+        return (GradleBuildModel)existing.myModel;
+      }
+      myBuildModels.put(file, entry);
+      return (GradleBuildModel)entry.myModel;
+    }
+  }
+
+  /**
+   * @return the contents of the given gradle.properties file. The returned object is shared and must not be modified.
+   */
+  @NotNull
+  Properties getProperties(@NotNull VirtualFile file) throws IOException {
+    synchronized (this) {
+      PropertiesEntry entry = myProperties.get(file);
+      if (entry != null && entry.myModificationStamp == file.getModificationStamp()) {
+        myHitCount.incrementAndGet();
+        return entry.myProperties;
+      }
+    }
+    myMissCount.incrementAndGet();
+    long modificationStamp = file.getModificationStamp();
+    Properties properties = getProperties(virtualToIoFile(file));
+    synchronized (this) {
+      myProperties.put(file, new PropertiesEntry(properties, modificationStamp));
+    }
+    return properties;
+  }
+
+  public synchronized void clear() {
+    mySettingsModel = null;
+    myBuildModels.clear();
+    myProperties.clear();
+  }
+
+  @NotNull
+  private BuildModelEntry createEntry(@NotNull VirtualFile file, @NotNull Supplier<GradleFileModel> parser) {
+    // Take the stamps before parsing, so changes made while parsing invalidate the entry.
+    long psiModificationStamp = getPsiModificationStamp(file);
+    long fileModificationStamp = file.getModificationStamp();
+    long propertiesModificationStamp = getPropertiesModificationStamp(file);
+    return new BuildModelEntry(file, parser.get(), psiModificationStamp, fileModificationStamp, propertiesModificationStamp);
+  }
+
+  // Must be called while holding the lock.
+  private boolean isUpToDate(@NotNull BuildModelEntry entry) {
+    VirtualFile file = entry.myFile;
+    if (!file.isValid() ||
+        entry.myFileModificationStamp != file.getModificationStamp() ||
+        entry.myPsiModificationStamp != getPsiModificationStamp(file) ||
+        entry.myPropertiesModificationStamp != getPropertiesModificationStamp(file) ||
+        entry.myModel.isModified()) {
+      return false;
+    }
+    GradleDslFile parentDslFile = entry.myModel.myGradleDslFile.getParentModuleDslFile();
+    if (parentDslFile == null) {
+      return true;
+    }
+    BuildModelEntry parentEntry = myBuildModels.get(parentDslFile.getFile());
+    return parentEntry != null && parentEntry.myModel.myGradleDslFile == parentDslFile && isUpToDate(parentEntry);
+  }
+
+  private long getPsiModificationStamp(@NotNull VirtualFile file) {
+    PsiFile psiFile = file.isValid() ? myPsiManager.findFile(file) : null;
+    return psiFile != null ? psiFile.getModificationStamp() : -1;
+  }
+
+  private static long getPropertiesModificationStamp(@NotNull VirtualFile buildFile) {
+    VirtualFile parent = buildFile.getParent();
+    VirtualFile propertiesFile = parent != null ? parent.findChild(FN_GRADLE_PROPERTIES) : null;
+    return propertiesFile != null ? propertiesFile.getModificationStamp() : -1;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("GradleDslFileCache: %1$d hits, %2$d misses", myHitCount.get(), myMissCount.get());
+  }
+
+  private static class BuildModelEntry {
+    @NotNull final VirtualFile myFile;
+    @NotNull final GradleFileModel myModel;
+    final long myPsiModificationStamp;
+    final long myFileModificationStamp;
+    final long myPropertiesModificationStamp;
+
+    BuildModelEntry(@NotNull VirtualFile file,
+                    @NotNull GradleFileModel model,
+                    long psiModificationStamp,
+                    long fileModificationStamp,
+                    long propertiesModificationStamp) {
+      myFile = file;
+      myModel = model;
+      myPsiModificationStamp = psiModificationStamp;
+      myFileModificationStamp = fileModificationStamp;
+      myPropertiesModificationStamp = propertiesModificationStamp;
+    }
+  }
+
+  private static class PropertiesEntry {
+    @NotNull final Properties myProperties;
+    final long myModificationStamp;
+
+    PropertiesEntry(@NotNull Properties properties, long modificationStamp) {
+      myProperties = properties;
+      myModificationStamp = modificationStamp;
+    }
+  }
+}
@@ -21,18 +21,14 @@ import com.android.tools.idea.gradle.dsl.parser.elements.GradleDslExpression;
 import com.google.common.collect.ImmutableList;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.io.File;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.Properties;
 
-import static com.android.tools.idea.gradle.util.PropertiesFiles.getProperties;
-
 /**
  * Represents a gradle.properties file.
  */
@@ -41,9 +37,9 @@ public class GradlePropertiesModel extends GradleFileModel {
 
   @Nullable
   public static GradlePropertiesModel parsePropertiesFile(@NotNull VirtualFile file, @NotNull Project project, @NotNull String moduleName) {
-    File propertiesFile = VfsUtilCore.virtualToIoFile(file);
     try {
-      Properties properties = getProperties(propertiesFile);
+      // The properties are only read, so they are shared with other models of the same file.
+      Properties properties = GradleDslFileCache.getInstance(project).getProperties(file);
       GradlePropertiesFile gradlePropertiesFile = new GradlePropertiesFile(properties, file, project, moduleName);
       return new GradlePropertiesModel(gradlePropertiesFile);
     }
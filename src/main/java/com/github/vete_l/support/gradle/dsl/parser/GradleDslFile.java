@@ -16,7 +16,7 @@
 package com.github.vete_l.support.gradle.dsl.parser;
 
 import com.android.tools.idea.gradle.dsl.parser.elements.GradlePropertiesDslElement;
-import com.google.common.collect.Sets;
+import com.google.common.collect.ImmutableList;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VirtualFile;
@@ -34,7 +34,9 @@ import org.jetbrains.plugins.groovy.lang.psi.api.statements.expressions.path.GrM
 
 import java.io.File;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Set;
+import java.util.WeakHashMap;
 
 import static com.intellij.openapi.vfs.VfsUtilCore.virtualToIoFile;
 
@@ -44,7 +46,8 @@ import static com.intellij.openapi.vfs.VfsUtilCore.virtualToIoFile;
 public abstract class GradleDslFile extends GradlePropertiesDslElement {
   @NotNull private final VirtualFile myFile;
   @NotNull private final Project myProject;
-  @NotNull private final Set<GradleDslFile> myChildModuleDslFiles = Sets.newHashSet();
+  // Weak references: the files of sub-modules (e.g. parsed for a caller of GradleBuildModel#get) can outlive a cached parent module's file.
+  @NotNull private final Set<GradleDslFile> myChildModuleDslFiles = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
 
   @Nullable private GradleDslFile myParentModuleDslFile;
   @Nullable private GradleDslFile mySiblingDslFile;
@@ -131,7 +134,9 @@ public abstract class GradleDslFile extends GradlePropertiesDslElement {
 
   @NotNull
   public Collection<GradleDslFile> getChildModuleDslFiles() {
-    return myChildModuleDslFiles;
+    synchronized (myChildModuleDslFiles) {
+      return ImmutableList.copyOf(myChildModuleDslFiles);
+    }
   }
 
   /**
@@ -183,11 +183,23 @@ public final class GradleDslParser {
       return false;
     }
     for (GradlePropertiesDslElement element : blockElements) {
+      if (element instanceof SubProjectsDslElement) {
+        ((SubProjectsDslElement)element).addClosure(closableBlock);
+      }
       parse(closableBlock, element);
     }
     return true;
   }
 
+  /**
+   * Parses a closure of a {@code subprojects} (or {@code allprojects}) block of a parent module into the given element, which belongs to one
+   * of its sub-modules.
+   */
+  public static void parseSubProjectsClosure(@NotNull GrClosableBlock closure, @NotNull SubProjectsDslElement subProjectsDslElement) {
+    subProjectsDslElement.addClosure(closure);
+    parse(closure, subProjectsDslElement);
+  }
+
   private static void parse(@NotNull GrClosableBlock closure, @NotNull final GradlePropertiesDslElement blockElement) {
     closure.acceptChildren(new GroovyElementVisitor() {
       @Override
@@ -18,12 +18,32 @@ package com.github.vete_l.support.gradle.dsl.parser.build;
 import com.android.tools.idea.gradle.dsl.parser.elements.GradleDslBlockElement;
 import com.android.tools.idea.gradle.dsl.parser.elements.GradleDslElement;
 import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.plugins.groovy.lang.psi.api.statements.blocks.GrClosableBlock;
+
+import java.util.ArrayList;
+import java.util.List;
 
 public class SubProjectsDslElement extends GradleDslBlockElement {
   @NonNls public static final String SUBPROJECTS_BLOCK_NAME = "subprojects";
 
+  @NotNull private final List<GrClosableBlock> myClosures = new ArrayList<>();
+
   public SubProjectsDslElement(@Nullable GradleDslElement parent) {
     super(parent, SUBPROJECTS_BLOCK_NAME);
   }
+
+  public void addClosure(@NotNull GrClosableBlock closure) {
+    myClosures.add(closure);
+  }
+
+  /**
+   * Returns the closures this element was parsed from, in the order they were parsed. They include the closures of the parent modules'
+   * {@code subprojects} and {@code allprojects} blocks.
+   */
+  @NotNull
+  public List<GrClosableBlock> getClosures() {
+    return myClosures;
+  }
 }
@@ -15,6 +15,7 @@
  */
 package com.github.vete_l.support.gradle.dsl.parser.elements;
 
+import com.android.tools.idea.gradle.dsl.model.GradleDslFileCache;
 import com.android.tools.idea.gradle.dsl.model.GradleSettingsModel;
 import com.android.tools.idea.gradle.dsl.parser.GradleDslFile;
 import com.android.tools.idea.gradle.dsl.parser.GradleResolvedVariable;
@@ -191,7 +192,7 @@ public abstract class GradleDslExpression extends GradleDslElement {
     String standardProjectKey = getStandardProjectKey(projectReference);
     if (standardProjectKey != null) { // project(':project:path')
       String modulePath = standardProjectKey.substring(standardProjectKey.indexOf('\'') + 1, standardProjectKey.lastIndexOf('\''));
-      GradleSettingsModel model = GradleSettingsModel.get(dslFile.getProject());
+      GradleSettingsModel model = GradleDslFileCache.getInstance(dslFile.getProject()).getSettingsModel();
       if (model == null) {
         return null;
       }
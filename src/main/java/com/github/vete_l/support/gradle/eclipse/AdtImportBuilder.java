@@ -153,6 +153,7 @@ public class AdtImportBuilder extends ProjectImportBuilder<String> {
         return null;
       }
       myImporter.exportProject(destDir, true);
+      Logger.getInstance(AdtImportBuilder.class).info(myImporter.getSummary().getCopyStatistics());
       project.getBaseDir().refresh(false, true);
     }
     catch (IOException e) {
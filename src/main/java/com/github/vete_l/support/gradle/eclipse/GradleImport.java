@@ -36,6 +36,7 @@ import com.android.utils.XmlUtils;
 import com.google.common.base.Charsets;
 import com.google.common.base.Objects;
 import com.google.common.collect.*;
+import com.google.common.io.CharStreams;
 import com.google.common.io.Files;
 import com.google.common.primitives.Bytes;
 import org.jetbrains.annotations.NotNull;
@@ -46,8 +47,15 @@ import org.w3c.dom.NodeList;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
 import java.nio.charset.Charset;
 import java.nio.charset.UnsupportedCharsetException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
 
 import static com.android.SdkConstants.*;
@@ -58,6 +66,7 @@ import static com.android.xml.AndroidManifest.NODE_INSTRUMENTATION;
 import static com.google.common.base.Charsets.UTF_8;
 import static java.io.File.separator;
 import static java.io.File.separatorChar;
+import static java.nio.file.Files.walkFileTree;
 
 /**
  * Importer which can generate Android Gradle projects.
@@ -161,6 +170,7 @@ public class GradleImport {
   private Map<File, String> mySelectedModules;
   private boolean myDefaultEncodingInitialized;
   private Charset myDefaultEncoding;
+  private int myCopyDirDepth;
   private Map<File, EclipseProject> myProjectMap = Maps.newHashMap();
 
   public GradleImport() {
@@ -324,12 +334,15 @@ public class GradleImport {
   private static void copyTextFileWithEncoding(@NonNull File source, @NonNull File dest, @NonNull Charset sourceEncoding)
     throws IOException {
     if (!Charsets.UTF_8.equals(sourceEncoding)) {
-      String text = Files.toString(source, sourceEncoding);
-      Files.write(text, dest, Charsets.UTF_8);
+      // Transcode as the file is read, instead of reading the whole file first
+      try (Reader reader = Files.newReader(source, sourceEncoding);
+           Writer writer = Files.newWriter(dest, Charsets.UTF_8)) {
+        CharStreams.copy(reader, writer);
+      }
     }
     else {
       // Already using the right encoding
-      Files.copy(source, dest);
+      ImportFileCopier.copyFileContents(source, dest);
     }
   }
 
@@ -1401,54 +1414,54 @@ public class GradleImport {
                       @Nullable CopyHandler handler,
                       boolean updateEncoding,
                       @Nullable ImportModule sourceModule) throws IOException {
-    if (handler != null && handler.handle(source, dest, updateEncoding, sourceModule)) {
-      return;
+    // Directories are walked, and handlers called, on this thread; file contents are copied in parallel.
+    long startTimeNanos = System.nanoTime();
+    boolean outermost = myCopyDirDepth++ == 0;
+    ImportFileCopier copier = new ImportFileCopier();
+    try {
+      walkFileTree(source.toPath(), EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+                   new CopyDirVisitor(dest, handler, updateEncoding, sourceModule, copier));
     }
-    if (source.isDirectory()) {
-      if (isIgnoredFile(source)) {
-        // Skip version control files when generating the migrated project;
-        // it will only have fragments of the project, and in some cases moved
-        // around, so don't pick up partial VCS state
-        return;
-      }
-
-      mkdirs(dest);
-      File[] files = source.listFiles();
-      if (files != null) {
-        for (File child : files) {
-          copyDir(child, new File(dest, child.getName()), handler, updateEncoding, sourceModule);
-        }
+    catch (IOException | RuntimeException e) {
+      // Do not leave copies running in the background.
+      try {
+        copier.finish();
       }
-
-      // Delete empty directories. This happens for example when a whole source subdirectory
-      // turns out to only contain special files that are moved elsewhere (such as .aidl or resource files)
-      File[] copied = dest.listFiles();
-      if (copied != null && copied.length == 0) {
-        //noinspection ResultOfMethodCallIgnored
-        dest.delete();
+      catch (IOException copyError) {
+        e.addSuppressed(copyError);
       }
+      throw e;
     }
-    else if (updateEncoding && isTextFile(source)
-             // Property files have their own special encoding; don't touch these
-             && !source.getPath().endsWith(DOT_PROPERTIES)) {
-      copyTextFile(sourceModule, source, dest);
+    finally {
+      myCopyDirDepth--;
     }
-    else {
-      Files.copy(source, dest);
+    copier.finish();
+
+    if (mySummary != null) {
+      // Nested copies (started by handlers) are already part of the time of the outermost copy.
+      long elapsedNanos = outermost ? System.nanoTime() - startTimeNanos : 0;
+      mySummary.reportCopiedFiles(copier.getFileCount(), copier.getByteCount(), elapsedNanos);
     }
   }
 
   public void copyTextFile(@Nullable ImportModule module, @NonNull File source, @NonNull File dest) throws IOException {
     assert isTextFile(source) : source;
+    createTextFileCopy(module, source, dest).copy();
+  }
 
+  /**
+   * Returns the copy of the given text file into a UTF-8 text file. The encoding of the file is looked up right away (since that can
+   * read settings and report warnings,) so the returned copy can then run on any thread.
+   */
+  @NonNull
+  private ImportFileCopier.CopyAction createTextFileCopy(@Nullable ImportModule module, @NonNull File source, @NonNull File dest) {
     Charset encoding = null;
 
     // A specific encoding configured for a given file always wins:
     if (module != null) {
-      encoding = module.getFileEncoding(source);
-      if (encoding != null) {
-        copyTextFileWithEncoding(source, dest, encoding);
-        return;
+      Charset fileEncoding = module.getFileEncoding(source);
+      if (fileEncoding != null) {
+        return () -> copyTextFileWithEncoding(source, dest, fileEncoding);
       }
 
       encoding = module.getProjectEncoding(source);
@@ -1461,22 +1474,25 @@ public class GradleImport {
     // For XML files we can sometimes read the encoding right out of the XML prologue
     if (SdkUtils.endsWithIgnoreCase(source.getPath(), DOT_XML)) {
       String defaultCharset = encoding != null ? encoding.name() : SdkConstants.UTF_8;
-      String xml = PositionXmlParser.getXmlString(Files.toByteArray(source), defaultCharset);
-      // Replace prologue if it specifies the encoding
-      if (xml.startsWith("<?xml")) {
-        int prologueEnd = xml.indexOf("?>");
-        if (prologueEnd != -1) {
-          xml = "<?xml version=\"1.0\" encoding=\"utf-8\"?>" + xml.substring(prologueEnd + 2);
+      return () -> {
+        String xml = PositionXmlParser.getXmlString(Files.toByteArray(source), defaultCharset);
+        // Replace prologue if it specifies the encoding
+        if (xml.startsWith("<?xml")) {
+          int prologueEnd = xml.indexOf("?>");
+          if (prologueEnd != -1) {
+            xml = "<?xml version=\"1.0\" encoding=\"utf-8\"?>" + xml.substring(prologueEnd + 2);
+          }
         }
-      }
 
-      Files.write(xml, dest, Charsets.UTF_8);
+        Files.write(xml, dest, Charsets.UTF_8);
+      };
     }
     else if (encoding != null) {
-      copyTextFileWithEncoding(source, dest, encoding);
+      Charset projectEncoding = encoding;
+      return () -> copyTextFileWithEncoding(source, dest, projectEncoding);
     }
     else {
-      Files.copy(source, dest);
+      return () -> ImportFileCopier.copyFileContents(source, dest);
     }
   }
 
@@ -1524,6 +1540,110 @@ public class GradleImport {
     return !haveLocalRepository(SdkMavenRepository.GOOGLE);
   }
 
+  /**
+   * Walks the source of {@link #copyDir}: calls the handler on each file and directory, skips version control files, and copies the other
+   * files with the given {@link ImportFileCopier}.
+   */
+  private class CopyDirVisitor extends SimpleFileVisitor<Path> {
+    @NonNull private final File myDest;
+    @Nullable private final CopyHandler myHandler;
+    private final boolean myUpdateEncoding;
+    @Nullable private final ImportModule mySourceModule;
+    @NonNull private final ImportFileCopier myCopier;
+
+    // The directories being copied, innermost first.
+    @NonNull private final Deque<DirectoryCopy> myDirectories = new ArrayDeque<>();
+
+    CopyDirVisitor(@NonNull File dest,
+                   @Nullable CopyHandler handler,
+                   boolean updateEncoding,
+                   @Nullable ImportModule sourceModule,
+                   @NonNull ImportFileCopier copier) {
+      myDest = dest;
+      myHandler = handler;
+      myUpdateEncoding = updateEncoding;
+      mySourceModule = sourceModule;
+      myCopier = copier;
+    }
+
+    @Override
+    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+      File source = dir.toFile();
+      File dest = getDest(source);
+      if (myHandler != null && myHandler.handle(source, dest, myUpdateEncoding, mySourceModule)) {
+        return FileVisitResult.SKIP_SUBTREE;
+      }
+      if (isIgnoredFile(source)) {
+        // Skip version control files when generating the migrated project;
+        // it will only have fragments of the project, and in some cases moved
+        // around, so don't pick up partial VCS state
+        return FileVisitResult.SKIP_SUBTREE;
+      }
+
+      mkdirs(dest);
+      myDirectories.push(new DirectoryCopy(dest));
+      return FileVisitResult.CONTINUE;
+    }
+
+    @Override
+    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+      File source = file.toFile();
+      File dest = getDest(source);
+      if (myHandler != null && myHandler.handle(source, dest, myUpdateEncoding, mySourceModule)) {
+        return FileVisitResult.CONTINUE;
+      }
+
+      if (myUpdateEncoding && isTextFile(source)
+          // Property files have their own special encoding; don't touch these
+          && !source.getPath().endsWith(DOT_PROPERTIES)) {
+        myCopier.submit(source, createTextFileCopy(mySourceModule, source, dest));
+      }
+      else {
+        myCopier.copyFile(source, dest);
+      }
+      DirectoryCopy parent = myDirectories.peek();
+      if (parent != null) {
+        parent.myHasCopiedFiles = true;
+      }
+      return FileVisitResult.CONTINUE;
+    }
+
+    @Override
+    public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+      if (e != null) {
+        throw e;
+      }
+      // Delete empty directories. This happens for example when a whole source subdirectory
+      // turns out to only contain special files that are moved elsewhere (such as .aidl or resource files)
+      // Files being copied in the background are not listed yet, so they are tracked separately.
+      DirectoryCopy directory = myDirectories.pop();
+      if (!directory.myHasCopiedFiles) {
+        File[] copied = directory.myDest.listFiles();
+        if (copied != null && copied.length == 0) {
+          //noinspection ResultOfMethodCallIgnored
+          directory.myDest.delete();
+        }
+      }
+      return FileVisitResult.CONTINUE;
+    }
+
+    @NonNull
+    private File getDest(@NonNull File source) {
+      DirectoryCopy parent = myDirectories.peek();
+      // The first file visited is the source of the copy.
+      return parent != null ? new File(parent.myDest, source.getName()) : myDest;
+    }
+  }
+
+  private static class DirectoryCopy {
+    @NonNull final File myDest;
+    boolean myHasCopiedFiles;
+
+    DirectoryCopy(@NonNull File dest) {
+      myDest = dest;
+    }
+  }
+
   /**
    * Interface used by the {@link #copyDir} handler
    */
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.vete_l.support.gradle.eclipse;
+
+import com.android.annotations.NonNull;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Copies the contents of files on a pool of threads which steal work from each other, so large folders (such as assets) are not copied
+ * one file at a time. Callers decide what to copy where (and look up encodings) on their own thread; only the copying itself is done by
+ * the pool. Call {@link #finish()} to wait for all the copies.
+ */
+final class ImportFileCopier {
+  @NonNull private final List<ForkJoinTask<?>> myTasks = Lists.newArrayList();
+  @NonNull private final AtomicInteger myFileCount = new AtomicInteger();
+  @NonNull private final AtomicLong myByteCount = new AtomicLong();
+
+  /**
+   * Copies a file, e.g. while changing its encoding.
+   */
+  interface CopyAction {
+    void copy() throws IOException;
+  }
+
+  /**
+   * Copies the given file as is. The parent of the destination must exist.
+   */
+  void copyFile(@NonNull File source, @NonNull File dest) {
+    submit(source, () -> copyFileContents(source, dest));
+  }
+
+  /**
+   * Runs the given copy of the given source file on the pool.
+   */
+  void submit(@NonNull File source, @NonNull CopyAction action) {
+    myTasks.add(PoolHolder.POOL.submit(() -> {
+      action.copy();
+      myFileCount.incrementAndGet();
+      myByteCount.addAndGet(source.length());
+      return null;
+    }));
+  }
+
+  /**
+   * Waits for all the copies to finish.
+   *
+   * @throws IOException the first error found by the copies, if any.
+   */
+  void finish() throws IOException {
+    Throwable error = null;
+    for (ForkJoinTask<?> task : myTasks) {
+      try {
+        task.get();
+      }
+      catch (ExecutionException e) {
+        if (error == null) {
+          error = e.getCause();
+        }
+        else {
+          error.addSuppressed(e.getCause());
+        }
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while copying files", e);
+      }
+    }
+    myTasks.clear();
+    if (error != null) {
+      Throwables.propagateIfPossible(error, IOException.class);
+      throw new IOException(error);
+    }
+  }
+
+  int getFileCount() {
+    return myFileCount.get();
+  }
+
+  long getByteCount() {
+    return myByteCount.get();
+  }
+
+  /**
+   * Copies the contents of a file with {@link FileChannel#transferTo}, which lets the operating system copy the bytes without moving them
+   * through the Java heap.
+   */
+  static void copyFileContents(@NonNull File source, @NonNull File dest) throws IOException {
+    try (FileChannel in = FileChannel.open(source.toPath(), READ);
+         FileChannel out = FileChannel.open(dest.toPath(), WRITE, CREATE, TRUNCATE_EXISTING)) {
+      long size = in.size();
+      long position = 0;
+      while (position < size) {
+        long transferred = in.transferTo(position, size - position, out);
+        if (transferred <= 0) {
+          // The file was truncated while being copied.
+          break;
+        }
+        position += transferred;
+      }
+    }
+  }
+
+  private static class PoolHolder {
+    // Copying is I/O bound, so there are a few more threads than processors. The threads of the pool are daemon threads.
+    static final ForkJoinPool POOL = new ForkJoinPool(Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+  }
+}
@@ -187,6 +187,9 @@ public class ImportSummary {
   private List<String> myIgnoredUserHomeProGuardFiles = Lists.newArrayList();
   private boolean myHasRiskyPathChars;
   private boolean myWrapErrorMessages = true;
+  private int myCopiedFileCount;
+  private long myCopiedByteCount;
+  private long myCopyTimeNanos;
 
   ImportSummary(@NonNull GradleImport importer) {
     myImporter = importer;
@@ -206,6 +209,29 @@ public class ImportSummary {
     Files.write(summary, file, Charsets.UTF_8);
   }
 
+  /**
+   * Records files copied into the new project.
+   *
+   * @param elapsedNanos the time spent copying, or 0 if it is already part of the time of another report.
+   */
+  void reportCopiedFiles(int fileCount, long byteCount, long elapsedNanos) {
+    myCopiedFileCount += fileCount;
+    myCopiedByteCount += byteCount;
+    myCopyTimeNanos += elapsedNanos;
+  }
+
+  /**
+   * Returns how many files were copied into the new project, and how fast. Unlike the rest of the summary, this depends on the machine
+   * doing the import, so it is not written to the summary file.
+   */
+  @NonNull
+  public String getCopyStatistics() {
+    double megabytes = myCopiedByteCount / (1024.0 * 1024.0);
+    double seconds = myCopyTimeNanos / 1e9;
+    return String.format(Locale.US, "Copied %1$d files (%2$.1f MB) in %3$.1f s (%4$.1f MB/s)", myCopiedFileCount, megabytes, seconds,
+                         seconds > 0 ? megabytes / seconds : 0);
+  }
+
   public void setDestDir(File destDir) {
     myDestDir = destDir;
 
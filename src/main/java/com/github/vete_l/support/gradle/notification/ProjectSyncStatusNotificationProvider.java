@@ -161,7 +161,7 @@ public class ProjectSyncStatusNotificationProvider extends EditorNotifications.P
       super(type, text);
 
       createActionLabel("Sync Now",
-                        () -> GradleSyncInvoker.getInstance().requestProjectSyncAndSourceGeneration(project, TRIGGER_USER_REQUEST, null));
+                        () -> GradleSyncInvoker.getInstance().requestModifiedModulesSync(project, TRIGGER_USER_REQUEST, null));
     }
   }
 
@@ -34,6 +34,14 @@ public class GradleExperimentalSettings implements PersistentStateComponent<Grad
   public boolean USE_NEW_PROJECT_STRUCTURE_DIALOG;
   public boolean USE_NEW_GRADLE_SYNC;
   public boolean USE_L2_DEPENDENCIES_ON_SYNC = true;
+  // Number of threads used to convert module models in the new Gradle sync. 0 means one thread per available processor.
+  public int MODULE_MODEL_CONVERSION_PARALLELISM;
+  // Extract the dependencies of the selected variants while converting module models in the new Gradle sync, instead of during the module
+  // setup.
+  public boolean EXTRACT_DEPENDENCIES_ON_MODEL_CONVERSION = true;
+  // Only keep the models of the selected variants (and of the variants they depend on) after sync. Other variants are obtained by syncing
+  // again when they are selected.
+  public boolean SINGLE_VARIANT_SYNC;
 
   @NotNull
   public static GradleExperimentalSettings getInstance() {
@@ -18,36 +18,28 @@ package com.github.vete_l.support.gradle.project;
 import com.android.annotations.VisibleForTesting;
 import com.android.tools.idea.IdeInfo;
 import com.android.tools.idea.gradle.project.facet.gradle.GradleFacet;
-import com.android.tools.idea.gradle.project.model.GradleModuleModel;
-import com.android.tools.idea.gradle.project.model.NdkModuleModel;
+import com.android.tools.idea.gradle.project.sync.GradleFileFingerprints;
+import com.android.tools.idea.gradle.project.sync.GradleFiles;
 import com.android.tools.idea.gradle.project.sync.GradleSyncState;
 import com.android.tools.idea.gradle.util.LocalProperties;
 import com.android.tools.idea.sdk.IdeSdks;
-import com.google.common.collect.Maps;
-import com.google.common.hash.Hashing;
 import com.intellij.openapi.application.PathManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.module.ModuleManager;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.vfs.VirtualFile;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.*;
-import java.util.Arrays;
-import java.util.Map;
+import java.util.Collections;
 
 import static com.android.SdkConstants.*;
 import static com.android.tools.idea.gradle.util.GradleUtil.*;
 import static com.android.tools.idea.gradle.util.Projects.getBaseDirPath;
-import static com.android.tools.idea.gradle.util.Projects.isGradleProjectModule;
 import static com.google.common.io.Closeables.close;
-import static com.google.common.io.Files.toByteArray;
 import static com.intellij.openapi.util.io.FileUtil.*;
-import static com.intellij.openapi.vfs.VfsUtil.findFileByIoFile;
-import static com.intellij.openapi.vfs.VfsUtilCore.virtualToIoFile;
 
 /**
  * The Project data that needs to be persisted to check whether it is possible to reload the Project without the need of calling Gradle.
@@ -59,9 +51,9 @@ public class GradleProjectSyncData implements Serializable {
   private static final Logger LOG = Logger.getInstance(GradleProjectSyncData.class);
 
   /**
-   * A set of files and their MD5 that the persisted external project data depends on.
+   * The fingerprints of the files that the persisted external project data depends on.
    */
-  private Map<String, byte[]> myFileChecksums = Maps.newHashMap();
+  private GradleFileFingerprints myFileFingerprints;
 
   /**
    * The model version
@@ -74,8 +66,6 @@ public class GradleProjectSyncData implements Serializable {
    */
   private long myLastGradleSyncTimestamp = -1L;
 
-  private transient File myRootDirPath;
-
   private GradleProjectSyncData() {
   }
 
@@ -132,7 +122,7 @@ public class GradleProjectSyncData implements Serializable {
       ObjectInputStream ois = new ObjectInputStream(fin);
       try {
         GradleProjectSyncData data = (GradleProjectSyncData)ois.readObject();
-        data.myRootDirPath = rootDirPath;
+        data.myFileFingerprints.setRootDirPath(rootDirPath);
         return data;
       }
       finally {
@@ -176,36 +166,16 @@ public class GradleProjectSyncData implements Serializable {
   @VisibleForTesting
   static GradleProjectSyncData createFrom(@NotNull Project project) throws IOException {
     GradleProjectSyncData data = new GradleProjectSyncData();
-    File rootDirPath = getBaseDirPath(project);
     Module[] modules = ModuleManager.getInstance(project).getModules();
     for (Module module : modules) {
       GradleFacet gradleFacet = GradleFacet.getInstance(module);
-      if (gradleFacet != null) {
-        GradleModuleModel gradleModuleModel = gradleFacet.getGradleModuleModel();
-        if (gradleModuleModel != null) {
-          data.addFileChecksum(rootDirPath, gradleModuleModel.getBuildFile());
-        }
-        else {
-          LOG.warn(String.format("Trying to create project data from a not initialized project '%1$s'. Abort.", project.getName()));
-          return null;
-        }
-      }
-
-      if (isGradleProjectModule(module)) {
-        data.addFileChecksum(rootDirPath, getGradleBuildFile(module));
-        data.addFileChecksum(rootDirPath, getGradleSettingsFile(rootDirPath));
-        data.addFileChecksum(rootDirPath, new File(rootDirPath, FN_GRADLE_PROPERTIES));
-        data.addFileChecksum(rootDirPath, new File(rootDirPath, FN_LOCAL_PROPERTIES));
-        data.addFileChecksum(rootDirPath, getGradleUserSettingsFile());
-      }
-
-      NdkModuleModel ndkModuleModel = NdkModuleModel.get(module);
-      if (ndkModuleModel != null) {
-        for (File externalBuildFile : ndkModuleModel.getAndroidProject().getBuildFiles()) {
-          data.addFileChecksum(rootDirPath, externalBuildFile);
-        }
+      if (gradleFacet != null && gradleFacet.getGradleModuleModel() == null) {
+        LOG.warn(String.format("Trying to create project data from a not initialized project '%1$s'. Abort.", project.getName()));
+        return null;
       }
     }
+    // Files that did not change since the end of the sync are not read again.
+    data.myFileFingerprints = GradleFiles.getInstance(project).updateFingerprints();
     GradleSyncState syncState = GradleSyncState.getInstance(project);
     data.myLastGradleSyncTimestamp = syncState.getSummary().getSyncTimestamp();
     return data;
@@ -216,40 +186,6 @@ public class GradleProjectSyncData implements Serializable {
     return new File(PathManager.getSystemPath(), join("external_build_system", "Projects", project.getLocationHash(), STATE_FILE_NAME));
   }
 
-  private void addFileChecksum(File rootDirPath, @Nullable VirtualFile vf) throws IOException {
-    addFileChecksum(rootDirPath, vf != null ? virtualToIoFile(vf) : null);
-  }
-
-  private void addFileChecksum(File rootDirPath, @Nullable File file) throws IOException {
-    if (file == null) {
-      return;
-    }
-    String key;
-    if (isAncestor(rootDirPath, file, true)) {
-      key = getRelativePath(rootDirPath, file);
-    }
-    else {
-      key = file.getAbsolutePath();
-    }
-    myFileChecksums.put(key, createChecksum(file));
-  }
-
-  @NotNull
-  private static byte[] createChecksum(@NotNull File file) throws IOException {
-    // For files tracked by the IDE we get the content from the virtual files, otherwise we revert to io.
-    VirtualFile vf = findFileByIoFile(file, true);
-    byte[] data = new byte[] {};
-    if (vf != null) {
-      vf.refresh(false, false);
-      if (vf.exists()) {
-        data = vf.contentsToByteArray();
-      }
-    } else if (file.exists()) {
-      data = toByteArray(file);
-    }
-    return Hashing.md5().hashBytes(data).asBytes();
-  }
-
   /**
    * Saves the data on the given project location.
    *
@@ -290,40 +226,32 @@ public class GradleProjectSyncData implements Serializable {
   /**
    * Verifies that whether the persisted external project data can be used to create the project or not.
    * <p/>
-   * This validates that all the files that the external project data depends on, still have the same content checksum and that the gradle
-   * model version is still the same.
+   * This validates that all the files that the external project data depends on, still have the same content and that the gradle model
+   * version is still the same. Only files whose size or timestamp changed are read.
    *
    * @return whether the data is still valid.
-   * @throws IOException if there is a problem accessing these files.
    */
   public boolean canUseCachedProjectData() {
     if (!myGradlePluginVersion.equals(GRADLE_PLUGIN_RECOMMENDED_VERSION)) {
       return false;
     }
+    return findChanges().isEmpty();
+  }
 
-    for (Map.Entry<String, byte[]> entry : myFileChecksums.entrySet()) {
-      File file = new File(entry.getKey());
-      if (!file.isAbsolute()) {
-        file = new File(myRootDirPath, file.getPath());
-      }
-      try {
-        if (!Arrays.equals(entry.getValue(), createChecksum(file))) {
-          return false;
-        }
-      }
-      catch (IOException e) {
-        return false;
-      }
-    }
-    return true;
+  /**
+   * @return the files that changed since the data was persisted, and the modules they belong to.
+   */
+  @NotNull
+  public GradleFileFingerprints.Changes findChanges() {
+    return myFileFingerprints.findChanges(Collections.emptySet());
   }
 
-  public long getLastGradleSyncTimestamp() {
-    return myLastGradleSyncTimestamp;
+  @NotNull
+  public GradleFileFingerprints getFileFingerprints() {
+    return myFileFingerprints;
   }
 
-  @VisibleForTesting
-  Map<String, byte[]> getFileChecksums() {
-    return myFileChecksums;
+  public long getLastGradleSyncTimestamp() {
+    return myLastGradleSyncTimestamp;
   }
 }
@@ -198,7 +198,10 @@ class GradleTasksExecutorImpl extends GradleTasksExecutor {
       String executingTasksText = "Executing tasks: " + gradleTasks;
       addToEventLog(executingTasksText, INFO);
 
-      StringBuilder output = new StringBuilder();
+      // The whole output is only kept for the Instant Run flight recorder. Otherwise, it is parsed as it arrives.
+      boolean recordInstantRunBuild = InstantRunSettings.isInstantRunEnabled() && InstantRunSettings.isRecorderEnabled();
+      StringBuilder output = recordInstantRunBuild ? new StringBuilder() : null;
+      StreamingBuildOutputParser outputParser = new StreamingBuildOutputParser(getOutputParsers(), this::add);
 
       Throwable buildError = null;
       InstantRunBuildProgressListener instantRunProgressListener = null;
@@ -273,7 +276,10 @@ class GradleTasksExecutorImpl extends GradleTasksExecutor {
 
           @Override
           public void onTaskOutput(@NotNull ExternalSystemTaskId id, @NotNull String text, boolean stdOut) {
-            output.append(text);
+            if (output != null) {
+              output.append(text);
+            }
+            outputParser.append(text);
             if (taskListener != null) {
               if (myBuildStopper.contains(id)) {
                 taskListener.onTaskOutput(id, text, stdOut);
@@ -296,7 +302,7 @@ class GradleTasksExecutorImpl extends GradleTasksExecutor {
 
         operation.withCancellationToken(cancellationTokenSource.token());
 
-        if (InstantRunSettings.isInstantRunEnabled() && InstantRunSettings.isRecorderEnabled()) {
+        if (recordInstantRunBuild) {
           instantRunProgressListener = new InstantRunBuildProgressListener();
           operation.addProgressListener(instantRunProgressListener);
         }
@@ -338,20 +344,37 @@ class GradleTasksExecutorImpl extends GradleTasksExecutor {
         }
 
         myBuildStopper.remove(id);
-        String gradleOutput = output.toString();
-        if (instantRunProgressListener != null) {
-          FlightRecorder.get(myProject).saveBuildOutput(gradleOutput, instantRunProgressListener);
+        if (instantRunProgressListener != null && output != null) {
+          FlightRecorder.get(myProject).saveBuildOutput(output.toString(), instantRunProgressListener);
         }
+        List<Message> buildMessages = new ArrayList<>();
+        ActionCallback messagesCollected = null;
         Application application = ApplicationManager.getApplication();
         if (isGuiTestingMode()) {
           String testOutput = application.getUserData(GRADLE_BUILD_OUTPUT_IN_GUI_TEST_KEY);
           if (isNotEmpty(testOutput)) {
-            gradleOutput = testOutput;
             application.putUserData(GRADLE_BUILD_OUTPUT_IN_GUI_TEST_KEY, null);
+            // The messages of the actual output were already counted. Counts are reset in the same queue they were submitted to.
+            TransactionGuard.submitTransaction(myProject, () -> {
+              myErrorCount = 0;
+              myWarningCount = 0;
+            });
+            messagesCollected = collectMessages(testOutput, buildMessages).doWhenDone(() -> add(buildMessages));
+          }
+        }
+        if (messagesCollected == null) {
+          buildMessages.addAll(outputParser.finish());
+          if (outputParser.isParsingFailed()) {
+            // No message is reported, so the messages already counted should not be either.
+            TransactionGuard.submitTransaction(myProject, () -> {
+              myErrorCount = 0;
+              myWarningCount = 0;
+            });
           }
+          messagesCollected = ActionCallback.DONE;
         }
 
-        executeAfterGradleTasks(gradleOutput, stopwatch, buildError, model.get());
+        executeAfterGradleTasks(messagesCollected, buildMessages, stopwatch, buildError, model.get());
       }
       return null;
     };
@@ -369,16 +392,18 @@ class GradleTasksExecutorImpl extends GradleTasksExecutor {
     myHelper.execute(myRequest.getBuildFilePath().getPath(), executionSettings, executeTasksFunction);
   }
 
-  private void executeAfterGradleTasks(@NotNull String gradleOutput,
+  /**
+   * @param messagesCollected done when all the messages of the build are in {@code buildMessages}, and have been counted.
+   */
+  private void executeAfterGradleTasks(@NotNull ActionCallback messagesCollected,
+                                       @NotNull List<Message> buildMessages,
                                        @NotNull Stopwatch stopwatch,
                                        @Nullable Throwable buildError,
                                        @Nullable Object model) {
     Application application = ApplicationManager.getApplication();
 
-    List<Message> buildMessages = new ArrayList<>();
-    collectMessages(gradleOutput, buildMessages).doWhenDone(() -> {
+    messagesCollected.doWhenDone(() -> {
       stopwatch.stop();
-      add(buildMessages);
 
       application.invokeLater(() -> notifyGradleInvocationCompleted(stopwatch.elapsed(MILLISECONDS)));
       if (getProject().isDisposed()) {
@@ -401,8 +426,7 @@ class GradleTasksExecutorImpl extends GradleTasksExecutor {
     ActionCallback callback = new ActionCallback();
 
     Runnable task = () -> {
-      Iterable<PatternAwareOutputParser> parsers = JpsServiceManager.getInstance().getExtensions(PatternAwareOutputParser.class);
-      List<Message> compilerMessages = new BuildOutputParser(parsers).parseGradleOutput(gradleOutput, true);
+      List<Message> compilerMessages = new BuildOutputParser(getOutputParsers()).parseGradleOutput(gradleOutput, true);
       messages.addAll(compilerMessages);
       callback.setDone();
     };
@@ -417,6 +441,11 @@ class GradleTasksExecutorImpl extends GradleTasksExecutor {
     return callback;
   }
 
+  @NotNull
+  private static Iterable<PatternAwareOutputParser> getOutputParsers() {
+    return JpsServiceManager.getInstance().getExtensions(PatternAwareOutputParser.class);
+  }
+
   private void add(@NotNull List<Message> buildMessages) {
     Runnable addMessageTask = () -> {
       for (Message message : buildMessages) {
@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.vete_l.support.gradle.project.build.invoker;
+
+import com.android.ide.common.blame.Message;
+import com.android.ide.common.blame.parser.ParsingFailedException;
+import com.android.ide.common.blame.parser.PatternAwareOutputParser;
+import com.android.ide.common.blame.parser.util.OutputLineReader;
+import com.android.tools.idea.gradle.output.parser.BuildOutputParser;
+import com.android.utils.ILogger;
+import com.google.common.annotations.VisibleForTesting;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Parses the output of a Gradle build while the build is running, instead of keeping the whole output to parse it once the build
+ * finishes.
+ * <p>
+ * Output is split into lines, and lines are grouped in segments that start at task headers (e.g. "> Task :app:compileDebugJavaWithJavac".)
+ * Each segment is parsed by {@link BuildOutputParser} as soon as the next one starts. Only the current segment is kept in memory: a
+ * segment that grows larger than the maximum segment length (e.g. the output of a verbose annotation processor) is also ended at the next
+ * blank line, or at the next line if it grows twice as large. The failure summary printed at the end of a failed build ("FAILURE: ...") is
+ * never split, since its messages span blank lines. Lines longer than the maximum segment length are cut.
+ * <p>
+ * The messages obtained are the same as the ones obtained by parsing the whole output at once, as long as no message of a
+ * {@link PatternAwareOutputParser} spans a task header or a segment split because of its length, and no line was cut. As with
+ * {@link BuildOutputParser}, if a parser fails with a {@link ParsingFailedException} no message is returned by {@link #finish()}; the
+ * messages already passed to the consumer are not taken back.
+ */
+class StreamingBuildOutputParser {
+  private static final int MAX_SEGMENT_LENGTH = 1024 * 1024;
+
+  // Task headers are printed as ":app:assembleDebug" by old versions of Gradle, and as "> Task :app:assembleDebug" by newer ones. Both can
+  // be followed by the outcome of the task (e.g. "UP-TO-DATE".)
+  private static final Pattern TASK_HEADER_PATTERN = Pattern.compile("(> Task )?:\\S+( [A-Z][A-Z-]*)?");
+  // Start of the summary of a failed build (e.g. "FAILURE: Build failed with an exception.") Nothing but the summary follows it.
+  private static final String FAILURE_SUMMARY_PREFIX = "FAILURE: ";
+  // BuildOutputParser stops parsing at the first message with this text.
+  private static final String BUILD_CANCELLED_TEXT = "Build cancelled";
+
+  @NotNull private final BuildOutputParser myParser;
+  @NotNull private final Consumer<List<Message>> myMessageConsumer;
+  private final int myMaxSegmentLength;
+
+  @NotNull private final StringBuilder myPendingLine = new StringBuilder();
+  @NotNull private final StringBuilder mySegment = new StringBuilder();
+  @NotNull private final List<Message> myMessages = new ArrayList<>();
+  private boolean myInFailureSummary;
+  private boolean myBuildCancelled;
+  // Set by the parsers of myParser, which is only used while holding this object's lock.
+  private boolean myParsingFailed;
+
+  /**
+   * @param messageConsumer notified of the messages of each segment, as soon as the segment is parsed.
+   */
+  StreamingBuildOutputParser(@NotNull Iterable<PatternAwareOutputParser> parsers, @NotNull Consumer<List<Message>> messageConsumer) {
+    this(parsers, messageConsumer, MAX_SEGMENT_LENGTH);
+  }
+
+  @VisibleForTesting
+  StreamingBuildOutputParser(@NotNull Iterable<PatternAwareOutputParser> parsers,
+                             @NotNull Consumer<List<Message>> messageConsumer,
+                             int maxSegmentLength) {
+    List<PatternAwareOutputParser> trackedParsers = new ArrayList<>();
+    for (PatternAwareOutputParser parser : parsers) {
+      trackedParsers.add(new FailureTrackingParser(parser));
+    }
+    myParser = new BuildOutputParser(trackedParsers);
+    myMessageConsumer = messageConsumer;
+    myMaxSegmentLength = maxSegmentLength;
+  }
+
+  /**
+   * Adds a chunk of output. Chunks do not need to end at line breaks.
+   */
+  synchronized void append(@NotNull String text) {
+    int lineStart = 0;
+    for (int i = 0; i < text.length(); i++) {
+      if (text.charAt(i) == '\n') {
+        appendToPendingLine(text, lineStart, i);
+        addPendingLine();
+        lineStart = i + 1;
+      }
+    }
+    appendToPendingLine(text, lineStart, text.length());
+  }
+
+  /**
+   * Parses the output that is left, once the build has finished.
+   *
+   * @return all the messages found in the output, or an empty list if a parser failed.
+   */
+  @NotNull
+  synchronized List<Message> finish() {
+    if (myPendingLine.length() > 0) {
+      addPendingLine();
+    }
+    parseSegment();
+    return myParsingFailed ? Collections.emptyList() : new ArrayList<>(myMessages);
+  }
+
+  /**
+   * @return {@code true} if a parser failed, in which case {@link #finish()} returns no messages, like {@link BuildOutputParser} does.
+   */
+  synchronized boolean isParsingFailed() {
+    return myParsingFailed;
+  }
+
+  private void appendToPendingLine(@NotNull String text, int start, int end) {
+    int available = myMaxSegmentLength - myPendingLine.length();
+    if (available > 0) {
+      myPendingLine.append(text, start, Math.min(end, start + available));
+    }
+  }
+
+  private void addPendingLine() {
+    // Line breaks can be "\n" or "\r\n", like in OutputLineReader.
+    int length = myPendingLine.length();
+    if (length > 0 && myPendingLine.charAt(length - 1) == '\r') {
+      myPendingLine.setLength(length - 1);
+    }
+    String line = myPendingLine.toString();
+    myPendingLine.setLength(0);
+
+    if (startsNewSegment(line)) {
+      parseSegment();
+    }
+    if (line.startsWith(FAILURE_SUMMARY_PREFIX)) {
+      myInFailureSummary = true;
+    }
+    mySegment.append(line).append('\n');
+  }
+
+  private boolean startsNewSegment(@NotNull String line) {
+    int segmentLength = mySegment.length();
+    if (segmentLength == 0 || myInFailureSummary) {
+      return false;
+    }
+    if (TASK_HEADER_PATTERN.matcher(line).matches() || line.startsWith(FAILURE_SUMMARY_PREFIX)) {
+      return true;
+    }
+    return segmentLength > myMaxSegmentLength && (line.isEmpty() || segmentLength > 2 * myMaxSegmentLength);
+  }
+
+  private void parseSegment() {
+    if (mySegment.length() == 0) {
+      return;
+    }
+    // Once the build is cancelled, the rest of the output is just noise. Once a parser failed, no message is returned anyway.
+    if (!myBuildCancelled && !myParsingFailed) {
+      List<Message> messages = myParser.parseGradleOutput(mySegment.toString(), true);
+      if (!messages.isEmpty()) {
+        myMessages.addAll(messages);
+        myBuildCancelled = messages.get(messages.size() - 1).getText().contains(BUILD_CANCELLED_TEXT);
+        myMessageConsumer.accept(messages);
+      }
+    }
+    mySegment.setLength(0);
+  }
+
+  /**
+   * Records that a parser failed: {@link BuildOutputParser} drops the messages of the output it was parsing, but the messages of the
+   * previous segments have to be dropped too.
+   */
+  private class FailureTrackingParser implements PatternAwareOutputParser {
+    @NotNull private final PatternAwareOutputParser myDelegate;
+
+    FailureTrackingParser(@NotNull PatternAwareOutputParser delegate) {
+      myDelegate = delegate;
+    }
+
+    @Override
+    public boolean parse(@NotNull String line, @NotNull OutputLineReader reader, @NotNull List<Message> messages, @NotNull ILogger logger)
+      throws ParsingFailedException {
+      try {
+        return myDelegate.parse(line, reader, messages, logger);
+      }
+      catch (ParsingFailedException e) {
+        myParsingFailed = true;
+        throw e;
+      }
+    }
+  }
+}
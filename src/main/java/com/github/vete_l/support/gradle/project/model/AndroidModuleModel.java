@@ -38,7 +38,6 @@ import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Computable;
-import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.pom.java.LanguageLevel;
 import com.intellij.psi.JavaPsiFacade;
@@ -55,6 +54,7 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.util.*;
+import java.util.function.Consumer;
 
 import static com.android.SdkConstants.DATA_BINDING_LIB_ARTIFACT;
 import static com.android.builder.model.AndroidProject.*;
@@ -75,7 +75,7 @@ public class AndroidModuleModel implements AndroidModel, ModuleModel {
   public static final String EXPLODED_AAR = "exploded-aar";
 
   // Increase the value when adding/removing fields or when changing the serialization/deserialization mechanism.
-  private static final long serialVersionUID = 2L;
+  private static final long serialVersionUID = 4L;
 
   private static final String[] TEST_ARTIFACT_NAMES = {ARTIFACT_UNIT_TEST, ARTIFACT_ANDROID_TEST};
 
@@ -96,6 +96,16 @@ public class AndroidModuleModel implements AndroidModel, ModuleModel {
   @NotNull private Map<String, BuildTypeContainer> myBuildTypesByName = Maps.newHashMap();
   @NotNull private Map<String, ProductFlavorContainer> myProductFlavorsByName = Maps.newHashMap();
   @NotNull private Map<String, IdeVariant> myVariantsByName = Maps.newHashMap();
+  // Only set when this model was loaded from the sync cache: variants are then decoded on demand instead of being kept in
+  // myVariantsByName.
+  @Nullable private transient IdeVariantSegments myVariantSegments;
+  // Built on first use: the source folders do not change when a different variant is selected.
+  @Nullable private transient volatile SourceFolderIndex<SourceFileContainerInfo> mySourceFolderIndex;
+  // Built on first use, for the selected variant only.
+  @Nullable private transient volatile SelectedVariantDependencyIndexes myDependencyIndexes;
+  // Collected from all the variants on first use: the variants of a model loaded from the cache are decoded to collect them.
+  @Nullable private transient volatile List<SourceProvider> myAllSourceProviders;
+  @Nullable private transient volatile Set<String> myAllApplicationIds;
 
   @NotNull private Set<File> myExtraGeneratedSourceFolders = Sets.newHashSet();
 
@@ -125,10 +135,25 @@ public class AndroidModuleModel implements AndroidModel, ModuleModel {
                             @NotNull AndroidProject androidProject,
                             @NotNull String selectedVariantName,
                             @NotNull IdeDependenciesFactory dependenciesFactory) {
+    this(moduleName, rootDirPath, new IdeAndroidProjectImpl(androidProject, dependenciesFactory), selectedVariantName);
+  }
+
+  /**
+   * Creates a new {@link AndroidModuleModel} from an already copied {@link IdeAndroidProject}.
+   *
+   * @param moduleName          the name of the IDEA module, created from {@code delegate}.
+   * @param rootDirPath         the root directory of the imported Android-Gradle project.
+   * @param androidProject      the copy of the imported Android-Gradle project.
+   * @param selectedVariantName the name of selected variant.
+   */
+  public AndroidModuleModel(@NotNull String moduleName,
+                            @NotNull File rootDirPath,
+                            @NotNull IdeAndroidProject androidProject,
+                            @NotNull String selectedVariantName) {
     myProjectSystemId = GRADLE_SYSTEM_ID;
     myModuleName = moduleName;
     myRootDirPath = rootDirPath;
-    myAndroidProject = new IdeAndroidProjectImpl(androidProject, dependenciesFactory);
+    myAndroidProject = androidProject;
     parseAndSetModelVersion();
     myFeatures = new AndroidModelFeatures(myModelVersion);
 
@@ -154,7 +179,27 @@ public class AndroidModuleModel implements AndroidModel, ModuleModel {
   }
 
   private void populateVariantsByName() {
-    myAndroidProject.forEachVariant(variant -> myVariantsByName.put(variant.getName(), variant));
+    if (myVariantSegments == null) {
+      myAndroidProject.forEachVariant(variant -> myVariantsByName.put(variant.getName(), variant));
+    }
+  }
+
+  @Nullable
+  private IdeVariant findIdeVariant(@NotNull String variantName) {
+    return myVariantSegments != null ? myVariantSegments.find(variantName) : myVariantsByName.get(variantName);
+  }
+
+  /**
+   * Passes each variant to the given consumer. The variants of a model loaded from the cache that were not requested before are decoded
+   * one at a time, and not kept.
+   */
+  private void forEachVariant(@NotNull Consumer<IdeVariant> action) {
+    if (myVariantSegments != null) {
+      myVariantSegments.forEach(action);
+    }
+    else {
+      myAndroidProject.forEachVariant(action);
+    }
   }
 
   /**
@@ -189,6 +234,38 @@ public class AndroidModuleModel implements AndroidModel, ModuleModel {
     return androidTestArtifact.getLevel2Dependencies();
   }
 
+  /**
+   * @return the index of the libraries the main artifact of the selected variant depends on, directly or transitively.
+   */
+  @NotNull
+  public DependencyCoordinateIndex getSelectedMainDependencyIndex() {
+    return getDependencyIndexes().myMainIndex;
+  }
+
+  /**
+   * @return the index of the libraries the androidTest artifact of the selected variant depends on, directly or transitively, or
+   * {@code null} if the selected variant has no androidTest artifact.
+   */
+  @Nullable
+  public DependencyCoordinateIndex getSelectedAndroidTestDependencyIndex() {
+    return getDependencyIndexes().myAndroidTestIndex;
+  }
+
+  @NotNull
+  private SelectedVariantDependencyIndexes getDependencyIndexes() {
+    String variantName = mySelectedVariantName;
+    SelectedVariantDependencyIndexes indexes = myDependencyIndexes;
+    if (indexes == null || !indexes.myVariantName.equals(variantName)) {
+      IdeVariant variant = findIdeVariant(variantName);
+      assert variant != null;
+      IdeAndroidArtifact androidTestArtifact = variant.getAndroidTestArtifact();
+      indexes = new SelectedVariantDependencyIndexes(variantName, DependencyCoordinateIndex.create(variant.getMainArtifact()),
+                                                     androidTestArtifact != null ? DependencyCoordinateIndex.create(androidTestArtifact) : null);
+      myDependencyIndexes = indexes;
+    }
+    return indexes;
+  }
+
   @NotNull
   public AndroidModelFeatures getFeatures() {
     return myFeatures;
@@ -218,7 +295,7 @@ public class AndroidModuleModel implements AndroidModel, ModuleModel {
 
   @NotNull
   public List<SourceProvider> getMainSourceProviders(@NotNull String variantName) {
-    Variant variant = myVariantsByName.get(variantName);
+    Variant variant = findIdeVariant(variantName);
     if (variant == null) {
       getLogger().error("Unknown variant name '" + variantName + "' found in the module '" + myModuleName + "'");
       return ImmutableList.of();
@@ -279,7 +356,7 @@ public class AndroidModuleModel implements AndroidModel, ModuleModel {
     Collection<SourceProviderContainer> extraSourceProviders = getAndroidProject().getDefaultConfig().getExtraSourceProviders();
     providers.addAll(getSourceProvidersForArtifacts(extraSourceProviders, testArtifactNames));
 
-    Variant variant = myVariantsByName.get(variantName);
+    Variant variant = findIdeVariant(variantName);
     assert variant != null;
 
     // Collect the product flavor test source providers.
@@ -315,7 +392,29 @@ public class AndroidModuleModel implements AndroidModel, ModuleModel {
   @Override
   @NotNull
   public List<SourceProvider> getAllSourceProviders() {
-    Collection<Variant> variants = myAndroidProject.getVariants();
+    List<SourceProvider> providers = myAllSourceProviders;
+    if (providers == null) {
+      myAllSourceProviders = providers = ImmutableList.copyOf(collectAllSourceProviders());
+    }
+    return Lists.newArrayList(providers);
+  }
+
+  @NotNull
+  private List<SourceProvider> collectAllSourceProviders() {
+    List<SourceProvider> multiFlavorProviders = Lists.newArrayList();
+    List<SourceProvider> variantProviders = Lists.newArrayList();
+    forEachVariant(variant -> {
+      IdeAndroidArtifact artifact = variant.getMainArtifact();
+      SourceProvider multiFlavorProvider = artifact.getMultiFlavorSourceProvider();
+      if (multiFlavorProvider != null) {
+        multiFlavorProviders.add(multiFlavorProvider);
+      }
+      SourceProvider variantProvider = artifact.getVariantSourceProvider();
+      if (variantProvider != null) {
+        variantProviders.add(variantProvider);
+      }
+    });
+
     List<SourceProvider> providers = Lists.newArrayList();
 
     // Add main source set
@@ -328,12 +427,7 @@ public class AndroidModuleModel implements AndroidModel, ModuleModel {
     }
 
     // Add the multi-flavor source providers
-    for (Variant v : variants) {
-      SourceProvider provider = v.getMainArtifact().getMultiFlavorSourceProvider();
-      if (provider != null) {
-        providers.add(provider);
-      }
-    }
+    providers.addAll(multiFlavorProviders);
 
     // Add all the build types
     Collection<BuildTypeContainer> buildTypes = myAndroidProject.getBuildTypes();
@@ -342,12 +436,7 @@ public class AndroidModuleModel implements AndroidModel, ModuleModel {
     }
 
     // Add all the variant source providers
-    for (Variant v : variants) {
-      SourceProvider provider = v.getMainArtifact().getVariantSourceProvider();
-      if (provider != null) {
-        providers.add(provider);
-      }
-    }
+    providers.addAll(variantProviders);
 
     return providers;
   }
@@ -361,14 +450,18 @@ public class AndroidModuleModel implements AndroidModel, ModuleModel {
   @NotNull
   @Override
   public Set<String> getAllApplicationIds() {
-    Set<String> ids = Sets.newHashSet();
-    for (Variant v : myAndroidProject.getVariants()) {
-      String applicationId = v.getMergedFlavor().getApplicationId();
-      if (applicationId != null) {
-        ids.add(applicationId);
-      }
+    Set<String> ids = myAllApplicationIds;
+    if (ids == null) {
+      Set<String> newIds = Sets.newHashSet();
+      forEachVariant(variant -> {
+        String applicationId = variant.getMergedFlavor().getApplicationId();
+        if (applicationId != null) {
+          newIds.add(applicationId);
+        }
+      });
+      myAllApplicationIds = ids = newIds;
     }
-    return ids;
+    return Sets.newHashSet(ids);
   }
 
   @Override
@@ -540,19 +633,19 @@ public class AndroidModuleModel implements AndroidModel, ModuleModel {
    */
   @NotNull
   public IdeVariant getSelectedVariant() {
-    IdeVariant selected = myVariantsByName.get(mySelectedVariantName);
+    IdeVariant selected = findIdeVariant(mySelectedVariantName);
     assert selected != null;
     return selected;
   }
 
   @Nullable
   public Variant findVariantByName(@NotNull String variantName) {
-    return myVariantsByName.get(variantName);
+    return findIdeVariant(variantName);
   }
 
   /**
-   * Updates the name of the selected build variant. If the given name does not belong to an existing variant, this method will pick up
-   * the first variant, in alphabetical order.
+   * Updates the name of the selected build variant. If the given name does not belong to a fetched variant (see
+   * {@link #isVariantFetched(String)},) this method will pick up the first fetched variant, in alphabetical order.
    *
    * @param name the new name.
    */
@@ -562,11 +655,12 @@ public class AndroidModuleModel implements AndroidModel, ModuleModel {
     // force lazy recompute
     myOverridesManifestPackage = null;
     myMinSdkVersion = null;
+    myDependencyIndexes = null;
   }
 
   @NotNull
   private String findVariantToSelect(@NotNull String variantName) {
-    Collection<String> variantNames = getVariantNames();
+    Collection<String> variantNames = getFetchedVariantNames();
     String newVariantName;
     if (variantNames.contains(variantName)) {
       newVariantName = variantName;
@@ -605,9 +699,26 @@ public class AndroidModuleModel implements AndroidModel, ModuleModel {
     return myProductFlavorsByName.keySet();
   }
 
+  /**
+   * @return the names of all the variants of this module, including the ones whose models were not obtained by a single-variant sync (see
+   * {@link #isVariantFetched(String)}.)
+   */
   @NotNull
   public Collection<String> getVariantNames() {
-    return myVariantsByName.keySet();
+    return myAndroidProject.getVariantNames();
+  }
+
+  /**
+   * @return {@code true} if the model of the given variant is available, {@code false} if the variant does not exist or if it was skipped
+   * by a single-variant sync. Only variants whose model is available can be selected.
+   */
+  public boolean isVariantFetched(@NotNull String variantName) {
+    return getFetchedVariantNames().contains(variantName);
+  }
+
+  @NotNull
+  private Collection<String> getFetchedVariantNames() {
+    return myVariantSegments != null ? myVariantSegments.getNames() : myVariantsByName.keySet();
   }
 
   @Nullable
@@ -705,92 +816,106 @@ public class AndroidModuleModel implements AndroidModel, ModuleModel {
     return null;
   }
 
+  /**
+   * Finds the variant and artifact containing the given file in one of their source folders (including generated ones.) Folders are looked
+   * up in an index, built the first time this method is called.
+   *
+   * @return information about the first source folder (in the order used by {@link #forEachSourceFolder(SourceFolderConsumer)}) containing
+   * the given file, or {@code null} if the file is not in any source folder of this module.
+   */
   @Nullable
   public SourceFileContainerInfo containsSourceFile(@NotNull File file) {
-    ProductFlavorContainer defaultConfig = myAndroidProject.getDefaultConfig();
-    if (containsSourceFile(defaultConfig, file)) {
-      return new SourceFileContainerInfo();
+    return getSourceFolderIndex().findFirst(file);
+  }
+
+  @NotNull
+  private SourceFolderIndex<SourceFileContainerInfo> getSourceFolderIndex() {
+    SourceFolderIndex<SourceFileContainerInfo> index = mySourceFolderIndex;
+    if (index == null) {
+      SourceFolderIndex<SourceFileContainerInfo> newIndex = new SourceFolderIndex<>();
+      forEachSourceFolder(newIndex::add);
+      mySourceFolderIndex = index = newIndex;
     }
-    for (IdeVariant variant : myVariantsByName.values()) {
+    return index;
+  }
+
+  /**
+   * Passes each source folder of this module to the given consumer: the ones of the default config first, then, for each variant, the ones
+   * of the main artifact, the extra artifacts, the build type and the product flavors.
+   */
+  public void forEachSourceFolder(@NotNull SourceFolderConsumer consumer) {
+    addSourceFolders(myAndroidProject.getDefaultConfig(), new SourceFileContainerInfo(), consumer);
+    forEachVariant(variant -> {
       IdeAndroidArtifact artifact = variant.getMainArtifact();
-      if (containsSourceFile(artifact, file)) {
-        return new SourceFileContainerInfo(variant, artifact);
-      }
+      addSourceFolders(artifact, new SourceFileContainerInfo(variant, artifact), consumer);
       for (AndroidArtifact extraArtifact : variant.getExtraAndroidArtifacts()) {
-        if (containsSourceFile((IdeAndroidArtifact)extraArtifact, file)) {
-          return new SourceFileContainerInfo(variant, extraArtifact);
-        }
+        addSourceFolders((IdeAndroidArtifact)extraArtifact, new SourceFileContainerInfo(variant, extraArtifact), consumer);
       }
+      SourceFileContainerInfo variantInfo = new SourceFileContainerInfo(variant);
       String buildTypeName = variant.getBuildType();
       BuildTypeContainer buildTypeContainer = findBuildType(buildTypeName);
       if (buildTypeContainer != null) {
-        if (containsFile(buildTypeContainer.getSourceProvider(), file)) {
-          return new SourceFileContainerInfo(variant);
-        }
+        addSourceFolders(buildTypeContainer.getSourceProvider(), variantInfo, consumer);
         for (SourceProviderContainer extraSourceProvider : buildTypeContainer.getExtraSourceProviders()) {
-          if (containsFile(extraSourceProvider.getSourceProvider(), file)) {
-            return new SourceFileContainerInfo(variant);
-          }
+          addSourceFolders(extraSourceProvider.getSourceProvider(), variantInfo, consumer);
         }
       }
       for (String flavorName : variant.getProductFlavors()) {
         ProductFlavorContainer flavor = findProductFlavor(flavorName);
-        if (flavor != null && containsSourceFile(flavor, file)) {
-          return new SourceFileContainerInfo(variant);
+        if (flavor != null) {
+          addSourceFolders(flavor, variantInfo, consumer);
         }
       }
-    }
-
-    return null; // not found.
+    });
   }
 
-  private static boolean containsSourceFile(@NotNull ProductFlavorContainer flavorContainer, @NotNull File file) {
-    if (containsFile(flavorContainer.getSourceProvider(), file)) {
-      return true;
-    }
+  private static void addSourceFolders(@NotNull ProductFlavorContainer flavorContainer,
+                                       @NotNull SourceFileContainerInfo info,
+                                       @NotNull SourceFolderConsumer consumer) {
+    addSourceFolders(flavorContainer.getSourceProvider(), info, consumer);
     // Test source roots
     for (SourceProviderContainer extraSourceProvider : flavorContainer.getExtraSourceProviders()) {
-      if (containsFile(extraSourceProvider.getSourceProvider(), file)) {
-        return true;
-      }
+      addSourceFolders(extraSourceProvider.getSourceProvider(), info, consumer);
     }
-    return false;
   }
 
-  private static boolean containsSourceFile(@NotNull IdeBaseArtifact artifact, @NotNull File file) {
+  private static void addSourceFolders(@NotNull IdeBaseArtifact artifact,
+                                       @NotNull SourceFileContainerInfo info,
+                                       @NotNull SourceFolderConsumer consumer) {
     if (artifact instanceof AndroidArtifact) {
       AndroidArtifact androidArtifact = (AndroidArtifact)artifact;
-      if (containsFile(androidArtifact.getGeneratedSourceFolders(), file) ||
-          containsFile(androidArtifact.getGeneratedResourceFolders(), file)) {
-        return true;
-      }
+      addSourceFolders(androidArtifact.getGeneratedSourceFolders(), info, consumer);
+      addSourceFolders(androidArtifact.getGeneratedResourceFolders(), info, consumer);
     }
     SourceProvider sourceProvider = artifact.getVariantSourceProvider();
-    if (sourceProvider != null && containsFile(sourceProvider, file)) {
-      return true;
+    if (sourceProvider != null) {
+      addSourceFolders(sourceProvider, info, consumer);
     }
     sourceProvider = artifact.getMultiFlavorSourceProvider();
-    return sourceProvider != null && containsFile(sourceProvider, file);
+    if (sourceProvider != null) {
+      addSourceFolders(sourceProvider, info, consumer);
+    }
   }
 
-  private static boolean containsFile(@NotNull SourceProvider sourceProvider, @NotNull File file) {
-    return containsFile(sourceProvider.getAidlDirectories(), file) ||
-           containsFile(sourceProvider.getAssetsDirectories(), file) ||
-           containsFile(sourceProvider.getCDirectories(), file) ||
-           containsFile(sourceProvider.getCppDirectories(), file) ||
-           containsFile(sourceProvider.getJavaDirectories(), file) ||
-           containsFile(sourceProvider.getRenderscriptDirectories(), file) ||
-           containsFile(sourceProvider.getResDirectories(), file) ||
-           containsFile(sourceProvider.getResourcesDirectories(), file);
+  private static void addSourceFolders(@NotNull SourceProvider sourceProvider,
+                                       @NotNull SourceFileContainerInfo info,
+                                       @NotNull SourceFolderConsumer consumer) {
+    addSourceFolders(sourceProvider.getAidlDirectories(), info, consumer);
+    addSourceFolders(sourceProvider.getAssetsDirectories(), info, consumer);
+    addSourceFolders(sourceProvider.getCDirectories(), info, consumer);
+    addSourceFolders(sourceProvider.getCppDirectories(), info, consumer);
+    addSourceFolders(sourceProvider.getJavaDirectories(), info, consumer);
+    addSourceFolders(sourceProvider.getRenderscriptDirectories(), info, consumer);
+    addSourceFolders(sourceProvider.getResDirectories(), info, consumer);
+    addSourceFolders(sourceProvider.getResourcesDirectories(), info, consumer);
   }
 
-  private static boolean containsFile(@NotNull Collection<File> directories, @NotNull File file) {
+  private static void addSourceFolders(@NotNull Collection<File> directories,
+                                       @NotNull SourceFileContainerInfo info,
+                                       @NotNull SourceFolderConsumer consumer) {
     for (File directory : directories) {
-      if (FileUtil.isAncestor(directory, file, false)) {
-        return true;
-      }
+      consumer.consume(directory, info);
     }
-    return false;
   }
 
   /**
@@ -818,6 +943,10 @@ public class AndroidModuleModel implements AndroidModel, ModuleModel {
     return null;
   }
 
+  public interface SourceFolderConsumer {
+    void consume(@NotNull File folderPath, @NotNull SourceFileContainerInfo info);
+  }
+
   public static class SourceFileContainerInfo {
     @Nullable public final Variant variant;
     @Nullable public final BaseArtifact artifact;
@@ -845,11 +974,35 @@ public class AndroidModuleModel implements AndroidModel, ModuleModel {
     }
   }
 
+  private static class SelectedVariantDependencyIndexes {
+    @NotNull final String myVariantName;
+    @NotNull final DependencyCoordinateIndex myMainIndex;
+    @Nullable final DependencyCoordinateIndex myAndroidTestIndex;
+
+    SelectedVariantDependencyIndexes(@NotNull String variantName,
+                                     @NotNull DependencyCoordinateIndex mainIndex,
+                                     @Nullable DependencyCoordinateIndex androidTestIndex) {
+      myVariantName = variantName;
+      myMainIndex = mainIndex;
+      myAndroidTestIndex = androidTestIndex;
+    }
+  }
+
   private void writeObject(ObjectOutputStream out) throws IOException {
     out.writeObject(myProjectSystemId);
     out.writeObject(myModuleName);
     out.writeObject(myRootDirPath);
-    out.writeObject(myAndroidProject);
+    // The copy of the Android project is the bulk of this model, it is stored in a compact snapshot. When possible, each variant is
+    // stored in its own segment, so it can be decoded only when needed.
+    boolean segmented = myAndroidProject instanceof IdeAndroidProjectImpl;
+    out.writeBoolean(segmented);
+    if (segmented) {
+      IdeModelSnapshotCodec.write(((IdeAndroidProjectImpl)myAndroidProject).withVariants(Collections.emptyList()), out);
+      IdeVariantSegments.write(myAndroidProject.getVariants(), out);
+    }
+    else {
+      IdeModelSnapshotCodec.write(myAndroidProject, out);
+    }
     out.writeObject(mySelectedVariantName);
   }
 
@@ -857,7 +1010,13 @@ public class AndroidModuleModel implements AndroidModel, ModuleModel {
     myProjectSystemId = (ProjectSystemId)in.readObject();
     myModuleName = (String)in.readObject();
     myRootDirPath = (File)in.readObject();
-    myAndroidProject = (IdeAndroidProject)in.readObject();
+    boolean segmented = in.readBoolean();
+    IdeAndroidProject androidProject = (IdeAndroidProject)IdeModelSnapshotCodec.read(in);
+    if (segmented) {
+      myVariantSegments = IdeVariantSegments.read(in);
+      androidProject = ((IdeAndroidProjectImpl)androidProject).withVariants(myVariantSegments.asList());
+    }
+    myAndroidProject = androidProject;
 
     parseAndSetModelVersion();
     myFeatures = new AndroidModelFeatures(myModelVersion);
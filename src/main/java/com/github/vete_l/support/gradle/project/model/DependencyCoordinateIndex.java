@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.vete_l.support.gradle.project.model;
+
+import com.android.builder.model.MavenCoordinates;
+import com.android.builder.model.level2.Library;
+import com.android.ide.common.repository.GradleCoordinate;
+import com.android.tools.idea.gradle.project.model.ide.android.IdeBaseArtifact;
+import com.android.tools.idea.gradle.project.model.ide.android.level2.IdeDependencies;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maps the "group:artifact" of each library an artifact (e.g. the main or the androidTest artifact of a variant) depends on, directly or
+ * transitively, to its resolved version. This avoids going through the whole list of dependencies every time a caller needs to know if a
+ * module depends on a library (e.g. appcompat-v7.)
+ * <p>
+ * Instances are immutable.
+ */
+public class DependencyCoordinateIndex {
+  @NotNull private final String myArtifactName;
+  @NotNull private final Map<String, Dependency> myAndroidLibraries;
+  @NotNull private final Map<String, Dependency> myJavaLibraries;
+
+  @NotNull
+  public static DependencyCoordinateIndex create(@NotNull IdeBaseArtifact artifact) {
+    // Only the level 1 dependencies tell which libraries are direct dependencies. The level 2 ones are flat lists of all the libraries.
+    Set<String> directDependencies = new HashSet<>();
+    com.android.tools.idea.gradle.project.model.ide.android.IdeDependencies dependencies = artifact.getDependencies();
+    dependencies.forEachLibrary(library -> addCoordinate(library.getResolvedCoordinates(), directDependencies));
+    dependencies.forEachJavaLibrary(library -> addCoordinate(library.getResolvedCoordinates(), directDependencies));
+
+    IdeDependencies level2Dependencies = artifact.getLevel2Dependencies();
+    return new DependencyCoordinateIndex(artifact.getName(),
+                                         index(level2Dependencies.getAndroidLibraries(), directDependencies),
+                                         index(level2Dependencies.getJavaLibraries(), directDependencies));
+  }
+
+  private static void addCoordinate(@Nullable MavenCoordinates coordinates, @NotNull Set<String> groupAndArtifactIds) {
+    if (coordinates != null) {
+      groupAndArtifactIds.add(coordinates.getGroupId() + ':' + coordinates.getArtifactId());
+    }
+  }
+
+  @NotNull
+  private static Map<String, Dependency> index(@NotNull Collection<Library> libraries, @NotNull Set<String> directDependencies) {
+    Map<String, Dependency> dependenciesById = new HashMap<>();
+    for (Library library : libraries) {
+      GradleCoordinate coordinate = GradleCoordinate.parseCoordinateString(library.getArtifactAddress());
+      if (coordinate == null || coordinate.getRevision() == null) {
+        continue;
+      }
+      String id = coordinate.getGroupId() + ':' + coordinate.getArtifactId();
+      // Same as a linear search: if a library appears more than once, the first one wins.
+      dependenciesById.putIfAbsent(id, new Dependency(coordinate.getRevision(), directDependencies.contains(id)));
+    }
+    return dependenciesById;
+  }
+
+  private DependencyCoordinateIndex(@NotNull String artifactName,
+                                    @NotNull Map<String, Dependency> androidLibraries,
+                                    @NotNull Map<String, Dependency> javaLibraries) {
+    myArtifactName = artifactName;
+    myAndroidLibraries = androidLibraries;
+    myJavaLibraries = javaLibraries;
+  }
+
+  /**
+   * @return the name of the artifact whose dependencies are indexed (e.g. "_main_".)
+   */
+  @NotNull
+  public String getArtifactName() {
+    return myArtifactName;
+  }
+
+  /**
+   * @param artifact a group id and an artifact id, such as "com.android.support:appcompat-v7".
+   * @return the Android library (AAR) with the given group and artifact ids, or {@code null} if the artifact does not depend on it.
+   */
+  @Nullable
+  public Dependency findAndroidLibrary(@NotNull String artifact) {
+    return myAndroidLibraries.get(artifact);
+  }
+
+  /**
+   * @param artifact a group id and an artifact id, such as "org.jetbrains.kotlin:kotlin-stdlib".
+   * @return the Java library (JAR) with the given group and artifact ids, or {@code null} if the artifact does not depend on it.
+   */
+  @Nullable
+  public Dependency findJavaLibrary(@NotNull String artifact) {
+    return myJavaLibraries.get(artifact);
+  }
+
+  public static class Dependency {
+    @NotNull private final String myVersion;
+    private final boolean myDirect;
+
+    Dependency(@NotNull String version, boolean direct) {
+      myVersion = version;
+      myDirect = direct;
+    }
+
+    /**
+     * @return the resolved version of the library.
+     */
+    @NotNull
+    public String getVersion() {
+      return myVersion;
+    }
+
+    /**
+     * @return {@code true} if the library is a direct dependency of the artifact, {@code false} if it is a transitive one.
+     */
+    public boolean isDirect() {
+      return myDirect;
+    }
+  }
+}
@@ -29,7 +29,6 @@ import java.io.File;
 import java.util.*;
 
 import static com.android.tools.idea.gradle.project.facet.java.JavaFacet.COMPILE_JAVA_TASK_NAME;
-import static com.intellij.openapi.util.io.FileUtil.isAncestor;
 
 /**
  * Base model for Java library modules
@@ -52,6 +51,9 @@ public class JavaModuleModel implements ModuleModel {
   private final boolean myBuildable;
   private final boolean myAndroidModuleWithoutVariants;
 
+  // Built on first use.
+  @Nullable private transient volatile SourceFolderIndex<JavaModuleContentRoot> mySourceFolderIndex;
+
   public JavaModuleModel(@NotNull String moduleName,
                          @NotNull Collection<JavaModuleContentRoot> contentRoots,
                          @NotNull Collection<JavaModuleDependency> javaModuleDependencies,
@@ -88,35 +90,50 @@ public class JavaModuleModel implements ModuleModel {
   }
 
   public boolean containsSourceFile(@NotNull File file) {
-    for (JavaModuleContentRoot contentRoot : getContentRoots()) {
-      if (contentRoot != null) {
-        if (containsFile(contentRoot, file)) {
-          return true;
+    return getSourceFolderIndex().findFirst(file) != null;
+  }
+
+  @NotNull
+  private SourceFolderIndex<JavaModuleContentRoot> getSourceFolderIndex() {
+    SourceFolderIndex<JavaModuleContentRoot> index = mySourceFolderIndex;
+    if (index == null) {
+      SourceFolderIndex<JavaModuleContentRoot> newIndex = new SourceFolderIndex<>();
+      for (JavaModuleContentRoot contentRoot : getContentRoots()) {
+        if (contentRoot != null) {
+          for (File folderPath : getSourceFolderPaths(contentRoot)) {
+            newIndex.add(folderPath, contentRoot);
+          }
         }
       }
+      mySourceFolderIndex = index = newIndex;
     }
-    return false;
+    return index;
   }
 
-  private static boolean containsFile(@NotNull JavaModuleContentRoot contentRoot, @NotNull File file) {
-    if (containsFile(contentRoot.getSourceDirPaths(), file) ||
-        containsFile(contentRoot.getTestDirPaths(), file) ||
-        containsFile(contentRoot.getResourceDirPaths(), file) ||
-        containsFile(contentRoot.getGenSourceDirPaths(), file) ||
-        containsFile(contentRoot.getGenTestDirPaths(), file) ||
-        containsFile(contentRoot.getTestResourceDirPaths(), file)) {
-      return true;
+  /**
+   * @return all the source folders (production, test, resources and generated) of this module.
+   */
+  @NotNull
+  public List<File> getSourceFolderPaths() {
+    List<File> folderPaths = new ArrayList<>();
+    for (JavaModuleContentRoot contentRoot : getContentRoots()) {
+      if (contentRoot != null) {
+        folderPaths.addAll(getSourceFolderPaths(contentRoot));
+      }
     }
-    return false;
+    return folderPaths;
   }
 
-  private static boolean containsFile(@NotNull Collection<File> folderPaths, @NotNull File file) {
-    for (File path : folderPaths) {
-      if (isAncestor(path, file, false)) {
-        return true;
-      }
-    }
-    return false;
+  @NotNull
+  private static List<File> getSourceFolderPaths(@NotNull JavaModuleContentRoot contentRoot) {
+    List<File> folderPaths = new ArrayList<>();
+    folderPaths.addAll(contentRoot.getSourceDirPaths());
+    folderPaths.addAll(contentRoot.getTestDirPaths());
+    folderPaths.addAll(contentRoot.getResourceDirPaths());
+    folderPaths.addAll(contentRoot.getGenSourceDirPaths());
+    folderPaths.addAll(contentRoot.getGenTestDirPaths());
+    folderPaths.addAll(contentRoot.getTestResourceDirPaths());
+    return folderPaths;
   }
 
   @NotNull
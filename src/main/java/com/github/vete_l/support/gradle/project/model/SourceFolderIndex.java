@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.vete_l.support.gradle.project.model;
+
+import com.intellij.openapi.util.SystemInfo;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.util.*;
+
+import static com.intellij.openapi.util.io.FileUtil.toCanonicalPath;
+import static com.intellij.openapi.util.io.FileUtil.toSystemIndependentName;
+
+/**
+ * Maps folders (e.g. source folders of a module) to values, stored in a trie of path segments. Finding the folders that contain a file
+ * takes time proportional to the depth of the file's path, regardless of how many folders are indexed.
+ * <p>
+ * A folder contains itself and all the files under it, the same as {@link com.intellij.openapi.util.io.FileUtil#isAncestor(File, File,
+ * boolean)} with {@code strict = false}. Values are returned in the order they were added.
+ * <p>
+ * This class is not thread-safe: it should be fully populated before it is shared.
+ */
+public class SourceFolderIndex<T> {
+  @NotNull private final Node<T> myRoot = new Node<>();
+  private int mySize;
+
+  public void add(@NotNull File folderPath, @NotNull T value) {
+    Node<T> node = myRoot;
+    for (String segment : getSegments(folderPath)) {
+      node = node.getOrCreateChild(segment);
+    }
+    if (node.myEntries == null) {
+      node.myEntries = new ArrayList<>(1);
+    }
+    node.myEntries.add(new Entry<>(mySize++, value));
+  }
+
+  /**
+   * @return the first value added for a folder containing the given file, or {@code null} if no indexed folder contains the file.
+   */
+  @Nullable
+  public T findFirst(@NotNull File file) {
+    Entry<T> first = null;
+    Node<T> node = myRoot;
+    Iterator<String> segments = getSegments(file).iterator();
+    while (node != null) {
+      if (node.myEntries != null) {
+        Entry<T> entry = node.myEntries.get(0);
+        if (first == null || entry.myOrder < first.myOrder) {
+          first = entry;
+        }
+      }
+      node = segments.hasNext() ? node.findChild(segments.next()) : null;
+    }
+    return first != null ? first.myValue : null;
+  }
+
+  /**
+   * @return the values added for all the folders containing the given file, in the order they were added.
+   */
+  @NotNull
+  public List<T> findAll(@NotNull File file) {
+    List<Entry<T>> found = new ArrayList<>();
+    Node<T> node = myRoot;
+    Iterator<String> segments = getSegments(file).iterator();
+    while (node != null) {
+      if (node.myEntries != null) {
+        found.addAll(node.myEntries);
+      }
+      node = segments.hasNext() ? node.findChild(segments.next()) : null;
+    }
+    if (found.isEmpty()) {
+      return Collections.emptyList();
+    }
+    found.sort(Comparator.comparingInt(entry -> entry.myOrder));
+    List<T> values = new ArrayList<>(found.size());
+    for (Entry<T> entry : found) {
+      values.add(entry.myValue);
+    }
+    return values;
+  }
+
+  /**
+   * @return the number of values in this index.
+   */
+  public int size() {
+    return mySize;
+  }
+
+  @NotNull
+  private static List<String> getSegments(@NotNull File file) {
+    String path = toSystemIndependentName(toCanonicalPath(file.getAbsolutePath()));
+    if (!SystemInfo.isFileSystemCaseSensitive) {
+      path = path.toLowerCase(Locale.US);
+    }
+    List<String> segments = new ArrayList<>();
+    int start = 0;
+    for (int i = 0; i <= path.length(); i++) {
+      if (i == path.length() || path.charAt(i) == '/') {
+        if (i > start) {
+          segments.add(path.substring(start, i));
+        }
+        start = i + 1;
+      }
+    }
+    return segments;
+  }
+
+  private static class Node<T> {
+    @Nullable Map<String, Node<T>> myChildren;
+    @Nullable List<Entry<T>> myEntries;
+
+    @NotNull
+    Node<T> getOrCreateChild(@NotNull String segment) {
+      if (myChildren == null) {
+        myChildren = new HashMap<>();
+      }
+      return myChildren.computeIfAbsent(segment, s -> new Node<>());
+    }
+
+    @Nullable
+    Node<T> findChild(@NotNull String segment) {
+      return myChildren != null ? myChildren.get(segment) : null;
+    }
+  }
+
+  private static class Entry<T> {
+    final int myOrder;
+    @NotNull final T myValue;
+
+    Entry(int order, @NotNull T value) {
+      myOrder = order;
+      myValue = value;
+    }
+  }
+}
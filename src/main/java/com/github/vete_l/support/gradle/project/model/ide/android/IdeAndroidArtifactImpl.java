@@ -71,6 +71,25 @@ public final class IdeAndroidArtifactImpl extends IdeBaseArtifactImpl implements
     myHashCode = calculateHashCode();
   }
 
+  // Creates an instance from the values of its fields read from a snapshot, see IdeModelSnapshotCodec.
+  IdeAndroidArtifactImpl(@NotNull IdeModelSnapshotCodec.Fields fields) {
+    super(fields);
+    myOutputs = fields.get("myOutputs");
+    myApplicationId = fields.get("myApplicationId");
+    mySourceGenTaskName = fields.get("mySourceGenTaskName");
+    myGeneratedResourceFolders = fields.get("myGeneratedResourceFolders");
+    myAdditionalRuntimeApks = fields.get("myAdditionalRuntimeApks");
+    myBuildConfigFields = fields.get("myBuildConfigFields");
+    myResValues = fields.get("myResValues");
+    myInstantRun = fields.get("myInstantRun");
+    mySigningConfigName = fields.get("mySigningConfigName");
+    myAbiFilters = fields.get("myAbiFilters");
+    myNativeLibraries = fields.get("myNativeLibraries");
+    myTestOptions = fields.get("myTestOptions");
+    mySigned = fields.getBoolean("mySigned");
+    myHashCode = fields.getInt("myHashCode");
+  }
+
   @NotNull
   private static Collection<AndroidArtifactOutput> copyOutputs(@NotNull AndroidArtifact artifact, @NotNull ModelCache modelCache) {
     Collection<AndroidArtifactOutput> outputs;
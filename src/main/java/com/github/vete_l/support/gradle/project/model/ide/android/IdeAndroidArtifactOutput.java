@@ -54,6 +54,14 @@ public final class IdeAndroidArtifactOutput extends IdeVariantOutput implements
     myHashCode = calculateHashCode();
   }
 
+  // Creates an instance from the values of its fields read from a snapshot, see IdeModelSnapshotCodec.
+  IdeAndroidArtifactOutput(@NotNull IdeModelSnapshotCodec.Fields fields) {
+    super(fields);
+    myOutputFile = fields.get("myOutputFile");
+    myAssembleTaskName = fields.get("myAssembleTaskName");
+    myHashCode = fields.getInt("myHashCode");
+  }
+
   @Override
   @NotNull
   public String getAssembleTaskName() {
@@ -63,6 +63,21 @@ public abstract class IdeAndroidBundle extends IdeLibrary implements AndroidBund
     myHashCode = calculateHashCode();
   }
 
+  // Creates an instance from the values of its fields read from a snapshot, see IdeModelSnapshotCodec.
+  protected IdeAndroidBundle(@NotNull IdeModelSnapshotCodec.Fields fields) {
+    super(fields);
+    myBundle = fields.get("myBundle");
+    myFolder = fields.get("myFolder");
+    myLibraryDependencies = fields.get("myLibraryDependencies");
+    myJavaDependencies = fields.get("myJavaDependencies");
+    myManifest = fields.get("myManifest");
+    myJarFile = fields.get("myJarFile");
+    myResFolder = fields.get("myResFolder");
+    myAssetsFolder = fields.get("myAssetsFolder");
+    myProjectVariant = fields.get("myProjectVariant");
+    myHashCode = fields.getInt("myHashCode");
+  }
+
 
   @NotNull
   private static Collection<? extends JavaLibrary> copyJavaDependencies(@NotNull AndroidBundle bundle, @NotNull ModelCache modelCache) {
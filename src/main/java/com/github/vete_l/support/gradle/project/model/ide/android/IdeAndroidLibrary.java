@@ -46,6 +46,16 @@ public final class IdeAndroidLibrary extends IdeAndroidBundle implements Android
     myHashCode = calculateHashCode();
   }
 
+  // Creates an instance from the values of its fields read from a snapshot, see IdeModelSnapshotCodec.
+  IdeAndroidLibrary(@NotNull IdeModelSnapshotCodec.Fields fields) {
+    super(fields);
+    myLocalJars = fields.get("myLocalJars");
+    myProguardRules = fields.get("myProguardRules");
+    myLintJar = fields.get("myLintJar");
+    myPublicResources = fields.get("myPublicResources");
+    myHashCode = fields.getInt("myHashCode");
+  }
+
   @Override
   @NotNull
   public Collection<File> getLocalJars() {
@@ -21,6 +21,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.Serializable;
+import java.util.Collection;
 import java.util.function.Consumer;
 
 public interface IdeAndroidProject extends Serializable, AndroidProject {
@@ -28,4 +29,10 @@ public interface IdeAndroidProject extends Serializable, AndroidProject {
   GradleVersion getParsedModelVersion();
 
   void forEachVariant(@NotNull Consumer<IdeVariant> action);
+
+  /**
+   * @return the names of all the variants of the project, including the ones that were not copied (see {@link #getVariants()}.)
+   */
+  @NotNull
+  Collection<String> getVariantNames();
 }
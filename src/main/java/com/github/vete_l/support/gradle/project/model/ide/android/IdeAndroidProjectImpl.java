@@ -18,7 +18,6 @@ package com.github.vete_l.support.gradle.project.model.ide.android;
 import com.android.builder.model.*;
 import com.android.ide.common.repository.GradleVersion;
 import com.android.tools.idea.gradle.project.model.ide.android.level2.IdeDependenciesFactory;
-import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import org.gradle.tooling.model.UnsupportedMethodException;
@@ -26,9 +25,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.Objects;
+import java.util.*;
 import java.util.function.Consumer;
 
 /**
@@ -36,7 +33,7 @@ import java.util.function.Consumer;
  */
 public final class IdeAndroidProjectImpl extends IdeModel implements IdeAndroidProject {
   // Increase the value when adding/removing fields or when changing the serialization/deserialization mechanism.
-  private static final long serialVersionUID = 2L;
+  private static final long serialVersionUID = 3L;
 
   @NotNull private final String myModelVersion;
   @NotNull private final String myName;
@@ -45,6 +42,7 @@ public final class IdeAndroidProjectImpl extends IdeModel implements IdeAndroidP
   @NotNull private final Collection<ProductFlavorContainer> myProductFlavors;
   @NotNull private final Collection<SyncIssue> mySyncIssues;
   @NotNull private final Collection<Variant> myVariants;
+  @NotNull private final Collection<String> myVariantNames;
   @NotNull private final Collection<String> myFlavorDimensions;
   @NotNull private final String myCompileTarget;
   @NotNull private final Collection<String> myBootClassPath;
@@ -65,13 +63,27 @@ public final class IdeAndroidProjectImpl extends IdeModel implements IdeAndroidP
   private final int myHashCode;
 
   public IdeAndroidProjectImpl(@NotNull AndroidProject project, @NotNull IdeDependenciesFactory dependenciesFactory) {
-    this(project, new ModelCache(), dependenciesFactory);
+    this(project, new ModelCache(ModelCache.Scope.MODULE), dependenciesFactory);
   }
 
-  @VisibleForTesting
-  IdeAndroidProjectImpl(@NotNull AndroidProject project,
+  /**
+   * @param modelCache the cache to use for the copy. It can be shared by copies made in parallel (e.g. when the cache is scoped to the
+   *                   whole sync), so equal sub-objects are shared between modules.
+   */
+  public IdeAndroidProjectImpl(@NotNull AndroidProject project,
                         @NotNull ModelCache modelCache,
                         @NotNull IdeDependenciesFactory dependenciesFactory) {
+    this(project, modelCache, dependenciesFactory, null);
+  }
+
+  /**
+   * @param variantNames the names of the variants to copy, or {@code null} to copy all of them. The names of all the variants are kept
+   *                     anyway (see {@link #getVariantNames()}.)
+   */
+  public IdeAndroidProjectImpl(@NotNull AndroidProject project,
+                               @NotNull ModelCache modelCache,
+                               @NotNull IdeDependenciesFactory dependenciesFactory,
+                               @Nullable Collection<String> variantNames) {
     super(project, modelCache);
     myModelVersion = project.getModelVersion();
     // Old plugin versions do not return model version.
@@ -84,8 +96,17 @@ public final class IdeAndroidProjectImpl extends IdeModel implements IdeAndroidP
     myProductFlavors = copy(project.getProductFlavors(), modelCache, container -> new IdeProductFlavorContainer(container, modelCache));
     myBuildToolsVersion = copyNewProperty(project::getBuildToolsVersion, null);
     mySyncIssues = copy(project.getSyncIssues(), modelCache, issue -> new IdeSyncIssue(issue, modelCache));
-    myVariants = copy(project.getVariants(), modelCache,
+    List<Variant> variantsToCopy = new ArrayList<>();
+    ImmutableList.Builder<String> allVariantNames = ImmutableList.builder();
+    for (Variant variant : project.getVariants()) {
+      allVariantNames.add(variant.getName());
+      if (variantNames == null || variantNames.contains(variant.getName())) {
+        variantsToCopy.add(variant);
+      }
+    }
+    myVariants = copy(variantsToCopy, modelCache,
                       variant -> new IdeVariantImpl(variant, modelCache, dependenciesFactory, myParsedModelVersion));
+    myVariantNames = allVariantNames.build();
     myFlavorDimensions = copyNewProperty(() -> ImmutableList.copyOf(project.getFlavorDimensions()), Collections.emptyList());
     myCompileTarget = project.getCompileTarget();
     myBootClassPath = ImmutableList.copyOf(project.getBootClasspath());
@@ -107,6 +128,78 @@ public final class IdeAndroidProjectImpl extends IdeModel implements IdeAndroidP
     myHashCode = calculateHashCode();
   }
 
+  private IdeAndroidProjectImpl(@NotNull IdeAndroidProjectImpl project, @NotNull Collection<Variant> variants) {
+    super(project, new ModelCache());
+    myModelVersion = project.myModelVersion;
+    myParsedModelVersion = project.myParsedModelVersion;
+    myName = project.myName;
+    myDefaultConfig = project.myDefaultConfig;
+    myBuildTypes = project.myBuildTypes;
+    myProductFlavors = project.myProductFlavors;
+    myBuildToolsVersion = project.myBuildToolsVersion;
+    mySyncIssues = project.mySyncIssues;
+    myVariants = variants;
+    myVariantNames = project.myVariantNames;
+    myFlavorDimensions = project.myFlavorDimensions;
+    myCompileTarget = project.myCompileTarget;
+    myBootClassPath = project.myBootClassPath;
+    myNativeToolchains = project.myNativeToolchains;
+    mySigningConfigs = project.mySigningConfigs;
+    myLintOptions = project.myLintOptions;
+    myUnresolvedDependencies = project.myUnresolvedDependencies;
+    myJavaCompileOptions = project.myJavaCompileOptions;
+    myBuildFolder = project.myBuildFolder;
+    myResourcePrefix = project.myResourcePrefix;
+    myApiVersion = project.myApiVersion;
+    myLibrary = project.myLibrary;
+    myProjectType = project.myProjectType;
+    myPluginGeneration = project.myPluginGeneration;
+    myBaseSplit = project.myBaseSplit;
+    // Keep the hash code of the original project, computing it again would require all the variants.
+    myHashCode = project.myHashCode;
+  }
+
+  // Creates an instance from the values of its fields read from a snapshot, see IdeModelSnapshotCodec.
+  IdeAndroidProjectImpl(@NotNull IdeModelSnapshotCodec.Fields fields) {
+    super(fields);
+    myModelVersion = fields.get("myModelVersion");
+    myName = fields.get("myName");
+    myDefaultConfig = fields.get("myDefaultConfig");
+    myBuildTypes = fields.get("myBuildTypes");
+    myProductFlavors = fields.get("myProductFlavors");
+    mySyncIssues = fields.get("mySyncIssues");
+    myVariants = fields.get("myVariants");
+    myVariantNames = fields.get("myVariantNames");
+    myFlavorDimensions = fields.get("myFlavorDimensions");
+    myCompileTarget = fields.get("myCompileTarget");
+    myBootClassPath = fields.get("myBootClassPath");
+    myNativeToolchains = fields.get("myNativeToolchains");
+    mySigningConfigs = fields.get("mySigningConfigs");
+    myLintOptions = fields.get("myLintOptions");
+    myUnresolvedDependencies = fields.get("myUnresolvedDependencies");
+    myJavaCompileOptions = fields.get("myJavaCompileOptions");
+    myBuildFolder = fields.get("myBuildFolder");
+    myParsedModelVersion = fields.get("myParsedModelVersion");
+    myBuildToolsVersion = fields.get("myBuildToolsVersion");
+    myResourcePrefix = fields.get("myResourcePrefix");
+    myPluginGeneration = fields.get("myPluginGeneration");
+    myApiVersion = fields.getInt("myApiVersion");
+    myLibrary = fields.getBoolean("myLibrary");
+    myProjectType = fields.getInt("myProjectType");
+    myBaseSplit = fields.getBoolean("myBaseSplit");
+    myHashCode = fields.getInt("myHashCode");
+  }
+
+  /**
+   * Creates a shallow copy of this project with the given variants. This is used to store and load the variants separately from the rest
+   * of the project (see {@link IdeVariantSegments}.) The given variants must be equal to the variants of this project, or empty while
+   * the copy is being stored.
+   */
+  @NotNull
+  public IdeAndroidProjectImpl withVariants(@NotNull Collection<Variant> variants) {
+    return new IdeAndroidProjectImpl(this, variants);
+  }
+
   private static int getProjectType(@NotNull AndroidProject project, @Nullable GradleVersion modelVersion) {
     if (modelVersion != null && modelVersion.isAtLeast(2, 3, 0)) {
       return project.getProjectType();
@@ -171,6 +264,12 @@ public final class IdeAndroidProjectImpl extends IdeModel implements IdeAndroidP
     return myVariants;
   }
 
+  @Override
+  @NotNull
+  public Collection<String> getVariantNames() {
+    return myVariantNames;
+  }
+
   @Override
   @NotNull
   public Collection<String> getFlavorDimensions() {
@@ -309,6 +408,7 @@ public final class IdeAndroidProjectImpl extends IdeModel implements IdeAndroidP
            Objects.equals(myBuildToolsVersion, project.myBuildToolsVersion) &&
            Objects.equals(mySyncIssues, project.mySyncIssues) &&
            Objects.equals(myVariants, project.myVariants) &&
+           Objects.equals(myVariantNames, project.myVariantNames) &&
            Objects.equals(myFlavorDimensions, project.myFlavorDimensions) &&
            Objects.equals(myCompileTarget, project.myCompileTarget) &&
            Objects.equals(myBootClassPath, project.myBootClassPath) &&
@@ -328,7 +428,7 @@ public final class IdeAndroidProjectImpl extends IdeModel implements IdeAndroidP
 
   private int calculateHashCode() {
     return Objects.hash(myModelVersion, myParsedModelVersion, myName, myDefaultConfig, myBuildTypes, myProductFlavors, myBuildToolsVersion,
-                        mySyncIssues, myVariants, myFlavorDimensions, myCompileTarget, myBootClassPath, myNativeToolchains,
+                        mySyncIssues, myVariants, myVariantNames, myFlavorDimensions, myCompileTarget, myBootClassPath, myNativeToolchains,
                         mySigningConfigs, myLintOptions, myUnresolvedDependencies, myJavaCompileOptions, myBuildFolder, myResourcePrefix,
                         myApiVersion, myLibrary, myProjectType, myPluginGeneration, myBaseSplit);
   }
@@ -344,6 +444,7 @@ public final class IdeAndroidProjectImpl extends IdeModel implements IdeAndroidP
            ", myBuildToolsVersion='" + myBuildToolsVersion + '\'' +
            ", mySyncIssues=" + mySyncIssues +
            ", myVariants=" + myVariants +
+           ", myVariantNames=" + myVariantNames +
            ", myFlavorDimensions=" + myFlavorDimensions +
            ", myCompileTarget='" + myCompileTarget + '\'' +
            ", myBootClassPath=" + myBootClassPath +
@@ -42,6 +42,15 @@ public final class IdeApiVersion extends IdeModel implements ApiVersion {
     myHashCode = calculateHashCode();
   }
 
+  // Creates an instance from the values of its fields read from a snapshot, see IdeModelSnapshotCodec.
+  IdeApiVersion(@NotNull IdeModelSnapshotCodec.Fields fields) {
+    super(fields);
+    myApiString = fields.get("myApiString");
+    myCodename = fields.get("myCodename");
+    myApiLevel = fields.getInt("myApiLevel");
+    myHashCode = fields.getInt("myHashCode");
+  }
+
   @Override
   @NotNull
   public String getApiString() {
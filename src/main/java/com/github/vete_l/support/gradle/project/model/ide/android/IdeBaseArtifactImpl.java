@@ -95,6 +95,26 @@ public abstract class IdeBaseArtifactImpl extends IdeModel implements IdeBaseArt
     myHashCode = calculateHashCode();
   }
 
+  // Creates an instance from the values of its fields read from a snapshot, see IdeModelSnapshotCodec.
+  protected IdeBaseArtifactImpl(@NotNull IdeModelSnapshotCodec.Fields fields) {
+    super(fields);
+    myName = fields.get("myName");
+    myCompileTaskName = fields.get("myCompileTaskName");
+    myAssembleTaskName = fields.get("myAssembleTaskName");
+    myClassesFolder = fields.get("myClassesFolder");
+    myDependencies = fields.get("myDependencies");
+    myIdeSetupTaskNames = fields.get("myIdeSetupTaskNames");
+    myGeneratedSourceFolders = fields.get("myGeneratedSourceFolders");
+    myAdditionalClassFolders = fields.get("myAdditionalClassFolders");
+    myLevel2Dependencies = fields.get("myLevel2Dependencies");
+    myCompileDependencies = fields.get("myCompileDependencies");
+    myJavaResourcesFolder = fields.get("myJavaResourcesFolder");
+    myDependencyGraphs = fields.get("myDependencyGraphs");
+    myVariantSourceProvider = fields.get("myVariantSourceProvider");
+    myMultiFlavorSourceProvider = fields.get("myMultiFlavorSourceProvider");
+    myHashCode = fields.getInt("myHashCode");
+  }
+
   @NotNull
   private static com.android.tools.idea.gradle.project.model.ide.android.IdeDependencies copy(@NotNull Dependencies original,
                                                                                               @NotNull ModelCache modelCache,
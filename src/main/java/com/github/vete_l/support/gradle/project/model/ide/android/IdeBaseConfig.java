@@ -57,6 +57,20 @@ public abstract class IdeBaseConfig extends IdeModel implements BaseConfig {
     myHashCode = calculateHashCode();
   }
 
+  // Creates an instance from the values of its fields read from a snapshot, see IdeModelSnapshotCodec.
+  protected IdeBaseConfig(@NotNull IdeModelSnapshotCodec.Fields fields) {
+    super(fields);
+    myName = fields.get("myName");
+    myResValues = fields.get("myResValues");
+    myProguardFiles = fields.get("myProguardFiles");
+    myConsumerProguardFiles = fields.get("myConsumerProguardFiles");
+    myManifestPlaceholders = fields.get("myManifestPlaceholders");
+    myApplicationIdSuffix = fields.get("myApplicationIdSuffix");
+    myVersionNameSuffix = fields.get("myVersionNameSuffix");
+    myMultiDexEnabled = fields.get("myMultiDexEnabled");
+    myHashCode = fields.getInt("myHashCode");
+  }
+
   @Override
   @NotNull
   public String getName() {
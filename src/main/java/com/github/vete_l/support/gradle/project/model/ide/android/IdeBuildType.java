@@ -50,6 +50,18 @@ public final class IdeBuildType extends IdeBaseConfig implements BuildType {
     myHashCode = calculateHashCode();
   }
 
+  // Creates an instance from the values of its fields read from a snapshot, see IdeModelSnapshotCodec.
+  IdeBuildType(@NotNull IdeModelSnapshotCodec.Fields fields) {
+    super(fields);
+    myDebuggable = fields.getBoolean("myDebuggable");
+    myJniDebuggable = fields.getBoolean("myJniDebuggable");
+    myRenderscriptDebuggable = fields.getBoolean("myRenderscriptDebuggable");
+    myRenderscriptOptimLevel = fields.getInt("myRenderscriptOptimLevel");
+    myMinifyEnabled = fields.getBoolean("myMinifyEnabled");
+    myZipAlignEnabled = fields.getBoolean("myZipAlignEnabled");
+    myHashCode = fields.getInt("myHashCode");
+  }
+
   @Override
   @Nullable
   public SigningConfig getSigningConfig() {
@@ -45,6 +45,15 @@ public final class IdeBuildTypeContainer extends IdeModel implements BuildTypeCo
     myHashCode = calculateHashCode();
   }
 
+  // Creates an instance from the values of its fields read from a snapshot, see IdeModelSnapshotCodec.
+  IdeBuildTypeContainer(@NotNull IdeModelSnapshotCodec.Fields fields) {
+    super(fields);
+    myBuildType = fields.get("myBuildType");
+    mySourceProvider = fields.get("mySourceProvider");
+    myExtraSourceProviders = fields.get("myExtraSourceProviders");
+    myHashCode = fields.getInt("myHashCode");
+  }
+
   @Override
   @NotNull
   public IdeBuildType getBuildType() {
@@ -42,6 +42,15 @@ public final class IdeClassField extends IdeModel implements ClassField {
     myHashCode = calculateHashCode();
   }
 
+  // Creates an instance from the values of its fields read from a snapshot, see IdeModelSnapshotCodec.
+  IdeClassField(@NotNull IdeModelSnapshotCodec.Fields fields) {
+    super(fields);
+    myName = fields.get("myName");
+    myType = fields.get("myType");
+    myValue = fields.get("myValue");
+    myHashCode = fields.getInt("myHashCode");
+  }
+
   @Override
   @NotNull
   public String getType() {
@@ -50,6 +50,15 @@ public final class IdeDependenciesImpl extends IdeModel implements IdeDependenci
     myHashCode = calculateHashCode();
   }
 
+  // Creates an instance from the values of its fields read from a snapshot, see IdeModelSnapshotCodec.
+  IdeDependenciesImpl(@NotNull IdeModelSnapshotCodec.Fields fields) {
+    super(fields);
+    myLibraries = fields.get("myLibraries");
+    myJavaLibraries = fields.get("myJavaLibraries");
+    myProjects = fields.get("myProjects");
+    myHashCode = fields.getInt("myHashCode");
+  }
+
   @Override
   @NotNull
   public Collection<AndroidLibrary> getLibraries() {
@@ -46,6 +46,16 @@ public final class IdeDependencyGraphs extends IdeModel implements DependencyGra
     myHashCode = calculateHashCode();
   }
 
+  // Creates an instance from the values of its fields read from a snapshot, see IdeModelSnapshotCodec.
+  IdeDependencyGraphs(@NotNull IdeModelSnapshotCodec.Fields fields) {
+    super(fields);
+    myCompileDependencies = fields.get("myCompileDependencies");
+    myPackageDependencies = fields.get("myPackageDependencies");
+    myProvidedLibraries = fields.get("myProvidedLibraries");
+    mySkippedLibraries = fields.get("mySkippedLibraries");
+    myHashCode = fields.getInt("myHashCode");
+  }
+
   @Override
   @NotNull
   public List<GraphItem> getCompileDependencies() {
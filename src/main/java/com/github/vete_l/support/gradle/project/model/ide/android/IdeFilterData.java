@@ -39,6 +39,14 @@ public final class IdeFilterData extends IdeModel implements FilterData {
     myHashCode = calculateHashCode();
   }
 
+  // Creates an instance from the values of its fields read from a snapshot, see IdeModelSnapshotCodec.
+  IdeFilterData(@NotNull IdeModelSnapshotCodec.Fields fields) {
+    super(fields);
+    myIdentifier = fields.get("myIdentifier");
+    myFilterType = fields.get("myFilterType");
+    myHashCode = fields.getInt("myHashCode");
+  }
+
   @Override
   @NotNull
   public String getIdentifier() {
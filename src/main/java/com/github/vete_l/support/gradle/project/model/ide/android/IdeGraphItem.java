@@ -43,6 +43,15 @@ public final class IdeGraphItem extends IdeModel implements GraphItem {
     myHashCode = calculateHashCode();
   }
 
+  // Creates an instance from the values of its fields read from a snapshot, see IdeModelSnapshotCodec.
+  IdeGraphItem(@NotNull IdeModelSnapshotCodec.Fields fields) {
+    super(fields);
+    myArtifactAddress = fields.get("myArtifactAddress");
+    myDependencies = fields.get("myDependencies");
+    myRequestedCoordinates = fields.get("myRequestedCoordinates");
+    myHashCode = fields.getInt("myHashCode");
+  }
+
   @Override
   @NotNull
   public String getArtifactAddress() {
@@ -42,6 +42,15 @@ public final class IdeInstantRun extends IdeModel implements InstantRun {
     myHashCode = calculateHashCode();
   }
 
+  // Creates an instance from the values of its fields read from a snapshot, see IdeModelSnapshotCodec.
+  IdeInstantRun(@NotNull IdeModelSnapshotCodec.Fields fields) {
+    super(fields);
+    myInfoFile = fields.get("myInfoFile");
+    mySupportedByArtifact = fields.getBoolean("mySupportedByArtifact");
+    mySupportStatus = fields.getInt("mySupportStatus");
+    myHashCode = fields.getInt("myHashCode");
+  }
+
   @Override
   @NotNull
   public File getInfoFile() {
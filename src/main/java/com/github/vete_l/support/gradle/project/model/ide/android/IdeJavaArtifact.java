@@ -44,6 +44,13 @@ public final class IdeJavaArtifact extends IdeBaseArtifactImpl implements JavaAr
     myHashCode = calculateHashCode();
   }
 
+  // Creates an instance from the values of its fields read from a snapshot, see IdeModelSnapshotCodec.
+  IdeJavaArtifact(@NotNull IdeModelSnapshotCodec.Fields fields) {
+    super(fields);
+    myMockablePlatformJar = fields.get("myMockablePlatformJar");
+    myHashCode = fields.getInt("myHashCode");
+  }
+
   @Override
   @Nullable
   public File getMockablePlatformJar() {
@@ -41,6 +41,15 @@ public final class IdeJavaCompileOptions extends IdeModel implements JavaCompile
     myHashCode = calculateHashCode();
   }
 
+  // Creates an instance from the values of its fields read from a snapshot, see IdeModelSnapshotCodec.
+  IdeJavaCompileOptions(@NotNull IdeModelSnapshotCodec.Fields fields) {
+    super(fields);
+    myEncoding = fields.get("myEncoding");
+    mySourceCompatibility = fields.get("mySourceCompatibility");
+    myTargetCompatibility = fields.get("myTargetCompatibility");
+    myHashCode = fields.getInt("myHashCode");
+  }
+
   @Override
   @NotNull
   public String getEncoding() {
@@ -41,6 +41,14 @@ public final class IdeJavaLibrary extends IdeLibrary implements JavaLibrary {
     myHashCode = calculateHashCode();
   }
 
+  // Creates an instance from the values of its fields read from a snapshot, see IdeModelSnapshotCodec.
+  IdeJavaLibrary(@NotNull IdeModelSnapshotCodec.Fields fields) {
+    super(fields);
+    myJarFile = fields.get("myJarFile");
+    myDependencies = fields.get("myDependencies");
+    myHashCode = fields.getInt("myHashCode");
+  }
+
   @Override
   @NotNull
   public File getJarFile() {
@@ -80,9 +80,11 @@ public final class IdeLibraries {
     // Although getResolvedCoordinates is annotated with @NotNull, it can return null for plugin 1.5,
     // when the library dependency is from local jar.
     //noinspection ConstantConditions
+    IdeLibraryPool pool = IdeLibraryPool.getInstance();
     if (library.getResolvedCoordinates() != null) {
-      return modelCache.computeIfAbsent(library.getResolvedCoordinates(),
-                                        coordinates -> new IdeMavenCoordinates(coordinates, modelCache));
+      IdeMavenCoordinates copy = modelCache.computeIfAbsent(library.getResolvedCoordinates(),
+                                                            coordinates -> new IdeMavenCoordinates(coordinates, modelCache));
+      return pool.intern(copy);
     }
     else {
       File jarFile;
@@ -92,7 +94,7 @@ public final class IdeLibraries {
       else {
         jarFile = ((AndroidLibrary)library).getBundle();
       }
-      return new IdeMavenCoordinates(jarFile, new ModelCache());
+      return pool.intern(new IdeMavenCoordinates(jarFile, new ModelCache()));
     }
   }
 }
@@ -47,6 +47,16 @@ public abstract class IdeLibrary extends IdeModel implements Library {
     myHashCode = calculateHashCode();
   }
 
+  // Creates an instance from the values of its fields read from a snapshot, see IdeModelSnapshotCodec.
+  protected IdeLibrary(@NotNull IdeModelSnapshotCodec.Fields fields) {
+    super(fields);
+    myResolvedCoordinates = fields.get("myResolvedCoordinates");
+    myProject = fields.get("myProject");
+    myName = fields.get("myName");
+    myProvided = fields.get("myProvided");
+    myHashCode = fields.getInt("myHashCode");
+  }
+
   @Override
   @Nullable
   public IdeMavenCoordinates getRequestedCoordinates() {
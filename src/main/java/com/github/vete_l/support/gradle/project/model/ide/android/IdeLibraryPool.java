@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.vete_l.support.gradle.project.model.ide.android;
+
+import com.android.builder.model.level2.Library;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Interns copies of level 2 {@link Library}, {@link IdeMavenCoordinates} and path strings, so the same artifact is represented by a single
+ * instance across variants, test artifacts, modules and repeated syncs.
+ * <p>
+ * Entries are weakly referenced: once no model refers to an instance anymore it is dropped from the pool. This way the retained heap is
+ * bounded by the number of unique artifacts in use, instead of artifacts × variants.
+ */
+public class IdeLibraryPool {
+  // Rough size of a String object header plus its backing array header.
+  private static final int STRING_OVERHEAD_BYTES = 40;
+
+  @NotNull private static final IdeLibraryPool ourInstance = new IdeLibraryPool();
+
+  @NotNull private final Interner<Library> myLibraries = Interners.newWeakInterner();
+  @NotNull private final Interner<IdeMavenCoordinates> myCoordinates = Interners.newWeakInterner();
+  @NotNull private final Interner<String> myPaths = Interners.newWeakInterner();
+
+  @NotNull private final AtomicLong myHitCount = new AtomicLong();
+  @NotNull private final AtomicLong myMissCount = new AtomicLong();
+  @NotNull private final AtomicLong myRetainedBytes = new AtomicLong();
+
+  @NotNull
+  public static IdeLibraryPool getInstance() {
+    return ourInstance;
+  }
+
+  @VisibleForTesting
+  IdeLibraryPool() {
+  }
+
+  /**
+   * @param library the copy of a level 2 library to intern.
+   * @return an existing instance equal to the given one, or the given instance if this is the first time it was seen.
+   */
+  @NotNull
+  public Library intern(@NotNull Library library) {
+    return record(library, myLibraries.intern(library), 0);
+  }
+
+  /**
+   * @param coordinates the coordinates to intern.
+   * @return an existing instance equal to the given one, or the given instance if this is the first time it was seen.
+   */
+  @NotNull
+  public IdeMavenCoordinates intern(@NotNull IdeMavenCoordinates coordinates) {
+    return record(coordinates, myCoordinates.intern(coordinates), 0);
+  }
+
+  /**
+   * @param path the file path (or artifact address) to intern.
+   * @return an existing {@code String} equal to the given one, or the given {@code String} if this is the first time it was seen.
+   */
+  @Contract("!null -> !null")
+  @Nullable
+  public String internPath(@Nullable String path) {
+    if (path == null) {
+      return null;
+    }
+    return record(path, myPaths.intern(path), STRING_OVERHEAD_BYTES + path.length() * 2);
+  }
+
+  @NotNull
+  private <T> T record(@NotNull T candidate, @NotNull T interned, long estimatedSize) {
+    if (interned == candidate) {
+      myMissCount.incrementAndGet();
+      myRetainedBytes.addAndGet(estimatedSize);
+    }
+    else {
+      myHitCount.incrementAndGet();
+    }
+    return interned;
+  }
+
+  /**
+   * @return the number of lookups that returned an instance already in the pool.
+   */
+  public long getHitCount() {
+    return myHitCount.get();
+  }
+
+  /**
+   * @return the number of lookups that added a new instance to the pool.
+   */
+  public long getMissCount() {
+    return myMissCount.get();
+  }
+
+  /**
+   * @return the estimated size, in bytes, of the path strings added to the pool. Entries released by the garbage collector are not
+   * subtracted, so this is an upper bound.
+   */
+  public long getRetainedBytes() {
+    return myRetainedBytes.get();
+  }
+
+  @Override
+  public String toString() {
+    return "IdeLibraryPool{" +
+           "hits=" + getHitCount() +
+           ", misses=" + getMissCount() +
+           ", retainedBytes=" + getRetainedBytes() +
+           '}';
+  }
+}
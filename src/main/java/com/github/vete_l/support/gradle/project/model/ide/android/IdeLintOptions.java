@@ -47,6 +47,15 @@ public final class IdeLintOptions extends IdeModel implements LintOptions {
     myHashCode = calculateHashCode();
   }
 
+  // Creates an instance from the values of its fields read from a snapshot, see IdeModelSnapshotCodec.
+  IdeLintOptions(@NotNull IdeModelSnapshotCodec.Fields fields) {
+    super(fields);
+    myBaselineFile = fields.get("myBaselineFile");
+    mySeverityOverrides = fields.get("mySeverityOverrides");
+    myCheckTestSources = fields.getBoolean("myCheckTestSources");
+    myHashCode = fields.getInt("myHashCode");
+  }
+
   @Nullable
   private static Map<String, Integer> copy(@Nullable Map<String, Integer> original) {
     return original != null ? ImmutableMap.copyOf(original) : null;
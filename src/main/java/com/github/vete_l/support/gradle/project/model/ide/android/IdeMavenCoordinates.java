@@ -57,6 +57,17 @@ public final class IdeMavenCoordinates extends IdeModel implements MavenCoordina
     myHashCode = calculateHashCode();
   }
 
+  // Creates an instance from the values of its fields read from a snapshot, see IdeModelSnapshotCodec.
+  IdeMavenCoordinates(@NotNull IdeModelSnapshotCodec.Fields fields) {
+    super(fields);
+    myGroupId = fields.get("myGroupId");
+    myArtifactId = fields.get("myArtifactId");
+    myVersion = fields.get("myVersion");
+    myPacking = fields.get("myPacking");
+    myClassifier = fields.get("myClassifier");
+    myHashCode = fields.getInt("myHashCode");
+  }
+
   @Override
   @NotNull
   public String getGroupId() {
@@ -39,6 +39,13 @@ public abstract class IdeModel implements Serializable {
     }
   }
 
+  /**
+   * Used by the constructors that create instances from the values of their fields read from a snapshot (see
+   * {@link IdeModelSnapshotCodec}.) Such instances are not registered in a {@link ModelCache}.
+   */
+  protected IdeModel(@SuppressWarnings("unused") @NotNull IdeModelSnapshotCodec.Fields fields) {
+  }
+
   @Nullable
   protected static <K, V> V copyNewProperty(@NotNull ModelCache modelCache,
                                             @NotNull Computable<K> keyCreator,
@@ -0,0 +1,794 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.vete_l.support.gradle.project.model.ide.android;
+
+import com.android.builder.model.level2.Library;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Encodes and decodes snapshots of {@link IdeModel} graphs (e.g. {@link IdeAndroidProject}) for the sync cache.
+ * <p>
+ * A snapshot starts with a magic number and the format version, followed by the model graph written as tagged values:
+ * <ul>
+ * <li>Strings are written the first time they are found, and as an index afterwards.</li>
+ * <li>Model objects (the classes of this package) are written as a class descriptor, followed by the value of each field. The descriptor
+ * (class name and field names) is written the first time a class is found, and as an index afterwards. When reading, the values are
+ * passed by name to the decoding constructor of the class, which takes a single {@link Fields} parameter: values of fields no longer
+ * declared are ignored, and new fields get their default value.</li>
+ * <li>A model object found again is written as an index, so objects shared in the graph are still shared once decoded. Models cannot
+ * refer back to the objects that contain them.</li>
+ * <li>Lists, sets and maps are written as their size and elements, and decoded as unmodifiable collections.</li>
+ * <li>Other values (e.g. {@link File}, enums, boxed primitives, arrays) have their own tags. Values of other {@link Serializable} types are
+ * embedded with Java serialization.</li>
+ * </ul>
+ * Snapshots written with the previous format (Java serialization of the whole graph, with a string table) can still be read. Snapshots
+ * with an unknown format version are rejected with an {@link IOException}, which makes callers fall back to a full sync instead of failing
+ * on incompatible data.
+ * <p>
+ * When a snapshot is decoded, strings, level 2 libraries and Maven coordinates are interned in the {@link IdeLibraryPool}, so snapshots of
+ * different modules share the same instances, as they did before the project was closed.
+ */
+public final class IdeModelSnapshotCodec {
+  private static final int MAGIC = 0x49444d53; // "IDMS"
+  // Increase the value when changing the format of the snapshot.
+  private static final int FORMAT_VERSION = 2;
+  // Java serialization of the graph, with a string table.
+  private static final int JAVA_SERIALIZATION_FORMAT_VERSION = 1;
+
+  private static final byte NULL = 0;
+  private static final byte STRING = 1;
+  private static final byte STRING_REF = 2;
+  private static final byte TRUE = 3;
+  private static final byte FALSE = 4;
+  private static final byte INT = 5;
+  private static final byte LONG = 6;
+  private static final byte DOUBLE = 7;
+  private static final byte FLOAT = 8;
+  private static final byte SHORT = 9;
+  private static final byte BYTE = 10;
+  private static final byte CHAR = 11;
+  private static final byte FILE = 12;
+  private static final byte ENUM = 13;
+  private static final byte LIST = 14;
+  private static final byte SET = 15;
+  private static final byte MAP = 16;
+  private static final byte OBJECT = 17;
+  private static final byte OBJECT_REF = 18;
+  private static final byte ARRAY = 19;
+  private static final byte SERIALIZED = 20;
+
+  private static final String MODEL_PACKAGE_PREFIX = IdeModel.class.getPackage().getName();
+  private static final Map<String, Class<?>> PRIMITIVE_TYPES =
+    ImmutableMap.<String, Class<?>>builder().put("boolean", boolean.class).put("byte", byte.class).put("char", char.class)
+      .put("short", short.class).put("int", int.class).put("long", long.class).put("float", float.class).put("double", double.class)
+      .build();
+
+  private static final Map<Class<?>, ModelClass> ourModelClasses = new ConcurrentHashMap<>();
+
+  private IdeModelSnapshotCodec() {
+  }
+
+  /**
+   * Writes a snapshot of the given model as a length-prefixed section of the given stream.
+   */
+  public static void write(@NotNull Serializable model, @NotNull DataOutput out) throws IOException {
+    byte[] snapshot = encode(model);
+    out.writeInt(snapshot.length);
+    out.write(snapshot);
+  }
+
+  /**
+   * Reads a snapshot written by {@link #write(Serializable, DataOutput)}.
+   */
+  @NotNull
+  public static Object read(@NotNull DataInput in) throws IOException {
+    int length = in.readInt();
+    if (length < 0) {
+      throw new StreamCorruptedException("Invalid snapshot length: " + length);
+    }
+    byte[] snapshot = new byte[length];
+    in.readFully(snapshot);
+    return decode(snapshot);
+  }
+
+  @NotNull
+  public static byte[] encode(@NotNull Serializable model) throws IOException {
+    ByteArrayOutputStream snapshotBytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(snapshotBytes)) {
+      out.writeInt(MAGIC);
+      out.writeInt(FORMAT_VERSION);
+      new GraphWriter(out).writeValue(model);
+    }
+    return snapshotBytes.toByteArray();
+  }
+
+  @NotNull
+  public static Object decode(@NotNull byte[] snapshot) throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(snapshot));
+    if (in.readInt() != MAGIC) {
+      throw new StreamCorruptedException("Not a model snapshot");
+    }
+    int version = in.readInt();
+    IdeLibraryPool pool = IdeLibraryPool.getInstance();
+    if (version == JAVA_SERIALIZATION_FORMAT_VERSION) {
+      return decodeJavaSerialization(in, pool);
+    }
+    if (version != FORMAT_VERSION) {
+      throw new InvalidClassException(IdeModelSnapshotCodec.class.getName(),
+                                      "Unsupported snapshot version " + version + ", expected " + FORMAT_VERSION);
+    }
+    Object model = new GraphReader(in, pool).readValue();
+    if (model == null) {
+      throw new StreamCorruptedException("Empty model snapshot");
+    }
+    if (in.available() != 0) {
+      throw new StreamCorruptedException("Unexpected data after the model snapshot");
+    }
+    return model;
+  }
+
+  @VisibleForTesting
+  @NotNull
+  static byte[] encodeWithJavaSerialization(@NotNull Serializable model) throws IOException {
+    ByteArrayOutputStream graphBytes = new ByteArrayOutputStream();
+    StringTable stringTable = new StringTable();
+    try (ObjectOutputStream graphOut = new GraphOutputStream(graphBytes, stringTable)) {
+      graphOut.writeObject(model);
+    }
+
+    ByteArrayOutputStream snapshotBytes = new ByteArrayOutputStream(graphBytes.size() + stringTable.myStrings.size() * 16 + 16);
+    try (DataOutputStream out = new DataOutputStream(snapshotBytes)) {
+      out.writeInt(MAGIC);
+      out.writeInt(JAVA_SERIALIZATION_FORMAT_VERSION);
+
+      List<String> strings = stringTable.myStrings;
+      out.writeInt(strings.size());
+      for (String string : strings) {
+        writeString(string, out);
+      }
+
+      out.writeInt(graphBytes.size());
+      graphBytes.writeTo(out);
+    }
+    return snapshotBytes.toByteArray();
+  }
+
+  @NotNull
+  private static Object decodeJavaSerialization(@NotNull DataInputStream in, @NotNull IdeLibraryPool pool) throws IOException {
+    int stringCount = in.readInt();
+    String[] strings = new String[stringCount];
+    for (int i = 0; i < stringCount; i++) {
+      strings[i] = pool.internPath(readString(in));
+    }
+
+    int graphLength = in.readInt();
+    if (graphLength != in.available()) {
+      throw new StreamCorruptedException("Truncated model snapshot");
+    }
+    try (ObjectInputStream graphIn = new GraphInputStream(in, strings, pool)) {
+      return graphIn.readObject();
+    }
+    catch (ClassNotFoundException e) {
+      throw new InvalidClassException(e.getMessage());
+    }
+  }
+
+  // DataOutput#writeUTF is limited to 64K bytes, which is not enough for long class paths.
+  private static void writeString(@NotNull String string, @NotNull DataOutput out) throws IOException {
+    out.writeInt(string.length());
+    for (int i = 0; i < string.length(); i++) {
+      out.writeChar(string.charAt(i));
+    }
+  }
+
+  @NotNull
+  private static String readString(@NotNull DataInput in) throws IOException {
+    int length = in.readInt();
+    if (length < 0) {
+      throw new StreamCorruptedException("Invalid string length: " + length);
+    }
+    char[] chars = new char[length];
+    for (int i = 0; i < length; i++) {
+      chars[i] = in.readChar();
+    }
+    return new String(chars);
+  }
+
+  private static boolean isModelClass(@NotNull Class<?> type) {
+    return type.getName().startsWith(MODEL_PACKAGE_PREFIX) && Serializable.class.isAssignableFrom(type) && !type.isEnum();
+  }
+
+  @NotNull
+  private static ModelClass getModelClass(@NotNull Class<?> type) throws InvalidClassException {
+    ModelClass modelClass = ourModelClasses.get(type);
+    if (modelClass == null) {
+      modelClass = new ModelClass(type);
+      ourModelClasses.put(type, modelClass);
+    }
+    return modelClass;
+  }
+
+  /**
+   * The values of the fields of a model object read from a snapshot, passed to the decoding constructor of its class. A field without a
+   * value in the snapshot (e.g. a field added after the snapshot was written) gets the default value of its type.
+   */
+  public static final class Fields {
+    @NotNull private final Map<String, Object> myValues;
+
+    private Fields(@NotNull Map<String, Object> values) {
+      myValues = values;
+    }
+
+    /**
+     * @throws ClassCastException if the value read is not of the type of the field.
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable
+    public <T> T get(@NotNull String name) {
+      return (T)myValues.get(name);
+    }
+
+    public boolean getBoolean(@NotNull String name) {
+      Boolean value = get(name);
+      return value != null && value;
+    }
+
+    public int getInt(@NotNull String name) {
+      Integer value = get(name);
+      return value != null ? value : 0;
+    }
+  }
+
+  /**
+   * The serializable fields of a model class, and its decoding constructor.
+   */
+  private static class ModelClass {
+    @NotNull private final Class<?> myType;
+    @NotNull private final Map<String, Field> myFieldsByName = new LinkedHashMap<>();
+    @NotNull private final Constructor<?> myConstructor;
+
+    ModelClass(@NotNull Class<?> type) throws InvalidClassException {
+      myType = type;
+      List<Class<?>> hierarchy = new ArrayList<>();
+      for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+        hierarchy.add(0, c);
+      }
+      for (Class<?> c : hierarchy) {
+        for (Field field : c.getDeclaredFields()) {
+          int modifiers = field.getModifiers();
+          if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)) {
+            continue;
+          }
+          field.setAccessible(true);
+          if (myFieldsByName.put(field.getName(), field) != null) {
+            throw new InvalidClassException(type.getName(), "Field '" + field.getName() + "' is declared more than once");
+          }
+        }
+      }
+      try {
+        // Checked when writing too, so a model class without a decoding constructor is not found only when reading.
+        myConstructor = type.getDeclaredConstructor(Fields.class);
+        myConstructor.setAccessible(true);
+      }
+      catch (NoSuchMethodException e) {
+        throw new InvalidClassException(type.getName(), "No decoding constructor");
+      }
+    }
+
+    @NotNull
+    Object newInstance(@NotNull Fields fields) throws InvalidClassException {
+      try {
+        return myConstructor.newInstance(fields);
+      }
+      catch (InvocationTargetException e) {
+        InvalidClassException exception = new InvalidClassException(myType.getName(), "Invalid field values: " + e.getCause());
+        exception.initCause(e.getCause());
+        throw exception;
+      }
+      catch (ReflectiveOperationException e) {
+        throw new InvalidClassException(myType.getName(), "Cannot be instantiated: " + e.getMessage());
+      }
+    }
+  }
+
+  private static class GraphWriter {
+    @NotNull private final DataOutput myOut;
+    @NotNull private final Map<String, Integer> myStringIndices = new HashMap<>();
+    @NotNull private final Map<Class<?>, Integer> myClassIndices = new HashMap<>();
+    @NotNull private final Map<Object, Integer> myObjectIndices = new IdentityHashMap<>();
+    @NotNull private final Set<Object> myObjectsBeingWritten = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    GraphWriter(@NotNull DataOutput out) {
+      myOut = out;
+    }
+
+    void writeValue(@Nullable Object value) throws IOException {
+      if (value == null) {
+        myOut.writeByte(NULL);
+      }
+      else if (value instanceof String) {
+        writeStringValue((String)value);
+      }
+      else if (value instanceof Boolean) {
+        myOut.writeByte((Boolean)value ? TRUE : FALSE);
+      }
+      else if (value instanceof Integer) {
+        myOut.writeByte(INT);
+        myOut.writeInt((Integer)value);
+      }
+      else if (value instanceof Long) {
+        myOut.writeByte(LONG);
+        myOut.writeLong((Long)value);
+      }
+      else if (value instanceof Double) {
+        myOut.writeByte(DOUBLE);
+        myOut.writeDouble((Double)value);
+      }
+      else if (value instanceof Float) {
+        myOut.writeByte(FLOAT);
+        myOut.writeFloat((Float)value);
+      }
+      else if (value instanceof Short) {
+        myOut.writeByte(SHORT);
+        myOut.writeShort((Short)value);
+      }
+      else if (value instanceof Byte) {
+        myOut.writeByte(BYTE);
+        myOut.writeByte((Byte)value);
+      }
+      else if (value instanceof Character) {
+        myOut.writeByte(CHAR);
+        myOut.writeChar((Character)value);
+      }
+      else if (value instanceof File) {
+        myOut.writeByte(FILE);
+        writeStringValue(((File)value).getPath());
+      }
+      else if (value instanceof Enum) {
+        myOut.writeByte(ENUM);
+        writeStringValue(((Enum<?>)value).getDeclaringClass().getName());
+        writeStringValue(((Enum<?>)value).name());
+      }
+      else if (value instanceof Set) {
+        myOut.writeByte(SET);
+        writeElements((Set<?>)value);
+      }
+      else if (value instanceof Collection) {
+        myOut.writeByte(LIST);
+        writeElements((Collection<?>)value);
+      }
+      else if (value instanceof Map) {
+        myOut.writeByte(MAP);
+        Map<?, ?> map = (Map<?, ?>)value;
+        myOut.writeInt(map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+          writeValue(entry.getKey());
+          writeValue(entry.getValue());
+        }
+      }
+      else if (isModelClass(value.getClass())) {
+        // Checked after collections, so the collections of this package (e.g. lists of variants decoded on demand) are written as plain
+        // collections.
+        writeModel(value);
+      }
+      else if (value.getClass().isArray()) {
+        myOut.writeByte(ARRAY);
+        writeStringValue(value.getClass().getComponentType().getName());
+        int length = Array.getLength(value);
+        myOut.writeInt(length);
+        for (int i = 0; i < length; i++) {
+          writeValue(Array.get(value, i));
+        }
+      }
+      else if (value instanceof Serializable) {
+        myOut.writeByte(SERIALIZED);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+          out.writeObject(value);
+        }
+        myOut.writeInt(bytes.size());
+        myOut.write(bytes.toByteArray());
+      }
+      else {
+        throw new NotSerializableException(value.getClass().getName());
+      }
+    }
+
+    private void writeStringValue(@NotNull String value) throws IOException {
+      Integer index = myStringIndices.get(value);
+      if (index != null) {
+        myOut.writeByte(STRING_REF);
+        myOut.writeInt(index);
+        return;
+      }
+      myStringIndices.put(value, myStringIndices.size());
+      myOut.writeByte(STRING);
+      writeString(value, myOut);
+    }
+
+    private void writeElements(@NotNull Collection<?> elements) throws IOException {
+      myOut.writeInt(elements.size());
+      for (Object element : elements) {
+        writeValue(element);
+      }
+    }
+
+    private void writeModel(@NotNull Object model) throws IOException {
+      if (myObjectsBeingWritten.contains(model)) {
+        // Models are created after the values of their fields are read, so a field cannot refer to the model that contains it.
+        throw new InvalidClassException(model.getClass().getName(), "Cyclic reference");
+      }
+      Integer index = myObjectIndices.get(model);
+      if (index != null) {
+        myOut.writeByte(OBJECT_REF);
+        myOut.writeInt(index);
+        return;
+      }
+      myObjectIndices.put(model, myObjectIndices.size());
+
+      ModelClass modelClass = getModelClass(model.getClass());
+      myOut.writeByte(OBJECT);
+      Integer classIndex = myClassIndices.get(modelClass.myType);
+      if (classIndex != null) {
+        myOut.writeInt(classIndex);
+      }
+      else {
+        classIndex = myClassIndices.size();
+        myClassIndices.put(modelClass.myType, classIndex);
+        myOut.writeInt(classIndex);
+        writeStringValue(modelClass.myType.getName());
+        myOut.writeInt(modelClass.myFieldsByName.size());
+        for (String fieldName : modelClass.myFieldsByName.keySet()) {
+          writeStringValue(fieldName);
+        }
+      }
+      myObjectsBeingWritten.add(model);
+      for (Field field : modelClass.myFieldsByName.values()) {
+        try {
+          writeValue(field.get(model));
+        }
+        catch (IllegalAccessException e) {
+          throw new InvalidClassException(modelClass.myType.getName(), "Cannot read field '" + field.getName() + "'");
+        }
+      }
+      myObjectsBeingWritten.remove(model);
+    }
+  }
+
+  private static class GraphReader {
+    @NotNull private final DataInput myIn;
+    @NotNull private final IdeLibraryPool myPool;
+    @NotNull private final List<String> myStrings = new ArrayList<>();
+    @NotNull private final List<ClassDescriptor> myClasses = new ArrayList<>();
+    @NotNull private final List<Object> myObjects = new ArrayList<>();
+
+    GraphReader(@NotNull DataInput in, @NotNull IdeLibraryPool pool) {
+      myIn = in;
+      myPool = pool;
+    }
+
+    @Nullable
+    Object readValue() throws IOException {
+      byte tag = myIn.readByte();
+      switch (tag) {
+        case NULL:
+          return null;
+        case STRING:
+        case STRING_REF:
+          return readStringValue(tag);
+        case TRUE:
+          return Boolean.TRUE;
+        case FALSE:
+          return Boolean.FALSE;
+        case INT:
+          return myIn.readInt();
+        case LONG:
+          return myIn.readLong();
+        case DOUBLE:
+          return myIn.readDouble();
+        case FLOAT:
+          return myIn.readFloat();
+        case SHORT:
+          return myIn.readShort();
+        case BYTE:
+          return myIn.readByte();
+        case CHAR:
+          return myIn.readChar();
+        case FILE:
+          return new File(readStringValue());
+        case ENUM:
+          return readEnum();
+        case LIST:
+          return Collections.unmodifiableList(readElements(new ArrayList<>()));
+        case SET:
+          return Collections.unmodifiableSet(readElements(new LinkedHashSet<>()));
+        case MAP:
+          return readMap();
+        case OBJECT:
+          return readModel();
+        case OBJECT_REF:
+          return readModelReference();
+        case ARRAY:
+          return readArray();
+        case SERIALIZED:
+          return readSerialized();
+        default:
+          throw new StreamCorruptedException("Invalid value tag: " + tag);
+      }
+    }
+
+    @NotNull
+    private String readStringValue() throws IOException {
+      return readStringValue(myIn.readByte());
+    }
+
+    @NotNull
+    private String readStringValue(byte tag) throws IOException {
+      if (tag == STRING_REF) {
+        return myStrings.get(readIndex(myStrings.size()));
+      }
+      if (tag != STRING) {
+        throw new StreamCorruptedException("Expected a string, found tag " + tag);
+      }
+      String value = myPool.internPath(readString(myIn));
+      assert value != null;
+      myStrings.add(value);
+      return value;
+    }
+
+    private int readIndex(int count) throws IOException {
+      int index = myIn.readInt();
+      if (index < 0 || index >= count) {
+        throw new StreamCorruptedException("Invalid index: " + index);
+      }
+      return index;
+    }
+
+    private int readSize() throws IOException {
+      int size = myIn.readInt();
+      if (size < 0) {
+        throw new StreamCorruptedException("Invalid size: " + size);
+      }
+      return size;
+    }
+
+    @NotNull
+    private <T extends Collection<Object>> T readElements(@NotNull T elements) throws IOException {
+      int size = readSize();
+      for (int i = 0; i < size; i++) {
+        elements.add(readValue());
+      }
+      return elements;
+    }
+
+    @NotNull
+    private Map<Object, Object> readMap() throws IOException {
+      int size = readSize();
+      Map<Object, Object> map = new LinkedHashMap<>();
+      for (int i = 0; i < size; i++) {
+        Object key = readValue();
+        map.put(key, readValue());
+      }
+      return Collections.unmodifiableMap(map);
+    }
+
+    @SuppressWarnings("unchecked")
+    @NotNull
+    private Object readEnum() throws IOException {
+      Class<?> type = loadClass(readStringValue());
+      String name = readStringValue();
+      if (!type.isEnum()) {
+        throw new InvalidClassException(type.getName(), "Not an enum");
+      }
+      try {
+        return Enum.valueOf(type.asSubclass(Enum.class), name);
+      }
+      catch (IllegalArgumentException e) {
+        throw new InvalidObjectException("Unknown constant " + type.getName() + "." + name);
+      }
+    }
+
+    @NotNull
+    private Object readArray() throws IOException {
+      String componentTypeName = readStringValue();
+      Class<?> componentType = PRIMITIVE_TYPES.get(componentTypeName);
+      if (componentType == null) {
+        componentType = loadClass(componentTypeName);
+      }
+      int length = readSize();
+      Object array = Array.newInstance(componentType, length);
+      for (int i = 0; i < length; i++) {
+        try {
+          Array.set(array, i, readValue());
+        }
+        catch (IllegalArgumentException e) {
+          throw new InvalidObjectException("Invalid element for an array of " + componentTypeName);
+        }
+      }
+      return array;
+    }
+
+    @Nullable
+    private Object readSerialized() throws IOException {
+      byte[] bytes = new byte[readSize()];
+      myIn.readFully(bytes);
+      try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+        return in.readObject();
+      }
+      catch (ClassNotFoundException e) {
+        throw new InvalidClassException(e.getMessage());
+      }
+    }
+
+    @NotNull
+    private Object readModel() throws IOException {
+      ClassDescriptor descriptor = readClassDescriptor();
+      int index = myObjects.size();
+      // The index is taken before reading the fields, which may contain other models.
+      myObjects.add(null);
+      Map<String, Object> values = new HashMap<>();
+      for (String fieldName : descriptor.myFieldNames) {
+        values.put(fieldName, readValue());
+      }
+      Object model = descriptor.myModelClass.newInstance(new Fields(values));
+      if (model instanceof Library) {
+        model = myPool.intern((Library)model);
+      }
+      else if (model instanceof IdeMavenCoordinates) {
+        model = myPool.intern((IdeMavenCoordinates)model);
+      }
+      myObjects.set(index, model);
+      return model;
+    }
+
+    @NotNull
+    private Object readModelReference() throws IOException {
+      Object model = myObjects.get(readIndex(myObjects.size()));
+      if (model == null) {
+        throw new StreamCorruptedException("Reference to a model that is still being read");
+      }
+      return model;
+    }
+
+    @NotNull
+    private ClassDescriptor readClassDescriptor() throws IOException {
+      int index = myIn.readInt();
+      if (index < myClasses.size() && index >= 0) {
+        return myClasses.get(index);
+      }
+      if (index != myClasses.size()) {
+        throw new StreamCorruptedException("Invalid class index: " + index);
+      }
+      Class<?> type = loadClass(readStringValue());
+      if (!isModelClass(type)) {
+        throw new InvalidClassException(type.getName(), "Not a model class");
+      }
+      ModelClass modelClass = getModelClass(type);
+      int fieldCount = readSize();
+      String[] fieldNames = new String[fieldCount];
+      for (int i = 0; i < fieldCount; i++) {
+        fieldNames[i] = readStringValue();
+      }
+      ClassDescriptor descriptor = new ClassDescriptor(modelClass, fieldNames);
+      myClasses.add(descriptor);
+      return descriptor;
+    }
+
+    @NotNull
+    private static Class<?> loadClass(@NotNull String name) throws InvalidClassException {
+      try {
+        return Class.forName(name, false, IdeModelSnapshotCodec.class.getClassLoader());
+      }
+      catch (ClassNotFoundException e) {
+        throw new InvalidClassException(name, "Class not found");
+      }
+    }
+  }
+
+  /**
+   * A model class as found in a snapshot: the names of the fields of the class, in the order their values were written.
+   */
+  private static class ClassDescriptor {
+    @NotNull private final ModelClass myModelClass;
+    @NotNull private final String[] myFieldNames;
+
+    ClassDescriptor(@NotNull ModelClass modelClass, @NotNull String[] fieldNames) {
+      myModelClass = modelClass;
+      myFieldNames = fieldNames;
+    }
+  }
+
+  private static class StringTable {
+    @NotNull private final List<String> myStrings = new ArrayList<>();
+    // Reuse the same reference for a given string, so the object stream writes it only once and uses back-references afterwards.
+    @NotNull private final Map<String, StringRef> myReferences = new HashMap<>();
+
+    @NotNull
+    StringRef getReference(@NotNull String string) {
+      return myReferences.computeIfAbsent(string, s -> {
+        myStrings.add(s);
+        return new StringRef(myStrings.size() - 1);
+      });
+    }
+  }
+
+  private static class StringRef implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int myIndex;
+
+    StringRef(int index) {
+      myIndex = index;
+    }
+  }
+
+  private static class GraphOutputStream extends ObjectOutputStream {
+    @NotNull private final StringTable myStringTable;
+
+    GraphOutputStream(@NotNull OutputStream out, @NotNull StringTable stringTable) throws IOException {
+      super(out);
+      myStringTable = stringTable;
+      enableReplaceObject(true);
+    }
+
+    @Override
+    protected Object replaceObject(Object obj) {
+      return obj instanceof String ? myStringTable.getReference((String)obj) : obj;
+    }
+  }
+
+  private static class GraphInputStream extends ObjectInputStream {
+    @NotNull private final String[] myStrings;
+    @NotNull private final IdeLibraryPool myPool;
+
+    GraphInputStream(@NotNull InputStream in, @NotNull String[] strings, @NotNull IdeLibraryPool pool) throws IOException {
+      super(in);
+      myStrings = strings;
+      myPool = pool;
+      enableResolveObject(true);
+    }
+
+    @Override
+    protected Object resolveObject(Object obj) throws IOException {
+      if (obj instanceof StringRef) {
+        int index = ((StringRef)obj).myIndex;
+        if (index < 0 || index >= myStrings.length) {
+          throw new StreamCorruptedException("Invalid string table index: " + index);
+        }
+        return myStrings[index];
+      }
+      if (obj instanceof Library) {
+        return myPool.intern((Library)obj);
+      }
+      if (obj instanceof IdeMavenCoordinates) {
+        return myPool.intern((IdeMavenCoordinates)obj);
+      }
+      return obj;
+    }
+  }
+}
@@ -63,6 +63,21 @@ public final class IdeNativeAndroidProjectImpl extends IdeModel implements IdeNa
     myHashCode = calculateHashCode();
   }
 
+  // Creates an instance from the values of its fields read from a snapshot, see IdeModelSnapshotCodec.
+  IdeNativeAndroidProjectImpl(@NotNull IdeModelSnapshotCodec.Fields fields) {
+    super(fields);
+    myModelVersion = fields.get("myModelVersion");
+    myName = fields.get("myName");
+    myBuildFiles = fields.get("myBuildFiles");
+    myArtifacts = fields.get("myArtifacts");
+    myToolChains = fields.get("myToolChains");
+    mySettings = fields.get("mySettings");
+    myFileExtensions = fields.get("myFileExtensions");
+    myBuildSystems = fields.get("myBuildSystems");
+    myApiVersion = fields.getInt("myApiVersion");
+    myHashCode = fields.getInt("myHashCode");
+  }
+
   @Nullable
   private static Collection<String> copyBuildSystems(@NotNull NativeAndroidProject project) {
     try {
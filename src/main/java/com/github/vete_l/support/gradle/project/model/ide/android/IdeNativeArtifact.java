@@ -53,6 +53,21 @@ public final class IdeNativeArtifact extends IdeModel implements NativeArtifact
     myHashCode = calculateHashCode();
   }
 
+  // Creates an instance from the values of its fields read from a snapshot, see IdeModelSnapshotCodec.
+  IdeNativeArtifact(@NotNull IdeModelSnapshotCodec.Fields fields) {
+    super(fields);
+    myName = fields.get("myName");
+    myToolChain = fields.get("myToolChain");
+    myGroupName = fields.get("myGroupName");
+    mySourceFolders = fields.get("mySourceFolders");
+    mySourceFiles = fields.get("mySourceFiles");
+    myExportedHeaders = fields.get("myExportedHeaders");
+    myOutputFile = fields.get("myOutputFile");
+    myAbi = fields.get("myAbi");
+    myTargetName = fields.get("myTargetName");
+    myHashCode = fields.getInt("myHashCode");
+  }
+
   @Override
   @NotNull
   public String getName() {
@@ -35,6 +35,15 @@ public final class IdeNativeFile extends IdeModel implements NativeFile {
     myHashCode = calculateHashCode();
   }
 
+  // Creates an instance from the values of its fields read from a snapshot, see IdeModelSnapshotCodec.
+  IdeNativeFile(@NotNull IdeModelSnapshotCodec.Fields fields) {
+    super(fields);
+    myFilePath = fields.get("myFilePath");
+    mySettingsName = fields.get("mySettingsName");
+    myWorkingDirectory = fields.get("myWorkingDirectory");
+    myHashCode = fields.getInt("myHashCode");
+  }
+
   @Override
   public File getFilePath() {
     return myFilePath;
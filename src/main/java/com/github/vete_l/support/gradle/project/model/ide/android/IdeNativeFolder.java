@@ -44,6 +44,15 @@ public final class IdeNativeFolder extends IdeModel implements NativeFolder {
     myHashCode = calculateHashCode();
   }
 
+  // Creates an instance from the values of its fields read from a snapshot, see IdeModelSnapshotCodec.
+  IdeNativeFolder(@NotNull IdeModelSnapshotCodec.Fields fields) {
+    super(fields);
+    myFolderPath = fields.get("myFolderPath");
+    myPerLanguageSettings = fields.get("myPerLanguageSettings");
+    myWorkingDirectory = fields.get("myWorkingDirectory");
+    myHashCode = fields.getInt("myHashCode");
+  }
+
   @Override
   public File getFolderPath() {
     return myFolderPath;
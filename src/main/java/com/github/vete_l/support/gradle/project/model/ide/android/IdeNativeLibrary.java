@@ -62,6 +62,24 @@ public final class IdeNativeLibrary extends IdeModel implements NativeLibrary {
     myHashCode = calculateHashCode();
   }
 
+  // Creates an instance from the values of its fields read from a snapshot, see IdeModelSnapshotCodec.
+  IdeNativeLibrary(@NotNull IdeModelSnapshotCodec.Fields fields) {
+    super(fields);
+    myName = fields.get("myName");
+    myAbi = fields.get("myAbi");
+    myToolchainName = fields.get("myToolchainName");
+    myCIncludeDirs = fields.get("myCIncludeDirs");
+    myCppIncludeDirs = fields.get("myCppIncludeDirs");
+    myCSystemIncludeDirs = fields.get("myCSystemIncludeDirs");
+    myCppSystemIncludeDirs = fields.get("myCppSystemIncludeDirs");
+    myCDefines = fields.get("myCDefines");
+    myCppDefines = fields.get("myCppDefines");
+    myCCompilerFlags = fields.get("myCCompilerFlags");
+    myCppCompilerFlags = fields.get("myCppCompilerFlags");
+    myDebuggableLibraryFolders = fields.get("myDebuggableLibraryFolders");
+    myHashCode = fields.getInt("myHashCode");
+  }
+
   @Override
   @NotNull
   public String getName() {
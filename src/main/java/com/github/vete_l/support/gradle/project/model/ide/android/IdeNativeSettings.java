@@ -38,6 +38,14 @@ public final class IdeNativeSettings extends IdeModel implements NativeSettings
     myHashCode = calculateHashCode();
   }
 
+  // Creates an instance from the values of its fields read from a snapshot, see IdeModelSnapshotCodec.
+  IdeNativeSettings(@NotNull IdeModelSnapshotCodec.Fields fields) {
+    super(fields);
+    myName = fields.get("myName");
+    myCompilerFlags = fields.get("myCompilerFlags");
+    myHashCode = fields.getInt("myHashCode");
+  }
+
   @Override
   public String getName() {
     return myName;
@@ -43,6 +43,15 @@ public final class IdeNativeToolchain extends IdeModel implements NativeToolchai
     myHashCode = calculateHashCode();
   }
 
+  // Creates an instance from the values of its fields read from a snapshot, see IdeModelSnapshotCodec.
+  IdeNativeToolchain(@NotNull IdeModelSnapshotCodec.Fields fields) {
+    super(fields);
+    myName = fields.get("myName");
+    myCCompilerExecutable = fields.get("myCCompilerExecutable");
+    myCppCompilerExecutable = fields.get("myCppCompilerExecutable");
+    myHashCode = fields.getInt("myHashCode");
+  }
+
   @Override
   @NotNull
   public String getName() {
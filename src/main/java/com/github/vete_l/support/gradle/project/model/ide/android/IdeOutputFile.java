@@ -59,6 +59,19 @@ public final class IdeOutputFile extends IdeModel implements OutputFile {
     myHashCode = calculateHashCode();
   }
 
+  // Creates an instance from the values of its fields read from a snapshot, see IdeModelSnapshotCodec.
+  IdeOutputFile(@NotNull IdeModelSnapshotCodec.Fields fields) {
+    super(fields);
+    myOutputType = fields.get("myOutputType");
+    myFilterTypes = fields.get("myFilterTypes");
+    myFilters = fields.get("myFilters");
+    myOutputFile = fields.get("myOutputFile");
+    myOutputs = fields.get("myOutputs");
+    myMainOutputFile = fields.get("myMainOutputFile");
+    myVersionCode = fields.get("myVersionCode");
+    myHashCode = fields.getInt("myHashCode");
+  }
+
   @NotNull
   private static Collection<? extends OutputFile> copyOutputs(@NotNull OutputFile file, @NotNull ModelCache modelCache) {
     try {
@@ -69,6 +69,25 @@ public final class IdeProductFlavor extends IdeBaseConfig implements ProductFlav
     myHashCode = calculateHashCode();
   }
 
+  // Creates an instance from the values of its fields read from a snapshot, see IdeModelSnapshotCodec.
+  IdeProductFlavor(@NotNull IdeModelSnapshotCodec.Fields fields) {
+    super(fields);
+    myTestInstrumentationRunnerArguments = fields.get("myTestInstrumentationRunnerArguments");
+    myResourceConfigurations = fields.get("myResourceConfigurations");
+    myVectorDrawables = fields.get("myVectorDrawables");
+    myDimension = fields.get("myDimension");
+    myApplicationId = fields.get("myApplicationId");
+    myVersionCode = fields.get("myVersionCode");
+    myVersionName = fields.get("myVersionName");
+    myMinSdkVersion = fields.get("myMinSdkVersion");
+    myTargetSdkVersion = fields.get("myTargetSdkVersion");
+    myMaxSdkVersion = fields.get("myMaxSdkVersion");
+    myTestApplicationId = fields.get("myTestApplicationId");
+    myTestInstrumentationRunner = fields.get("myTestInstrumentationRunner");
+    mySigningConfig = fields.get("mySigningConfig");
+    myHashCode = fields.getInt("myHashCode");
+  }
+
   @Nullable
   private static VectorDrawablesOptions copyVectorDrawables(@NotNull ProductFlavor flavor, @NotNull ModelCache modelCache) {
     VectorDrawablesOptions vectorDrawables;
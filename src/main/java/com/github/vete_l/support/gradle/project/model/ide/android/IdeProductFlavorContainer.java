@@ -46,6 +46,15 @@ public final class IdeProductFlavorContainer extends IdeModel implements Product
     myHashCode = calculateHashCode();
   }
 
+  // Creates an instance from the values of its fields read from a snapshot, see IdeModelSnapshotCodec.
+  IdeProductFlavorContainer(@NotNull IdeModelSnapshotCodec.Fields fields) {
+    super(fields);
+    myProductFlavor = fields.get("myProductFlavor");
+    mySourceProvider = fields.get("mySourceProvider");
+    myExtraSourceProviders = fields.get("myExtraSourceProviders");
+    myHashCode = fields.getInt("myHashCode");
+  }
+
   @Override
   @NotNull
   public ProductFlavor getProductFlavor() {
@@ -48,6 +48,17 @@ public final class IdeSigningConfig extends IdeModel implements SigningConfig {
     myHashCode = calculateHashCode();
   }
 
+  // Creates an instance from the values of its fields read from a snapshot, see IdeModelSnapshotCodec.
+  IdeSigningConfig(@NotNull IdeModelSnapshotCodec.Fields fields) {
+    super(fields);
+    myName = fields.get("myName");
+    myStoreFile = fields.get("myStoreFile");
+    myStorePassword = fields.get("myStorePassword");
+    myKeyAlias = fields.get("myKeyAlias");
+    myV1SigningEnabled = fields.get("myV1SigningEnabled");
+    myHashCode = fields.getInt("myHashCode");
+  }
+
   @Override
   @NotNull
   public String getName() {
@@ -62,6 +62,24 @@ public final class IdeSourceProvider extends IdeModel implements SourceProvider
     myHashCode = calculateHashCode();
   }
 
+  // Creates an instance from the values of its fields read from a snapshot, see IdeModelSnapshotCodec.
+  IdeSourceProvider(@NotNull IdeModelSnapshotCodec.Fields fields) {
+    super(fields);
+    myName = fields.get("myName");
+    myManifestFile = fields.get("myManifestFile");
+    myJavaDirectories = fields.get("myJavaDirectories");
+    myResourcesDirectories = fields.get("myResourcesDirectories");
+    myAidlDirectories = fields.get("myAidlDirectories");
+    myRenderscriptDirectories = fields.get("myRenderscriptDirectories");
+    myCDirectories = fields.get("myCDirectories");
+    myCppDirectories = fields.get("myCppDirectories");
+    myResDirectories = fields.get("myResDirectories");
+    myAssetsDirectories = fields.get("myAssetsDirectories");
+    myJniLibsDirectories = fields.get("myJniLibsDirectories");
+    myShadersDirectories = fields.get("myShadersDirectories");
+    myHashCode = fields.getInt("myHashCode");
+  }
+
   @Override
   @NotNull
   public String getName() {
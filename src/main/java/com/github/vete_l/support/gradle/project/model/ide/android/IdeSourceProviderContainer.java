@@ -39,6 +39,14 @@ public final class IdeSourceProviderContainer extends IdeModel implements Source
     myHashCode = calculateHashCode();
   }
 
+  // Creates an instance from the values of its fields read from a snapshot, see IdeModelSnapshotCodec.
+  IdeSourceProviderContainer(@NotNull IdeModelSnapshotCodec.Fields fields) {
+    super(fields);
+    myArtifactName = fields.get("myArtifactName");
+    mySourceProvider = fields.get("mySourceProvider");
+    myHashCode = fields.getInt("myHashCode");
+  }
+
   @Override
   @NotNull
   public String getArtifactName() {
@@ -47,6 +47,17 @@ public final class IdeSyncIssue extends IdeModel implements SyncIssue {
     myHashCode = calculateHashCode();
   }
 
+  // Creates an instance from the values of its fields read from a snapshot, see IdeModelSnapshotCodec.
+  IdeSyncIssue(@NotNull IdeModelSnapshotCodec.Fields fields) {
+    super(fields);
+    myMessage = fields.get("myMessage");
+    myData = fields.get("myData");
+    myMultiLineMessage = fields.get("myMultiLineMessage");
+    mySeverity = fields.getInt("mySeverity");
+    myType = fields.getInt("myType");
+    myHashCode = fields.getInt("myHashCode");
+  }
+
   @Override
   @NotNull
   public String getMessage() {
@@ -37,6 +37,14 @@ public class IdeTestOptions extends IdeModel implements TestOptions {
     myHashCode = calculateHashCode();
   }
 
+  // Creates an instance from the values of its fields read from a snapshot, see IdeModelSnapshotCodec.
+  IdeTestOptions(@NotNull IdeModelSnapshotCodec.Fields fields) {
+    super(fields);
+    myAnimationsDisabled = fields.getBoolean("myAnimationsDisabled");
+    myExecutionEnum = fields.get("myExecutionEnum");
+    myHashCode = fields.getInt("myHashCode");
+  }
+
   @Override
   public boolean getAnimationsDisabled() {
     return myAnimationsDisabled;
@@ -39,6 +39,14 @@ public final class IdeTestedTargetVariant extends IdeModel implements TestedTarg
     myHashCode = calculateHashCode();
   }
 
+  // Creates an instance from the values of its fields read from a snapshot, see IdeModelSnapshotCodec.
+  IdeTestedTargetVariant(@NotNull IdeModelSnapshotCodec.Fields fields) {
+    super(fields);
+    myTargetProjectPath = fields.get("myTargetProjectPath");
+    myTargetVariant = fields.get("myTargetVariant");
+    myHashCode = fields.getInt("myHashCode");
+  }
+
   @Override
   @NotNull
   public String getTargetProjectPath() {
@@ -72,6 +72,21 @@ public final class IdeVariantImpl extends IdeModel implements IdeVariant {
     myHashCode = calculateHashCode();
   }
 
+  // Creates an instance from the values of its fields read from a snapshot, see IdeModelSnapshotCodec.
+  IdeVariantImpl(@NotNull IdeModelSnapshotCodec.Fields fields) {
+    super(fields);
+    myName = fields.get("myName");
+    myDisplayName = fields.get("myDisplayName");
+    myMainArtifact = fields.get("myMainArtifact");
+    myExtraAndroidArtifacts = fields.get("myExtraAndroidArtifacts");
+    myExtraJavaArtifacts = fields.get("myExtraJavaArtifacts");
+    myBuildType = fields.get("myBuildType");
+    myProductFlavors = fields.get("myProductFlavors");
+    myMergedFlavor = fields.get("myMergedFlavor");
+    myTestedTargetVariants = fields.get("myTestedTargetVariants");
+    myHashCode = fields.getInt("myHashCode");
+  }
+
   @NotNull
   private static Collection<TestedTargetVariant> getTestedTargetVariants(@NotNull Variant variant, @NotNull ModelCache modelCache) {
     try {
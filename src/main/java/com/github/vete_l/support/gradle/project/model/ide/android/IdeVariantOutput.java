@@ -55,6 +55,18 @@ public abstract class IdeVariantOutput extends IdeModel implements VariantOutput
     myHashCode = calculateHashCode();
   }
 
+  // Creates an instance from the values of its fields read from a snapshot, see IdeModelSnapshotCodec.
+  protected IdeVariantOutput(@NotNull IdeModelSnapshotCodec.Fields fields) {
+    super(fields);
+    myOutputs = fields.get("myOutputs");
+    myFilterTypes = fields.get("myFilterTypes");
+    myFilters = fields.get("myFilters");
+    myMainOutputFile = fields.get("myMainOutputFile");
+    myOutputType = fields.get("myOutputType");
+    myVersionCode = fields.getInt("myVersionCode");
+    myHashCode = fields.getInt("myHashCode");
+  }
+
   @Nullable
   private static Collection<FilterData> copyFilters(@NotNull VariantOutput output, @NotNull ModelCache modelCache) {
     try {
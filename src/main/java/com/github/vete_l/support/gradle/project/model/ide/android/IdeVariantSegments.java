@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.vete_l.support.gradle.project.model.ide.android;
+
+import com.android.builder.model.Variant;
+import com.google.common.collect.ImmutableList;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * The variants of a cached {@link IdeAndroidProject}, each one stored as a separately addressable snapshot segment (see
+ * {@link IdeModelSnapshotCodec}.) A variant is only decoded the first time it is requested, so reopening a project from the sync cache
+ * only pays for the variants that are actually used (typically, the selected one.)
+ */
+public final class IdeVariantSegments {
+  @NotNull private final List<String> myNames;
+  @NotNull private final Map<String, Integer> myIndicesByName;
+  @NotNull private final int[] myOffsets;
+  @NotNull private final int[] myLengths;
+  @NotNull private final ByteBuffer mySegments;
+  @NotNull private final IdeVariant[] myDecodedVariants;
+
+  private IdeVariantSegments(@NotNull List<String> names, @NotNull int[] offsets, @NotNull int[] lengths, @NotNull ByteBuffer segments) {
+    myNames = names;
+    myOffsets = offsets;
+    myLengths = lengths;
+    mySegments = segments;
+    myDecodedVariants = new IdeVariant[names.size()];
+    myIndicesByName = new HashMap<>();
+    for (int i = 0; i < names.size(); i++) {
+      myIndicesByName.put(names.get(i), i);
+    }
+  }
+
+  /**
+   * Writes the given variants as an index (names, offsets and lengths) followed by one segment per variant. If the variants were read by
+   * {@link #read(DataInput)} and not modified, the segments are copied as they are, without decoding them.
+   */
+  public static void write(@NotNull Collection<Variant> variants, @NotNull DataOutput out) throws IOException {
+    if (variants instanceof VariantList) {
+      ((VariantList)variants).getSegments().writeTo(out);
+      return;
+    }
+    List<String> names = new ArrayList<>(variants.size());
+    List<byte[]> segments = new ArrayList<>(variants.size());
+    for (Variant variant : variants) {
+      names.add(variant.getName());
+      segments.add(IdeModelSnapshotCodec.encode((IdeVariant)variant));
+    }
+    out.writeInt(names.size());
+    for (int i = 0; i < names.size(); i++) {
+      out.writeUTF(names.get(i));
+      out.writeInt(segments.get(i).length);
+    }
+    for (byte[] segment : segments) {
+      out.write(segment);
+    }
+  }
+
+  private void writeTo(@NotNull DataOutput out) throws IOException {
+    out.writeInt(myNames.size());
+    for (int i = 0; i < myNames.size(); i++) {
+      out.writeUTF(myNames.get(i));
+      out.writeInt(myLengths[i]);
+    }
+    for (int i = 0; i < myNames.size(); i++) {
+      out.write(getSegment(i));
+    }
+  }
+
+  /**
+   * Reads the index and the (still encoded) segments written by {@link #write(Collection, DataOutput)}.
+   */
+  @NotNull
+  public static IdeVariantSegments read(@NotNull DataInput in) throws IOException {
+    int count = in.readInt();
+    if (count < 0) {
+      throw new StreamCorruptedException("Invalid variant count: " + count);
+    }
+    List<String> names = new ArrayList<>(count);
+    int[] offsets = new int[count];
+    int[] lengths = new int[count];
+    int totalLength = 0;
+    for (int i = 0; i < count; i++) {
+      names.add(in.readUTF());
+      lengths[i] = in.readInt();
+      if (lengths[i] < 0) {
+        throw new StreamCorruptedException("Invalid variant segment length: " + lengths[i]);
+      }
+      offsets[i] = totalLength;
+      totalLength += lengths[i];
+    }
+    byte[] segments = new byte[totalLength];
+    in.readFully(segments);
+    return new IdeVariantSegments(ImmutableList.copyOf(names), offsets, lengths, ByteBuffer.wrap(segments).asReadOnlyBuffer());
+  }
+
+  @NotNull
+  private byte[] getSegment(int index) {
+    byte[] segment = new byte[myLengths[index]];
+    ByteBuffer buffer = mySegments.duplicate();
+    buffer.position(myOffsets[index]);
+    buffer.get(segment);
+    return segment;
+  }
+
+  /**
+   * @return the names of all the variants, without decoding any of them.
+   */
+  @NotNull
+  public List<String> getNames() {
+    return myNames;
+  }
+
+  /**
+   * @return the variant with the given name, decoding it if this is the first time it is requested; or {@code null} if there is no
+   * variant with the given name.
+   */
+  @Nullable
+  public IdeVariant find(@NotNull String name) {
+    Integer index = myIndicesByName.get(name);
+    return index != null ? get(index) : null;
+  }
+
+  /**
+   * Passes each variant to the given consumer, one at a time. Variants that were not requested before are decoded but not kept, so walking
+   * all the variants (e.g. to collect their source providers) does not keep all of them in memory.
+   */
+  public void forEach(@NotNull Consumer<IdeVariant> action) {
+    for (int i = 0; i < myNames.size(); i++) {
+      IdeVariant variant;
+      synchronized (this) {
+        variant = myDecodedVariants[i];
+      }
+      action.accept(variant != null ? variant : decode(i));
+    }
+  }
+
+  @NotNull
+  private synchronized IdeVariant get(int index) {
+    IdeVariant variant = myDecodedVariants[index];
+    if (variant == null) {
+      variant = decode(index);
+      myDecodedVariants[index] = variant;
+    }
+    return variant;
+  }
+
+  @NotNull
+  private IdeVariant decode(int index) {
+    try {
+      return (IdeVariant)IdeModelSnapshotCodec.decode(getSegment(index));
+    }
+    catch (IOException e) {
+      // The segments were already read in full when the project was loaded, so this can only be caused by a corrupted cache.
+      throw new IllegalStateException("Failed to decode cached variant '" + myNames.get(index) + "'", e);
+    }
+  }
+
+  /**
+   * @return the number of variants decoded so far.
+   */
+  public synchronized int getDecodedCount() {
+    int count = 0;
+    for (IdeVariant variant : myDecodedVariants) {
+      if (variant != null) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * @return a list view of all the variants. Elements are decoded as they are accessed.
+   */
+  @NotNull
+  public List<Variant> asList() {
+    return new VariantList(this);
+  }
+
+  private static class VariantList extends AbstractList<Variant> implements Serializable {
+    @NotNull private final transient IdeVariantSegments mySegments;
+
+    VariantList(@NotNull IdeVariantSegments segments) {
+      mySegments = segments;
+    }
+
+    @NotNull
+    IdeVariantSegments getSegments() {
+      return mySegments;
+    }
+
+    @Override
+    public Variant get(int index) {
+      return mySegments.get(index);
+    }
+
+    @Override
+    public int size() {
+      return mySegments.myNames.size();
+    }
+
+    // When serialized as part of a plain object graph, the variants are decoded and written as a regular list.
+    private Object writeReplace() {
+      return ImmutableList.copyOf(this);
+    }
+  }
+}
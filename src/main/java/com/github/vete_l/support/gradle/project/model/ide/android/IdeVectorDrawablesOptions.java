@@ -41,6 +41,14 @@ public final class IdeVectorDrawablesOptions extends IdeModel implements VectorD
     myHashCode = calculateHashCode();
   }
 
+  // Creates an instance from the values of its fields read from a snapshot, see IdeModelSnapshotCodec.
+  IdeVectorDrawablesOptions(@NotNull IdeModelSnapshotCodec.Fields fields) {
+    super(fields);
+    myGeneratedDensities = fields.get("myGeneratedDensities");
+    myUseSupportLibrary = fields.get("myUseSupportLibrary");
+    myHashCode = fields.getInt("myHashCode");
+  }
+
   @Override
   @Nullable
   public Set<String> getGeneratedDensities() {
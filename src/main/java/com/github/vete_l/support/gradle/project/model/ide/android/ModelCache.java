@@ -16,20 +16,208 @@
 package com.github.vete_l.support.gradle.project.model.ide.android;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.TestOnly;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 
+/**
+ * Stores the copies of Gradle tooling models, keyed by the original model, so objects shared in the original graph are also shared in the
+ * copy.
+ * <p>
+ * This cache is safe to use from several threads at once. A model being copied by one thread is only visible to that thread until its copy
+ * is complete; other threads asking for the same model wait for that copy instead of creating their own. Recursive lookups from the thread
+ * doing the copy (e.g. {@link IdeModel} registering itself, or a model referring back to its parent) see the copy in progress.
+ * <p>
+ * Two threads copying models that refer to each other could wait for each other forever. Before waiting, a thread follows the chain of
+ * threads the owner of the copy is waiting for: if the chain leads back to it, it makes its own copy of the model instead, which is not
+ * shared with the other threads.
+ */
 public class ModelCache {
-  @NotNull private final Map<Object, Object> myData = new HashMap<>();
+  /**
+   * The lifetime of a cache: the longer the scope, the more sub-objects can be shared between the copies made with it.
+   */
+  public enum Scope {
+    SYNC, MODULE, ARTIFACT
+  }
+
+  @NotNull private final Scope myScope;
+  @NotNull private final Map<Object, Object> myData = new ConcurrentHashMap<>();
+  @NotNull private final Map<Object, PendingCopy> myPendingCopies = new ConcurrentHashMap<>();
+  // The copy each thread is waiting for. Guarded by itself.
+  @NotNull private final Map<Thread, PendingCopy> myWaitingThreads = new HashMap<>();
+  // Copies a thread makes of models also being copied by a thread waiting for it (see class comment.)
+  @NotNull private final ThreadLocal<Map<Object, PendingCopy>> myLocalCopies = ThreadLocal.withInitial(HashMap::new);
+
+  @NotNull private final AtomicLong myHitCount = new AtomicLong();
+  @NotNull private final AtomicLong myMissCount = new AtomicLong();
+
+  public ModelCache() {
+    this(Scope.ARTIFACT);
+  }
+
+  public ModelCache(@NotNull Scope scope) {
+    myScope = scope;
+  }
 
   @SuppressWarnings("unchecked")
   @NotNull
   public <K, V> V computeIfAbsent(@NotNull K key, @NotNull Function<K, V> mappingFunction) {
-    Object result = myData.computeIfAbsent(key, o -> mappingFunction.apply((K)o));
-    return (V)result;
+    Object result = myData.get(key);
+    if (result != null) {
+      myHitCount.incrementAndGet();
+      return (V)result;
+    }
+
+    Map<Object, PendingCopy> localCopies = myLocalCopies.get();
+    PendingCopy localCopy = localCopies.get(key);
+    if (localCopy != null) {
+      return getRecursively(localCopy, key, mappingFunction);
+    }
+
+    Thread currentThread = Thread.currentThread();
+    PendingCopy newCopy = new PendingCopy(currentThread);
+    PendingCopy pendingCopy = myPendingCopies.putIfAbsent(key, newCopy);
+    if (pendingCopy != null) {
+      if (pendingCopy.myOwner == currentThread) {
+        return getRecursively(pendingCopy, key, mappingFunction);
+      }
+      // Another thread is copying this model, wait for it unless it is (directly or not) waiting for this thread.
+      if (startWaiting(currentThread, pendingCopy)) {
+        try {
+          myHitCount.incrementAndGet();
+          return (V)pendingCopy.await();
+        }
+        finally {
+          stopWaiting(currentThread);
+        }
+      }
+      myMissCount.incrementAndGet();
+      localCopy = new PendingCopy(currentThread);
+      localCopies.put(key, localCopy);
+      try {
+        V value = mappingFunction.apply(key);
+        if (localCopy.myValue == null) {
+          localCopy.myValue = value;
+        }
+        return (V)localCopy.myValue;
+      }
+      finally {
+        localCopies.remove(key);
+      }
+    }
+
+    boolean copied = false;
+    try {
+      result = myData.get(key);
+      if (result != null) {
+        // Another thread finished copying this model between the two lookups.
+        myHitCount.incrementAndGet();
+        newCopy.myValue = result;
+      }
+      else {
+        myMissCount.incrementAndGet();
+        V value = mappingFunction.apply(key);
+        if (newCopy.myValue == null) {
+          newCopy.myValue = value;
+        }
+        myData.put(key, newCopy.myValue);
+      }
+      copied = true;
+      return (V)newCopy.myValue;
+    }
+    finally {
+      if (!copied) {
+        newCopy.myValue = null;
+      }
+      myPendingCopies.remove(key);
+      newCopy.complete();
+    }
+  }
+
+  /**
+   * Lookup from the thread copying the given model, while copying it (e.g. a model referring back to its parent.)
+   */
+  @SuppressWarnings("unchecked")
+  @NotNull
+  private <K, V> V getRecursively(@NotNull PendingCopy pendingCopy, @NotNull K key, @NotNull Function<K, V> mappingFunction) {
+    if (pendingCopy.myValue == null) {
+      pendingCopy.myValue = mappingFunction.apply(key);
+    }
+    else {
+      myHitCount.incrementAndGet();
+    }
+    return (V)pendingCopy.myValue;
+  }
+
+  /**
+   * Records that the given thread is about to wait for the given copy, unless the owner of the copy is (directly or through other threads)
+   * waiting for the given thread.
+   *
+   * @return {@code true} if the given thread can wait for the copy, {@code false} if waiting would never end.
+   */
+  private boolean startWaiting(@NotNull Thread thread, @NotNull PendingCopy pendingCopy) {
+    synchronized (myWaitingThreads) {
+      // Checking and recording under the same lock ensures that, of the threads closing a cycle, at least the last one sees it.
+      Thread owner = pendingCopy.myOwner;
+      while (owner != null) {
+        if (owner == thread) {
+          return false;
+        }
+        PendingCopy awaited = myWaitingThreads.get(owner);
+        owner = awaited != null ? awaited.myOwner : null;
+      }
+      myWaitingThreads.put(thread, pendingCopy);
+      return true;
+    }
+  }
+
+  private void stopWaiting(@NotNull Thread thread) {
+    synchronized (myWaitingThreads) {
+      myWaitingThreads.remove(thread);
+    }
+  }
+
+  @NotNull
+  public Scope getScope() {
+    return myScope;
+  }
+
+  /**
+   * @return the number of copies stored in this cache.
+   */
+  public int size() {
+    return myData.size();
+  }
+
+  public long getHitCount() {
+    return myHitCount.get();
+  }
+
+  public long getMissCount() {
+    return myMissCount.get();
+  }
+
+  /**
+   * @return the ratio of lookups that returned an existing copy, or 0 if there were no lookups.
+   */
+  public double getHitRate() {
+    long hits = getHitCount();
+    long total = hits + getMissCount();
+    return total == 0 ? 0 : (double)hits / total;
+  }
+
+  /**
+   * Removes all the copies from this cache, typically when the sync, module or artifact it is scoped to has been processed.
+   */
+  public void clear() {
+    myData.clear();
   }
 
   @TestOnly
@@ -37,4 +225,56 @@ public class ModelCache {
   Map<Object, Object> getData() {
     return myData;
   }
+
+  @Override
+  public String toString() {
+    return "ModelCache{" +
+           "scope=" + myScope +
+           ", size=" + size() +
+           ", hitRate=" + getHitRate() +
+           '}';
+  }
+
+  private static class PendingCopy implements ForkJoinPool.ManagedBlocker {
+    @NotNull private final Thread myOwner;
+    @NotNull private final CountDownLatch myLatch = new CountDownLatch(1);
+    // Only written by the owner thread; read by other threads after the latch is released.
+    @Nullable private volatile Object myValue;
+
+    PendingCopy(@NotNull Thread owner) {
+      myOwner = owner;
+    }
+
+    void complete() {
+      myLatch.countDown();
+    }
+
+    @Override
+    public boolean block() throws InterruptedException {
+      myLatch.await();
+      return true;
+    }
+
+    @Override
+    public boolean isReleasable() {
+      return myLatch.getCount() == 0;
+    }
+
+    @NotNull
+    Object await() {
+      try {
+        // Lets a fork-join pool start another thread while this one is blocked, so the copies already queued keep running.
+        ForkJoinPool.managedBlock(this);
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while waiting for a model copy", e);
+      }
+      Object value = myValue;
+      if (value == null) {
+        throw new IllegalStateException("The model copy failed in another thread");
+      }
+      return value;
+    }
+  }
 }
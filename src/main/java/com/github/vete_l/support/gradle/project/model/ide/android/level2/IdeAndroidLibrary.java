@@ -17,6 +17,7 @@ package com.github.vete_l.support.gradle.project.model.ide.android.level2;
 
 import com.android.builder.model.level2.Library;
 import com.android.tools.idea.gradle.project.model.ide.android.IdeModel;
+import com.android.tools.idea.gradle.project.model.ide.android.IdeModelSnapshotCodec;
 import com.android.tools.idea.gradle.project.model.ide.android.ModelCache;
 import org.gradle.tooling.model.UnsupportedMethodException;
 import org.jetbrains.annotations.NotNull;
@@ -92,6 +93,29 @@ public final class IdeAndroidLibrary extends IdeModel implements Library {
     myHashCode = calculateHashCode();
   }
 
+  // Creates an instance from the values of its fields read from a snapshot, see IdeModelSnapshotCodec.
+  IdeAndroidLibrary(@NotNull IdeModelSnapshotCodec.Fields fields) {
+    super(fields);
+    myArtifactAddress = fields.get("myArtifactAddress");
+    myFolder = fields.get("myFolder");
+    myManifest = fields.get("myManifest");
+    myJarFile = fields.get("myJarFile");
+    myResFolder = fields.get("myResFolder");
+    myAssetsFolder = fields.get("myAssetsFolder");
+    myLocalJars = fields.get("myLocalJars");
+    myJniFolder = fields.get("myJniFolder");
+    myAidlFolder = fields.get("myAidlFolder");
+    myRenderscriptFolder = fields.get("myRenderscriptFolder");
+    myProguardRules = fields.get("myProguardRules");
+    myLintJar = fields.get("myLintJar");
+    myExternalAnnotations = fields.get("myExternalAnnotations");
+    myPublicResources = fields.get("myPublicResources");
+    myArtifactFile = fields.get("myArtifactFile");
+    mySymbolFile = fields.get("mySymbolFile");
+    myType = fields.getInt("myType");
+    myHashCode = fields.getInt("myHashCode");
+  }
+
   @Override
   public int getType() {
     return myType;
@@ -25,6 +25,7 @@ import com.android.builder.model.level2.GlobalLibraryMap;
 import com.android.builder.model.level2.GraphItem;
 import com.android.builder.model.level2.Library;
 import com.android.ide.common.repository.GradleVersion;
+import com.android.tools.idea.gradle.project.model.ide.android.IdeLibraryPool;
 import com.android.tools.idea.gradle.project.model.ide.android.ModelCache;
 import com.android.tools.idea.gradle.project.sync.ng.NewGradleSync;
 import com.google.common.collect.ImmutableList;
@@ -34,6 +35,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import static com.android.builder.model.level2.Library.*;
@@ -47,11 +49,22 @@ public class IdeDependenciesFactory {
   // When creating IdeLevel2Dependencies, check if current library is available in this map,
   // if it's available, don't create new one, simple add reference to it.
   // If it's not available, create new instance and save to this map, so it can be reused the next time when the same library is added.
-  @NotNull private final Map<String, Library> myLibrariesById = new HashMap<>();
+  // New instances are interned in the IdeLibraryPool, so equal libraries are also shared across modules and syncs.
+  // This map is concurrent so artifacts from different modules can be copied in parallel.
+  @NotNull private final Map<String, Library> myLibrariesById = new ConcurrentHashMap<>();
 
-  @NotNull private final IdeLibraryFactory myLibraryFactory = new IdeLibraryFactory();
+  @NotNull private final IdeLibraryFactory myLibraryFactory;
   @NotNull private final BuildFolderPaths myBuildFolderPaths = new BuildFolderPaths();
 
+  public IdeDependenciesFactory() {
+    this(IdeLibraryPool.getInstance());
+  }
+
+  @VisibleForTesting
+  IdeDependenciesFactory(@NotNull IdeLibraryPool libraryPool) {
+    myLibraryFactory = new IdeLibraryFactory(libraryPool);
+  }
+
   /**
    * Finds and stores the path of the module's "build" folder.
    *
@@ -71,7 +84,7 @@ public class IdeDependenciesFactory {
   public IdeDependencies create(@NotNull BaseArtifact artifact, @Nullable GradleVersion modelVersion) {
     // Create a fresh model cache for this class, since current instance is based on dependencyGraphs or dependencies, which
     // have been copied in the constructor of IdeBaseArtifact.
-    ModelCache modelCache = new ModelCache();
+    ModelCache modelCache = new ModelCache(ModelCache.Scope.ARTIFACT);
     if (modelVersion != null && modelVersion.getMajor() >= 3 && NewGradleSync.isLevel4Model()) {
       return createFromDependencyGraphs(artifact.getDependencyGraphs());
     }
@@ -98,7 +111,7 @@ public class IdeDependenciesFactory {
     for (String projectPath : dependencies.getProjects()) {
       if (!visited.contains(projectPath)) {
         visited.add(projectPath);
-        myLibrariesById.computeIfAbsent(projectPath, id -> IdeLibraryFactory.create(projectPath, modelCache));
+        myLibrariesById.computeIfAbsent(projectPath, id -> myLibraryFactory.create(projectPath, modelCache));
       }
     }
     return createInstance(visited);
@@ -173,7 +186,7 @@ public class IdeDependenciesFactory {
    * @param globalLibraryMap GlobalLibraryMap model returned from Android Plugin.
    */
   public void setupGlobalLibraryMap(@NotNull GlobalLibraryMap globalLibraryMap) {
-    ModelCache modelCache = new ModelCache();
+    ModelCache modelCache = new ModelCache(ModelCache.Scope.SYNC);
     for (Library library : globalLibraryMap.getLibraries().values()) {
       myLibrariesById.computeIfAbsent(library.getArtifactAddress(), k -> myLibraryFactory.create(library, modelCache));
     }
@@ -16,6 +16,7 @@
 package com.github.vete_l.support.gradle.project.model.ide.android.level2;
 
 import com.android.builder.model.level2.Library;
+import com.android.tools.idea.gradle.project.model.ide.android.IdeModelSnapshotCodec;
 import com.google.common.collect.ImmutableList;
 import org.jetbrains.annotations.NotNull;
 
@@ -41,6 +42,14 @@ public class IdeDependenciesImpl implements IdeDependencies, Serializable {
     myHashCode = calculateHashCode();
   }
 
+  // Creates an instance from the values of its fields read from a snapshot, see IdeModelSnapshotCodec.
+  IdeDependenciesImpl(@NotNull IdeModelSnapshotCodec.Fields fields) {
+    myAndroidLibraries = fields.get("myAndroidLibraries");
+    myJavaLibraries = fields.get("myJavaLibraries");
+    myModuleDependencies = fields.get("myModuleDependencies");
+    myHashCode = fields.getInt("myHashCode");
+  }
+
   @Override
   @NotNull
   public Collection<Library> getAndroidLibraries() {
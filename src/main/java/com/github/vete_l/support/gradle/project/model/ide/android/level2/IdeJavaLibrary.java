@@ -18,6 +18,7 @@ package com.github.vete_l.support.gradle.project.model.ide.android.level2;
 
 import com.android.builder.model.level2.Library;
 import com.android.tools.idea.gradle.project.model.ide.android.IdeModel;
+import com.android.tools.idea.gradle.project.model.ide.android.IdeModelSnapshotCodec;
 import com.android.tools.idea.gradle.project.model.ide.android.ModelCache;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -49,6 +50,15 @@ public final class IdeJavaLibrary extends IdeModel implements Library {
     myHashCode = calculateHashCode();
   }
 
+  // Creates an instance from the values of its fields read from a snapshot, see IdeModelSnapshotCodec.
+  IdeJavaLibrary(@NotNull IdeModelSnapshotCodec.Fields fields) {
+    super(fields);
+    myArtifactAddress = fields.get("myArtifactAddress");
+    myArtifactFile = fields.get("myArtifactFile");
+    myType = fields.getInt("myType");
+    myHashCode = fields.getInt("myHashCode");
+  }
+
   @Override
   public int getType() {
     return myType;
@@ -18,10 +18,12 @@ package com.github.vete_l.support.gradle.project.model.ide.android.level2;
 import com.android.builder.model.AndroidLibrary;
 import com.android.builder.model.JavaLibrary;
 import com.android.builder.model.level2.Library;
+import com.android.tools.idea.gradle.project.model.ide.android.IdeLibraryPool;
 import com.android.tools.idea.gradle.project.model.ide.android.ModelCache;
 import com.android.utils.ImmutableCollectors;
 import com.google.common.collect.ImmutableList;
 import org.gradle.tooling.model.UnsupportedMethodException;
+import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -35,8 +37,17 @@ import static com.android.utils.FileUtils.join;
 
 /**
  * Creates instance of {@link Library}.
+ * <p>
+ * Created libraries, and the paths they contain, are interned in a {@link IdeLibraryPool}, so equal copies created by different
+ * artifacts or syncs share the same instance.
  */
 class IdeLibraryFactory {
+  @NotNull private final IdeLibraryPool myPool;
+
+  IdeLibraryFactory(@NotNull IdeLibraryPool pool) {
+    myPool = pool;
+  }
+
   /**
    * @param library    Instance of level 2 library returned by android plugin.
    * @param modelCache Cache that stores previously copied entries.
@@ -44,28 +55,34 @@ class IdeLibraryFactory {
    */
   @NotNull
   Library create(@NotNull Library library, @NotNull ModelCache modelCache) {
+    return myPool.intern(copy(library, modelCache));
+  }
+
+  @NotNull
+  private Library copy(@NotNull Library library, @NotNull ModelCache modelCache) {
     if (library.getType() == LIBRARY_ANDROID) {
       File folder = library.getFolder();
-      return new IdeAndroidLibrary(library, modelCache, library.getArtifactAddress(), library.getFolder(),
+      return new IdeAndroidLibrary(library, modelCache, intern(library.getArtifactAddress()), library.getFolder(),
                                    getFullPath(folder, library.getManifest()), getFullPath(folder, library.getJarFile()),
                                    getFullPath(folder, library.getResFolder()), getFullPath(folder, library.getAssetsFolder()),
                                    getLocalJars(library, folder), getFullPath(folder, library.getJniFolder()),
                                    getFullPath(folder, library.getAidlFolder()), getFullPath(folder, library.getRenderscriptFolder()),
                                    getFullPath(folder, library.getProguardRules()), getFullPath(folder, library.getLintJar()),
                                    getFullPath(folder, library.getExternalAnnotations()), getFullPath(folder, library.getPublicResources()),
-                                   library.getArtifact(), library.getSymbolFile());
+                                   library.getArtifact(), intern(library.getSymbolFile()));
     }
     if (library.getType() == LIBRARY_JAVA) {
-      return new IdeJavaLibrary(library.getArtifactAddress(), library.getArtifact(), modelCache, library);
+      return new IdeJavaLibrary(intern(library.getArtifactAddress()), library.getArtifact(), modelCache, library);
     }
     if (library.getType() == LIBRARY_MODULE) {
-      return new IdeModuleLibrary(library, library.getArtifactAddress(), modelCache, library.getProjectPath(), library.getVariant());
+      return new IdeModuleLibrary(library, intern(library.getArtifactAddress()), modelCache, library.getProjectPath(),
+                                  library.getVariant());
     }
     throw new UnsupportedOperationException("Unknown library type " + library.getType());
   }
 
   @NotNull
-  private static ImmutableList<String> getLocalJars(@NotNull Library library, @NotNull File libraryFolderPath) {
+  private ImmutableList<String> getLocalJars(@NotNull Library library, @NotNull File libraryFolderPath) {
     return library.getLocalJars().stream().map(jar -> getFullPath(libraryFolderPath, jar)).collect(ImmutableCollectors.toImmutableList());
   }
 
@@ -79,6 +96,13 @@ class IdeLibraryFactory {
   Library create(@NotNull AndroidLibrary androidLibrary,
                  @NotNull BuildFolderPaths moduleBuildDirs,
                  @NotNull ModelCache modelCache) {
+    return myPool.intern(copy(androidLibrary, moduleBuildDirs, modelCache));
+  }
+
+  @NotNull
+  private Library copy(@NotNull AndroidLibrary androidLibrary,
+                       @NotNull BuildFolderPaths moduleBuildDirs,
+                       @NotNull ModelCache modelCache) {
     // If the dependency is a sub-module that wraps local aar, it should be considered as external dependency, i.e. type LIBRARY_ANDROID.
     // In AndroidLibrary, getProject() of such dependency returns non-null project name, but they should be converted to IdeLevel2AndroidLibrary.
     // Identify such case with the location of aar bundle.
@@ -90,20 +114,31 @@ class IdeLibraryFactory {
     }
     else {
       return new IdeAndroidLibrary(androidLibrary, modelCache, computeAddress(androidLibrary), androidLibrary.getFolder(),
-                                   androidLibrary.getManifest().getPath(), androidLibrary.getJarFile().getPath(),
-                                   androidLibrary.getResFolder().getPath(), androidLibrary.getAssetsFolder().getPath(),
-                                   androidLibrary.getLocalJars().stream().map(File::getPath).collect(Collectors.toList()),
-                                   androidLibrary.getJniFolder().getPath(), androidLibrary.getAidlFolder().getPath(),
-                                   androidLibrary.getRenderscriptFolder().getPath(), androidLibrary.getProguardRules().getPath(),
-                                   androidLibrary.getLintJar().getPath(), androidLibrary.getExternalAnnotations().getPath(),
-                                   androidLibrary.getPublicResources().getPath(), androidLibrary.getBundle(),
-                                   getSymbolFilePath(androidLibrary));
+                                   getPath(androidLibrary.getManifest()), getPath(androidLibrary.getJarFile()),
+                                   getPath(androidLibrary.getResFolder()), getPath(androidLibrary.getAssetsFolder()),
+                                   androidLibrary.getLocalJars().stream().map(this::getPath).collect(Collectors.toList()),
+                                   getPath(androidLibrary.getJniFolder()), getPath(androidLibrary.getAidlFolder()),
+                                   getPath(androidLibrary.getRenderscriptFolder()), getPath(androidLibrary.getProguardRules()),
+                                   getPath(androidLibrary.getLintJar()), getPath(androidLibrary.getExternalAnnotations()),
+                                   getPath(androidLibrary.getPublicResources()), androidLibrary.getBundle(),
+                                   intern(getSymbolFilePath(androidLibrary)));
     }
   }
 
   @NotNull
-  private static String getFullPath(@NotNull File libraryFolderPath, @NotNull String fileName) {
-    return join(libraryFolderPath, fileName).getPath();
+  private String getFullPath(@NotNull File libraryFolderPath, @NotNull String fileName) {
+    return intern(join(libraryFolderPath, fileName).getPath());
+  }
+
+  @NotNull
+  private String getPath(@NotNull File file) {
+    return intern(file.getPath());
+  }
+
+  @Contract("!null -> !null")
+  @Nullable
+  private String intern(@Nullable String path) {
+    return myPool.internPath(path);
   }
 
   @Nullable
@@ -123,6 +158,11 @@ class IdeLibraryFactory {
    */
   @NotNull
   Library create(@NotNull JavaLibrary javaLibrary, @NotNull ModelCache modelCache) {
+    return myPool.intern(copy(javaLibrary, modelCache));
+  }
+
+  @NotNull
+  private static Library copy(@NotNull JavaLibrary javaLibrary, @NotNull ModelCache modelCache) {
     String project = getProject(javaLibrary);
     if (project != null) {
       // Java modules don't have variant.
@@ -149,7 +189,7 @@ class IdeLibraryFactory {
    * @return An instance of {@link Library} of type LIBRARY_MODULE.
    */
   @NotNull
-  static Library create(@NotNull String projectPath, @NotNull ModelCache modelCache) {
-    return new IdeModuleLibrary(projectPath, projectPath, modelCache, projectPath, null);
+  Library create(@NotNull String projectPath, @NotNull ModelCache modelCache) {
+    return myPool.intern(new IdeModuleLibrary(projectPath, projectPath, modelCache, projectPath, null));
   }
 }
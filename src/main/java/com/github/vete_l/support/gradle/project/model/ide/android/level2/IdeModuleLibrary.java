@@ -17,6 +17,7 @@ package com.github.vete_l.support.gradle.project.model.ide.android.level2;
 
 import com.android.builder.model.level2.Library;
 import com.android.tools.idea.gradle.project.model.ide.android.IdeModel;
+import com.android.tools.idea.gradle.project.model.ide.android.IdeModelSnapshotCodec;
 import com.android.tools.idea.gradle.project.model.ide.android.ModelCache;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -51,6 +52,16 @@ public final class IdeModuleLibrary extends IdeModel implements Library {
     myHashCode = calculateHashCode();
   }
 
+  // Creates an instance from the values of its fields read from a snapshot, see IdeModelSnapshotCodec.
+  IdeModuleLibrary(@NotNull IdeModelSnapshotCodec.Fields fields) {
+    super(fields);
+    myArtifactAddress = fields.get("myArtifactAddress");
+    myProjectPath = fields.get("myProjectPath");
+    myVariant = fields.get("myVariant");
+    myType = fields.getInt("myType");
+    myHashCode = fields.getInt("myHashCode");
+  }
+
   @Override
   public int getType() {
     return myType;
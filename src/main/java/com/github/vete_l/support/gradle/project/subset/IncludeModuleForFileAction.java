@@ -42,7 +42,8 @@ public class IncludeModuleForFileAction extends AnAction {
     if (project != null) {
       file = findTarget(e, project);
       if (file != null) {
-        show = !isInSource(file, project);
+        // The source folders of the modules not included in the project are only checked once they have been indexed by a lookup.
+        show = !isInSource(file, project) && ProjectSubset.getInstance(project).mayContainSourceFile(file);
       }
     }
     Presentation presentation = e.getPresentation();
@@ -20,6 +20,7 @@ import com.android.tools.idea.gradle.project.model.AndroidModuleModel;
 import com.android.tools.idea.gradle.project.model.AndroidModuleModel.SourceFileContainerInfo;
 import com.android.tools.idea.gradle.project.model.GradleModuleModel;
 import com.android.tools.idea.gradle.project.model.JavaModuleModel;
+import com.android.tools.idea.gradle.project.model.SourceFolderIndex;
 import com.android.tools.idea.project.AndroidNotification;
 import com.android.tools.idea.gradle.project.GradleExperimentalSettings;
 import com.android.tools.idea.gradle.project.sync.idea.IdeaSyncPopulateProjectTask;
@@ -66,6 +67,11 @@ public class ProjectSubset {
 
   @NotNull private final Project myProject;
 
+  // Index of the source folders of the modules in the cached project data (and the data it was built from.) Rebuilt when the cached
+  // project data changes, i.e. after a sync.
+  @Nullable private DataNode<ProjectData> myIndexedProjectInfo;
+  @Nullable private SourceFolderIndex<ModuleSourceFolder> mySourceFolderIndex;
+
   @NotNull
   public static ProjectSubset getInstance(@NotNull Project project) {
     return ServiceManager.getService(project, ProjectSubset.class);
@@ -134,34 +140,24 @@ public class ProjectSubset {
       new Task.Modal(myProject, "Looking up Module", false) {
         @Override
         public void run(@NotNull ProgressIndicator indicator) {
-          List<ModuleSearchResult> results = Lists.newArrayList();
-
           String[] storedSelection = getSelection();
           Set<String> selection = storedSelection != null ? Sets.newHashSet(storedSelection) : Sets.newHashSet();
 
           List<DataNode<ModuleData>> selectedModules = Lists.newArrayList();
-
-          int doneCount = 0;
           for (DataNode<ModuleData> moduleNode : moduleInfos) {
-            indicator.setFraction(++doneCount / (double)moduleInfos.size());
-            ModuleData module = moduleNode.getData();
-
-            String name = module.getExternalName();
-            boolean selected = selection.contains(name);
-            if (selected) {
+            if (selection.contains(getNameOf(moduleNode))) {
               // This module is already included in the project. We need to mark it as "selected" so when we are done searching we don't
               // exclude it by accident.
               selectedModules.add(moduleNode);
             }
-            ModuleSearchResult result = containsSourceFile(moduleNode, file, selected);
-            if (result != null) {
-              // Even though the module is already included, we add it to the search results, because the module might not be the one that
-              // actually contains the file, and the user might need to exclude it in the case that the module that contains the file has
-              // the same path as the already-included module.
-              results.add(result);
-            }
           }
 
+          indicator.setIndeterminate(true);
+          // Even if a module is already included, it is part of the search results, because the module might not be the one that
+          // actually contains the file, and the user might need to exclude it in the case that the module that contains the file has the
+          // same path as the already-included module.
+          List<ModuleSearchResult> results = findModulesContainingSourceFile(projectInfo, file, selection);
+
           int resultCount = results.size();
           if (resultCount == 0) {
             // Nothing found.
@@ -185,32 +181,74 @@ public class ProjectSubset {
   }
 
   /**
-   * Checks in the Android and Java models to see if the module contains the given file.
+   * Checks in the Android and Java models to see which modules contain the given file in a source folder.
    *
-   * @param moduleInfos represents the module that is not included yet in the IDE.
+   * @param projectInfo the cached project data.
    * @param file        the given file.
-   * @param selected    indicates whether the module is included in the project.
-   * @return the result of the search, or {@code null} if this module does not contain the given file.
+   * @param selection   the names of the modules included in the project.
+   * @return the result of the search, with at most one result per module, in the order of the modules in the project data.
    */
-  @Nullable
-  private static ModuleSearchResult containsSourceFile(@NotNull DataNode<ModuleData> moduleInfos, @NotNull File file, boolean selected) {
-    DataNode<AndroidModuleModel> androidProjectNode = find(moduleInfos, ANDROID_MODEL);
-    if (androidProjectNode != null) {
-      AndroidModuleModel androidModel = androidProjectNode.getData();
-      SourceFileContainerInfo result = androidModel.containsSourceFile(file);
-      if (result != null) {
-        return new ModuleSearchResult(moduleInfos, result, selected);
+  @NotNull
+  private List<ModuleSearchResult> findModulesContainingSourceFile(@NotNull DataNode<ProjectData> projectInfo,
+                                                                   @NotNull File file,
+                                                                   @NotNull Set<String> selection) {
+    List<ModuleSearchResult> results = Lists.newArrayList();
+    Set<DataNode<ModuleData>> modulesFound = Collections.newSetFromMap(new IdentityHashMap<>());
+    // The first source folder found for a module is the one its Android model (if any) would have found.
+    for (ModuleSourceFolder sourceFolder : getSourceFolderIndex(projectInfo).findAll(file)) {
+      DataNode<ModuleData> moduleNode = sourceFolder.moduleNode;
+      if (modulesFound.add(moduleNode)) {
+        boolean selected = selection.contains(getNameOf(moduleNode));
+        results.add(new ModuleSearchResult(moduleNode, sourceFolder.containerInfo, selected));
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Indicates whether a module in the cached project data may contain the given file in a source folder. This check is cheap enough for
+   * action updates: if the source folders have not been indexed since the last sync, this method does not index them and returns
+   * {@code true}.
+   */
+  public boolean mayContainSourceFile(@NotNull VirtualFile virtualFile) {
+    DataNode<ProjectData> projectInfo = DataNodeCaches.getInstance(myProject).getCachedProjectData();
+    if (projectInfo == null) {
+      return false;
+    }
+    SourceFolderIndex<ModuleSourceFolder> index;
+    synchronized (this) {
+      if (myIndexedProjectInfo != projectInfo) {
+        return true;
       }
+      index = mySourceFolderIndex;
     }
+    return index == null || index.findFirst(virtualToIoFile(virtualFile)) != null;
+  }
 
-    DataNode<JavaModuleModel> javaProjectNode = find(moduleInfos, JAVA_MODULE_MODEL);
-    if (javaProjectNode != null) {
-      JavaModuleModel javaModuleModel = javaProjectNode.getData();
-      if (javaModuleModel.containsSourceFile(file)) {
-        return new ModuleSearchResult(moduleInfos, null, selected);
+  @NotNull
+  private synchronized SourceFolderIndex<ModuleSourceFolder> getSourceFolderIndex(@NotNull DataNode<ProjectData> projectInfo) {
+    SourceFolderIndex<ModuleSourceFolder> index = mySourceFolderIndex;
+    if (index != null && myIndexedProjectInfo == projectInfo) {
+      return index;
+    }
+    SourceFolderIndex<ModuleSourceFolder> newIndex = new SourceFolderIndex<>();
+    for (DataNode<ModuleData> moduleNode : findAll(projectInfo, MODULE)) {
+      DataNode<AndroidModuleModel> androidProjectNode = find(moduleNode, ANDROID_MODEL);
+      if (androidProjectNode != null) {
+        androidProjectNode.getData().forEachSourceFolder(
+          (folderPath, containerInfo) -> newIndex.add(folderPath, new ModuleSourceFolder(moduleNode, containerInfo)));
+      }
+      DataNode<JavaModuleModel> javaProjectNode = find(moduleNode, JAVA_MODULE_MODEL);
+      if (javaProjectNode != null) {
+        ModuleSourceFolder sourceFolder = new ModuleSourceFolder(moduleNode, null);
+        for (File folderPath : javaProjectNode.getData().getSourceFolderPaths()) {
+          newIndex.add(folderPath, sourceFolder);
+        }
       }
     }
-    return null;
+    myIndexedProjectInfo = projectInfo;
+    mySourceFolderIndex = newIndex;
+    return newIndex;
   }
 
   /**
@@ -416,6 +454,16 @@ public class ProjectSubset {
     return PropertiesComponent.getInstance(myProject).getValues(PROJECT_SUBSET_PROPERTY_NAME);
   }
 
+  private static class ModuleSourceFolder {
+    @NotNull final DataNode<ModuleData> moduleNode;
+    @Nullable final SourceFileContainerInfo containerInfo;
+
+    ModuleSourceFolder(@NotNull DataNode<ModuleData> moduleNode, @Nullable SourceFileContainerInfo containerInfo) {
+      this.moduleNode = moduleNode;
+      this.containerInfo = containerInfo;
+    }
+  }
+
   private static class ModuleSearchResult {
     @NotNull public final DataNode<ModuleData> moduleNode;
     @Nullable public final SourceFileContainerInfo containerInfo;
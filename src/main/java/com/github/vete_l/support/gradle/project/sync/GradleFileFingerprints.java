@@ -0,0 +1,284 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.vete_l.support.gradle.project.sync;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hashing;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.*;
+
+import static com.google.common.io.Files.asByteSource;
+import static com.intellij.openapi.util.io.FileUtil.getRelativePath;
+import static com.intellij.openapi.util.io.FileUtil.isAncestor;
+
+/**
+ * The fingerprints (size, timestamp and content hash) of the files a Gradle sync depends on: build.gradle files, settings.gradle,
+ * gradle.properties, local.properties, the Gradle wrapper properties and external native build files (e.g. CMakeLists.txt.)
+ * <p>
+ * Checking whether a file changed only reads its metadata. The file's content is hashed only if its size or timestamp differ from the ones
+ * recorded, so touching a file (e.g. switching VCS branches back and forth) does not make it "modified", and the cost of checking unchanged
+ * files does not depend on their size.
+ * <p>
+ * Paths inside the project's root folder are stored relative to it.
+ */
+public class GradleFileFingerprints implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  @NotNull private final Map<String, Fingerprint> myFingerprints = new LinkedHashMap<>();
+  @Nullable private transient File myRootDirPath;
+
+  public GradleFileFingerprints(@NotNull File rootDirPath) {
+    myRootDirPath = rootDirPath;
+  }
+
+  /**
+   * Must be called after this object has been deserialized, to resolve relative paths.
+   */
+  public void setRootDirPath(@NotNull File rootDirPath) {
+    myRootDirPath = rootDirPath;
+  }
+
+  /**
+   * Records the fingerprint of the given file. If the given {@code previous} fingerprints contain an entry for the file with the same size
+   * and timestamp, its hash is reused instead of reading the file again.
+   *
+   * @param file              the file to record. It does not need to exist: a missing file is recorded as such.
+   * @param moduleName        the name of the module the file belongs to, or {@code null} if the file affects the whole project.
+   * @param externalBuildFile whether the file is an external native build file (e.g. CMakeLists.txt.)
+   * @param previous          fingerprints recorded previously, if any.
+   */
+  public synchronized void add(@NotNull File file,
+                               @Nullable String moduleName,
+                               boolean externalBuildFile,
+                               @Nullable GradleFileFingerprints previous) throws IOException {
+    String key = getKey(file);
+    Fingerprint existing = myFingerprints.get(key);
+    if (existing != null) {
+      // The same file can be shared by several modules (e.g. a CMakeLists.txt.) Any change to it makes all of them dirty.
+      existing.setOwner(moduleName);
+      existing.myExternalBuildFile |= externalBuildFile;
+      return;
+    }
+    Fingerprint fingerprint = previous != null ? previous.findReusable(key, file) : null;
+    if (fingerprint == null) {
+      fingerprint = Fingerprint.compute(file);
+    }
+    fingerprint.setOwner(moduleName);
+    fingerprint.myExternalBuildFile = externalBuildFile;
+    myFingerprints.put(key, fingerprint);
+  }
+
+  @Nullable
+  private synchronized Fingerprint findReusable(@NotNull String key, @NotNull File file) {
+    Fingerprint fingerprint = myFingerprints.get(key);
+    if (fingerprint != null && fingerprint.hasSameMetadata(file)) {
+      return fingerprint.copy();
+    }
+    return null;
+  }
+
+  /**
+   * Compares the recorded fingerprints with the files on disk. Files with a different size or timestamp are hashed; if their content did not
+   * change, their new size and timestamp are recorded, so the next check does not need to hash them again.
+   *
+   * @param unsavedFilePaths the paths of files with unsaved changes in the IDE. These files are considered modified.
+   * @return the files that changed since their fingerprints were recorded.
+   */
+  @NotNull
+  public synchronized Changes findChanges(@NotNull Set<File> unsavedFilePaths) {
+    Set<String> unsavedKeys = new HashSet<>();
+    for (File unsavedFilePath : unsavedFilePaths) {
+      unsavedKeys.add(getKey(unsavedFilePath));
+    }
+    Changes changes = new Changes();
+    for (Map.Entry<String, Fingerprint> entry : myFingerprints.entrySet()) {
+      File file = getFile(entry.getKey());
+      Fingerprint fingerprint = entry.getValue();
+      if (unsavedKeys.contains(entry.getKey()) || isModified(file, fingerprint)) {
+        changes.add(file, fingerprint);
+      }
+    }
+    return changes;
+  }
+
+  private static boolean isModified(@NotNull File file, @NotNull Fingerprint fingerprint) {
+    if (fingerprint.hasSameMetadata(file)) {
+      return false;
+    }
+    Fingerprint current;
+    try {
+      current = Fingerprint.compute(file);
+    }
+    catch (IOException e) {
+      return true;
+    }
+    if (current.myHash != fingerprint.myHash || current.exists() != fingerprint.exists()) {
+      return true;
+    }
+    fingerprint.myLength = current.myLength;
+    fingerprint.myLastModified = current.myLastModified;
+    return false;
+  }
+
+  /**
+   * @return {@code true} if a fingerprint was recorded for the given file.
+   */
+  public synchronized boolean contains(@NotNull File file) {
+    return myFingerprints.containsKey(getKey(file));
+  }
+
+  public synchronized int size() {
+    return myFingerprints.size();
+  }
+
+  @NotNull
+  private String getKey(@NotNull File file) {
+    if (myRootDirPath != null && isAncestor(myRootDirPath, file, true)) {
+      String relativePath = getRelativePath(myRootDirPath, file);
+      if (relativePath != null) {
+        return relativePath;
+      }
+    }
+    return file.getAbsolutePath();
+  }
+
+  @NotNull
+  private File getFile(@NotNull String key) {
+    File file = new File(key);
+    if (!file.isAbsolute() && myRootDirPath != null) {
+      file = new File(myRootDirPath, key);
+    }
+    return file;
+  }
+
+  private synchronized void writeObject(@NotNull ObjectOutputStream out) throws IOException {
+    out.defaultWriteObject();
+  }
+
+  /**
+   * The files that changed since their fingerprints were recorded, and the modules they belong to.
+   */
+  public static class Changes {
+    @NotNull private final List<File> myModifiedFiles = new ArrayList<>();
+    @NotNull private final Set<String> myModifiedModules = new LinkedHashSet<>();
+    private boolean myProjectFilesModified;
+    private boolean myExternalBuildFilesModified;
+
+    private void add(@NotNull File file, @NotNull Fingerprint fingerprint) {
+      myModifiedFiles.add(file);
+      if (fingerprint.myProjectFile) {
+        myProjectFilesModified = true;
+      }
+      if (fingerprint.myModuleNames != null) {
+        myModifiedModules.addAll(fingerprint.myModuleNames);
+      }
+      if (fingerprint.myExternalBuildFile) {
+        myExternalBuildFilesModified = true;
+      }
+    }
+
+    public boolean isEmpty() {
+      return myModifiedFiles.isEmpty();
+    }
+
+    @NotNull
+    public List<File> getModifiedFiles() {
+      return myModifiedFiles;
+    }
+
+    /**
+     * @return the names of the modules whose build files (or external native build files) changed. If
+     * {@link #areProjectFilesModified()} returns {@code true}, all modules should be considered modified.
+     */
+    @NotNull
+    public Set<String> getModifiedModules() {
+      return ImmutableSet.copyOf(myModifiedModules);
+    }
+
+    /**
+     * @return {@code true} if a file that affects the whole project (e.g. settings.gradle or gradle.properties) changed.
+     */
+    public boolean areProjectFilesModified() {
+      return myProjectFilesModified;
+    }
+
+    public boolean areExternalBuildFilesModified() {
+      return myExternalBuildFilesModified;
+    }
+  }
+
+  private static class Fingerprint implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private long myLength;
+    private long myLastModified;
+    private long myHash;
+    @Nullable private Set<String> myModuleNames;
+    private boolean myProjectFile;
+    private boolean myExternalBuildFile;
+
+    @NotNull
+    static Fingerprint compute(@NotNull File file) throws IOException {
+      Fingerprint fingerprint = new Fingerprint();
+      if (file.isFile()) {
+        fingerprint.myLength = file.length();
+        fingerprint.myLastModified = file.lastModified();
+        fingerprint.myHash = asByteSource(file).hash(Hashing.murmur3_128()).asLong();
+      }
+      else {
+        fingerprint.myLength = -1;
+      }
+      return fingerprint;
+    }
+
+    boolean exists() {
+      return myLength >= 0;
+    }
+
+    boolean hasSameMetadata(@NotNull File file) {
+      if (!file.isFile()) {
+        return !exists();
+      }
+      return exists() && myLength == file.length() && myLastModified == file.lastModified();
+    }
+
+    void setOwner(@Nullable String moduleName) {
+      if (moduleName == null) {
+        myProjectFile = true;
+        return;
+      }
+      if (myModuleNames == null) {
+        myModuleNames = new TreeSet<>();
+      }
+      myModuleNames.add(moduleName);
+    }
+
+    @NotNull
+    Fingerprint copy() {
+      Fingerprint copy = new Fingerprint();
+      copy.myLength = myLength;
+      copy.myLastModified = myLastModified;
+      copy.myHash = myHash;
+      return copy;
+    }
+  }
+}
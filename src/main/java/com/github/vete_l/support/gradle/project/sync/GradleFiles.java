@@ -19,6 +19,7 @@ import com.android.tools.idea.gradle.project.model.NdkModuleModel;
 import com.android.tools.idea.gradle.util.GradleWrapper;
 import com.intellij.lang.properties.PropertiesFileType;
 import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.module.ModuleManager;
@@ -27,14 +28,16 @@ import com.intellij.openapi.util.Key;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiFile;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.plugins.groovy.GroovyFileType;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.*;
 
 import static com.android.SdkConstants.*;
-import static com.android.tools.idea.gradle.util.GradleUtil.getGradleBuildFile;
+import static com.android.tools.idea.gradle.util.GradleUtil.*;
 import static com.android.tools.idea.gradle.util.Projects.getBaseDirPath;
-import static com.intellij.openapi.vfs.VfsUtil.findFileByIoFile;
 import static com.intellij.openapi.vfs.VfsUtilCore.virtualToIoFile;
 
 public class GradleFiles {
@@ -42,6 +45,7 @@ public class GradleFiles {
 
   @NotNull private final Project myProject;
   @NotNull private final FileDocumentManager myDocumentManager;
+  @Nullable private volatile GradleFileFingerprints myFingerprints;
 
   @NotNull
   public static GradleFiles getInstance(@NotNull Project project) {
@@ -62,6 +66,9 @@ public class GradleFiles {
    *   <li>external build files (e.g. cmake files)</li>
    * </ul>
    * were modified after the given time.
+   * <p>
+   * Files recorded by {@link #updateFingerprints()} are compared by content (see {@link GradleFileFingerprints}); any other file is
+   * compared by timestamp.
    *
    * @param referenceTimeInMillis the given time, in milliseconds.
    * @return {@code true} if any of the Gradle files changed, {@code false} otherwise.
@@ -73,75 +80,113 @@ public class GradleFiles {
     }
     setExternalBuildFilesModified(false);
 
-    if (areFilesInProjectRootFolderModified(referenceTimeInMillis, FN_GRADLE_PROPERTIES, FN_SETTINGS_GRADLE)) {
-      return true;
+    Set<File> unsavedFilePaths = getUnsavedFilePaths();
+    GradleFileFingerprints fingerprints = myFingerprints;
+    if (fingerprints != null) {
+      GradleFileFingerprints.Changes changes = fingerprints.findChanges(unsavedFilePaths);
+      if (!changes.isEmpty()) {
+        setExternalBuildFilesModified(changes.areExternalBuildFilesModified());
+        return true;
+      }
+    }
+
+    // Files without fingerprint: modules added since the fingerprints were recorded, or no fingerprints at all (e.g. no sync yet.)
+    for (TrackedFile trackedFile : collectTrackedFiles()) {
+      File filePath = trackedFile.myFilePath;
+      if ((fingerprints != null && fingerprints.contains(filePath)) || !filePath.exists()) {
+        continue;
+      }
+      if (filePath.lastModified() > referenceTimeInMillis || unsavedFilePaths.contains(filePath)) {
+        setExternalBuildFilesModified(trackedFile.myExternalBuildFile);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Compares the files recorded by the last call to {@link #updateFingerprints()} with their current content.
+   *
+   * @return the changed files and the modules they belong to, or {@code null} if no fingerprints have been recorded yet.
+   */
+  @Nullable
+  public GradleFileFingerprints.Changes findChanges() {
+    GradleFileFingerprints fingerprints = myFingerprints;
+    return fingerprints != null ? fingerprints.findChanges(getUnsavedFilePaths()) : null;
+  }
+
+  /**
+   * Records the fingerprints of all the files a Gradle sync depends on, usually right after a successful sync. Files that did not change
+   * since the previous call are not read again.
+   *
+   * @return the recorded fingerprints.
+   */
+  @NotNull
+  public GradleFileFingerprints updateFingerprints() throws IOException {
+    GradleFileFingerprints fingerprints = new GradleFileFingerprints(getBaseDirPath(myProject));
+    GradleFileFingerprints previous = myFingerprints;
+    for (TrackedFile trackedFile : collectTrackedFiles()) {
+      fingerprints.add(trackedFile.myFilePath, trackedFile.myModuleName, trackedFile.myExternalBuildFile, previous);
     }
+    myFingerprints = fingerprints;
+    return fingerprints;
+  }
 
+  @Nullable
+  public GradleFileFingerprints getFingerprints() {
+    return myFingerprints;
+  }
+
+  /**
+   * Sets fingerprints recorded in a previous IDE session (e.g. when the project is reopened using cached Gradle models.)
+   */
+  public void setFingerprints(@Nullable GradleFileFingerprints fingerprints) {
+    myFingerprints = fingerprints;
+  }
+
+  @NotNull
+  private List<TrackedFile> collectTrackedFiles() {
+    List<TrackedFile> trackedFiles = new ArrayList<>();
+    File rootFolderPath = getBaseDirPath(myProject);
+    trackedFiles.add(new TrackedFile(getGradleSettingsFilePath(rootFolderPath), null, false));
+    trackedFiles.add(new TrackedFile(new File(rootFolderPath, FN_GRADLE_PROPERTIES), null, false));
+    trackedFiles.add(new TrackedFile(new File(rootFolderPath, FN_LOCAL_PROPERTIES), null, false));
+    File userSettingsFile = getGradleUserSettingsFile();
+    if (userSettingsFile != null) {
+      trackedFiles.add(new TrackedFile(userSettingsFile, null, false));
+    }
     GradleWrapper gradleWrapper = GradleWrapper.find(myProject);
     if (gradleWrapper != null) {
-      File propertiesFilePath = gradleWrapper.getPropertiesFilePath();
-      if (propertiesFilePath.exists()) {
-        long modified = propertiesFilePath.lastModified();
-        if (modified > referenceTimeInMillis) {
-          return true;
-        }
-        VirtualFile propertiesFile = gradleWrapper.getPropertiesFile();
-        if (propertiesFile != null && myDocumentManager.isFileModified(propertiesFile)) {
-          return true;
-        }
-      }
+      trackedFiles.add(new TrackedFile(gradleWrapper.getPropertiesFilePath(), null, false));
     }
 
     for (Module module : ModuleManager.getInstance(myProject).getModules()) {
       VirtualFile buildFile = getGradleBuildFile(module);
       if (buildFile != null) {
-        if (myDocumentManager.isFileModified(buildFile)) {
-          return true;
-        }
-        File buildFilePath = virtualToIoFile(buildFile);
-        if (buildFilePath.lastModified() > referenceTimeInMillis) {
-          return true;
-        }
+        trackedFiles.add(new TrackedFile(virtualToIoFile(buildFile), module.getName(), false));
       }
-
       NdkModuleModel ndkModuleModel = NdkModuleModel.get(module);
       if (ndkModuleModel != null) {
         for (File externalBuildFile : ndkModuleModel.getAndroidProject().getBuildFiles()) {
-          if (externalBuildFile.lastModified() > referenceTimeInMillis) {
-            setExternalBuildFilesModified(true);
-            return true;
-          }
-          // TODO find a better way to find a VirtualFile without refreshing the file systerm. It is expensive.
-          VirtualFile virtualFile = findFileByIoFile(externalBuildFile, true);
-          if (virtualFile != null && myDocumentManager.isFileModified(virtualFile)) {
-            setExternalBuildFilesModified(true);
-            return true;
-          }
+          trackedFiles.add(new TrackedFile(externalBuildFile, module.getName(), true));
         }
       }
     }
-
-    return false;
+    return trackedFiles;
   }
 
-  private boolean areFilesInProjectRootFolderModified(long referenceTimeInMillis, @NotNull String... fileNames) {
-    File rootFolderPath = getBaseDirPath(myProject);
-    for (String fileName : fileNames) {
-      File filePath = new File(rootFolderPath, fileName);
-      if (filePath.exists()) {
-        long modified = filePath.lastModified();
-        if (modified > referenceTimeInMillis) {
-          return true;
-        }
-        VirtualFile rootFolder = myProject.getBaseDir();
-        assert rootFolder != null;
-        VirtualFile virtualFile = rootFolder.findChild(fileName);
-        if (virtualFile != null && myDocumentManager.isFileModified(virtualFile)) {
-          return true;
-        }
+  // Looking up the VirtualFile of each tracked file to ask whether it has unsaved changes is expensive (it may refresh the file system.)
+  // Instead, go through the few documents with unsaved changes.
+  @NotNull
+  private Set<File> getUnsavedFilePaths() {
+    Set<File> unsavedFilePaths = new HashSet<>();
+    for (Document document : myDocumentManager.getUnsavedDocuments()) {
+      VirtualFile file = myDocumentManager.getFile(document);
+      if (file != null && file.isInLocalFileSystem()) {
+        unsavedFilePaths.add(virtualToIoFile(file));
       }
     }
-    return false;
+    return unsavedFilePaths;
   }
 
   private void setExternalBuildFilesModified(boolean changed) {
@@ -168,4 +213,16 @@ public class GradleFiles {
 
     return false;
   }
+
+  private static class TrackedFile {
+    @NotNull final File myFilePath;
+    @Nullable final String myModuleName;
+    final boolean myExternalBuildFile;
+
+    TrackedFile(@NotNull File filePath, @Nullable String moduleName, boolean externalBuildFile) {
+      myFilePath = filePath;
+      myModuleName = moduleName;
+      myExternalBuildFile = externalBuildFile;
+    }
+  }
 }
@@ -28,6 +28,7 @@ import com.android.tools.idea.project.AndroidNotification;
 import com.android.tools.idea.project.AndroidProjectInfo;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableSet;
 import com.google.wireless.android.sdk.stats.GradleSyncStats;
 import com.intellij.openapi.application.Application;
 import com.intellij.openapi.application.ApplicationManager;
@@ -53,10 +54,15 @@ import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.TestOnly;
 
 import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 
 import static com.android.SdkConstants.FN_BUILD_GRADLE;
 import static com.android.tools.idea.gradle.util.GradleUtil.GRADLE_SYSTEM_ID;
 import static com.android.tools.idea.gradle.util.GradleUtil.clearStoredGradleJvmArgs;
+import static com.android.tools.idea.gradle.util.GradleUtil.getGradlePath;
 import static com.android.tools.idea.gradle.util.Projects.setSyncRequestedDuringBuild;
 import static com.google.common.base.Strings.nullToEmpty;
 import static com.google.wireless.android.sdk.stats.GradleSyncStats.Trigger.TRIGGER_UNKNOWN;
@@ -104,6 +110,40 @@ public class GradleSyncInvoker {
     requestProjectSync(project, new Request().setTrigger(trigger), listener);
   }
 
+  /**
+   * Requests a sync of the modules whose build files changed since the last sync, and of the modules that depend on them. If a file that
+   * affects the whole project changed (e.g. settings.gradle,) or if partial syncs are not supported, the whole project is synced.
+   */
+  public void requestModifiedModulesSync(@NotNull Project project,
+                                         @NotNull GradleSyncStats.Trigger trigger,
+                                         @Nullable GradleSyncListener listener) {
+    Request request = new Request().setTrigger(trigger);
+    // After a failed sync, modules may have been left without models: sync the whole project.
+    if (NewGradleSync.isEnabled() && !GradleSyncState.getInstance(project).lastSyncFailedOrHasIssues()) {
+      GradleFileFingerprints.Changes changes = GradleFiles.getInstance(project).findChanges();
+      if (changes != null && !changes.isEmpty() && !changes.areProjectFilesModified()) {
+        request.setModuleGradlePaths(getGradlePaths(project, changes.getModifiedModules()));
+      }
+    }
+    requestProjectSync(project, request, listener);
+  }
+
+  @NotNull
+  private static Set<String> getGradlePaths(@NotNull Project project, @NotNull Collection<String> moduleNames) {
+    Set<String> gradlePaths = new HashSet<>();
+    ModuleManager moduleManager = ModuleManager.getInstance(project);
+    for (String moduleName : moduleNames) {
+      Module module = moduleManager.findModuleByName(moduleName);
+      String gradlePath = module != null ? getGradlePath(module) : null;
+      if (gradlePath == null) {
+        // Unknown module: sync the whole project.
+        return Collections.emptySet();
+      }
+      gradlePaths.add(gradlePath);
+    }
+    return gradlePaths;
+  }
+
   public void requestProjectSync(@NotNull Project project, @NotNull Request request, @Nullable GradleSyncListener listener) {
     if (GradleSyncState.getInstance(project).isSyncInProgress()) {
       return;
@@ -262,6 +302,7 @@ public class GradleSyncInvoker {
     private boolean myNewOrImportedProject;
     private boolean mySkipAndroidPluginUpgrade;
     private GradleSyncStats.Trigger myTrigger = TRIGGER_UNKNOWN;
+    @NotNull private Set<String> myModuleGradlePaths = Collections.emptySet();
 
     public boolean isRunInBackground() {
       return myRunInBackground;
@@ -334,6 +375,23 @@ public class GradleSyncInvoker {
       return this;
     }
 
+    /**
+     * @return the Gradle paths of the modules to sync, or an empty set if the whole project should be synced.
+     */
+    @NotNull
+    public Set<String> getModuleGradlePaths() {
+      return myModuleGradlePaths;
+    }
+
+    /**
+     * Restricts the sync to the modules with the given Gradle paths, and to the modules that depend on them. Only supported by the new
+     * Gradle sync; other implementations sync the whole project.
+     */
+    @NotNull
+    public Request setModuleGradlePaths(@NotNull Collection<String> moduleGradlePaths) {
+      myModuleGradlePaths = ImmutableSet.copyOf(moduleGradlePaths);
+      return this;
+    }
 
     @NotNull
     public ProgressExecutionMode getProgressExecutionMode() {
@@ -354,13 +412,14 @@ public class GradleSyncInvoker {
              myGenerateSourcesOnSuccess == request.myGenerateSourcesOnSuccess &&
              myUseCachedGradleModels == request.myUseCachedGradleModels &&
              myNewOrImportedProject == request.myNewOrImportedProject &&
-             myTrigger == request.myTrigger;
+             myTrigger == request.myTrigger &&
+             myModuleGradlePaths.equals(request.myModuleGradlePaths);
     }
 
     @Override
     public int hashCode() {
       return Objects.hashCode(myRunInBackground, myCleanProject, myGenerateSourcesOnSuccess, myUseCachedGradleModels,
-                              myNewOrImportedProject, myTrigger);
+                              myNewOrImportedProject, myTrigger, myModuleGradlePaths);
     }
 
     @Override
@@ -372,6 +431,7 @@ public class GradleSyncInvoker {
              ", myUseCachedGradleModels=" + myUseCachedGradleModels +
              ", myNewOrImportedProject=" + myNewOrImportedProject +
              ", myTrigger=" + myTrigger +
+             ", myModuleGradlePaths=" + myModuleGradlePaths +
              '}';
     }
   }
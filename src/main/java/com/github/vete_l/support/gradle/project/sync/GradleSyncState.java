@@ -47,6 +47,8 @@ import org.jetbrains.android.facet.AndroidFacet;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.jps.incremental.Utils;
 
+import java.io.IOException;
+
 import static com.google.wireless.android.sdk.stats.AndroidStudioEvent.EventCategory.GRADLE_SYNC;
 import static com.google.wireless.android.sdk.stats.AndroidStudioEvent.EventKind.*;
 import static com.google.wireless.android.sdk.stats.GradleSyncStats.Trigger.TRIGGER_UNKNOWN;
@@ -255,6 +257,17 @@ public class GradleSyncState {
     }
   }
 
+  private void recordGradleFileFingerprints() {
+    try {
+      myGradleFiles.updateFingerprints();
+    }
+    catch (IOException e) {
+      // Without fingerprints, Gradle files are compared by timestamp.
+      myGradleFiles.setFingerprints(null);
+      LOG.info("Failed to record the fingerprints of Gradle files", e);
+    }
+  }
+
   public void syncFailed(@NotNull String message) {
     long syncEndTimestamp = System.currentTimeMillis();
     // If mySyncStartedTimestamp is -1, that means sync has not started or syncFailed has been called for this invocation.
@@ -292,6 +305,7 @@ public class GradleSyncState {
       return;
     }
     setSyncEndedTimeStamp(syncEndTimestamp);
+    recordGradleFileFingerprints();
     String msg = String.format("Gradle sync finished in %1$s", getFormattedSyncDuration(syncEndTimestamp));
     addInfoToEventLog(msg);
     LOG.info(msg);
@@ -430,6 +444,13 @@ public class GradleSyncState {
     return myGradleFiles.areGradleFilesModified(lastSync) ? ThreeState.YES : ThreeState.NO;
   }
 
+  /**
+   * @return the time when the sync in progress started, or a negative number if there is no sync in progress.
+   */
+  public long getSyncStartedTimestamp() {
+    return mySyncStartedTimestamp;
+  }
+
   @NotNull
   public GradleSyncSummary getSummary() {
     return mySummary;
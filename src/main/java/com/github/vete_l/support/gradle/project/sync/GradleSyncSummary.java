@@ -19,8 +19,12 @@ import com.android.annotations.Nullable;
 import com.android.ide.common.repository.GradleVersion;
 import com.android.tools.idea.gradle.project.sync.messages.GradleSyncMessages;
 import com.intellij.openapi.project.Project;
+import com.google.common.collect.ImmutableMap;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 public class GradleSyncSummary {
   @NotNull private final Project myProject;
 
@@ -32,6 +36,11 @@ public class GradleSyncSummary {
   private boolean mySyncErrorsFound;
   private boolean myWrongJdkFound;
 
+  /**
+   * Time spent in each stage of the sync, in milliseconds, in the order the stages were executed.
+   */
+  @NotNull private final Map<String, Long> myStageTimingsMs = new LinkedHashMap<>();
+
   public GradleSyncSummary(@NotNull Project project) {
     myProject = project;
     reset();
@@ -62,6 +71,15 @@ public class GradleSyncSummary {
     myWrongJdkFound = wrongJdkFound;
   }
 
+  public synchronized void addStageTiming(@NotNull String stage, long durationMs) {
+    myStageTimingsMs.merge(stage, durationMs, Long::sum);
+  }
+
+  @NotNull
+  public synchronized Map<String, Long> getStageTimingsMs() {
+    return ImmutableMap.copyOf(myStageTimingsMs);
+  }
+
   public boolean hasSyncErrors() {
     if (mySyncErrorsFound || myWrongJdkFound) {
       return true;
@@ -75,5 +93,8 @@ public class GradleSyncSummary {
     mySyncTimestamp = -1;
     mySyncErrorsFound = false;
     myWrongJdkFound = false;
+    synchronized (this) {
+      myStageTimingsMs.clear();
+    }
   }
 }
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.vete_l.support.gradle.project.sync.common;
+
+import com.android.builder.model.AndroidProject;
+import com.android.builder.model.BaseArtifact;
+import com.android.builder.model.Variant;
+import com.android.builder.model.level2.Library;
+import com.android.ide.common.repository.GradleVersion;
+import com.android.tools.idea.gradle.project.GradleExperimentalSettings;
+import com.android.tools.idea.gradle.project.model.ide.android.level2.IdeDependenciesFactory;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Computable;
+import org.jetbrains.android.facet.AndroidFacet;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+import static com.android.tools.idea.gradle.util.GradleUtil.getGradlePath;
+import static com.intellij.openapi.util.text.StringUtil.isEmpty;
+import static com.intellij.openapi.util.text.StringUtil.isNotEmpty;
+import static com.intellij.util.containers.ContainerUtil.getFirstItem;
+
+/**
+ * Finds the variants of each module that are needed when only the selected variants are kept after sync (see
+ * {@link GradleExperimentalSettings#SINGLE_VARIANT_SYNC}): the variant selected in each module, plus the variants of upstream modules
+ * that the needed variants depend on, directly or transitively.
+ */
+public class RequiredVariantsFinder {
+  @NotNull private final VariantSelector myVariantSelector;
+  @NotNull private final IdeDependenciesFactory myDependenciesFactory;
+
+  /**
+   * @param dependenciesFactory the factory used to read the dependencies of the variants. It must already know the build folders and the
+   *                            global library map of the build.
+   */
+  public RequiredVariantsFinder(@NotNull VariantSelector variantSelector, @NotNull IdeDependenciesFactory dependenciesFactory) {
+    myVariantSelector = variantSelector;
+    myDependenciesFactory = dependenciesFactory;
+  }
+
+  public static boolean isSingleVariantSyncEnabled() {
+    return GradleExperimentalSettings.getInstance().SINGLE_VARIANT_SYNC;
+  }
+
+  /**
+   * @return the names of the build variants stored in the Android facets of the given project (i.e. selected by the user before sync,) by
+   * Gradle path.
+   */
+  @NotNull
+  public static Map<String, String> getSelectedVariants(@NotNull Project project) {
+    return ApplicationManager.getApplication().runReadAction((Computable<Map<String, String>>)() -> {
+      Map<String, String> selectedVariants = new HashMap<>();
+      for (Module module : ModuleManager.getInstance(project).getModules()) {
+        AndroidFacet facet = AndroidFacet.getInstance(module);
+        String gradlePath = getGradlePath(module);
+        if (facet != null && gradlePath != null) {
+          String variant = facet.getProperties().SELECTED_BUILD_VARIANT;
+          if (isNotEmpty(variant)) {
+            selectedVariants.put(gradlePath, variant);
+          }
+        }
+      }
+      return selectedVariants;
+    });
+  }
+
+  /**
+   * @param androidProjects  the Android models obtained by sync, by Gradle path.
+   * @param selectedVariants the variants selected before sync, by Gradle path. Modules without a selected variant (or whose selected
+   *                         variant does not exist anymore) get the one picked by {@link VariantSelector}.
+   * @return the names of the variants needed by each module, by Gradle path. The first name of each module is the one to select. Modules
+   * without variants are not included.
+   */
+  @NotNull
+  public Map<String, Set<String>> findRequiredVariants(@NotNull Map<String, AndroidProject> androidProjects,
+                                                       @NotNull Map<String, String> selectedVariants) {
+    // All the modules of a build use the same Android plugin.
+    AndroidProject anyProject = getFirstItem(androidProjects.values());
+    GradleVersion modelVersion = anyProject != null ? GradleVersion.tryParse(anyProject.getModelVersion()) : null;
+
+    Map<String, Set<String>> requiredVariants = new HashMap<>();
+    Deque<Variant> queue = new ArrayDeque<>();
+    for (Map.Entry<String, AndroidProject> entry : androidProjects.entrySet()) {
+      String gradlePath = entry.getKey();
+      AndroidProject androidProject = entry.getValue();
+      String selectedVariantName = selectedVariants.get(gradlePath);
+      Variant selected = selectedVariantName != null ? findVariant(androidProject, selectedVariantName) : null;
+      if (selected == null) {
+        selected = myVariantSelector.findVariantToSelect(androidProject);
+      }
+      if (selected != null) {
+        // Selected variants go first, so they are not displaced by the variants added by downstream modules.
+        Set<String> names = requiredVariants.computeIfAbsent(gradlePath, path -> new LinkedHashSet<>());
+        names.add(selected.getName());
+        queue.add(selected);
+      }
+    }
+
+    while (!queue.isEmpty()) {
+      Variant variant = queue.remove();
+      for (Library library : getModuleDependencies(variant, modelVersion)) {
+        String gradlePath = library.getProjectPath();
+        String variantName = library.getVariant();
+        AndroidProject androidProject = !isEmpty(gradlePath) ? androidProjects.get(gradlePath) : null;
+        if (androidProject == null || isEmpty(variantName)) {
+          // Java module, or a module skipped by a partial sync.
+          continue;
+        }
+        Set<String> names = requiredVariants.computeIfAbsent(gradlePath, path -> new LinkedHashSet<>());
+        if (names.add(variantName)) {
+          Variant upstreamVariant = findVariant(androidProject, variantName);
+          if (upstreamVariant != null) {
+            queue.add(upstreamVariant);
+          }
+        }
+      }
+    }
+    return requiredVariants;
+  }
+
+  @NotNull
+  private List<Library> getModuleDependencies(@NotNull Variant variant, @Nullable GradleVersion modelVersion) {
+    List<Library> dependencies = new ArrayList<>(getModuleDependencies(variant.getMainArtifact(), modelVersion));
+    for (BaseArtifact artifact : variant.getExtraAndroidArtifacts()) {
+      dependencies.addAll(getModuleDependencies(artifact, modelVersion));
+    }
+    for (BaseArtifact artifact : variant.getExtraJavaArtifacts()) {
+      dependencies.addAll(getModuleDependencies(artifact, modelVersion));
+    }
+    return dependencies;
+  }
+
+  @NotNull
+  private Collection<Library> getModuleDependencies(@NotNull BaseArtifact artifact, @Nullable GradleVersion modelVersion) {
+    return myDependenciesFactory.create(artifact, modelVersion).getModuleDependencies();
+  }
+
+  @Nullable
+  private static Variant findVariant(@NotNull AndroidProject androidProject, @NotNull String variantName) {
+    for (Variant variant : androidProject.getVariants()) {
+      if (variantName.equals(variant.getName())) {
+        return variant;
+      }
+    }
+    return null;
+  }
+}
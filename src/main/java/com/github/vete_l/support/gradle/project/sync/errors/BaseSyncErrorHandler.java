@@ -31,7 +31,15 @@ public abstract class BaseSyncErrorHandler extends SyncErrorHandler {
   public final boolean handleError(@NotNull ExternalSystemException error,
                                    @NotNull NotificationData notification,
                                    @NotNull Project project) {
-    String text = findErrorMessage(getRootCause(error), project);
+    return handleError(error, getRootCause(error), notification, project);
+  }
+
+  @Override
+  final boolean handleError(@NotNull ExternalSystemException error,
+                            @NotNull Throwable rootCause,
+                            @NotNull NotificationData notification,
+                            @NotNull Project project) {
+    String text = findErrorMessage(rootCause, project);
     if (text != null) {
       List<NotificationHyperlink> hyperlinks = getQuickFixHyperlinks(project, text);
       GradleSyncMessages.getInstance(project).updateNotification(notification, text, hyperlinks);
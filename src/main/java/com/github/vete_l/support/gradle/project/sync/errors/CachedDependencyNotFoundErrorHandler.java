@@ -27,6 +27,12 @@ import java.util.List;
 import static com.intellij.openapi.util.text.StringUtil.isNotEmpty;
 
 public class CachedDependencyNotFoundErrorHandler extends BaseSyncErrorHandler {
+  @Override
+  @NotNull
+  protected SyncErrorSignature getSignature() {
+    return SyncErrorSignature.messageContaining("No cached version of ");
+  }
+
   @Override
   @Nullable
   protected String findErrorMessage(@NotNull Throwable rootCause, @NotNull Project project) {
@@ -30,6 +30,12 @@ import static com.intellij.openapi.util.text.StringUtil.isNotEmpty;
 
 // See https://code.google.com/p/android/issues/detail?id=75520
 public class ConnectionPermissionDeniedErrorHandler extends BaseSyncErrorHandler {
+  @Override
+  @NotNull
+  protected SyncErrorSignature getSignature() {
+    return SyncErrorSignature.rootCauseOfType(SocketException.class).andMessageContaining("Permission denied: connect");
+  }
+
   @Override
   @Nullable
   protected String findErrorMessage(@NotNull Throwable rootCause, @NotNull Project project) {
@@ -28,6 +28,12 @@ import static com.intellij.openapi.util.text.StringUtil.isNotEmpty;
 
 // See https://code.google.com/p/android/issues/detail?id=74842
 public class CorruptGradleDependencyErrorHandler extends BaseSyncErrorHandler {
+  @Override
+  @NotNull
+  protected SyncErrorSignature getSignature() {
+    return SyncErrorSignature.messageContaining("Premature end of Content-Length delimited message body");
+  }
+
   @Override
   @Nullable
   protected String findErrorMessage(@NotNull Throwable rootCause, @NotNull Project project) {
@@ -32,6 +32,12 @@ import static com.intellij.openapi.util.text.StringUtil.isNotEmpty;
 public class DaemonContextMismatchErrorHandler extends BaseSyncErrorHandler {
   private static final String JAVA_HOME = "javaHome=";
 
+  @Override
+  @NotNull
+  protected SyncErrorSignature getSignature() {
+    return SyncErrorSignature.messageContaining("The newly created daemon process has a different context than expected.");
+  }
+
   @Override
   @Nullable
   protected String findErrorMessage(@NotNull Throwable rootCause, @NotNull Project project) {
@@ -31,6 +31,12 @@ import static com.intellij.openapi.util.text.StringUtil.isNotEmpty;
 
 // See https://code.google.com/p/android/issues/detail?id=76797
 public class ErrorOpeningZipFileErrorHandler extends SyncErrorHandler {
+  @Override
+  @NotNull
+  protected SyncErrorSignature getSignature() {
+    return SyncErrorSignature.messageContaining("error in opening zip file");
+  }
+
   @Override
   public boolean handleError(@NotNull ExternalSystemException error, @NotNull NotificationData notification, @NotNull Project project) {
     String text = findErrorMessage(getRootCause(error));
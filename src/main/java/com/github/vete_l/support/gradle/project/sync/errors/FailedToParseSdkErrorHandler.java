@@ -28,6 +28,12 @@ import static com.intellij.openapi.util.text.StringUtil.isNotEmpty;
 import static com.intellij.util.SystemProperties.getUserName;
 
 public class FailedToParseSdkErrorHandler extends BaseSyncErrorHandler {
+  @Override
+  @NotNull
+  protected SyncErrorSignature getSignature() {
+    return SyncErrorSignature.rootCauseOfType(RuntimeException.class).andMessageContaining("failed to parse SDK");
+  }
+
   @Override
   @Nullable
   protected String findErrorMessage(@NotNull Throwable rootCause, @NotNull Project project) {
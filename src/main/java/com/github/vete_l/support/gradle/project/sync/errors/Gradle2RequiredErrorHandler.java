@@ -28,6 +28,12 @@ import java.util.List;
 import static com.intellij.openapi.util.text.StringUtil.isNotEmpty;
 
 public class Gradle2RequiredErrorHandler extends BaseSyncErrorHandler {
+  @Override
+  @NotNull
+  protected SyncErrorSignature getSignature() {
+    return SyncErrorSignature.messageContaining("org/codehaus/groovy/runtime/typehandling/ShortTypeHandling");
+  }
+
   @Override
   @Nullable
   protected String findErrorMessage(@NotNull Throwable rootCause, @NotNull Project project) {
@@ -36,6 +36,12 @@ import java.util.List;
 import static com.intellij.ide.BrowserUtil.browse;
 
 public class Gradle4AndPlugin2Dot2ErrorHandler extends SyncErrorHandler {
+  @Override
+  @NotNull
+  protected SyncErrorSignature getSignature() {
+    return SyncErrorSignature.rootCauseOfType(NoSuchMethodError.class);
+  }
+
   // See https://issuetracker.google.com/37508452
   @Override
   public boolean handleError(@NotNull ExternalSystemException error, @NotNull NotificationData notification, @NotNull Project project) {
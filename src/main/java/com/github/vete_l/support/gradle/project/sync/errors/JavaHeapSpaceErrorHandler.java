@@ -29,6 +29,12 @@ import static com.intellij.openapi.util.text.StringUtil.*;
 
 // See https://code.google.com/p/android/issues/detail?id=75060
 public class JavaHeapSpaceErrorHandler extends BaseSyncErrorHandler {
+  @Override
+  @NotNull
+  protected SyncErrorSignature getSignature() {
+    return SyncErrorSignature.messageContaining("Java heap space", "Unable to start the daemon process");
+  }
+
   @Override
   @Nullable
   protected String findErrorMessage(@NotNull Throwable rootCause, @NotNull Project project) {
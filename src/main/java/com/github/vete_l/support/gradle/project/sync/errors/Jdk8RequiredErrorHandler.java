@@ -32,6 +32,12 @@ public class Jdk8RequiredErrorHandler extends BaseSyncErrorHandler {
     myJdks = jdks;
   }
 
+  @Override
+  @NotNull
+  protected SyncErrorSignature getSignature() {
+    return SyncErrorSignature.messageContaining("Unsupported major.minor version 52.0");
+  }
+
   @Override
   @Nullable
   protected String findErrorMessage(@NotNull Throwable rootCause, @NotNull Project project) {
@@ -38,6 +38,12 @@ import static com.intellij.openapi.util.io.FileUtil.toSystemDependentName;
 public class MissingAndroidPluginErrorHandler extends BaseSyncErrorHandler {
   private static final String PATTERN = "Could not find com.android.tools.build:gradle:";
 
+  @Override
+  @NotNull
+  protected SyncErrorSignature getSignature() {
+    return SyncErrorSignature.messageContaining(PATTERN);
+  }
+
   @Nullable
   @Override
   protected String findErrorMessage(@NotNull Throwable rootCause, @NotNull Project project) {
@@ -42,6 +42,12 @@ public class MissingAndroidSdkErrorHandler extends BaseSyncErrorHandler {
   private static final String SDK_DIR_PROPERTY_MISSING = "No sdk.dir property defined in local.properties file.";
   private static final Pattern SDK_NOT_FOUND_PATTERN = Pattern.compile("The SDK directory '(.*?)' does not exist.");
 
+  @Override
+  @NotNull
+  protected SyncErrorSignature getSignature() {
+    return SyncErrorSignature.rootCauseOfType(RuntimeException.class).andMessageContaining(SDK_DIR_PROPERTY_MISSING, "The SDK directory '");
+  }
+
   @Override
   @Nullable
   protected String findErrorMessage(@NotNull Throwable rootCause, @NotNull Project project) {
@@ -32,6 +32,12 @@ import static com.intellij.openapi.util.text.StringUtil.isNotEmpty;
 public class MissingAndroidSupportRepoErrorHandler extends BaseSyncErrorHandler {
   private static final String INSTALL_ANDROID_SUPPORT_REPO = "Please install the Android Support Repository from the Android SDK Manager.";
 
+  @Override
+  @NotNull
+  protected SyncErrorSignature getSignature() {
+    return SyncErrorSignature.rootCauseOfType(RuntimeException.class).andMessageContaining("com.android.support:");
+  }
+
   @Override
   @Nullable
   protected String findErrorMessage(@NotNull Throwable rootCause, @NotNull Project project) {
@@ -33,6 +33,13 @@ import static com.intellij.openapi.util.text.StringUtil.isNotEmpty;
 public class MissingBuildToolsErrorHandler extends BaseSyncErrorHandler {
   private final Pattern MISSING_BUILD_TOOLS_PATTERN = Pattern.compile("(Cause: )?(F|f)ailed to find Build Tools revision (.*)");
 
+  @Override
+  @NotNull
+  protected SyncErrorSignature getSignature() {
+    return SyncErrorSignature.rootCauseOfType(IllegalStateException.class, ExternalSystemException.class)
+      .andMessageContaining("ailed to find Build Tools revision");
+  }
+
   @Override
   @Nullable
   protected String findErrorMessage(@NotNull Throwable rootCause, @NotNull Project project) {
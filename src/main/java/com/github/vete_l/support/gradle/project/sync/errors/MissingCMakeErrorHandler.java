@@ -27,6 +27,12 @@ import java.util.List;
 import static com.intellij.openapi.util.text.StringUtil.isNotEmpty;
 
 public class MissingCMakeErrorHandler extends BaseSyncErrorHandler {
+  @Override
+  @NotNull
+  protected SyncErrorSignature getSignature() {
+    return SyncErrorSignature.messageContaining("Failed to find CMake.");
+  }
+
   @Nullable
   @Override
   protected String findErrorMessage(@NotNull Throwable rootCause, @NotNull Project project) {
@@ -51,6 +51,13 @@ public class MissingPlatformErrorHandler extends SyncErrorHandler {
     Pattern.compile("(Cause: )?(F|f)ailed to find target (.*)")
   };
 
+  @Override
+  @NotNull
+  protected SyncErrorSignature getSignature() {
+    return SyncErrorSignature.rootCauseOfType(IllegalStateException.class, ExternalSystemException.class)
+      .andMessageContaining("ailed to find target");
+  }
+
   @Override
   public boolean handleError(@NotNull ExternalSystemException error, @NotNull NotificationData notification, @NotNull Project project) {
     String text = findErrorMessage(getRootCause(error));
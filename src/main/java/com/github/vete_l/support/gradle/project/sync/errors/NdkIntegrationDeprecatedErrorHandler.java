@@ -34,6 +34,12 @@ import static com.intellij.openapi.util.text.StringUtil.isNotEmpty;
 public class NdkIntegrationDeprecatedErrorHandler extends BaseSyncErrorHandler {
   private static final String NDK_INTEGRATION_DEPRECATED = "NDK integration is deprecated in the current plugin.";
 
+  @Override
+  @NotNull
+  protected SyncErrorSignature getSignature() {
+    return SyncErrorSignature.messageContaining(NDK_INTEGRATION_DEPRECATED);
+  }
+
   @Override
   @Nullable
   protected String findErrorMessage(@NotNull Throwable rootCause, @NotNull Project project) {
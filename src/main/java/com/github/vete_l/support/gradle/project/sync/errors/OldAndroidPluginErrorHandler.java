@@ -37,6 +37,13 @@ public class OldAndroidPluginErrorHandler extends BaseSyncErrorHandler {
   private static final Pattern PATTERN =
     Pattern.compile("The android gradle plugin version .+ is too old, please update to the latest version.");
 
+  @Override
+  @NotNull
+  protected SyncErrorSignature getSignature() {
+    return SyncErrorSignature.messageContaining("Plugin is too old, please update to a more recent version",
+                                              "The android gradle plugin version ");
+  }
+
   @Override
   @Nullable
   protected String findErrorMessage(@NotNull Throwable rootCause, @NotNull Project project) {
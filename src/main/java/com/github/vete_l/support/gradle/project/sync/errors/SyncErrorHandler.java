@@ -55,8 +55,32 @@ public abstract class SyncErrorHandler {
                                       @NotNull NotificationData notification,
                                       @NotNull Project project);
 
+  /**
+   * Same as {@link #handleError(ExternalSystemException, NotificationData, Project)}, with the root cause of the error already found.
+   */
+  boolean handleError(@NotNull ExternalSystemException error,
+                      @NotNull Throwable rootCause,
+                      @NotNull NotificationData notification,
+                      @NotNull Project project) {
+    return handleError(error, notification, project);
+  }
+
+  /**
+   * @return what the root cause of an error must look like for this handler to handle it, or {@code null} if this handler needs to check
+   * every error.
+   */
+  @Nullable
+  protected SyncErrorSignature getSignature() {
+    return null;
+  }
+
   @NotNull
   protected Throwable getRootCause(@NotNull Throwable error) {
+    return findRootCause(error);
+  }
+
+  @NotNull
+  static Throwable findRootCause(@NotNull Throwable error) {
     Throwable rootCause = error;
     while (true) {
       if (rootCause.getCause() == null || rootCause.getCause().getMessage() == null) {
@@ -24,6 +24,9 @@ import com.intellij.openapi.project.Project;
 import com.intellij.pom.NonNavigatable;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
 import static com.android.tools.idea.project.messages.SyncMessage.DEFAULT_GROUP;
 import static com.intellij.openapi.externalSystem.service.notification.NotificationCategory.ERROR;
 import static com.intellij.openapi.externalSystem.util.ExternalSystemApiUtil.buildErrorMessage;
@@ -32,6 +35,8 @@ public class SyncErrorHandlerManager {
   @NotNull private final GradleSyncMessages mySyncMessages;
   @NotNull private final ErrorAndLocation.Factory myCauseAndLocationFactory;
   @NotNull private final SyncErrorHandler[] myErrorHandlers;
+  @NotNull private final SyncErrorSignatureMatcher mySignatureMatcher;
+  @NotNull private final AtomicIntegerArray myHitCounts;
   @NotNull private final Project myProject;
 
   public SyncErrorHandlerManager(@NotNull Project project) {
@@ -46,6 +51,12 @@ public class SyncErrorHandlerManager {
     mySyncMessages = syncMessages;
     myCauseAndLocationFactory = causeAndLocationFactory;
     myErrorHandlers = errorHandlers;
+    List<SyncErrorSignature> signatures = new ArrayList<>(errorHandlers.length);
+    for (SyncErrorHandler errorHandler : errorHandlers) {
+      signatures.add(errorHandler.getSignature());
+    }
+    mySignatureMatcher = new SyncErrorSignatureMatcher(signatures);
+    myHitCounts = new AtomicIntegerArray(errorHandlers.length);
     myProject = project;
   }
 
@@ -58,8 +69,12 @@ public class SyncErrorHandlerManager {
     PositionInFile positionInFile = errorAndLocation.getPositionInFile();
     NotificationData notificationData = mySyncMessages.createNotification(DEFAULT_GROUP, message, ERROR, positionInFile);
 
-    for (SyncErrorHandler errorHandler : myErrorHandlers) {
-      if (errorHandler.handleError(errorToReport, notificationData, myProject)) {
+    // Only the handlers whose signature matches the root cause are called, in their original order.
+    Throwable rootCause = SyncErrorHandler.findRootCause(errorToReport);
+    BitSet candidates = mySignatureMatcher.findCandidates(rootCause);
+    for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+      if (myErrorHandlers[i].handleError(errorToReport, rootCause, notificationData, myProject)) {
+        myHitCounts.incrementAndGet(i);
         break;
       }
     }
@@ -69,4 +84,16 @@ public class SyncErrorHandlerManager {
     }
     mySyncMessages.report(notificationData);
   }
+
+  /**
+   * @return the number of errors handled by each handler, since this manager was created.
+   */
+  @NotNull
+  public Map<String, Integer> getHitCounts() {
+    Map<String, Integer> hitCounts = new LinkedHashMap<>();
+    for (int i = 0; i < myErrorHandlers.length; i++) {
+      hitCounts.merge(myErrorHandlers[i].getClass().getSimpleName(), myHitCounts.get(i), Integer::sum);
+    }
+    return hitCounts;
+  }
 }
\ No newline at end of file
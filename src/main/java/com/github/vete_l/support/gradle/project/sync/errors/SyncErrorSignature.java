@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.vete_l.support.gradle.project.sync.errors;
+
+import com.google.common.collect.ImmutableList;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * What the root cause of a sync error must look like for a {@link SyncErrorHandler} to handle it: its type must be one of the given
+ * types (if any,) and its message must contain one of the given literals (if any.)
+ * <p>
+ * A signature is only a quick check done before calling the handler, so it must be a necessary condition: errors that do not match the
+ * signature must be errors the handler would not handle anyway.
+ */
+public final class SyncErrorSignature {
+  @NotNull private final List<Class<? extends Throwable>> myRootCauseTypes;
+  @NotNull private final List<String> myMessageLiterals;
+
+  @SafeVarargs
+  @NotNull
+  public static SyncErrorSignature rootCauseOfType(@NotNull Class<? extends Throwable>... anyOf) {
+    return new SyncErrorSignature(Arrays.asList(anyOf), ImmutableList.of());
+  }
+
+  @NotNull
+  public static SyncErrorSignature messageContaining(@NotNull String... anyOf) {
+    return new SyncErrorSignature(ImmutableList.of(), Arrays.asList(anyOf));
+  }
+
+  private SyncErrorSignature(@NotNull List<Class<? extends Throwable>> rootCauseTypes, @NotNull List<String> messageLiterals) {
+    for (String literal : messageLiterals) {
+      if (literal.isEmpty()) {
+        throw new IllegalArgumentException("Message literals cannot be empty");
+      }
+    }
+    myRootCauseTypes = ImmutableList.copyOf(rootCauseTypes);
+    myMessageLiterals = ImmutableList.copyOf(messageLiterals);
+  }
+
+  /**
+   * @return a signature that also requires the message of the root cause to contain one of the given literals.
+   */
+  @NotNull
+  public SyncErrorSignature andMessageContaining(@NotNull String... anyOf) {
+    if (!myMessageLiterals.isEmpty()) {
+      throw new IllegalStateException("The message literals of this signature were already set");
+    }
+    return new SyncErrorSignature(myRootCauseTypes, Arrays.asList(anyOf));
+  }
+
+  @NotNull
+  List<Class<? extends Throwable>> getRootCauseTypes() {
+    return myRootCauseTypes;
+  }
+
+  @NotNull
+  List<String> getMessageLiterals() {
+    return myMessageLiterals;
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.vete_l.support.gradle.project.sync.errors;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Matches the root cause of a sync error against the {@link SyncErrorSignature}s of all the {@link SyncErrorHandler}s at once. The message
+ * literals of all the signatures are compiled into a single Aho-Corasick automaton, so the message is scanned once no matter how many
+ * handlers there are.
+ */
+final class SyncErrorSignatureMatcher {
+  // The signature of each handler, in the order of the handlers. Handlers without signature are always candidates.
+  @NotNull private final List<SyncErrorSignature> mySignatures;
+  // The indices of the literals (in the automaton) of each signature.
+  @NotNull private final List<int[]> myLiteralIndices;
+
+  // The automaton: transitions, failure links and the literals found when reaching each state. State 0 is the root.
+  @NotNull private final List<Map<Character, Integer>> myTransitions = new ArrayList<>();
+  @NotNull private final List<BitSet> myOutputs = new ArrayList<>();
+  @NotNull private final int[] myFailures;
+
+  SyncErrorSignatureMatcher(@NotNull List<SyncErrorSignature> signatures) {
+    mySignatures = new ArrayList<>(signatures);
+    myLiteralIndices = new ArrayList<>(signatures.size());
+
+    Map<String, Integer> literals = new LinkedHashMap<>();
+    for (SyncErrorSignature signature : signatures) {
+      List<String> messageLiterals = signature != null ? signature.getMessageLiterals() : Collections.emptyList();
+      int[] indices = new int[messageLiterals.size()];
+      for (int i = 0; i < indices.length; i++) {
+        indices[i] = literals.computeIfAbsent(messageLiterals.get(i), literal -> literals.size());
+      }
+      myLiteralIndices.add(indices);
+    }
+
+    addState();
+    literals.forEach(this::addLiteral);
+    myFailures = computeFailures();
+  }
+
+  private int addState() {
+    myTransitions.add(new HashMap<>());
+    myOutputs.add(new BitSet());
+    return myTransitions.size() - 1;
+  }
+
+  private void addLiteral(@NotNull String literal, int index) {
+    int state = 0;
+    for (int i = 0; i < literal.length(); i++) {
+      char c = literal.charAt(i);
+      Integer next = myTransitions.get(state).get(c);
+      if (next == null) {
+        next = addState();
+        myTransitions.get(state).put(c, next);
+      }
+      state = next;
+    }
+    myOutputs.get(state).set(index);
+  }
+
+  @NotNull
+  private int[] computeFailures() {
+    int[] failures = new int[myTransitions.size()];
+    // States are visited breadth-first, so the failure link of a state is known before the ones of its children are computed.
+    Deque<Integer> queue = new ArrayDeque<>(myTransitions.get(0).values());
+    while (!queue.isEmpty()) {
+      int state = queue.remove();
+      for (Map.Entry<Character, Integer> transition : myTransitions.get(state).entrySet()) {
+        char c = transition.getKey();
+        int child = transition.getValue();
+        int failure = state == 0 ? 0 : nextState(failures, failures[state], c);
+        failures[child] = failure;
+        myOutputs.get(child).or(myOutputs.get(failure));
+        queue.add(child);
+      }
+    }
+    return failures;
+  }
+
+  private int nextState(@NotNull int[] failures, int state, char c) {
+    while (true) {
+      Integer next = myTransitions.get(state).get(c);
+      if (next != null) {
+        return next;
+      }
+      if (state == 0) {
+        return 0;
+      }
+      state = failures[state];
+    }
+  }
+
+  /**
+   * @return the indices of the handlers whose signature matches the given root cause (or that do not have a signature,) in increasing
+   * order.
+   */
+  @NotNull
+  BitSet findCandidates(@NotNull Throwable rootCause) {
+    BitSet literalsFound = findLiterals(rootCause.getMessage());
+    BitSet candidates = new BitSet(mySignatures.size());
+    for (int i = 0; i < mySignatures.size(); i++) {
+      SyncErrorSignature signature = mySignatures.get(i);
+      if (signature == null || (matchesType(signature, rootCause) && matchesLiterals(myLiteralIndices.get(i), literalsFound))) {
+        candidates.set(i);
+      }
+    }
+    return candidates;
+  }
+
+  @NotNull
+  private BitSet findLiterals(@Nullable String message) {
+    BitSet found = new BitSet();
+    if (message != null) {
+      int state = 0;
+      for (int i = 0; i < message.length(); i++) {
+        state = nextState(myFailures, state, message.charAt(i));
+        found.or(myOutputs.get(state));
+      }
+    }
+    return found;
+  }
+
+  private static boolean matchesType(@NotNull SyncErrorSignature signature, @NotNull Throwable rootCause) {
+    List<Class<? extends Throwable>> types = signature.getRootCauseTypes();
+    if (types.isEmpty()) {
+      return true;
+    }
+    for (Class<? extends Throwable> type : types) {
+      if (type.isInstance(rootCause)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean matchesLiterals(@NotNull int[] literalIndices, @NotNull BitSet literalsFound) {
+    if (literalIndices.length == 0) {
+      return true;
+    }
+    for (int index : literalIndices) {
+      if (literalsFound.get(index)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
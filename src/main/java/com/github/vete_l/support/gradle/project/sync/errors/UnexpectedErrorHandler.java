@@ -30,6 +30,12 @@ import static com.intellij.openapi.util.text.StringUtil.isNotEmpty;
 public class UnexpectedErrorHandler extends BaseSyncErrorHandler {
   private static final String UNEXPECTED_ERROR_FILE_BUG = "This is an unexpected error. Please file a bug containing the idea.log file.";
 
+  @Override
+  @NotNull
+  protected SyncErrorSignature getSignature() {
+    return SyncErrorSignature.messageContaining(UNEXPECTED_ERROR_FILE_BUG);
+  }
+
   @Override
   @Nullable
   protected String findErrorMessage(@NotNull Throwable rootCause, @NotNull Project project) {
@@ -37,6 +37,12 @@ public class UnsupportedModelVersionErrorHandler extends BaseSyncErrorHandler {
     "The project is using an unsupported version of the Android Gradle plug-in";
   @NotNull public static final String READ_MIGRATION_GUIDE_MSG = "Please read the migration guide";
 
+  @Override
+  @NotNull
+  protected SyncErrorSignature getSignature() {
+    return SyncErrorSignature.messageContaining(UNSUPPORTED_MODEL_VERSION_ERROR_PREFIX);
+  }
+
   @Override
   @Nullable
   protected String findErrorMessage(@NotNull Throwable rootCause, @NotNull Project project) {
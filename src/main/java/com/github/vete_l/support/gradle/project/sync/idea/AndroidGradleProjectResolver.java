@@ -25,10 +25,13 @@ import com.android.repository.Revision;
 import com.android.tools.analytics.UsageTracker;
 import com.android.tools.idea.IdeInfo;
 import com.android.tools.idea.gradle.project.model.*;
+import com.android.tools.idea.gradle.project.model.ide.android.IdeAndroidProjectImpl;
 import com.android.tools.idea.gradle.project.model.ide.android.IdeNativeAndroidProject;
 import com.android.tools.idea.gradle.project.model.ide.android.IdeNativeAndroidProjectImpl;
+import com.android.tools.idea.gradle.project.model.ide.android.ModelCache;
 import com.android.tools.idea.gradle.project.model.ide.android.level2.IdeDependenciesFactory;
 import com.android.tools.idea.gradle.project.sync.common.CommandLineArgs;
+import com.android.tools.idea.gradle.project.sync.common.RequiredVariantsFinder;
 import com.android.tools.idea.gradle.project.sync.common.VariantSelector;
 import com.android.tools.idea.gradle.project.sync.idea.data.model.ImportedModule;
 import com.android.tools.idea.gradle.project.sync.idea.data.model.ProjectCleanupModel;
@@ -71,6 +74,8 @@ import java.util.*;
 import static com.android.SdkConstants.FN_SETTINGS_GRADLE;
 import static com.android.SdkConstants.GRADLE_PLUGIN_RECOMMENDED_VERSION;
 import static com.android.tools.idea.gradle.project.sync.SimulatedSyncErrors.simulateRegisteredSyncError;
+import static com.android.tools.idea.gradle.project.sync.common.RequiredVariantsFinder.getSelectedVariants;
+import static com.android.tools.idea.gradle.project.sync.common.RequiredVariantsFinder.isSingleVariantSyncEnabled;
 import static com.android.tools.idea.gradle.project.sync.errors.UnsupportedModelVersionErrorHandler.READ_MIGRATION_GUIDE_MSG;
 import static com.android.tools.idea.gradle.project.sync.errors.UnsupportedModelVersionErrorHandler.UNSUPPORTED_MODEL_VERSION_ERROR_PREFIX;
 import static com.android.tools.idea.gradle.project.sync.idea.GradleModelVersionCheck.getModelVersion;
@@ -86,6 +91,7 @@ import static com.intellij.openapi.externalSystem.util.ExternalSystemApiUtil.isI
 import static com.intellij.openapi.util.text.StringUtil.isEmpty;
 import static com.intellij.util.ExceptionUtil.getRootCause;
 import static com.intellij.util.PathUtil.getJarPathForClass;
+import static com.intellij.util.containers.ContainerUtil.getFirstItem;
 import static org.jetbrains.plugins.gradle.service.project.GradleProjectResolverUtil.getModuleConfigPath;
 
 /**
@@ -103,6 +109,9 @@ public class AndroidGradleProjectResolver extends AbstractProjectResolverExtensi
   @NotNull private final IdeaJavaModuleModelFactory myIdeaJavaModuleModelFactory;
   @NotNull private final IdeDependenciesFactory myDependenciesFactory;
 
+  // Only set in a single-variant sync: the names of the variants to keep, by Gradle path. The first one of each module is selected.
+  @Nullable private Map<String, Set<String>> myRequiredVariants;
+
   @SuppressWarnings("unused")
   // This constructor is used by the IDE. This class is an extension point implementation, registered in plugin.xml.
   public AndroidGradleProjectResolver() {
@@ -197,8 +206,17 @@ public class AndroidGradleProjectResolver extends AbstractProjectResolverExtensi
     String moduleName = gradleModule.getName();
 
     if (androidProject != null) {
-      Variant selectedVariant = myVariantSelector.findVariantToSelect(androidProject);
-      if (selectedVariant == null) {
+      Collection<String> variantsToKeep = null;
+      String selectedVariantName;
+      if (myRequiredVariants != null) {
+        variantsToKeep = myRequiredVariants.get(gradleModule.getGradleProject().getPath());
+        selectedVariantName = variantsToKeep != null ? getFirstItem(variantsToKeep) : null;
+      }
+      else {
+        Variant selectedVariant = myVariantSelector.findVariantToSelect(androidProject);
+        selectedVariantName = selectedVariant != null ? selectedVariant.getName() : null;
+      }
+      if (selectedVariantName == null) {
         // If an Android project does not have variants, it would be impossible to build. This is a possible but invalid use case.
         // For now we are going to treat this case as a Java library module, because everywhere in the IDE (e.g. run configurations,
         // editors, test support, variants tool window, project building, etc.) we have the assumption that there is at least one variant
@@ -207,9 +225,9 @@ public class AndroidGradleProjectResolver extends AbstractProjectResolverExtensi
         androidProjectWithoutVariants = true;
       }
       else {
-        String variantName = selectedVariant.getName();
-        AndroidModuleModel model =
-          new AndroidModuleModel(moduleName, moduleRootDirPath, androidProject, variantName, myDependenciesFactory);
+        IdeAndroidProjectImpl androidProjectCopy =
+          new IdeAndroidProjectImpl(androidProject, new ModelCache(ModelCache.Scope.MODULE), myDependenciesFactory, variantsToKeep);
+        AndroidModuleModel model = new AndroidModuleModel(moduleName, moduleRootDirPath, androidProjectCopy, selectedVariantName);
         ideModule.createChild(ANDROID_MODEL, model);
       }
     }
@@ -297,6 +315,8 @@ public class AndroidGradleProjectResolver extends AbstractProjectResolverExtensi
   public void populateProjectExtraModels(@NotNull IdeaProject gradleProject, @NotNull DataNode<ProjectData> projectDataNode) {
     populateModuleBuildDirs(gradleProject);
     populateGlobalLibraryMap(gradleProject);
+    // Must be done after the build folders and the global library map are known, and before any module is populated.
+    myRequiredVariants = isSingleVariantSyncEnabled() ? findRequiredVariants(gradleProject) : null;
     if (isAndroidGradleProject()) {
       projectDataNode.createChild(PROJECT_CLEANUP_MODEL, ProjectCleanupModel.getInstance());
     }
@@ -336,6 +356,21 @@ public class AndroidGradleProjectResolver extends AbstractProjectResolverExtensi
     }
   }
 
+  @NotNull
+  private Map<String, Set<String>> findRequiredVariants(@NotNull IdeaProject ideaProject) {
+    Map<String, AndroidProject> androidProjects = new HashMap<>();
+    for (IdeaModule ideaModule : ideaProject.getChildren()) {
+      AndroidProject androidProject = resolverCtx.getExtraProject(ideaModule, AndroidProject.class);
+      GradleProject gradleProject = ideaModule.getGradleProject();
+      if (androidProject != null && gradleProject != null) {
+        androidProjects.put(gradleProject.getPath(), androidProject);
+      }
+    }
+    Project project = myProjectFinder.findProject(resolverCtx);
+    Map<String, String> selectedVariants = project != null ? getSelectedVariants(project) : Collections.emptyMap();
+    return new RequiredVariantsFinder(myVariantSelector, myDependenciesFactory).findRequiredVariants(androidProjects, selectedVariants);
+  }
+
   @Override
   @NotNull
   public Set<Class> getExtraProjectModelClasses() {
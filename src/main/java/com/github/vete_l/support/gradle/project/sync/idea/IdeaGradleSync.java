@@ -18,6 +18,7 @@ package com.github.vete_l.support.gradle.project.sync.idea;
 import com.android.SdkConstants;
 import com.android.tools.idea.gradle.project.GradleProjectSyncData;
 import com.android.tools.idea.gradle.project.facet.gradle.GradleFacet;
+import com.android.tools.idea.gradle.project.sync.GradleFiles;
 import com.android.tools.idea.gradle.project.sync.GradleSync;
 import com.android.tools.idea.gradle.project.sync.GradleSyncInvoker;
 import com.android.tools.idea.gradle.project.sync.GradleSyncListener;
@@ -73,6 +74,8 @@ public class IdeaGradleSync implements GradleSync {
         DataNodeCaches dataNodeCaches = DataNodeCaches.getInstance(myProject);
         DataNode<ProjectData> cache = dataNodeCaches.getCachedProjectData();
         if (cache != null && !dataNodeCaches.isCacheMissingModels(cache)) {
+          // The fingerprints were just verified, reuse them to check for changes made in this session.
+          GradleFiles.getInstance(myProject).setFingerprints(syncData.getFileFingerprints());
           PostSyncProjectSetup.Request setupRequest = new PostSyncProjectSetup.Request();
 
           // @formatter:off
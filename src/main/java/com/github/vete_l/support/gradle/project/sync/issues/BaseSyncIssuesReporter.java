@@ -24,6 +24,8 @@ import org.intellij.lang.annotations.MagicConstant;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.List;
+
 import static com.android.builder.model.SyncIssue.SEVERITY_ERROR;
 import static com.android.tools.idea.project.messages.MessageType.ERROR;
 import static com.android.tools.idea.project.messages.MessageType.WARNING;
@@ -39,6 +41,16 @@ abstract class BaseSyncIssuesReporter {
 
   abstract void report(@NotNull SyncIssue syncIssue, @NotNull Module module, @Nullable VirtualFile buildFile);
 
+  /**
+   * Reports all the issues of the supported type found in a module. Strategies that can share work between issues (e.g. reading the build
+   * file) override this method.
+   */
+  void reportAll(@NotNull List<SyncIssue> syncIssues, @NotNull Module module, @Nullable VirtualFile buildFile) {
+    for (SyncIssue syncIssue : syncIssues) {
+      report(syncIssue, module, buildFile);
+    }
+  }
+
   @NotNull
   static MessageType getMessageType(@NotNull SyncIssue syncIssue) {
     return syncIssue.getSeverity() == SEVERITY_ERROR ? ERROR : WARNING;
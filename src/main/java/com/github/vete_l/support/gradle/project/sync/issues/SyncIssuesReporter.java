@@ -23,11 +23,8 @@ import com.intellij.openapi.module.Module;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VirtualFile;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
 
 import static com.android.builder.model.SyncIssue.SEVERITY_ERROR;
 import static com.android.tools.idea.gradle.util.GradleUtil.getGradleBuildFile;
@@ -64,11 +61,24 @@ public class SyncIssuesReporter {
     boolean hasSyncErrors = false;
 
     VirtualFile buildFile = getGradleBuildFile(module);
+    // Consecutive issues handled by the same strategy are reported together. Issues are not regrouped any further, so messages are shown
+    // in the order Gradle reported the issues.
+    BaseSyncIssuesReporter currentStrategy = null;
+    List<SyncIssue> currentIssues = new ArrayList<>();
     for (SyncIssue syncIssue : syncIssues) {
       if (syncIssue.getSeverity() == SEVERITY_ERROR) {
         hasSyncErrors = true;
       }
-      report(syncIssue, module, buildFile);
+      BaseSyncIssuesReporter strategy = getStrategy(syncIssue);
+      if (strategy != currentStrategy && currentStrategy != null) {
+        currentStrategy.reportAll(currentIssues, module, buildFile);
+        currentIssues = new ArrayList<>();
+      }
+      currentStrategy = strategy;
+      currentIssues.add(syncIssue);
+    }
+    if (currentStrategy != null) {
+      currentStrategy.reportAll(currentIssues, module, buildFile);
     }
 
     if (hasSyncErrors) {
@@ -77,13 +87,14 @@ public class SyncIssuesReporter {
     }
   }
 
-  private void report(@NotNull SyncIssue syncIssue, @NotNull Module module, @Nullable VirtualFile buildFile) {
+  @NotNull
+  private BaseSyncIssuesReporter getStrategy(@NotNull SyncIssue syncIssue) {
     int type = syncIssue.getType();
     BaseSyncIssuesReporter strategy = myStrategies.get(type);
     if (strategy == null) {
       strategy = myDefaultMessageFactory;
     }
-    strategy.report(syncIssue, module, buildFile);
+    return strategy;
   }
 
   @VisibleForTesting
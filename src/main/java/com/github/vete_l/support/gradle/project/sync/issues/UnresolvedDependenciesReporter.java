@@ -17,6 +17,7 @@ package com.github.vete_l.support.gradle.project.sync.issues;
 
 import com.android.builder.model.SyncIssue;
 import com.android.ide.common.repository.GradleCoordinate;
+import com.android.ide.common.repository.SdkMavenRepository;
 import com.android.repository.api.ProgressIndicator;
 import com.android.repository.api.RemotePackage;
 import com.android.repository.api.RepoPackage;
@@ -37,20 +38,17 @@ import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.Key;
 import com.intellij.openapi.util.TextRange;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.pom.NonNavigatable;
 import com.intellij.psi.tree.IElementType;
-import com.intellij.util.Function;
 import org.gradle.tooling.model.UnsupportedMethodException;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.plugins.groovy.lang.lexer.GroovyLexer;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
+import java.util.*;
 
 import static com.android.builder.model.SyncIssue.TYPE_UNRESOLVED_DEPENDENCY;
 import static com.android.ide.common.repository.SdkMavenRepository.*;
@@ -60,12 +58,12 @@ import static com.android.tools.idea.gradle.util.GradleUtil.getGradleBuildFile;
 import static com.android.tools.idea.gradle.util.Projects.isOfflineBuildModeEnabled;
 import static com.android.tools.idea.project.messages.MessageType.ERROR;
 import static com.android.tools.idea.sdk.StudioSdkUtil.reloadRemoteSdkWithModalProgress;
-import static com.intellij.openapi.util.text.StringUtil.unquoteString;
 import static org.jetbrains.plugins.groovy.lang.lexer.GroovyTokenTypes.mSTRING_LITERAL;
 
 public class UnresolvedDependenciesReporter extends BaseSyncIssuesReporter {
   private static final String UNRESOLVED_DEPENDENCIES_GROUP = "Unresolved dependencies";
   private static final String OPEN_FILE_HYPERLINK_TEXT = "Open File";
+  private static final Key<RemotePackageIndex> REMOTE_PACKAGES_KEY = Key.create("unresolved.dependencies.remote.packages");
 
   @NotNull
   public static UnresolvedDependenciesReporter getInstance() {
@@ -79,12 +77,20 @@ public class UnresolvedDependenciesReporter extends BaseSyncIssuesReporter {
 
   @Override
   void report(@NotNull SyncIssue syncIssue, @NotNull Module module, @Nullable VirtualFile buildFile) {
-    String dependency = syncIssue.getData();
-    if (dependency != null) {
-      report(dependency, module, buildFile);
-    }
-    else {
-      reportWithoutDependencyInfo(syncIssue, module, buildFile);
+    reportAll(Collections.singletonList(syncIssue), module, buildFile);
+  }
+
+  @Override
+  void reportAll(@NotNull List<SyncIssue> syncIssues, @NotNull Module module, @Nullable VirtualFile buildFile) {
+    ModuleContext context = new ModuleContext(module, buildFile);
+    for (SyncIssue syncIssue : syncIssues) {
+      String dependency = syncIssue.getData();
+      if (dependency != null) {
+        report(dependency, context);
+      }
+      else {
+        reportWithoutDependencyInfo(syncIssue, module, buildFile);
+      }
     }
   }
 
@@ -92,24 +98,23 @@ public class UnresolvedDependenciesReporter extends BaseSyncIssuesReporter {
     if (unresolvedDependencies.isEmpty()) {
       return;
     }
-    VirtualFile buildFile = getGradleBuildFile(module);
+    ModuleContext context = new ModuleContext(module, getGradleBuildFile(module));
     for (String dependency : unresolvedDependencies) {
-      report(dependency, module, buildFile);
+      report(dependency, context);
     }
 
     GradleSyncState.getInstance(module.getProject()).getSummary().setSyncErrorsFound(true);
   }
 
-  private void report(@NotNull String dependency, @NotNull Module module, @Nullable VirtualFile buildFile) {
+  private void report(@NotNull String dependency, @NotNull ModuleContext context) {
+    Module module = context.myModule;
+    VirtualFile buildFile = context.myBuildFile;
     String group = "Unresolved Android dependencies";
     GradleCoordinate coordinate = GradleCoordinate.parseCoordinateString(dependency);
 
     RepoPackage constraintPackage = null;
     if (coordinate != null) {
-      ProgressIndicator indicator = new StudioLoggerProgressIndicator(getClass());
-      reloadRemoteSdkWithModalProgress();
-      Collection<RemotePackage> remotePackages = getRemotePackages(indicator);
-      constraintPackage = findBestPackageMatching(coordinate, remotePackages);
+      constraintPackage = getRemotePackages(module.getProject()).findBestPackageMatching(coordinate);
     }
 
     List<NotificationHyperlink> quickFixes = new ArrayList<>();
@@ -120,7 +125,10 @@ public class UnresolvedDependenciesReporter extends BaseSyncIssuesReporter {
       quickFixes.add(new InstallArtifactHyperlink(constraintPackage.getPath()));
     }
     else if (dependency.startsWith("com.android.support")) {
-      addGoogleMavenRepositoryHyperlink(module, buildFile, quickFixes);
+      VirtualFile fileToAddRepository = context.getFileMissingGoogleMavenRepository();
+      if (fileToAddRepository != null) {
+        quickFixes.add(new AddGoogleMavenRepositoryHyperlink(fileToAddRepository));
+      }
     }
     else if (dependency.startsWith("com.google.android")) {
       quickFixes.add(new InstallRepositoryHyperlink(GOOGLE, dependency));
@@ -138,7 +146,7 @@ public class UnresolvedDependenciesReporter extends BaseSyncIssuesReporter {
 
     SyncMessage message;
     if (buildFile != null) {
-      PositionInFile position = findDependencyPosition(dependency, buildFile);
+      PositionInFile position = context.findDependencyPosition(dependency, buildFile);
       message = new SyncMessage(module.getProject(), group, ERROR, position, text);
       String hyperlinkText = position.line > -1 ? "Show in File" : OPEN_FILE_HYPERLINK_TEXT;
       quickFixes.add(new OpenFileHyperlink(buildFile.getPath(), hyperlinkText, position.line, position.column));
@@ -157,52 +165,24 @@ public class UnresolvedDependenciesReporter extends BaseSyncIssuesReporter {
     getSyncMessages(module).report(message);
   }
 
+  /**
+   * Returns the remote SDK packages, loaded once per sync: the same packages are used for all the unresolved dependencies of all the
+   * modules.
+   */
   @NotNull
-  private static PositionInFile findDependencyPosition(@NotNull String dependency, @NotNull VirtualFile buildFile) {
-    int line = -1;
-    int column = -1;
-
-    Document document = FileDocumentManager.getInstance().getDocument(buildFile);
-    if (document != null) {
-      TextRange textRange = findDependency(dependency, document);
-      if (textRange != null) {
-        line = document.getLineNumber(textRange.getStartOffset());
-        if (line > -1) {
-          int lineStartOffset = document.getLineStartOffset(line);
-          column = textRange.getStartOffset() - lineStartOffset;
-        }
-      }
-    }
-
-    return new PositionInFile(buildFile, line, column);
-  }
-
-  @NotNull
-  private static Collection<RemotePackage> getRemotePackages(@NotNull ProgressIndicator indicator) {
-    AndroidSdkHandler sdkHandler = AndroidSdks.getInstance().tryToChooseSdkHandler();
-    RepositoryPackages packages = sdkHandler.getSdkManager(indicator).getPackages();
-    return packages.getRemotePackages().values();
-  }
-
-  @Nullable
-  private static TextRange findDependency(@NotNull String dependency, @NotNull Document buildFile) {
-    Function<Pair<String, GroovyLexer>, TextRange> consumer = pair -> {
-      GroovyLexer lexer = pair.getSecond();
-      return TextRange.create(lexer.getTokenStart() + 1, lexer.getTokenEnd() - 1);
-    };
-    GroovyLexer lexer = new GroovyLexer();
-    lexer.start(buildFile.getText());
-    while (lexer.getTokenType() != null) {
-      IElementType type = lexer.getTokenType();
-      if (type == mSTRING_LITERAL) {
-        String text = unquoteString(lexer.getTokenText());
-        if (text.startsWith(dependency)) {
-          return consumer.fun(Pair.create(text, lexer));
-        }
-      }
-      lexer.advance();
+  private RemotePackageIndex getRemotePackages(@NotNull Project project) {
+    long syncTimestamp = GradleSyncState.getInstance(project).getSyncStartedTimestamp();
+    RemotePackageIndex index = project.getUserData(REMOTE_PACKAGES_KEY);
+    if (index == null || syncTimestamp < 0 || index.mySyncTimestamp != syncTimestamp) {
+      ProgressIndicator indicator = new StudioLoggerProgressIndicator(getClass());
+      reloadRemoteSdkWithModalProgress();
+      AndroidSdkHandler sdkHandler = AndroidSdks.getInstance().tryToChooseSdkHandler();
+      RepositoryPackages packages = sdkHandler.getSdkManager(indicator).getPackages();
+      index = new RemotePackageIndex(packages.getRemotePackages().values(), syncTimestamp);
+      // Outside of a sync there is nothing to tell when the packages become stale, so they are not kept.
+      project.putUserData(REMOTE_PACKAGES_KEY, syncTimestamp >= 0 ? index : null);
     }
-    return null;
+    return index;
   }
 
   private void reportWithoutDependencyInfo(@NotNull SyncIssue syncIssue, @NotNull Module module, @Nullable VirtualFile buildFile) {
@@ -244,20 +224,19 @@ public class UnresolvedDependenciesReporter extends BaseSyncIssuesReporter {
   }
 
   /**
-   * Append a quick fix to add Google Maven repository to solve a dependency in a module in a list of fixes if needed.
+   * Finds the build file where the Google Maven repository should be added to solve a dependency in a module.
    *
    * @param module Module that has a dependency on the repository.
    * @param buildFile Build file where the dependency is.
-   * @param fixes List of hyperlinks in which the quickfix will be added if the reposirory is not already used.
+   * @return the build file to add the repository to, or {@code null} if the repository is already used.
    */
-  private static void addGoogleMavenRepositoryHyperlink(@NotNull Module module,
-                                                        @Nullable VirtualFile buildFile,
-                                                        @NotNull List<NotificationHyperlink> fixes) {
+  @Nullable
+  private static VirtualFile findFileMissingGoogleMavenRepository(@NotNull Module module, @Nullable VirtualFile buildFile) {
     Project project = module.getProject();
     if (buildFile != null) {
       GradleBuildModel moduleBuildModel = GradleBuildModel.parseBuildFile(buildFile, project, module.getName());
       if (!hasGoogleMavenRepository(moduleBuildModel.repositories())) {
-        fixes.add(new AddGoogleMavenRepositoryHyperlink(buildFile));
+        return buildFile;
       }
     }
     else {
@@ -265,9 +244,122 @@ public class UnresolvedDependenciesReporter extends BaseSyncIssuesReporter {
       if (projectBuildModel != null) {
         RepositoriesModel repositories = projectBuildModel.repositories();
         if (!hasGoogleMavenRepository(repositories)) {
-          fixes.add(new AddGoogleMavenRepositoryHyperlink(projectBuildModel.getVirtualFile()));
+          return projectBuildModel.getVirtualFile();
         }
       }
     }
+    return null;
+  }
+
+  /**
+   * What is shared by the unresolved dependencies of a module: the string literals of its build file, which is read once, and whether the
+   * Google Maven repository is missing.
+   */
+  private static class ModuleContext {
+    @NotNull final Module myModule;
+    @Nullable final VirtualFile myBuildFile;
+
+    @Nullable private Document myDocument;
+    @Nullable private List<TextRange> myStringLiterals;
+    @Nullable private String myText;
+
+    private boolean myGoogleMavenRepositoryChecked;
+    @Nullable private VirtualFile myFileMissingGoogleMavenRepository;
+
+    ModuleContext(@NotNull Module module, @Nullable VirtualFile buildFile) {
+      myModule = module;
+      myBuildFile = buildFile;
+    }
+
+    @Nullable
+    VirtualFile getFileMissingGoogleMavenRepository() {
+      if (!myGoogleMavenRepositoryChecked) {
+        myFileMissingGoogleMavenRepository = findFileMissingGoogleMavenRepository(myModule, myBuildFile);
+        myGoogleMavenRepositoryChecked = true;
+      }
+      return myFileMissingGoogleMavenRepository;
+    }
+
+    @NotNull
+    PositionInFile findDependencyPosition(@NotNull String dependency, @NotNull VirtualFile buildFile) {
+      int line = -1;
+      int column = -1;
+
+      if (myStringLiterals == null) {
+        myDocument = FileDocumentManager.getInstance().getDocument(buildFile);
+        myStringLiterals = new ArrayList<>();
+        if (myDocument != null) {
+          myText = myDocument.getText();
+          findStringLiterals(myText, myStringLiterals);
+        }
+      }
+
+      if (myDocument != null && myText != null) {
+        TextRange textRange = findDependency(dependency, myText, myStringLiterals);
+        if (textRange != null) {
+          line = myDocument.getLineNumber(textRange.getStartOffset());
+          if (line > -1) {
+            int lineStartOffset = myDocument.getLineStartOffset(line);
+            column = textRange.getStartOffset() - lineStartOffset;
+          }
+        }
+      }
+
+      return new PositionInFile(buildFile, line, column);
+    }
+
+    /**
+     * Collects the ranges of the contents of all the string literals in the given build file text, in a single pass.
+     */
+    private static void findStringLiterals(@NotNull String text, @NotNull List<TextRange> stringLiterals) {
+      GroovyLexer lexer = new GroovyLexer();
+      lexer.start(text);
+      while (lexer.getTokenType() != null) {
+        IElementType type = lexer.getTokenType();
+        if (type == mSTRING_LITERAL) {
+          stringLiterals.add(TextRange.create(lexer.getTokenStart() + 1, lexer.getTokenEnd() - 1));
+        }
+        lexer.advance();
+      }
+    }
+
+    @Nullable
+    private static TextRange findDependency(@NotNull String dependency, @NotNull String text, @NotNull List<TextRange> stringLiterals) {
+      for (TextRange range : stringLiterals) {
+        if (range.getLength() >= dependency.length() && text.startsWith(dependency, range.getStartOffset())) {
+          return range;
+        }
+      }
+      return null;
+    }
+  }
+
+  /**
+   * The remote SDK packages, by the group and artifact IDs of the Maven artifacts they contain.
+   */
+  private static class RemotePackageIndex {
+    final long mySyncTimestamp;
+    @NotNull private final Map<String, List<RemotePackage>> myPackagesByArtifact = new HashMap<>();
+
+    RemotePackageIndex(@NotNull Collection<RemotePackage> remotePackages, long syncTimestamp) {
+      mySyncTimestamp = syncTimestamp;
+      for (RemotePackage remotePackage : remotePackages) {
+        GradleCoordinate coordinate = getCoordinateFromSdkPath(remotePackage.getPath());
+        if (coordinate != null) {
+          myPackagesByArtifact.computeIfAbsent(getArtifactKey(coordinate), key -> new ArrayList<>()).add(remotePackage);
+        }
+      }
+    }
+
+    @Nullable
+    RepoPackage findBestPackageMatching(@NotNull GradleCoordinate coordinate) {
+      List<RemotePackage> packages = myPackagesByArtifact.get(getArtifactKey(coordinate));
+      return packages != null ? SdkMavenRepository.findBestPackageMatching(coordinate, packages) : null;
+    }
+
+    @NotNull
+    private static String getArtifactKey(@NotNull GradleCoordinate coordinate) {
+      return coordinate.getGroupId() + ':' + coordinate.getArtifactId();
+    }
   }
 }
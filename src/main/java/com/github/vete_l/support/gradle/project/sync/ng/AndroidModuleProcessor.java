@@ -19,6 +19,7 @@ import com.android.tools.idea.gradle.project.model.AndroidModuleModel;
 import com.android.tools.idea.gradle.project.sync.GradleSyncState;
 import com.android.tools.idea.gradle.project.sync.setup.module.AndroidModuleSetup;
 import com.android.tools.idea.gradle.project.sync.setup.module.android.DependenciesAndroidModuleSetupStep;
+import com.android.tools.idea.gradle.project.sync.setup.module.dependency.DependencySet;
 import com.android.tools.idea.gradle.project.sync.validation.android.AndroidModuleValidator;
 import com.intellij.openapi.externalSystem.service.project.IdeModifiableModelsProvider;
 import com.intellij.openapi.module.Module;
@@ -30,6 +31,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.List;
+import java.util.Map;
 
 import static com.android.tools.idea.gradle.project.sync.setup.Facets.findFacet;
 
@@ -40,27 +42,44 @@ class AndroidModuleProcessor {
   @NotNull private final IdeModifiableModelsProvider myModelsProvider;
   @NotNull private final GradleSyncState mySyncState;
   @NotNull private final AndroidModuleValidator.Factory myModuleValidatorFactory;
+  @NotNull private final DependenciesAndroidModuleSetupStep myDependenciesSetupStep;
   @NotNull private final AndroidModuleSetup myAndroidModuleSetup;
 
   AndroidModuleProcessor(@NotNull Project project,
                          @NotNull IdeModifiableModelsProvider modelsProvider) {
-    this(project, modelsProvider, GradleSyncState.getInstance(project), new AndroidModuleValidator.Factory(),
-         new AndroidModuleSetup(new DependenciesAndroidModuleSetupStep()));
+    this(project, modelsProvider, new DependenciesAndroidModuleSetupStep());
+  }
+
+  private AndroidModuleProcessor(@NotNull Project project,
+                                 @NotNull IdeModifiableModelsProvider modelsProvider,
+                                 @NotNull DependenciesAndroidModuleSetupStep dependenciesSetupStep) {
+    this(project, modelsProvider, GradleSyncState.getInstance(project), new AndroidModuleValidator.Factory(), dependenciesSetupStep,
+         new AndroidModuleSetup(dependenciesSetupStep));
   }
 
   public AndroidModuleProcessor(@NotNull Project project,
                                 @NotNull IdeModifiableModelsProvider modelsProvider,
                                 @NotNull GradleSyncState syncState,
                                 @NotNull AndroidModuleValidator.Factory moduleValidatorFactory,
+                                @NotNull DependenciesAndroidModuleSetupStep dependenciesSetupStep,
                                 @NotNull AndroidModuleSetup moduleSetup) {
     myProject = project;
     myModelsProvider = modelsProvider;
     mySyncState = syncState;
     myModuleValidatorFactory = moduleValidatorFactory;
+    myDependenciesSetupStep = dependenciesSetupStep;
     myAndroidModuleSetup = moduleSetup;
   }
 
-  void processAndroidModels(@NotNull List<Module> androidModules, @NotNull ProgressIndicator indicator) {
+  /**
+   * Sets up the dependencies of the given Android modules, and validates them.
+   *
+   * @param selectedVariantDependencies the dependencies of the selected variant of the modules, if they were extracted ahead of the
+   *                                    module setup (e.g. while converting models.) The dependencies of other modules are extracted here.
+   */
+  void processAndroidModels(@NotNull List<Module> androidModules,
+                            @NotNull Map<Module, DependencySet> selectedVariantDependencies,
+                            @NotNull ProgressIndicator indicator) {
     AndroidModuleValidator moduleValidator = myModuleValidatorFactory.create(myProject);
     for (Module module : androidModules) {
       AndroidModuleModel androidModel = findAndroidModel(module);
@@ -68,8 +87,14 @@ class AndroidModuleProcessor {
         SyncAction.ModuleModels moduleModels = module.getUserData(MODULE_GRADLE_MODELS_KEY);
         assert moduleModels != null;
         // We need to set up dependencies once all modules are created.
-        boolean syncSkipped = mySyncState.isSyncSkipped();
-        myAndroidModuleSetup.setUpModule(module, myModelsProvider, androidModel, moduleModels, indicator, syncSkipped);
+        DependencySet dependencies = selectedVariantDependencies.get(module);
+        if (dependencies != null) {
+          myDependenciesSetupStep.setUpDependencies(module, myModelsProvider, androidModel, dependencies);
+        }
+        else {
+          boolean syncSkipped = mySyncState.isSyncSkipped();
+          myAndroidModuleSetup.setUpModule(module, myModelsProvider, androidModel, moduleModels, indicator, syncSkipped);
+        }
         moduleValidator.validate(module, androidModel);
       }
     }
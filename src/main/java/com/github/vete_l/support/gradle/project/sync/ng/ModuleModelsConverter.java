@@ -0,0 +1,292 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.vete_l.support.gradle.project.sync.ng;
+
+import com.android.builder.model.AndroidProject;
+import com.android.builder.model.NativeAndroidProject;
+import com.android.builder.model.Variant;
+import com.android.builder.model.level2.GlobalLibraryMap;
+import com.android.java.model.ArtifactModel;
+import com.android.java.model.JavaProject;
+import com.android.tools.idea.gradle.project.GradleExperimentalSettings;
+import com.android.tools.idea.gradle.project.model.ArtifactModuleModelFactory;
+import com.android.tools.idea.gradle.project.model.JavaModuleModel;
+import com.android.tools.idea.gradle.project.model.NewJavaModuleModelFactory;
+import com.android.tools.idea.gradle.project.model.ide.android.*;
+import com.android.tools.idea.gradle.project.model.ide.android.level2.IdeDependenciesFactory;
+import com.android.tools.idea.gradle.project.sync.common.RequiredVariantsFinder;
+import com.android.tools.idea.gradle.project.sync.common.VariantSelector;
+import com.android.tools.idea.gradle.project.sync.setup.module.dependency.DependenciesExtractor;
+import com.android.tools.idea.gradle.project.sync.setup.module.dependency.DependencySet;
+import com.google.common.annotations.VisibleForTesting;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressIndicator;
+import org.gradle.tooling.model.GradleProject;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static com.android.tools.idea.gradle.project.sync.ng.GradleSyncProgress.notifyProgress;
+import static com.intellij.util.containers.ContainerUtil.getFirstItem;
+
+/**
+ * Converts the Gradle tooling models of every module into their IDE counterparts (e.g. {@link IdeAndroidProject}, {@link JavaModuleModel}
+ * and the {@link DependencySet} of the selected variant.)
+ * <p>
+ * Conversion does not touch the IDEA project model, so it runs outside the write action and, for projects with several modules, on a
+ * fork-join pool. All copies share a sync-scoped {@link ModelCache} and the same {@link IdeDependenciesFactory}, so sub-objects are
+ * deduplicated across modules.
+ */
+class ModuleModelsConverter {
+  @NotNull private final IdeDependenciesFactory myDependenciesFactory;
+  @NotNull private final VariantSelector myVariantSelector;
+  @NotNull private final IdeNativeAndroidProject.Factory myNativeAndroidProjectFactory;
+  @NotNull private final NewJavaModuleModelFactory myJavaModuleModelFactory;
+  @NotNull private final ArtifactModuleModelFactory myArtifactModuleModelFactory;
+  @NotNull private final DependenciesExtractor myDependenciesExtractor;
+  private final boolean myExtractDependencies;
+  private final int myParallelism;
+
+  ModuleModelsConverter() {
+    this(GradleExperimentalSettings.getInstance());
+  }
+
+  private ModuleModelsConverter(@NotNull GradleExperimentalSettings settings) {
+    this(new IdeDependenciesFactory(), new VariantSelector(), new IdeNativeAndroidProjectImpl.FactoryImpl(), new NewJavaModuleModelFactory(),
+         new ArtifactModuleModelFactory(), DependenciesExtractor.getInstance(), settings.EXTRACT_DEPENDENCIES_ON_MODEL_CONVERSION,
+         getParallelism(settings.MODULE_MODEL_CONVERSION_PARALLELISM));
+  }
+
+  @VisibleForTesting
+  ModuleModelsConverter(@NotNull IdeDependenciesFactory dependenciesFactory,
+                        @NotNull VariantSelector variantSelector,
+                        @NotNull IdeNativeAndroidProject.Factory nativeAndroidProjectFactory,
+                        @NotNull NewJavaModuleModelFactory javaModuleModelFactory,
+                        @NotNull ArtifactModuleModelFactory artifactModuleModelFactory,
+                        @NotNull DependenciesExtractor dependenciesExtractor,
+                        boolean extractDependencies,
+                        int parallelism) {
+    myDependenciesFactory = dependenciesFactory;
+    myVariantSelector = variantSelector;
+    myNativeAndroidProjectFactory = nativeAndroidProjectFactory;
+    myJavaModuleModelFactory = javaModuleModelFactory;
+    myArtifactModuleModelFactory = artifactModuleModelFactory;
+    myDependenciesExtractor = dependenciesExtractor;
+    myExtractDependencies = extractDependencies;
+    myParallelism = parallelism;
+  }
+
+  private static int getParallelism(int configuredParallelism) {
+    return configuredParallelism > 0 ? configuredParallelism : Runtime.getRuntime().availableProcessors();
+  }
+
+  @NotNull
+  Map<String, ConvertedModels> convert(@NotNull SyncAction.ProjectModels projectModels, @NotNull ProgressIndicator indicator) {
+    notifyProgress(indicator, "Converting module models");
+    GlobalLibraryMap globalLibraryMap = projectModels.getGlobalLibraryMap();
+    if (globalLibraryMap != null) {
+      myDependenciesFactory.setupGlobalLibraryMap(globalLibraryMap);
+    }
+
+    // Needed to check if an AndroidLibrary is a sub-module that wraps a local aar. Must be done before any module is converted, and for all
+    // the modules in the build, even the ones skipped by a partial sync.
+    for (GradleProject gradleProject : projectModels.getGradleProjects()) {
+      myDependenciesFactory.findAndAddBuildFolderPath(gradleProject);
+    }
+
+    List<SyncAction.ModuleModels> allModuleModels = new ArrayList<>();
+    for (String gradlePath : projectModels.getProjectPaths()) {
+      SyncAction.ModuleModels moduleModels = projectModels.getModels(gradlePath);
+      if (moduleModels != null) {
+        allModuleModels.add(moduleModels);
+      }
+    }
+
+    // In a single-variant sync, the variants to copy depend on the dependencies between modules, so they are found before any module is
+    // converted.
+    Map<String, Set<String>> requiredVariants =
+      projectModels.isSingleVariant() ? findRequiredVariants(allModuleModels, projectModels.getSelectedVariants()) : null;
+
+    ModelCache modelCache = new ModelCache(ModelCache.Scope.SYNC);
+    Map<String, ConvertedModels> convertedModels = new ConcurrentHashMap<>();
+    if (myParallelism <= 1 || allModuleModels.size() <= 1) {
+      for (SyncAction.ModuleModels moduleModels : allModuleModels) {
+        indicator.checkCanceled();
+        convertedModels.put(moduleModels.getGradlePath(), convert(moduleModels, modelCache, requiredVariants));
+      }
+    }
+    else {
+      List<Callable<ConvertedModels>> tasks = new ArrayList<>();
+      for (SyncAction.ModuleModels moduleModels : allModuleModels) {
+        tasks.add(() -> {
+          indicator.checkCanceled();
+          ConvertedModels converted = convert(moduleModels, modelCache, requiredVariants);
+          convertedModels.put(moduleModels.getGradlePath(), converted);
+          return converted;
+        });
+      }
+      invokeAll(tasks);
+    }
+    getLog().info(String.format("Converted %1$d module models using %2$d thread(s). %3$s", allModuleModels.size(),
+                                Math.min(myParallelism, allModuleModels.size()), modelCache));
+    return convertedModels;
+  }
+
+  private void invokeAll(@NotNull List<Callable<ConvertedModels>> tasks) {
+    ForkJoinPool pool = new ForkJoinPool(myParallelism);
+    try {
+      for (Future<ConvertedModels> future : pool.invokeAll(tasks)) {
+        future.get();
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while converting module models", e);
+    }
+    catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException)cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error)cause;
+      }
+      throw new IllegalStateException(cause);
+    }
+    finally {
+      pool.shutdownNow();
+    }
+  }
+
+  @NotNull
+  private Map<String, Set<String>> findRequiredVariants(@NotNull List<SyncAction.ModuleModels> allModuleModels,
+                                                       @NotNull Map<String, String> selectedVariants) {
+    Map<String, AndroidProject> androidProjects = new HashMap<>();
+    for (SyncAction.ModuleModels moduleModels : allModuleModels) {
+      AndroidProject androidProject = moduleModels.findModel(AndroidProject.class);
+      if (androidProject != null) {
+        androidProjects.put(moduleModels.getGradlePath(), androidProject);
+      }
+    }
+    return new RequiredVariantsFinder(myVariantSelector, myDependenciesFactory).findRequiredVariants(androidProjects, selectedVariants);
+  }
+
+  /**
+   * @param requiredVariants the names of the variants to copy, by Gradle path (the first one of each module is selected,) or {@code null}
+   *                         to copy all the variants and select the one picked by {@link VariantSelector}.
+   */
+  @NotNull
+  private ConvertedModels convert(@NotNull SyncAction.ModuleModels moduleModels,
+                                  @NotNull ModelCache modelCache,
+                                  @Nullable Map<String, Set<String>> requiredVariants) {
+    ConvertedModels converted = new ConvertedModels();
+
+    AndroidProject androidProject = moduleModels.findModel(AndroidProject.class);
+    if (androidProject != null) {
+      Set<String> variantsToCopy = null;
+      String variantName;
+      if (requiredVariants != null) {
+        variantsToCopy = requiredVariants.get(moduleModels.getGradlePath());
+        variantName = variantsToCopy != null ? getFirstItem(variantsToCopy) : null;
+      }
+      else {
+        Variant variantToSelect = myVariantSelector.findVariantToSelect(androidProject);
+        variantName = variantToSelect != null ? variantToSelect.getName() : null;
+      }
+      if (variantName != null) {
+        IdeAndroidProject androidProjectCopy = new IdeAndroidProjectImpl(androidProject, modelCache, myDependenciesFactory, variantsToCopy);
+        converted.myAndroidProject = androidProjectCopy;
+        converted.mySelectedVariantName = variantName;
+        if (myExtractDependencies) {
+          androidProjectCopy.forEachVariant(variant -> {
+            if (variantName.equals(variant.getName())) {
+              converted.mySelectedVariantDependencies = myDependenciesExtractor.extractFrom(variant);
+            }
+          });
+        }
+      }
+      return converted;
+    }
+
+    NativeAndroidProject nativeAndroidProject = moduleModels.findModel(NativeAndroidProject.class);
+    if (nativeAndroidProject != null) {
+      converted.myNativeAndroidProject = myNativeAndroidProjectFactory.create(nativeAndroidProject);
+      return converted;
+    }
+
+    GradleProject gradleProject = moduleModels.findModel(GradleProject.class);
+    if (gradleProject == null) {
+      return converted;
+    }
+    JavaProject javaProject = moduleModels.findModel(JavaProject.class);
+    if (javaProject != null) {
+      converted.myJavaModuleModel = myJavaModuleModelFactory.create(gradleProject, javaProject, false);
+      return converted;
+    }
+    ArtifactModel jarAarProject = moduleModels.findModel(ArtifactModel.class);
+    if (jarAarProject != null) {
+      converted.myJavaModuleModel = myArtifactModuleModelFactory.create(gradleProject, jarAarProject);
+    }
+    return converted;
+  }
+
+  @NotNull
+  private static Logger getLog() {
+    return Logger.getInstance(ModuleModelsConverter.class);
+  }
+
+  /**
+   * The IDE models of a single module. At most one of the Android, native and Java models is set.
+   */
+  static class ConvertedModels {
+    @Nullable private IdeAndroidProject myAndroidProject;
+    @Nullable private String mySelectedVariantName;
+    @Nullable private DependencySet mySelectedVariantDependencies;
+    @Nullable private IdeNativeAndroidProject myNativeAndroidProject;
+    @Nullable private JavaModuleModel myJavaModuleModel;
+
+    /**
+     * @return the copy of the module's {@code AndroidProject}, or {@code null} if the module is not an Android module or if it does not
+     * have any variants.
+     */
+    @Nullable
+    IdeAndroidProject getAndroidProject() {
+      return myAndroidProject;
+    }
+
+    @Nullable
+    String getSelectedVariantName() {
+      return mySelectedVariantName;
+    }
+
+    @Nullable
+    DependencySet getSelectedVariantDependencies() {
+      return mySelectedVariantDependencies;
+    }
+
+    @Nullable
+    IdeNativeAndroidProject getNativeAndroidProject() {
+      return myNativeAndroidProject;
+    }
+
+    @Nullable
+    JavaModuleModel getJavaModuleModel() {
+      return myJavaModuleModel;
+    }
+  }
+}
@@ -15,23 +15,17 @@
  */
 package com.github.vete_l.support.gradle.project.sync.ng;
 
-import com.android.builder.model.AndroidLibrary;
 import com.android.builder.model.AndroidProject;
-import com.android.builder.model.NativeAndroidProject;
-import com.android.builder.model.Variant;
-import com.android.builder.model.level2.GlobalLibraryMap;
-import com.android.java.model.ArtifactModel;
 import com.android.java.model.JavaProject;
 import com.android.tools.idea.gradle.project.facet.ndk.NdkFacet;
 import com.android.tools.idea.gradle.project.model.*;
-import com.android.tools.idea.gradle.project.model.ide.android.level2.IdeDependenciesFactory;
+import com.android.tools.idea.gradle.project.model.ide.android.IdeAndroidProject;
 import com.android.tools.idea.gradle.project.model.ide.android.IdeNativeAndroidProject;
-import com.android.tools.idea.gradle.project.model.ide.android.IdeNativeAndroidProjectImpl;
 import com.android.tools.idea.gradle.project.sync.GradleSyncState;
-import com.android.tools.idea.gradle.project.sync.common.VariantSelector;
 import com.android.tools.idea.gradle.project.sync.setup.module.AndroidModuleSetup;
 import com.android.tools.idea.gradle.project.sync.setup.module.GradleModuleSetup;
 import com.android.tools.idea.gradle.project.sync.setup.module.NdkModuleSetup;
+import com.android.tools.idea.gradle.project.sync.setup.module.dependency.DependencySet;
 import com.android.tools.idea.gradle.project.sync.setup.module.idea.JavaModuleSetup;
 import com.android.tools.idea.gradle.project.sync.setup.module.ndk.ContentRootModuleSetupStep;
 import com.android.tools.idea.gradle.project.sync.setup.module.ndk.NdkFacetModuleSetupStep;
@@ -41,14 +35,12 @@ import com.intellij.openapi.externalSystem.service.project.IdeModifiableModelsPr
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.project.Project;
-import org.gradle.tooling.model.GradleProject;
 import org.jetbrains.android.facet.AndroidFacet;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 
 import static com.android.tools.idea.gradle.project.sync.ng.AndroidModuleProcessor.MODULE_GRADLE_MODELS_KEY;
 import static com.android.tools.idea.gradle.project.sync.ng.GradleSyncProgress.notifyProgress;
@@ -56,7 +48,9 @@ import static com.android.tools.idea.gradle.project.sync.setup.Facets.removeAllF
 import static com.android.tools.idea.gradle.util.Projects.findModuleRootFolderPath;
 
 abstract class ModuleSetup {
-  abstract void setUpModules(@NotNull SyncAction.ProjectModels projectModels, @NotNull ProgressIndicator indicator);
+  abstract void setUpModules(@NotNull SyncAction.ProjectModels projectModels,
+                             @NotNull Map<String, ModuleModelsConverter.ConvertedModels> convertedModels,
+                             @NotNull ProgressIndicator indicator);
 
   static class Factory {
     @NotNull
@@ -64,10 +58,8 @@ abstract class ModuleSetup {
       return new ModuleSetupImpl(project, modelsProvider, GradleSyncState.getInstance(project), new ModuleFactory(project, modelsProvider),
                                  new GradleModuleSetup(), new NewAndroidModuleSetup(), new AndroidModuleProcessor(project, modelsProvider),
                                  new NdkModuleSetup(new NdkFacetModuleSetupStep(), new ContentRootModuleSetupStep()),
-                                 new VariantSelector(), new ProjectCleanup(), new ObsoleteModuleDisposer(project, modelsProvider),
-                                 new NewJavaModuleSetup(), new IdeNativeAndroidProjectImpl.FactoryImpl(), new NewJavaModuleModelFactory(),
-                                 new ArtifactModuleModelFactory(), new ExtraSyncModelExtensionManager(),
-                                 new IdeDependenciesFactory());
+                                 new ProjectCleanup(), new ObsoleteModuleDisposer(project, modelsProvider), new NewJavaModuleSetup(),
+                                 new ExtraSyncModelExtensionManager());
     }
   }
 
@@ -81,17 +73,14 @@ abstract class ModuleSetup {
     @NotNull private final AndroidModuleSetup myNewAndroidModuleSetup;
     @NotNull private final AndroidModuleProcessor myAndroidModuleProcessor;
     @NotNull private final NdkModuleSetup myNdkModuleSetup;
-    @NotNull private final VariantSelector myVariantSelector;
     @NotNull private final ProjectCleanup myProjectCleanup;
     @NotNull private final ObsoleteModuleDisposer myModuleDisposer;
     @NotNull private final JavaModuleSetup myJavaModuleSetup;
-    @NotNull private final IdeNativeAndroidProject.Factory myNativeAndroidProjectFactory;
-    @NotNull private final NewJavaModuleModelFactory myNewJavaModuleModelFactory;
-    @NotNull private final ArtifactModuleModelFactory myArtifactModuleModelFactory;
     @NotNull private final ExtraSyncModelExtensionManager myExtraSyncModelExtensionManager;
-    @NotNull private final IdeDependenciesFactory myDependenciesFactory;
 
     @NotNull private final List<Module> myAndroidModules = new ArrayList<>();
+    // Dependencies of the selected variant of Android modules, extracted while converting models.
+    @NotNull private final Map<Module, DependencySet> mySelectedVariantDependencies = new HashMap<>();
 
     ModuleSetupImpl(@NotNull Project project,
                     @NotNull IdeModifiableModelsProvider modelsProvider,
@@ -101,15 +90,10 @@ abstract class ModuleSetup {
                     @NotNull AndroidModuleSetup newAndroidModuleSetup,
                     @NotNull AndroidModuleProcessor androidModuleProcessor,
                     @NotNull NdkModuleSetup ndkModuleSetup,
-                    @NotNull VariantSelector variantSelector,
                     @NotNull ProjectCleanup projectCleanup,
                     @NotNull ObsoleteModuleDisposer moduleDisposer,
                     @NotNull JavaModuleSetup javaModuleSetup,
-                    @NotNull IdeNativeAndroidProject.Factory nativeAndroidProjectFactory,
-                    @NotNull NewJavaModuleModelFactory javaModuleModelFactory,
-                    @NotNull ArtifactModuleModelFactory artifactModuleModelFactory,
-                    @NotNull ExtraSyncModelExtensionManager extraSyncModelExtensionManager,
-                    @NotNull IdeDependenciesFactory dependenciesFactory) {
+                    @NotNull ExtraSyncModelExtensionManager extraSyncModelExtensionManager) {
       myProject = project;
       myModelsProvider = modelsProvider;
       mySyncState = syncState;
@@ -118,61 +102,46 @@ abstract class ModuleSetup {
       myNewAndroidModuleSetup = newAndroidModuleSetup;
       myAndroidModuleProcessor = androidModuleProcessor;
       myNdkModuleSetup = ndkModuleSetup;
-      myVariantSelector = variantSelector;
       myProjectCleanup = projectCleanup;
       myModuleDisposer = moduleDisposer;
       myJavaModuleSetup = javaModuleSetup;
-      myNativeAndroidProjectFactory = nativeAndroidProjectFactory;
-      myNewJavaModuleModelFactory = javaModuleModelFactory;
-      myArtifactModuleModelFactory = artifactModuleModelFactory;
       myExtraSyncModelExtensionManager = extraSyncModelExtensionManager;
-      myDependenciesFactory = dependenciesFactory;
     }
 
     @Override
-    void setUpModules(@NotNull SyncAction.ProjectModels projectModels, @NotNull ProgressIndicator indicator) {
+    void setUpModules(@NotNull SyncAction.ProjectModels projectModels,
+                      @NotNull Map<String, ModuleModelsConverter.ConvertedModels> convertedModels,
+                      @NotNull ProgressIndicator indicator) {
       notifyProgress(indicator, "Configuring modules");
-      GlobalLibraryMap globalLibraryMap = projectModels.getGlobalLibraryMap();
-      if (globalLibraryMap != null) {
-        myDependenciesFactory.setupGlobalLibraryMap(globalLibraryMap);
-      }
-      createAndSetUpModules(projectModels, indicator);
-      myAndroidModuleProcessor.processAndroidModels(myAndroidModules, indicator);
+      createAndSetUpModules(projectModels, convertedModels, indicator);
+      myAndroidModuleProcessor.processAndroidModels(myAndroidModules, mySelectedVariantDependencies, indicator);
       myProjectCleanup.cleanUpProject(myProject, myModelsProvider, indicator);
-      myModuleDisposer.disposeObsoleteModules(indicator);
+      if (projectModels.isPartial()) {
+        // Modules skipped by a partial sync keep the models (and the configuration) from the previous sync.
+        myModuleDisposer.releaseModuleModels();
+      }
+      else {
+        myModuleDisposer.disposeObsoleteModules(indicator);
+      }
     }
 
-    private void createAndSetUpModules(@NotNull SyncAction.ProjectModels projectModels, @NotNull ProgressIndicator indicator) {
+    private void createAndSetUpModules(@NotNull SyncAction.ProjectModels projectModels,
+                                       @NotNull Map<String, ModuleModelsConverter.ConvertedModels> convertedModels,
+                                       @NotNull ProgressIndicator indicator) {
       boolean syncSkipped = mySyncState.isSyncSkipped();
-      populateModuleBuildDirs(projectModels);
       for (String gradlePath : projectModels.getProjectPaths()) {
-        createAndSetupModule(gradlePath, projectModels, indicator, syncSkipped);
-      }
-    }
-
-    /**
-     * Populate the map from project path to build directory for all modules.
-     * It will be used to check if a {@link AndroidLibrary} is sub-module that wraps local aar.
-     */
-    private void populateModuleBuildDirs(@NotNull SyncAction.ProjectModels projectModels) {
-      for (String projectPath : projectModels.getProjectPaths()) {
-        SyncAction.ModuleModels moduleModels = projectModels.getModels(projectPath);
-        if (moduleModels == null) {
-          continue;
-        }
-        GradleProject gradleProject = moduleModels.findModel(GradleProject.class);
-        if (gradleProject != null) {
-          myDependenciesFactory.findAndAddBuildFolderPath(gradleProject);
-        }
+        createAndSetupModule(gradlePath, projectModels, convertedModels, indicator, syncSkipped);
       }
     }
 
     private void createAndSetupModule(@NotNull String gradlePath,
                                       @NotNull SyncAction.ProjectModels projectModels,
+                                      @NotNull Map<String, ModuleModelsConverter.ConvertedModels> convertedModels,
                                       @NotNull ProgressIndicator indicator,
                                       boolean syncSkipped) {
       SyncAction.ModuleModels moduleModels = projectModels.getModels(gradlePath);
-      if (moduleModels == null) {
+      ModuleModelsConverter.ConvertedModels converted = convertedModels.get(gradlePath);
+      if (moduleModels == null || converted == null) {
         return;
       }
       Module module = myModuleFactory.createModule(moduleModels);
@@ -185,10 +154,14 @@ abstract class ModuleSetup {
 
       AndroidProject androidProject = moduleModels.findModel(AndroidProject.class);
       if (androidProject != null) {
-        AndroidModuleModel androidModel = createAndroidModel(module, androidProject);
+        AndroidModuleModel androidModel = createAndroidModel(module, converted);
         if (androidModel != null) {
           myNewAndroidModuleSetup.setUpModule(module, myModelsProvider, androidModel, moduleModels, indicator, syncSkipped);
           myAndroidModules.add(module);
+          DependencySet dependencies = converted.getSelectedVariantDependencies();
+          if (dependencies != null && androidModel.getSelectedVariant().getName().equals(converted.getSelectedVariantName())) {
+            mySelectedVariantDependencies.put(module, dependencies);
+          }
         }
         else {
           // This is an Android module without variants. Treat as a non-buildable Java module.
@@ -202,9 +175,8 @@ abstract class ModuleSetup {
       // This is not an Android module. Remove any AndroidFacet set in a previous sync operation.
       removeAndroidFacetFrom(module);
 
-      NativeAndroidProject nativeAndroidProject = moduleModels.findModel(NativeAndroidProject.class);
-      if (nativeAndroidProject != null) {
-        IdeNativeAndroidProject copy = myNativeAndroidProjectFactory.create(nativeAndroidProject);
+      IdeNativeAndroidProject copy = converted.getNativeAndroidProject();
+      if (copy != null) {
         NdkModuleModel ndkModuleModel = new NdkModuleModel(module.getName(), moduleRootFolderPath, copy);
         myNdkModuleSetup.setUpModule(module, myModelsProvider, ndkModuleModel, moduleModels, indicator, syncSkipped);
         return;
@@ -212,32 +184,24 @@ abstract class ModuleSetup {
       // This is not an Android module. Remove any AndroidFacet set in a previous sync operation.
       removeAllFacets(myModelsProvider.getModifiableFacetModel(module), NdkFacet.getFacetTypeId());
 
-      // This is a Java module.
-      JavaProject javaProject = moduleModels.findModel(JavaProject.class);
-      GradleProject gradleProject = moduleModels.findModel(GradleProject.class);
-      if (gradleProject != null && javaProject != null) {
-        JavaModuleModel javaModuleModel = myNewJavaModuleModelFactory.create(gradleProject, javaProject, false);
-        myJavaModuleSetup.setUpModule(module, myModelsProvider, javaModuleModel, moduleModels, indicator, syncSkipped);
-        myExtraSyncModelExtensionManager.setupExtraJavaModels(moduleModels, myProject, module, myModelsProvider);
-        return;
-      }
-
-      // This is a Jar/Aar module or root module.
-      ArtifactModel jarAarProject = moduleModels.findModel(ArtifactModel.class);
-      if (gradleProject != null && jarAarProject != null) {
-        JavaModuleModel javaModuleModel = myArtifactModuleModelFactory.create(gradleProject, jarAarProject);
+      // This is a Java module, a Jar/Aar module or the root module.
+      JavaModuleModel javaModuleModel = converted.getJavaModuleModel();
+      if (javaModuleModel != null) {
         myJavaModuleSetup.setUpModule(module, myModelsProvider, javaModuleModel, moduleModels, indicator, syncSkipped);
+        if (moduleModels.hasModel(JavaProject.class)) {
+          myExtraSyncModelExtensionManager.setupExtraJavaModels(moduleModels, myProject, module, myModelsProvider);
+        }
       }
     }
 
     @Nullable
-    private AndroidModuleModel createAndroidModel(@NotNull Module module, @NotNull AndroidProject androidProject) {
-      Variant variantToSelect = myVariantSelector.findVariantToSelect(androidProject);
-      if (variantToSelect != null) {
+    private static AndroidModuleModel createAndroidModel(@NotNull Module module, @NotNull ModuleModelsConverter.ConvertedModels converted) {
+      IdeAndroidProject androidProject = converted.getAndroidProject();
+      String selectedVariantName = converted.getSelectedVariantName();
+      if (androidProject != null && selectedVariantName != null) {
         File moduleRootFolderPath = findModuleRootFolderPath(module);
         if (moduleRootFolderPath != null) {
-          return new AndroidModuleModel(module.getName(), moduleRootFolderPath, androidProject, variantToSelect.getName(),
-                                        myDependenciesFactory);
+          return new AndroidModuleModel(module.getName(), moduleRootFolderPath, androidProject, selectedVariantName);
         }
       }
       // If an Android project does not have variants, it would be impossible to build. This is a possible but invalid use case.
@@ -23,6 +23,8 @@ import com.google.common.annotations.VisibleForTesting;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.ModalityState;
 import com.intellij.openapi.externalSystem.service.execution.ProgressExecutionMode;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleManager;
 import com.intellij.openapi.progress.EmptyProgressIndicator;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.Task;
@@ -31,6 +33,10 @@ import com.intellij.util.SystemProperties;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.*;
+
+import static com.android.tools.idea.gradle.util.GradleUtil.getGradlePath;
+
 public class NewGradleSync implements GradleSync {
   @NotNull private final Project myProject;
   @NotNull private final SyncExecutor mySyncExecutor;
@@ -67,7 +73,7 @@ public class NewGradleSync implements GradleSync {
   @Override
   public void sync(@NotNull GradleSyncInvoker.Request request, @Nullable GradleSyncListener listener) {
     if (ApplicationManager.getApplication().isUnitTestMode()) {
-      sync(listener, new EmptyProgressIndicator(), request.isNewOrImportedProject());
+      sync(listener, new EmptyProgressIndicator(), request.isNewOrImportedProject(), findModulesToSync(request));
       return;
     }
     Task task = createSyncTask(request, listener);
@@ -81,19 +87,20 @@ public class NewGradleSync implements GradleSync {
 
     ProgressExecutionMode executionMode = request.getProgressExecutionMode();
     boolean isNewProject = request.isNewOrImportedProject();
+    Set<String> moduleGradlePaths = findModulesToSync(request);
     switch (executionMode) {
       case MODAL_SYNC:
         return new Task.Modal(myProject, title, true) {
           @Override
           public void run(@NotNull ProgressIndicator indicator) {
-            sync(listener, indicator, isNewProject);
+            sync(listener, indicator, isNewProject, moduleGradlePaths);
           }
         };
       case IN_BACKGROUND_ASYNC:
         return new Task.Backgroundable(myProject, title, true) {
           @Override
           public void run(@NotNull ProgressIndicator indicator) {
-            sync(listener, indicator, isNewProject);
+            sync(listener, indicator, isNewProject, moduleGradlePaths);
           }
         };
       default:
@@ -101,12 +108,66 @@ public class NewGradleSync implements GradleSync {
     }
   }
 
-  private void sync(@Nullable GradleSyncListener syncListener, @NotNull ProgressIndicator indicator, boolean isNewProject) {
+  /**
+   * @return the Gradle paths of the modules requested in the given request and of all the modules that depend on them, directly or
+   * transitively; or an empty set if the whole project needs to be synced.
+   */
+  @VisibleForTesting
+  @NotNull
+  Set<String> findModulesToSync(@NotNull GradleSyncInvoker.Request request) {
+    Set<String> requestedGradlePaths = request.getModuleGradlePaths();
+    if (requestedGradlePaths.isEmpty() || request.isNewOrImportedProject()) {
+      return Collections.emptySet();
+    }
+    ModuleManager moduleManager = ModuleManager.getInstance(myProject);
+    Map<String, Module> modulesByGradlePath = new HashMap<>();
+    for (Module module : moduleManager.getModules()) {
+      String gradlePath = getGradlePath(module);
+      if (gradlePath != null) {
+        modulesByGradlePath.put(gradlePath, module);
+      }
+    }
+
+    Set<Module> modulesToSync = new LinkedHashSet<>();
+    Deque<Module> queue = new ArrayDeque<>();
+    for (String gradlePath : requestedGradlePaths) {
+      Module module = modulesByGradlePath.get(gradlePath);
+      if (module == null) {
+        // The module was added after the last sync.
+        return Collections.emptySet();
+      }
+      queue.add(module);
+    }
+    while (!queue.isEmpty()) {
+      Module module = queue.remove();
+      if (modulesToSync.add(module)) {
+        queue.addAll(moduleManager.getModuleDependentModules(module));
+      }
+    }
+
+    Set<String> gradlePaths = new LinkedHashSet<>();
+    for (Module module : modulesToSync) {
+      String gradlePath = getGradlePath(module);
+      if (gradlePath != null) {
+        gradlePaths.add(gradlePath);
+      }
+    }
+    if (gradlePaths.size() == modulesByGradlePath.size()) {
+      // Every module needs to be synced.
+      return Collections.emptySet();
+    }
+    return gradlePaths;
+  }
+
+  private void sync(@Nullable GradleSyncListener syncListener,
+                    @NotNull ProgressIndicator indicator,
+                    boolean isNewProject,
+                    @NotNull Set<String> moduleGradlePaths) {
     SyncExecutionCallback callback = myCallbackFactory.create();
     // @formatter:off
     callback.doWhenDone(() -> myResultHandler.onSyncFinished(callback, indicator, syncListener, isNewProject))
             .doWhenRejected(() -> myResultHandler.onSyncFailed(callback, syncListener));
     // @formatter:on
-    mySyncExecutor.syncProject(indicator, callback);
+    mySyncExecutor.syncProject(indicator, callback, moduleGradlePaths);
   }
 }
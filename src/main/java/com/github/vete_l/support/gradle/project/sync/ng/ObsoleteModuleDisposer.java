@@ -69,4 +69,14 @@ class ObsoleteModuleDisposer {
     myModuleDisposer.disposeModules(modulesToDispose, myProject, myModelsProvider);
   }
 
+  /**
+   * Used instead of {@link #disposeObsoleteModules(ProgressIndicator)} after a partial sync: modules without models were not part of the
+   * sync, and are kept as they are.
+   */
+  void releaseModuleModels() {
+    for (Module module : myModelsProvider.getModules()) {
+      module.putUserData(MODULE_GRADLE_MODELS_KEY, null);
+    }
+  }
+
 }
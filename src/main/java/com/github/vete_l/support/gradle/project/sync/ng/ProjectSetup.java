@@ -15,7 +15,10 @@
  */
 package com.github.vete_l.support.gradle.project.sync.ng;
 
+import com.android.tools.idea.gradle.project.sync.GradleSyncState;
+import com.android.tools.idea.gradle.project.sync.GradleSyncSummary;
 import com.google.common.annotations.VisibleForTesting;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.externalSystem.service.project.IdeModifiableModelsProvider;
 import com.intellij.openapi.externalSystem.service.project.IdeModifiableModelsProviderImpl;
 import com.intellij.openapi.externalSystem.util.DisposeAwareProjectChange;
@@ -23,9 +26,16 @@ import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.project.Project;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Map;
+
 import static com.intellij.openapi.externalSystem.util.ExternalSystemApiUtil.executeProjectChangeAction;
 
 abstract class ProjectSetup {
+  static final String MODEL_CONVERSION_STAGE = "Model conversion";
+  static final String MODULE_SETUP_STAGE = "Module setup";
+  // Followed by the model type, e.g. "Model fetch: AndroidProject".
+  static final String MODEL_FETCH_STAGE_PREFIX = "Model fetch: ";
+
   abstract void setUpProject(@NotNull SyncAction.ProjectModels models, @NotNull ProgressIndicator indicator);
 
   abstract void commit();
@@ -33,7 +43,8 @@ abstract class ProjectSetup {
   static class Factory {
     @NotNull
     ProjectSetup create(@NotNull Project project) {
-      return new ProjectSetupImpl(project, new IdeModifiableModelsProviderImpl(project), new ModuleSetup.Factory());
+      return new ProjectSetupImpl(project, new IdeModifiableModelsProviderImpl(project), new ModuleSetup.Factory(),
+                                  new ModuleModelsConverter());
     }
   }
 
@@ -42,25 +53,42 @@ abstract class ProjectSetup {
     @NotNull private final Project myProject;
     @NotNull private final IdeModifiableModelsProvider myModelsProvider;
     @NotNull private final ModuleSetup.Factory myModuleSetupFactory;
+    @NotNull private final ModuleModelsConverter myModelsConverter;
 
     ProjectSetupImpl(@NotNull Project project,
                      @NotNull IdeModifiableModelsProvider modelsProvider,
-                     @NotNull ModuleSetup.Factory moduleSetupFactory) {
+                     @NotNull ModuleSetup.Factory moduleSetupFactory,
+                     @NotNull ModuleModelsConverter modelsConverter) {
       myProject = project;
       myModelsProvider = modelsProvider;
       myModuleSetupFactory = moduleSetupFactory;
+      myModelsConverter = modelsConverter;
     }
 
     @Override
     void setUpProject(@NotNull SyncAction.ProjectModels models, @NotNull ProgressIndicator indicator) {
+      GradleSyncSummary syncSummary = GradleSyncState.getInstance(myProject).getSummary();
+      SyncAction.ModelFetchTimings fetchTimings = models.getFetchTimings();
+      for (String modelType : fetchTimings.getModelTypes()) {
+        syncSummary.addStageTiming(MODEL_FETCH_STAGE_PREFIX + modelType, fetchTimings.getTimeMs(modelType));
+      }
+      getLog().info(fetchTimings.toString());
+
+      // Model conversion does not change the project, so it is done before (and outside of) the write action.
+      long startTimeMs = System.currentTimeMillis();
+      Map<String, ModuleModelsConverter.ConvertedModels> convertedModels = myModelsConverter.convert(models, indicator);
+      syncSummary.addStageTiming(MODEL_CONVERSION_STAGE, System.currentTimeMillis() - startTimeMs);
+
       ModuleSetup moduleSetup = myModuleSetupFactory.create(myProject, myModelsProvider);
       try {
+        startTimeMs = System.currentTimeMillis();
         executeProjectChangeAction(true /* synchronous */, new DisposeAwareProjectChange(myProject) {
           @Override
           public void execute() {
-            moduleSetup.setUpModules(models, indicator);
+            moduleSetup.setUpModules(models, convertedModels, indicator);
           }
         });
+        syncSummary.addStageTiming(MODULE_SETUP_STAGE, System.currentTimeMillis() - startTimeMs);
       }
       catch (Throwable e) {
         disposeChanges();
@@ -84,6 +112,11 @@ abstract class ProjectSetup {
       }
     }
 
+    @NotNull
+    private static Logger getLog() {
+      return Logger.getInstance(ProjectSetup.class);
+    }
+
     private void disposeChanges() {
       executeProjectChangeAction(true /* synchronous */, new DisposeAwareProjectChange(myProject) {
         @Override
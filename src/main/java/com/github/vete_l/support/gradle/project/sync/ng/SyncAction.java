@@ -23,6 +23,7 @@ import com.android.java.model.JavaProject;
 import org.gradle.tooling.BuildAction;
 import org.gradle.tooling.BuildController;
 import org.gradle.tooling.model.GradleProject;
+import org.gradle.tooling.model.GradleTask;
 import org.gradle.tooling.model.gradle.BasicGradleProject;
 import org.gradle.tooling.model.gradle.GradleBuild;
 import org.jetbrains.annotations.NotNull;
@@ -34,26 +35,57 @@ import java.util.*;
 /**
  * Action that executed inside Gradle to obtain the project structure (IDEA project and modules) and the custom models for each module (e.g.
  * {@link AndroidProject}.
+ * <p>
+ * If a set of Gradle paths is given, models are only requested for those modules (a "partial sync".) The caller is responsible for including
+ * the modules that depend on them.
+ * <p>
+ * If the selected variants are given, only the models of those variants (and of the variants they depend on) are kept by the IDE (a
+ * "single-variant sync".) The Android plugins supported by this action always build the models of all the variants, so the selection is
+ * carried in the {@link ProjectModels} obtained, for the IDE to skip copying the other variants.
  */
 // (This class replaces org.jetbrains.plugins.gradle.model.ProjectImportAction.)
 public class SyncAction implements BuildAction<SyncAction.ProjectModels>, Serializable {
   @NotNull private final Set<Class<?>> myAndroidModelTypes;
   @NotNull private final Set<Class<?>> myJavaModelTypes;
+  @NotNull private final Set<String> myModuleGradlePaths;
+  @Nullable private final Map<String, String> mySelectedVariants;
 
   public SyncAction() {
     this(Collections.emptySet(), Collections.emptySet());
   }
 
   public SyncAction(@NotNull Set<Class<?>> androidModelTypes, @NotNull Set<Class<?>> javaModelTypes) {
+    this(androidModelTypes, javaModelTypes, Collections.emptySet());
+  }
+
+  /**
+   * @param moduleGradlePaths the Gradle paths of the modules to obtain models for, or an empty set to obtain models for all modules.
+   */
+  public SyncAction(@NotNull Set<Class<?>> androidModelTypes,
+                    @NotNull Set<Class<?>> javaModelTypes,
+                    @NotNull Set<String> moduleGradlePaths) {
+    this(androidModelTypes, javaModelTypes, moduleGradlePaths, null);
+  }
+
+  /**
+   * @param moduleGradlePaths the Gradle paths of the modules to obtain models for, or an empty set to obtain models for all modules.
+   * @param selectedVariants  the names of the variants selected in the IDE, by Gradle path, or {@code null} to keep all variants.
+   */
+  public SyncAction(@NotNull Set<Class<?>> androidModelTypes,
+                    @NotNull Set<Class<?>> javaModelTypes,
+                    @NotNull Set<String> moduleGradlePaths,
+                    @Nullable Map<String, String> selectedVariants) {
     myAndroidModelTypes = androidModelTypes;
     myJavaModelTypes = javaModelTypes;
+    myModuleGradlePaths = moduleGradlePaths;
+    mySelectedVariants = selectedVariants;
   }
 
   @Override
   @Nullable
   public ProjectModels execute(@NotNull BuildController controller) {
     GradleBuild gradleBuild = controller.getBuildModel();
-    ProjectModels models = new ProjectModels(myAndroidModelTypes, myJavaModelTypes);
+    ProjectModels models = new ProjectModels(myAndroidModelTypes, myJavaModelTypes, myModuleGradlePaths, mySelectedVariants);
     models.populate(gradleBuild, controller);
     return models;
   }
@@ -61,14 +93,35 @@ public class SyncAction implements BuildAction<SyncAction.ProjectModels>, Serial
   public static class ProjectModels implements Serializable {
     @NotNull private final Set<Class<?>> myAndroidModelTypes;
     @NotNull private final Set<Class<?>> myJavaModelTypes;
+    @NotNull private final Set<String> myModuleGradlePaths;
+    // Key: module's Gradle path.
+    @Nullable private final Map<String, String> mySelectedVariants;
 
     // Key: module's Gradle path.
     @NotNull private final Map<String, ModuleModels> myModelsByModule = new HashMap<>();
+    // All the projects in the build, including the ones skipped by a partial sync.
+    @NotNull private final List<GradleProject> myGradleProjects = new ArrayList<>();
+    @NotNull private final ModelFetchTimings myFetchTimings = new ModelFetchTimings();
     @Nullable private GlobalLibraryMap myGlobalLibraryMap;
 
     public ProjectModels(@NotNull Set<Class<?>> androidModelTypes, @NotNull Set<Class<?>> javaModelTypes) {
+      this(androidModelTypes, javaModelTypes, Collections.emptySet());
+    }
+
+    public ProjectModels(@NotNull Set<Class<?>> androidModelTypes,
+                         @NotNull Set<Class<?>> javaModelTypes,
+                         @NotNull Set<String> moduleGradlePaths) {
+      this(androidModelTypes, javaModelTypes, moduleGradlePaths, null);
+    }
+
+    public ProjectModels(@NotNull Set<Class<?>> androidModelTypes,
+                         @NotNull Set<Class<?>> javaModelTypes,
+                         @NotNull Set<String> moduleGradlePaths,
+                         @Nullable Map<String, String> selectedVariants) {
       myAndroidModelTypes = androidModelTypes;
       myJavaModelTypes = javaModelTypes;
+      myModuleGradlePaths = moduleGradlePaths;
+      mySelectedVariants = selectedVariants;
     }
 
     public void populate(@NotNull GradleBuild gradleBuild, @NotNull BuildController controller) {
@@ -82,32 +135,80 @@ public class SyncAction implements BuildAction<SyncAction.ProjectModels>, Serial
       for (ModuleModels moduleModels : myModelsByModule.values()) {
         AndroidProject androidProject = moduleModels.findModel(AndroidProject.class);
         if (androidProject != null) {
+          long startTimeNanos = System.nanoTime();
           myGlobalLibraryMap = controller.findModel(moduleModels.findModel(GradleProject.class), GlobalLibraryMap.class);
+          myFetchTimings.record(GlobalLibraryMap.class, System.nanoTime() - startTimeNanos, myGlobalLibraryMap != null);
           break;
         }
       }
     }
 
     private void populateModels(@NotNull GradleProject project, @NotNull BuildController controller) {
-      ModuleModels models = new ModuleModels(project, myAndroidModelTypes, myJavaModelTypes);
-      models.populate(project, controller);
-      myModelsByModule.put(project.getPath(), models);
+      myGradleProjects.add(project);
+      if (!isPartial() || myModuleGradlePaths.contains(project.getPath())) {
+        ModuleModels models = new ModuleModels(project, myAndroidModelTypes, myJavaModelTypes);
+        models.populate(project, controller, myFetchTimings);
+        myModelsByModule.put(project.getPath(), models);
+      }
 
       for (GradleProject child : project.getChildren()) {
         populateModels(child, controller);
       }
     }
 
+    /**
+     * @return {@code true} if models were only obtained for some of the modules. Modules without models should keep the ones obtained by a
+     * previous sync.
+     */
+    public boolean isPartial() {
+      return !myModuleGradlePaths.isEmpty();
+    }
+
+    /**
+     * @return {@code true} if only the selected variants (and the variants they depend on) should be kept. See
+     * {@link #getSelectedVariants()}.
+     */
+    public boolean isSingleVariant() {
+      return mySelectedVariants != null;
+    }
+
+    /**
+     * @return the names of the variants selected in the IDE when sync started, by Gradle path. Empty if this is not a single-variant sync.
+     */
+    @NotNull
+    public Map<String, String> getSelectedVariants() {
+      return mySelectedVariants != null ? mySelectedVariants : Collections.emptyMap();
+    }
+
+    /**
+     * @return the Gradle paths of the modules models were obtained for.
+     */
     @NotNull
     public Collection<String> getProjectPaths() {
       return myModelsByModule.keySet();
     }
 
+    /**
+     * @return all the projects in the build, even the ones skipped by a partial sync.
+     */
+    @NotNull
+    public List<GradleProject> getGradleProjects() {
+      return myGradleProjects;
+    }
+
     @Nullable
     public ModuleModels getModels(@NotNull String gradlePath) {
       return myModelsByModule.get(gradlePath);
     }
 
+    /**
+     * @return how long it took Gradle to build each type of model.
+     */
+    @NotNull
+    public ModelFetchTimings getFetchTimings() {
+      return myFetchTimings;
+    }
+
     /**
      * @return {@link GlobalLibraryMap} retrieved from android plugin.
      * <br/>
@@ -124,11 +225,16 @@ public class SyncAction implements BuildAction<SyncAction.ProjectModels>, Serial
   }
 
   public static class ModuleModels implements Serializable {
+    private static final String JAVA_COMPILE_TASK_NAME = "compileJava";
+
     @NotNull private final GradleProject myGradleProject;
     @NotNull private final Set<Class<?>> myAndroidModelTypes;
     @NotNull private final Set<Class<?>> myJavaModelTypes;
 
     @NotNull private final Map<Class, Object> myModelsByType = new HashMap<>();
+    // Model types the module was already asked for, and that it does not provide. They are kept apart from the models, so that this
+    // object can be serialized: a marker value in the map would not be identical to itself once deserialized in the IDE.
+    @NotNull private final Set<Class<?>> myMissingModelTypes = new HashSet<>();
 
     public ModuleModels(@NotNull GradleProject gradleProject,
                         @NotNull Set<Class<?>> androidModelTypes,
@@ -139,29 +245,64 @@ public class SyncAction implements BuildAction<SyncAction.ProjectModels>, Serial
     }
 
     public void populate(@NotNull GradleProject gradleProject, @NotNull BuildController controller) {
+      populate(gradleProject, controller, new ModelFetchTimings());
+    }
+
+    /**
+     * Requests the models of this module. Model types are probed in order, and probing stops at the first type the module provides: e.g.
+     * an Android module is never asked for a {@link JavaProject}. Modules with a "compileJava" task are probed for {@link JavaProject}
+     * first, so Java modules (usually the majority in large projects) are not asked for Android and native models they cannot provide.
+     * <p>
+     * Models are requested sequentially: the {@link BuildController} of the Gradle versions supported by this action cannot be used
+     * from more than one thread.
+     */
+    public void populate(@NotNull GradleProject gradleProject, @NotNull BuildController controller, @NotNull ModelFetchTimings timings) {
       myModelsByType.put(GradleProject.class, gradleProject);
-      AndroidProject androidProject = findAndAddModel(gradleProject, controller, AndroidProject.class);
+      if (hasTask(gradleProject, JAVA_COMPILE_TASK_NAME) && findAndAddJavaModels(gradleProject, controller, timings)) {
+        return;
+      }
+      AndroidProject androidProject = findAndAddModel(gradleProject, controller, AndroidProject.class, timings);
       if (androidProject != null) {
         for (Class<?> type : myAndroidModelTypes) {
-          findAndAddModel(gradleProject, controller, type);
+          findAndAddModel(gradleProject, controller, type, timings);
         }
         // No need to query extra models.
         return;
       }
-      NativeAndroidProject ndkAndroidProject = findAndAddModel(gradleProject, controller, NativeAndroidProject.class);
+      NativeAndroidProject ndkAndroidProject = findAndAddModel(gradleProject, controller, NativeAndroidProject.class, timings);
       if (ndkAndroidProject != null) {
         // No need to query extra models.
         return;
       }
-      JavaProject javaProject = findAndAddModel(gradleProject, controller, JavaProject.class);
-      if (javaProject != null) {
-        for (Class<?> type : myJavaModelTypes) {
-          findAndAddModel(gradleProject, controller, type);
-        }
+      if (!myMissingModelTypes.contains(JavaProject.class) && findAndAddJavaModels(gradleProject, controller, timings)) {
         return;
       }
       // Jar/Aar module.
-      findAndAddModel(gradleProject, controller, ArtifactModel.class);
+      findAndAddModel(gradleProject, controller, ArtifactModel.class, timings);
+    }
+
+    private boolean findAndAddJavaModels(@NotNull GradleProject gradleProject,
+                                         @NotNull BuildController controller,
+                                         @NotNull ModelFetchTimings timings) {
+      JavaProject javaProject = findAndAddModel(gradleProject, controller, JavaProject.class, timings);
+      if (javaProject == null) {
+        // Remember the failed probe, so it is not repeated.
+        myMissingModelTypes.add(JavaProject.class);
+        return false;
+      }
+      for (Class<?> type : myJavaModelTypes) {
+        findAndAddModel(gradleProject, controller, type, timings);
+      }
+      return true;
+    }
+
+    private static boolean hasTask(@NotNull GradleProject gradleProject, @NotNull String taskName) {
+      for (GradleTask task : gradleProject.getTasks()) {
+        if (taskName.equals(task.getName())) {
+          return true;
+        }
+      }
+      return false;
     }
 
     @NotNull
@@ -175,8 +316,13 @@ public class SyncAction implements BuildAction<SyncAction.ProjectModels>, Serial
     }
 
     @Nullable
-    private <T> T findAndAddModel(@NotNull GradleProject gradleProject, @NotNull BuildController controller, Class<T> modelType) {
+    private <T> T findAndAddModel(@NotNull GradleProject gradleProject,
+                                  @NotNull BuildController controller,
+                                  @NotNull Class<T> modelType,
+                                  @NotNull ModelFetchTimings timings) {
+      long startTimeNanos = System.nanoTime();
       T model = controller.findModel(gradleProject, modelType);
+      timings.record(modelType, System.nanoTime() - startTimeNanos, model != null);
       if (model != null) {
         myModelsByType.put(modelType, model);
       }
@@ -197,4 +343,65 @@ public class SyncAction implements BuildAction<SyncAction.ProjectModels>, Serial
       return null;
     }
   }
+
+  /**
+   * The time spent by Gradle building models, per model type.
+   */
+  public static class ModelFetchTimings implements Serializable {
+    // Key: simple name of the model type.
+    @NotNull private final Map<String, long[]> myTimings = new TreeMap<>();
+
+    private static final int TIME_NANOS = 0;
+    private static final int REQUEST_COUNT = 1;
+    private static final int FOUND_COUNT = 2;
+
+    void record(@NotNull Class<?> modelType, long timeNanos, boolean found) {
+      long[] timing = myTimings.computeIfAbsent(modelType.getSimpleName(), type -> new long[3]);
+      timing[TIME_NANOS] += timeNanos;
+      timing[REQUEST_COUNT]++;
+      if (found) {
+        timing[FOUND_COUNT]++;
+      }
+    }
+
+    /**
+     * @return the simple names of the model types requested.
+     */
+    @NotNull
+    public Set<String> getModelTypes() {
+      return myTimings.keySet();
+    }
+
+    public long getTimeMs(@NotNull String modelType) {
+      return get(modelType, TIME_NANOS) / 1_000_000;
+    }
+
+    public long getRequestCount(@NotNull String modelType) {
+      return get(modelType, REQUEST_COUNT);
+    }
+
+    /**
+     * @return how many of the requests for the given model type returned a model.
+     */
+    public long getFoundCount(@NotNull String modelType) {
+      return get(modelType, FOUND_COUNT);
+    }
+
+    private long get(@NotNull String modelType, int index) {
+      long[] timing = myTimings.get(modelType);
+      return timing != null ? timing[index] : 0;
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder buffer = new StringBuilder("ModelFetchTimings{");
+      String separator = "";
+      for (String modelType : getModelTypes()) {
+        buffer.append(separator).append(modelType).append("=").append(getTimeMs(modelType)).append("ms (")
+              .append(getFoundCount(modelType)).append("/").append(getRequestCount(modelType)).append(")");
+        separator = ", ";
+      }
+      return buffer.append('}').toString();
+    }
+  }
 }
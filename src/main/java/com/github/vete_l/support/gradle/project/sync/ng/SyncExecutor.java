@@ -36,7 +36,11 @@ import org.jetbrains.plugins.gradle.settings.GradleExecutionSettings;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import static com.android.tools.idea.gradle.project.sync.common.RequiredVariantsFinder.getSelectedVariants;
+import static com.android.tools.idea.gradle.project.sync.common.RequiredVariantsFinder.isSingleVariantSyncEnabled;
 import static com.android.tools.idea.gradle.project.sync.ng.GradleSyncProgress.notifyProgress;
 import static com.android.tools.idea.gradle.util.GradleUtil.GRADLE_SYSTEM_ID;
 import static com.android.tools.idea.gradle.util.GradleUtil.getOrCreateGradleExecutionSettings;
@@ -73,6 +77,15 @@ class SyncExecutor {
   }
 
   void syncProject(@NotNull ProgressIndicator indicator, @NotNull SyncExecutionCallback callback) {
+    syncProject(indicator, callback, Collections.emptySet());
+  }
+
+  /**
+   * @param moduleGradlePaths the Gradle paths of the modules to obtain models for, or an empty set to sync the whole project.
+   */
+  void syncProject(@NotNull ProgressIndicator indicator,
+                   @NotNull SyncExecutionCallback callback,
+                   @NotNull Set<String> moduleGradlePaths) {
     Runnable removeMessagesTask = () -> mySyncMessages.removeMessages((String)null);
     Application application = ApplicationManager.getApplication();
     if (application.isDispatchThread()) {
@@ -89,9 +102,10 @@ class SyncExecutor {
     // TODO: Handle sync cancellation.
 
     GradleExecutionSettings executionSettings = getOrCreateGradleExecutionSettings(myProject);
+    Map<String, String> selectedVariants = isSingleVariantSyncEnabled() ? getSelectedVariants(myProject) : null;
     Function<ProjectConnection, Void> syncFunction = connection -> {
       SyncAction syncAction = new SyncAction(myExtraSyncModelExtensionManager.getExtraAndroidModels(),
-                                             myExtraSyncModelExtensionManager.getExtraJavaModels());
+                                             myExtraSyncModelExtensionManager.getExtraJavaModels(), moduleGradlePaths, selectedVariants);
       BuildActionExecuter<SyncAction.ProjectModels> executor = connection.action(syncAction);
 
       List<String> commandLineArgs = myCommandLineArgs.get(myProject);
@@ -84,7 +84,7 @@ public class AndroidFacetModuleSetupStep extends AndroidModuleSetupStep {
   private static void syncSelectedVariant(@NotNull JpsAndroidModuleProperties facetProperties,
                                           @NotNull AndroidModuleModel androidModel) {
     String variantStoredInFacet = facetProperties.SELECTED_BUILD_VARIANT;
-    if (isNotEmpty(variantStoredInFacet) && androidModel.getVariantNames().contains(variantStoredInFacet)) {
+    if (isNotEmpty(variantStoredInFacet) && androidModel.isVariantFetched(variantStoredInFacet)) {
       androidModel.setSelectedVariantName(variantStoredInFacet);
     }
   }
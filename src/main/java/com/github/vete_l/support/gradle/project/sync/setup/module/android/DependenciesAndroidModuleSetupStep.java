@@ -82,6 +82,17 @@ public class DependenciesAndroidModuleSetupStep extends AndroidModuleSetupStep {
                                @Nullable SyncAction.ModuleModels gradleModels,
                                @Nullable ProgressIndicator indicator) {
     DependencySet dependencies = myDependenciesExtractor.extractFrom(androidModel.getSelectedVariant());
+    setUpDependencies(module, ideModelsProvider, androidModel, dependencies);
+  }
+
+  /**
+   * Sets up the given dependencies of the selected variant of a module, which were extracted ahead of the module setup (e.g. in parallel
+   * with the ones of other modules during sync.)
+   */
+  public void setUpDependencies(@NotNull Module module,
+                                @NotNull IdeModifiableModelsProvider ideModelsProvider,
+                                @NotNull AndroidModuleModel androidModel,
+                                @NotNull DependencySet dependencies) {
     for (LibraryDependency dependency : dependencies.onLibraries()) {
       updateLibraryDependency(module, ideModelsProvider, dependency, androidModel);
     }
@@ -17,43 +17,23 @@ package com.github.vete_l.support.gradle.service.repo;
 
 import com.android.annotations.Nullable;
 import com.android.ide.common.repository.GradleVersion;
-import com.google.common.collect.Maps;
 import com.intellij.openapi.application.ApplicationManager;
-import com.intellij.openapi.diagnostic.Logger;
-import com.intellij.openapi.util.JDOMUtil;
-import com.intellij.openapi.util.Pair;
-import org.jdom.Document;
-import org.jdom.Element;
-import org.jdom.JDOMException;
 import org.jetbrains.annotations.NotNull;
 
-import java.io.IOException;
-import java.net.URI;
-import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import static com.android.tools.idea.gradle.service.repo.VersionMetadataCache.Source.MAVEN_CENTRAL;
+
 /**
  * Facades external repositories (maven, jcenter etc).
+ * <p/>
+ * The versions of the artifacts are kept in the {@link VersionMetadataCache}, which is shared with the other places that look up
+ * versions of remote artifacts.
  */
 public class ExternalRepository {
-
-  // TODO current implementation is rather straightforward, e.g. it doesn't handle concurrent requests, doesn't attempt to re-query
-  // TODO when we become online etc. Also it was found out that there is also another place which has a similar job
-  // TODO (MavenDependencyLookupDialog.searchMavenCentral()), so, we'd like to move that code out from a UI class and consolidate
-  // TODO it inside the current one.
-
-  private static final String URL_TEMPLATE = "http://repo1.maven.org/maven2/%s/%s/maven-metadata.xml";
-
-  private static final String MAVEN_METADATA_VERSIONING = "versioning";
-  private static final String MAVEN_METADATA_LATEST = "latest";
-
-  private static final Logger LOG = Logger.getInstance(ExternalRepository.class);
-
-  private final ConcurrentMap<Pair<String/*group*/, String/*artifact*/>, GradleVersion> myLatestVersionCache = Maps.newConcurrentMap();
-
   /**
-   * Current implementation is rather straightforward, i.e. it's not expected that this service is used from a number of places
-   * concurrently. However, we want to protect ourselves from background thread pool starvation, so, we allow only one request at a time.
+   * It's not expected that this service is used from a number of places concurrently. However, we want to protect ourselves from
+   * background thread pool starvation, so, we allow only one request at a time.
    * <p/>
    * This field controls that.
    */
@@ -61,7 +41,7 @@ public class ExternalRepository {
 
   @Nullable
   public GradleVersion getLatest(@NotNull String groupId, @NotNull String artifactId) {
-    return myLatestVersionCache.get(Pair.create(groupId, artifactId));
+    return VersionMetadataCache.getInstance().getCachedLatestVersion(MAVEN_CENTRAL, groupId, artifactId);
   }
 
   /**
@@ -80,7 +60,8 @@ public class ExternalRepository {
       @Override
       public void run() {
         try {
-          doRefreshFor(groupId, artifactId);
+          // Does not download anything if the cached versions have not expired yet.
+          VersionMetadataCache.getInstance().getVersions(MAVEN_CENTRAL, groupId, artifactId);
         }
         finally {
           myRequestInProgress.set(false);
@@ -88,45 +69,4 @@ public class ExternalRepository {
       }
     });
   }
-
-  private void doRefreshFor(@NotNull final String groupId, @NotNull final String artifactId) {
-    String url = String.format(URL_TEMPLATE, groupId.replaceAll("\\.", "/"), artifactId);
-    Document document;
-    try {
-      document = JDOMUtil.loadDocument(URI.create(url).toURL());
-    }
-    catch (JDOMException e) {
-      LOG.warn(String.format(
-        "Unexpected exception occurred on attempt to parse document from %s (checking the latest version " + "for artifact '%s:%s')",
-        url, groupId, artifactId));
-      return;
-    }
-    catch (IOException e) {
-      LOG.warn(String.format("Unexpected I/O exception occurred on attempt to check the latest version for artifact '%s:%s' at "
-                             + "external repository (url %s)", groupId, artifactId, url));
-      return;
-    }
-    Element versioning = document.getRootElement().getChild(MAVEN_METADATA_VERSIONING);
-    if (versioning == null) {
-      LOG.warn(String.format("Can't check the latest version for artifact '%s:%s'. Reason: artifact metadata info downloaded from "
-                             + "%s has unknown format - expected to find a <%s> element under a root element but it's not there",
-                             groupId, artifactId, url, MAVEN_METADATA_VERSIONING));
-      return;
-    }
-    Element latest = versioning.getChild(MAVEN_METADATA_LATEST);
-    if (latest == null) {
-      LOG.warn(String.format("Can't check the latest version for artifact '%s:%s'. Reason: artifact metadata info downloaded from "
-                             + "%s has unknown format - expected to find a <%s> element under a <%s> element but it's not there",
-                             groupId, artifactId, url, MAVEN_METADATA_LATEST, MAVEN_METADATA_VERSIONING));
-      return;
-    }
-    try {
-      GradleVersion version = GradleVersion.parse(latest.getText());
-      myLatestVersionCache.put(Pair.create(groupId, artifactId), version);
-    }
-    catch (NumberFormatException e) {
-      LOG.warn(String.format("Can't check the latest version for artifact '%s:%s'. Reason: artifact metadata info downloaded from " +
-                             "%s has unknown version format - '%s'", groupId, artifactId, url, latest.getText()));
-    }
-  }
 }
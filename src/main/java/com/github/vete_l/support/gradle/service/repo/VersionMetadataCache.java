@@ -0,0 +1,472 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.vete_l.support.gradle.service.repo;
+
+import com.android.ide.common.repository.GradleVersion;
+import com.google.common.annotations.VisibleForTesting;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.io.HttpRequests;
+import com.intellij.util.io.HttpRequests.HttpStatusException;
+import org.jdom.Element;
+import org.jdom.JDOMException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+import static com.intellij.openapi.util.JDOMUtil.load;
+import static com.intellij.openapi.util.io.FileUtil.*;
+import static com.intellij.openapi.util.text.StringUtil.isNotEmpty;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * Caches the versions of the artifacts published in remote repositories (e.g. Maven Central), as listed in their maven-metadata.xml
+ * files. All the places that need to know the versions of a remote artifact (e.g. the new project wizard, the dependency dialogs and the
+ * checks for library updates) should go through this cache, so the same metadata is not downloaded again and again.
+ * <p>
+ * Entries expire after a time that depends on their source. Artifacts that could not be found are cached too, for a shorter time. When
+ * the metadata could not be downloaded (e.g. the IDE is offline, or the repository returned a server error), the previously cached
+ * versions are kept and used instead, and the download is retried after a short delay. Concurrent lookups of the same artifact send a
+ * single request. The least recently used entries are evicted once the cache is full, and the cache is stored under the IDE's system
+ * folder when the IDE exits.
+ */
+public class VersionMetadataCache implements Disposable {
+  private static final int MAGIC = 0x564d4443; // "VMDC"
+  // Increase the value when changing the format of the cache file.
+  private static final int FORMAT_VERSION = 1;
+  private static final int DEFAULT_MAX_SIZE = 2000;
+  // Time before downloading again metadata that could not be downloaded.
+  private static final long RETRY_DELAY_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+  public enum Source {
+    MAVEN_CENTRAL("https://repo1.maven.org/maven2/", TimeUnit.HOURS.toMillis(24), TimeUnit.MINUTES.toMillis(30)),
+    JCENTER("https://jcenter.bintray.com/", TimeUnit.HOURS.toMillis(24), TimeUnit.MINUTES.toMillis(30));
+
+    @NotNull private final String myDefaultUrl;
+    private final long myTimeToLiveMillis;
+    private final long myNegativeTimeToLiveMillis;
+
+    Source(@NotNull String defaultUrl, long timeToLiveMillis, long negativeTimeToLiveMillis) {
+      myDefaultUrl = defaultUrl;
+      myTimeToLiveMillis = timeToLiveMillis;
+      myNegativeTimeToLiveMillis = negativeTimeToLiveMillis;
+    }
+  }
+
+  @NotNull private final Map<Source, String> myUrls;
+  @Nullable private final File myCacheFile;
+  private final int myMaxSize;
+  @NotNull private final LongSupplier myClock;
+
+  // Guarded by "myEntries". Iterates from the least to the most recently used entry.
+  @NotNull private final LinkedHashMap<String, Entry> myEntries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+      return size() > myMaxSize;
+    }
+  };
+  private boolean myLoaded;
+  private boolean myModified;
+
+  @NotNull private final ConcurrentMap<String, CompletableFuture<List<GradleVersion>>> myPendingRequests = new ConcurrentHashMap<>();
+  // Time of the last failed download of each artifact's metadata. Not stored: a failure only matters while it is likely to happen again.
+  @NotNull private final ConcurrentMap<String, Long> myFailedRequests = new ConcurrentHashMap<>();
+
+  @NotNull
+  public static VersionMetadataCache getInstance() {
+    return ServiceManager.getService(VersionMetadataCache.class);
+  }
+
+  public VersionMetadataCache() {
+    this(Collections.emptyMap(), new File(PathManager.getSystemPath(), join("android", "version-metadata.bin")), DEFAULT_MAX_SIZE,
+         System::currentTimeMillis);
+  }
+
+  /**
+   * @param urls      the URLs to use instead of the default URLs of the sources (e.g. the URL of a local HTTP server.)
+   * @param cacheFile the file the cache is stored to, or {@code null} if the cache should not be stored.
+   */
+  @VisibleForTesting
+  VersionMetadataCache(@NotNull Map<Source, String> urls, @Nullable File cacheFile, int maxSize, @NotNull LongSupplier clock) {
+    myUrls = new EnumMap<>(Source.class);
+    for (Source source : Source.values()) {
+      myUrls.put(source, urls.getOrDefault(source, source.myDefaultUrl));
+    }
+    myCacheFile = cacheFile;
+    myMaxSize = maxSize;
+    myClock = clock;
+  }
+
+  /**
+   * Returns the versions of the given artifact, from newest to oldest. The artifact's metadata is downloaded if it is not cached, or if
+   * the cached metadata expired. This method blocks until then, so it should not be called from the UI thread.
+   *
+   * @return the versions of the artifact, or an empty list if the artifact could not be found. If the metadata could not be downloaded,
+   * the versions cached before (even if they expired), or an empty list if there are none.
+   */
+  @NotNull
+  public List<GradleVersion> getVersions(@NotNull Source source, @NotNull String groupId, @NotNull String artifactId) {
+    String key = getKey(source, groupId, artifactId);
+    Entry entry = getEntry(key);
+    if (entry != null && entry.myComplete && !isExpired(source, entry)) {
+      return entry.getVersions();
+    }
+    List<GradleVersion> cachedVersions = entry != null ? entry.getVersions() : Collections.emptyList();
+    Long failureTimestamp = myFailedRequests.get(key);
+    if (failureTimestamp != null) {
+      long age = myClock.getAsLong() - failureTimestamp;
+      if (age >= 0 && age < RETRY_DELAY_MILLIS) {
+        return cachedVersions;
+      }
+    }
+
+    CompletableFuture<List<GradleVersion>> request = new CompletableFuture<>();
+    CompletableFuture<List<GradleVersion>> pendingRequest = myPendingRequests.putIfAbsent(key, request);
+    if (pendingRequest != null) {
+      // Another thread is downloading the same metadata.
+      return pendingRequest.join();
+    }
+    try {
+      Entry fetched = fetch(source, groupId, artifactId);
+      if (fetched == null) {
+        // Do not replace the cached versions: the artifact may still exist.
+        myFailedRequests.put(key, myClock.getAsLong());
+        request.complete(cachedVersions);
+        return cachedVersions;
+      }
+      myFailedRequests.remove(key);
+      putEntry(key, fetched);
+      request.complete(fetched.getVersions());
+      return fetched.getVersions();
+    }
+    finally {
+      myPendingRequests.remove(key);
+      if (!request.isDone()) {
+        request.complete(cachedVersions);
+      }
+    }
+  }
+
+  /**
+   * Returns the newest version of the given artifact that is accepted by the given filter. Like
+   * {@link #getVersions(Source, String, String)}, this method may download the artifact's metadata.
+   */
+  @Nullable
+  public GradleVersion findLatestVersion(@NotNull Source source,
+                                         @NotNull String groupId,
+                                         @NotNull String artifactId,
+                                         @Nullable Predicate<GradleVersion> filter,
+                                         boolean includePreviews) {
+    for (GradleVersion version : getVersions(source, groupId, artifactId)) {
+      if ((includePreviews || !version.isPreview()) && (filter == null || filter.test(version))) {
+        return version;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the newest cached version of the given artifact, even if it expired. This method never downloads anything.
+   *
+   * @return the newest version, or {@code null} if the artifact is not in the cache or could not be found.
+   */
+  @Nullable
+  public GradleVersion getCachedLatestVersion(@NotNull Source source, @NotNull String groupId, @NotNull String artifactId) {
+    Entry entry = getEntry(getKey(source, groupId, artifactId));
+    if (entry == null) {
+      return null;
+    }
+    List<GradleVersion> versions = entry.getVersions();
+    return versions.isEmpty() ? null : versions.get(0);
+  }
+
+  /**
+   * Returns the cached versions of the given artifact, from newest to oldest, if they have not expired. This method never downloads
+   * anything.
+   *
+   * @return the versions of the artifact (an empty list if the artifact is known not to exist), or {@code null} if the artifact is not in
+   * the cache or its entry expired.
+   */
+  @Nullable
+  public List<GradleVersion> getCachedVersions(@NotNull Source source, @NotNull String groupId, @NotNull String artifactId) {
+    Entry entry = getEntry(getKey(source, groupId, artifactId));
+    return entry == null || isExpired(source, entry) ? null : entry.getVersions();
+  }
+
+  /**
+   * Records the versions of an artifact obtained in some other way (e.g. a search in a remote repository.) Such versions may be only some
+   * of the artifact's versions (e.g. only the latest one), so {@link #getVersions(Source, String, String)} still downloads the artifact's
+   * metadata.
+   *
+   * @param versions the versions of the artifact, or an empty list if the artifact was not found.
+   */
+  public void put(@NotNull Source source,
+                  @NotNull String groupId,
+                  @NotNull String artifactId,
+                  @NotNull Collection<GradleVersion> versions) {
+    String key = getKey(source, groupId, artifactId);
+    List<String> values = new ArrayList<>(versions.size());
+    for (GradleVersion version : versions) {
+      values.add(version.toString());
+    }
+    synchronized (myEntries) {
+      Entry existing = getEntry(key);
+      if (existing != null && existing.myComplete && !isExpired(source, existing)) {
+        // Do not replace all the versions of the artifact with only some of them.
+        return;
+      }
+      putEntry(key, new Entry(values, myClock.getAsLong(), false));
+    }
+  }
+
+  public void clear() {
+    myFailedRequests.clear();
+    synchronized (myEntries) {
+      myEntries.clear();
+      myLoaded = true;
+      myModified = true;
+    }
+  }
+
+  @Override
+  public void dispose() {
+    synchronized (myEntries) {
+      if (myModified) {
+        save();
+      }
+    }
+  }
+
+  @NotNull
+  private static String getKey(@NotNull Source source, @NotNull String groupId, @NotNull String artifactId) {
+    return source.name() + '|' + groupId + ':' + artifactId;
+  }
+
+  private boolean isExpired(@NotNull Source source, @NotNull Entry entry) {
+    long timeToLive = entry.myVersions.isEmpty() ? source.myNegativeTimeToLiveMillis : source.myTimeToLiveMillis;
+    long age = myClock.getAsLong() - entry.myTimestamp;
+    return age < 0 || age > timeToLive;
+  }
+
+  @Nullable
+  private Entry getEntry(@NotNull String key) {
+    synchronized (myEntries) {
+      ensureLoaded();
+      return myEntries.get(key);
+    }
+  }
+
+  private void putEntry(@NotNull String key, @NotNull Entry entry) {
+    synchronized (myEntries) {
+      ensureLoaded();
+      myEntries.put(key, entry);
+      myModified = true;
+    }
+  }
+
+  /**
+   * @return the versions listed in the artifact's metadata, an entry without versions if the repository does not have the artifact, or
+   * {@code null} if the metadata could not be downloaded.
+   */
+  @Nullable
+  private Entry fetch(@NotNull Source source, @NotNull String groupId, @NotNull String artifactId) {
+    String url = myUrls.get(source) + groupId.replace('.', '/') + '/' + artifactId + "/maven-metadata.xml";
+    List<String> versions;
+    try {
+      versions = HttpRequests.request(url).accept("application/xml").connect(request -> {
+        try {
+          return parseVersions(request.getReader());
+        }
+        catch (JDOMException e) {
+          throw new IOException(String.format("Failed to parse '%1$s'", url), e);
+        }
+      });
+    }
+    catch (HttpStatusException e) {
+      if (!isNotFound(e)) {
+        logFetchFailure(groupId, artifactId, url, e);
+        return null;
+      }
+      versions = Collections.emptyList();
+    }
+    catch (IOException e) {
+      // Offline, timed out or unparseable metadata: nothing is known about the artifact.
+      logFetchFailure(groupId, artifactId, url, e);
+      return null;
+    }
+    return new Entry(versions, myClock.getAsLong(), true);
+  }
+
+  private static boolean isNotFound(@NotNull HttpStatusException e) {
+    return e.getStatusCode() == 404 || e.getStatusCode() == 410;
+  }
+
+  private static void logFetchFailure(@NotNull String groupId, @NotNull String artifactId, @NotNull String url, @NotNull IOException e) {
+    getLog().info(String.format("Failed to get the versions of artifact '%1$s:%2$s' from %3$s", groupId, artifactId, url), e);
+  }
+
+  @VisibleForTesting
+  @NotNull
+  static List<String> parseVersions(@NotNull Reader reader) throws JDOMException, IOException {
+    List<String> versions = new ArrayList<>();
+    Element versioning = load(reader).getChild("versioning");
+    if (versioning == null) {
+      return versions;
+    }
+    Element versionsElement = versioning.getChild("versions");
+    if (versionsElement != null) {
+      for (Element version : versionsElement.getChildren("version")) {
+        String value = version.getTextTrim();
+        if (isNotEmpty(value)) {
+          versions.add(value);
+        }
+      }
+    }
+    if (versions.isEmpty()) {
+      Element latest = versioning.getChild("latest");
+      if (latest != null && isNotEmpty(latest.getTextTrim())) {
+        versions.add(latest.getTextTrim());
+      }
+    }
+    return versions;
+  }
+
+  private void ensureLoaded() {
+    if (!myLoaded) {
+      myLoaded = true;
+      load();
+    }
+  }
+
+  private void load() {
+    if (myCacheFile == null || !myCacheFile.isFile()) {
+      return;
+    }
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(myCacheFile)))) {
+      if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+        return;
+      }
+      int entryCount = in.readInt();
+      for (int i = 0; i < entryCount; i++) {
+        String key = in.readUTF();
+        myEntries.put(key, Entry.read(in));
+      }
+    }
+    catch (IOException e) {
+      getLog().info(String.format("Failed to load the version metadata cache from '%1$s'", myCacheFile), e);
+      myEntries.clear();
+    }
+  }
+
+  private void save() {
+    if (myCacheFile == null) {
+      return;
+    }
+    File tempFile = new File(myCacheFile.getPath() + ".tmp");
+    try {
+      createParentDirs(myCacheFile);
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        // Entries are written from the least to the most recently used, so they are read back in the same order.
+        out.writeInt(myEntries.size());
+        for (Map.Entry<String, Entry> entry : myEntries.entrySet()) {
+          out.writeUTF(entry.getKey());
+          entry.getValue().write(out);
+        }
+      }
+      Files.move(tempFile.toPath(), myCacheFile.toPath(), REPLACE_EXISTING, ATOMIC_MOVE);
+      myModified = false;
+    }
+    catch (IOException e) {
+      getLog().warn(String.format("Failed to save the version metadata cache to '%1$s'", myCacheFile), e);
+      delete(tempFile);
+    }
+  }
+
+  @NotNull
+  private static Logger getLog() {
+    return Logger.getInstance(VersionMetadataCache.class);
+  }
+
+  private static class Entry {
+    // Empty if the artifact could not be found.
+    @NotNull final List<String> myVersions;
+    final long myTimestamp;
+    // false if the versions did not come from the artifact's metadata, and may be only some of the artifact's versions.
+    final boolean myComplete;
+
+    // Parsed lazily: most entries are never looked at again.
+    @Nullable private volatile List<GradleVersion> myParsedVersions;
+
+    Entry(@NotNull List<String> versions, long timestamp, boolean complete) {
+      myVersions = versions;
+      myTimestamp = timestamp;
+      myComplete = complete;
+    }
+
+    @NotNull
+    List<GradleVersion> getVersions() {
+      List<GradleVersion> parsedVersions = myParsedVersions;
+      if (parsedVersions == null) {
+        parsedVersions = new ArrayList<>(myVersions.size());
+        for (String version : myVersions) {
+          GradleVersion parsed = GradleVersion.tryParse(version);
+          if (parsed != null) {
+            parsedVersions.add(parsed);
+          }
+        }
+        parsedVersions.sort(Collections.reverseOrder());
+        parsedVersions = Collections.unmodifiableList(parsedVersions);
+        myParsedVersions = parsedVersions;
+      }
+      return parsedVersions;
+    }
+
+    @NotNull
+    static Entry read(@NotNull DataInput in) throws IOException {
+      long timestamp = in.readLong();
+      boolean complete = in.readBoolean();
+      int versionCount = in.readInt();
+      List<String> versions = new ArrayList<>(versionCount);
+      for (int i = 0; i < versionCount; i++) {
+        versions.add(in.readUTF());
+      }
+      return new Entry(versions, timestamp, complete);
+    }
+
+    void write(@NotNull DataOutput out) throws IOException {
+      out.writeLong(myTimestamp);
+      out.writeBoolean(myComplete);
+      out.writeInt(myVersions.size());
+      for (String version : myVersions) {
+        out.writeUTF(version);
+      }
+    }
+  }
+}
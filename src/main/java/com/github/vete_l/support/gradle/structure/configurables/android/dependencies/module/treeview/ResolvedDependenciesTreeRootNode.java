@@ -24,8 +24,10 @@ import com.android.tools.idea.gradle.structure.configurables.ui.treeview.Abstrac
 import com.android.tools.idea.gradle.structure.model.PsDependency;
 import com.android.tools.idea.gradle.structure.model.android.*;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Objects;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.intellij.util.containers.SortedList;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -34,6 +36,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static com.android.builder.model.AndroidProject.ARTIFACT_MAIN;
 import static com.android.tools.idea.gradle.structure.configurables.android.dependencies.module.treeview.DependencyNodes.createNodesFor;
@@ -74,12 +77,14 @@ class ResolvedDependenciesTreeRootNode extends AbstractPsResettableNode<PsAndroi
   private List<? extends AbstractPsModelNode> createGroupedChildren(@NotNull PsAndroidModule module,
                                                                     @NotNull Map<String, PsVariant> variantsByName) {
     Map<String, List<PsDependencyContainer>> containersWithMainArtifactByVariant = Maps.newHashMap();
+    Set<List<PsDependencyContainer>> groupsWithMainArtifact = Sets.newIdentityHashSet();
 
     Map<List<PsDependencyContainer>, List<PsDependency>> groupedDependencies = groupDependencies(module);
     for (List<PsDependencyContainer> containers : groupedDependencies.keySet()) {
       for (PsDependencyContainer container : containers) {
         if (container.getArtifact().endsWith(ARTIFACT_MAIN)) {
           containersWithMainArtifactByVariant.put(container.getVariant(), containers);
+          groupsWithMainArtifact.add(containers);
           break;
         }
       }
@@ -91,7 +96,7 @@ class ResolvedDependenciesTreeRootNode extends AbstractPsResettableNode<PsAndroi
       List<PsAndroidArtifact> groupArtifacts = extractArtifacts(containers, variantsByName);
 
       AndroidArtifactNode mainArtifactNode = null;
-      if (!containersWithMainArtifactByVariant.values().contains(containers)) {
+      if (!groupsWithMainArtifact.contains(containers)) {
         // This is a node for "Unit Test" or "Android Test"
         if (containers.size() == 1) {
           // This is not a group. Create the "main" artifact node for the same variant
@@ -155,62 +160,95 @@ class ResolvedDependenciesTreeRootNode extends AbstractPsResettableNode<PsAndroi
       }
     });
 
-    List<List<PsDependencyContainer>> containerGroups = Lists.newArrayList();
-    List<PsDependencyContainer> containers = Lists.newArrayList(dependenciesByContainer.keySet());
-
-    List<PsDependencyContainer> currentGroup = Lists.newArrayList();
-    while (!containers.isEmpty()) {
-      PsDependencyContainer container1 = containers.get(0);
-      currentGroup.add(container1);
-
-      if (containers.size() > 1) {
-        for (int i =  1; i < containers.size(); i++) {
-          PsDependencyContainer container2 = containers.get(i);
-          if (haveSameDependencies(container1, container2, dependenciesByContainer)) {
-            if (containerWithMainArtifact.values().contains(container1)) {
-              // This is "main" artifact, no need to check any further
-              currentGroup.add(container2);
-            }
-            else {
-              // Check that the "main" artifacts in these variants are also similar.
-              PsDependencyContainer mainArtifactContainer1 = containerWithMainArtifact.get(container1.getVariant());
-              PsDependencyContainer mainArtifactContainer2 = containerWithMainArtifact.get(container2.getVariant());
+    // Containers have the same dependencies as the first container of their group, and are in the same group when the containers of the
+    // "main" artifacts of their variants have the same dependencies too. Instead of comparing every container with every other one,
+    // containers are grouped by a key made of those dependencies.
+    Map<PsDependencyContainer, DependencyList> dependencyListsByContainer = Maps.newHashMap();
+    for (Map.Entry<PsDependencyContainer, List<PsDependency>> entry : dependenciesByContainer.entrySet()) {
+      dependencyListsByContainer.put(entry.getKey(), new DependencyList(entry.getValue()));
+    }
 
-              if (mainArtifactContainer1 == null && mainArtifactContainer2 == null) {
-                currentGroup.add(container2);
-              }
-              if (mainArtifactContainer1 != null &&
-                  mainArtifactContainer2 != null &&
-                  haveSameDependencies(mainArtifactContainer1, mainArtifactContainer2, dependenciesByContainer)) {
-                currentGroup.add(container2);
-              }
-            }
-          }
+    Map<GroupKey, List<PsDependencyContainer>> containersByKey = Maps.newLinkedHashMap();
+    for (PsDependencyContainer container : dependenciesByContainer.keySet()) {
+      DependencyList mainArtifactDependencies = null;
+      if (!container.getArtifact().equals(ARTIFACT_MAIN)) {
+        PsDependencyContainer mainArtifactContainer = containerWithMainArtifact.get(container.getVariant());
+        if (mainArtifactContainer != null) {
+          mainArtifactDependencies = dependencyListsByContainer.get(mainArtifactContainer);
         }
       }
-      containerGroups.add(currentGroup);
-
-      containers.removeAll(currentGroup);
-      currentGroup = Lists.newArrayList();
+      GroupKey key = new GroupKey(container.getArtifact(), dependencyListsByContainer.get(container), mainArtifactDependencies);
+      containersByKey.computeIfAbsent(key, k -> Lists.newArrayList()).add(container);
     }
 
     Map<List<PsDependencyContainer>, List<PsDependency>> dependenciesByContainers = Maps.newHashMap();
-    for (List<PsDependencyContainer> group : containerGroups) {
+    for (List<PsDependencyContainer> group : containersByKey.values()) {
       PsDependencyContainer container = group.get(0);
       dependenciesByContainers.put(group, dependenciesByContainer.get(container));
     }
     return dependenciesByContainers;
   }
 
-  private static boolean haveSameDependencies(@NotNull PsDependencyContainer c1,
-                                              @NotNull PsDependencyContainer c2,
-                                              @NotNull Map<PsDependencyContainer, List<PsDependency>> dependenciesByContainer) {
-    if (c1.getArtifact().equals(c2.getArtifact())) {
-      List<PsDependency> d1 = dependenciesByContainer.get(c1);
-      List<PsDependency> d2 = dependenciesByContainer.get(c2);
-      return d1.equals(d2);
+  /**
+   * The sorted dependencies of a container, with their hash code computed once.
+   */
+  private static final class DependencyList {
+    @NotNull private final List<PsDependency> myDependencies;
+    private final int myHashCode;
+
+    DependencyList(@NotNull List<PsDependency> dependencies) {
+      myDependencies = dependencies;
+      myHashCode = dependencies.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      DependencyList other = (DependencyList)o;
+      return myHashCode == other.myHashCode && myDependencies.equals(other.myDependencies);
+    }
+
+    @Override
+    public int hashCode() {
+      return myHashCode;
+    }
+  }
+
+  private static final class GroupKey {
+    @NotNull private final String myArtifact;
+    @NotNull private final DependencyList myDependencies;
+    // null for "main" artifacts, or if the variant has no "main" artifact.
+    @Nullable private final DependencyList myMainArtifactDependencies;
+
+    GroupKey(@NotNull String artifact, @NotNull DependencyList dependencies, @Nullable DependencyList mainArtifactDependencies) {
+      myArtifact = artifact;
+      myDependencies = dependencies;
+      myMainArtifactDependencies = mainArtifactDependencies;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      GroupKey other = (GroupKey)o;
+      return myArtifact.equals(other.myArtifact) &&
+             myDependencies.equals(other.myDependencies) &&
+             Objects.equal(myMainArtifactDependencies, other.myMainArtifactDependencies);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(myArtifact, myDependencies, myMainArtifactDependencies);
     }
-    return false;
   }
 
   @NotNull
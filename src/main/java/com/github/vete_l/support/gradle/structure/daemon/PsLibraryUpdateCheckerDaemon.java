@@ -40,6 +40,7 @@ import org.jetbrains.annotations.NotNull;
 import java.util.Collection;
 import java.util.EventListener;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
@@ -113,34 +114,32 @@ public class PsLibraryUpdateCheckerDaemon extends PsDaemon {
     myRunning.set(true);
     getAvailableUpdates().clear();
 
-    int resultCount = repositories.size() * ids.size();
-    List<Future<SearchResult>> jobs = Lists.newArrayListWithExpectedSize(resultCount);
-
     Set<SearchRequest> requests = Sets.newHashSet();
     ids.forEach(id -> {
       SearchRequest request = new SearchRequest(id.getName(), id.getGroupId(), 1, 0);
       requests.add(request);
     });
 
+    // One job per repository: each repository runs all the requests in a single batch.
+    List<Future<Map<SearchRequest, SearchResult>>> jobs = Lists.newArrayListWithExpectedSize(repositories.size());
     Set<SearchResult> results = Sets.newHashSet();
     List<Exception> errors = Lists.newArrayList();
 
     Application application = ApplicationManager.getApplication();
     application.executeOnPooledThread(() -> {
       for (ArtifactRepository repository : repositories) {
-        for (SearchRequest request : requests) {
-          jobs.add(application.executeOnPooledThread(() -> repository.search(request)));
-        }
+        jobs.add(application.executeOnPooledThread(() -> repository.searchAll(requests)));
       }
 
-      for (Future<SearchResult> job : jobs) {
+      for (Future<Map<SearchRequest, SearchResult>> job : jobs) {
         try {
-          SearchResult result = Futures.getChecked(job, Exception.class);
-          List<FoundArtifact> artifacts = result.getArtifacts();
-          if (artifacts.size() == 1) {
-            FoundArtifact artifact = artifacts.get(0);
-            if (!artifact.getVersions().isEmpty()) {
-              results.add(result);
+          for (SearchResult result : Futures.getChecked(job, Exception.class).values()) {
+            List<FoundArtifact> artifacts = result.getArtifacts();
+            if (artifacts.size() == 1) {
+              FoundArtifact artifact = artifacts.get(0);
+              if (!artifact.getVersions().isEmpty()) {
+                results.add(result);
+              }
             }
           }
         }
@@ -15,9 +15,27 @@
  */
 package com.github.vete_l.support.gradle.structure.model.repositories.search;
 
+import com.android.ide.common.repository.GradleVersion;
+import com.android.tools.idea.gradle.service.repo.VersionMetadataCache;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import static com.intellij.openapi.util.text.StringUtil.isEmpty;
 
 public abstract class ArtifactRepository {
+  // Maximum number of concurrent requests sent to a remote repository by the default implementation of doSearchAll.
+  private static final int MAX_CONCURRENT_REMOTE_REQUESTS = 4;
+  // Shared by all repositories, so repeated searches (e.g. while the user types) reuse the same application pool threads.
+  private static final ExecutorService ourRemoteSearchExecutor =
+    AppExecutorUtil.createBoundedApplicationPoolExecutor("ArtifactRepository search", MAX_CONCURRENT_REMOTE_REQUESTS);
+
   @NotNull
   public abstract String getName();
 
@@ -33,6 +51,131 @@ public abstract class ArtifactRepository {
     }
   }
 
+  /**
+   * Runs all the given search requests, as one batch when the repository supports it (e.g. a single scan of a local repository.)
+   * <p>
+   * Requests for a single artifact with a known group ID (e.g. a check for updates of a library) are answered from the
+   * {@link VersionMetadataCache} when it knows about the artifact, and their results are added to it otherwise.
+   *
+   * @return the result of each request. A request that failed has a result with an error.
+   */
+  @NotNull
+  public final Map<SearchRequest, SearchResult> searchAll(@NotNull Collection<SearchRequest> requests) {
+    long startTimeMillis = System.currentTimeMillis();
+    Map<SearchRequest, SearchResult> results = new HashMap<>();
+    VersionMetadataCache.Source source = getVersionMetadataSource();
+    VersionMetadataCache cache = source != null ? VersionMetadataCache.getInstance() : null;
+
+    List<SearchRequest> pendingRequests = new ArrayList<>();
+    for (SearchRequest request : requests) {
+      List<GradleVersion> versions = cache != null && isSingleArtifactRequest(request)
+                                     ? cache.getCachedVersions(source, request.getGroupId(), request.getArtifactName())
+                                     : null;
+      if (versions == null) {
+        pendingRequests.add(request);
+      }
+      else if (versions.isEmpty()) {
+        results.put(request, new SearchResult(getName(), Collections.emptyList(), 0));
+      }
+      else {
+        FoundArtifact artifact = new FoundArtifact(getName(), request.getGroupId(), request.getArtifactName(), versions);
+        results.put(request, new SearchResult(getName(), Collections.singletonList(artifact), 1));
+      }
+    }
+
+    if (!pendingRequests.isEmpty()) {
+      Map<SearchRequest, SearchResult> searchResults;
+      try {
+        searchResults = doSearchAll(pendingRequests);
+      }
+      catch (Exception e) {
+        searchResults = new HashMap<>();
+        for (SearchRequest request : pendingRequests) {
+          searchResults.put(request, new SearchResult(getName(), e));
+        }
+      }
+      if (cache != null) {
+        searchResults.forEach((request, result) -> addToCache(cache, source, request, result));
+      }
+      results.putAll(searchResults);
+    }
+    getLog().info(String.format("Ran %1$d search request(s) in '%2$s' in %3$d ms (%4$d from cache)", requests.size(), getName(),
+                                System.currentTimeMillis() - startTimeMillis, requests.size() - pendingRequests.size()));
+    return results;
+  }
+
+  private static boolean isSingleArtifactRequest(@NotNull SearchRequest request) {
+    return !isEmpty(request.getGroupId()) && request.getRowCount() == 1 && request.getStart() == 0;
+  }
+
+  private static void addToCache(@NotNull VersionMetadataCache cache,
+                                 @NotNull VersionMetadataCache.Source source,
+                                 @NotNull SearchRequest request,
+                                 @NotNull SearchResult result) {
+    String groupId = request.getGroupId();
+    if (result.getError() != null || groupId == null || !isSingleArtifactRequest(request)) {
+      return;
+    }
+    List<GradleVersion> versions = Collections.emptyList();
+    for (FoundArtifact artifact : result.getArtifacts()) {
+      if (artifact.getGroupId().equals(groupId) && artifact.getName().equals(request.getArtifactName())) {
+        versions = artifact.getVersions();
+        break;
+      }
+    }
+    cache.put(source, groupId, request.getArtifactName(), versions);
+  }
+
+  /**
+   * @return the source this repository's artifacts have in the {@link VersionMetadataCache}, or {@code null} if the results of searches
+   * in this repository should not be cached (e.g. a local repository.)
+   */
+  @Nullable
+  protected VersionMetadataCache.Source getVersionMetadataSource() {
+    return null;
+  }
+
   @NotNull
   protected abstract SearchResult doSearch(@NotNull SearchRequest request) throws Exception;
+
+  /**
+   * Runs the given search requests one by one. Requests to remote repositories are sent concurrently, with a bounded number of threads.
+   * Subclasses that can search for several artifacts at once should override this method.
+   */
+  @NotNull
+  protected Map<SearchRequest, SearchResult> doSearchAll(@NotNull Collection<SearchRequest> requests) throws Exception {
+    Map<SearchRequest, SearchResult> results = new HashMap<>();
+    if (!isRemote() || requests.size() <= 1) {
+      for (SearchRequest request : requests) {
+        results.put(request, search(request));
+      }
+      return results;
+    }
+
+    Map<SearchRequest, Future<SearchResult>> jobs = new LinkedHashMap<>();
+    try {
+      for (SearchRequest request : requests) {
+        jobs.put(request, ourRemoteSearchExecutor.submit(() -> search(request)));
+      }
+      for (Map.Entry<SearchRequest, Future<SearchResult>> job : jobs.entrySet()) {
+        results.put(job.getKey(), job.getValue().get());
+      }
+    }
+    catch (ExecutionException e) {
+      // search() does not throw: it returns a result with an error instead.
+      throw new IllegalStateException(e.getCause());
+    }
+    finally {
+      // Requests not run yet (e.g. when the caller was interrupted) should not keep the shared executor busy.
+      for (Future<SearchResult> job : jobs.values()) {
+        job.cancel(true);
+      }
+    }
+    return results;
+  }
+
+  @NotNull
+  private static Logger getLog() {
+    return Logger.getInstance(ArtifactRepository.class);
+  }
 }
@@ -16,6 +16,7 @@
 package com.github.vete_l.support.gradle.structure.model.repositories.search;
 
 import com.android.ide.common.repository.GradleVersion;
+import com.android.tools.idea.gradle.service.repo.VersionMetadataCache;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Splitter;
 import com.google.common.collect.Lists;
@@ -43,6 +44,12 @@ public class JCenterRepository extends ArtifactRepository {
     return true;
   }
 
+  @Override
+  @NotNull
+  protected VersionMetadataCache.Source getVersionMetadataSource() {
+    return VersionMetadataCache.Source.JCENTER;
+  }
+
   @Override
   @NotNull
   protected SearchResult doSearch(@NotNull SearchRequest request) throws Exception {
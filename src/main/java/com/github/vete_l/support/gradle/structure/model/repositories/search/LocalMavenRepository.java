@@ -15,29 +15,11 @@
  */
 package com.github.vete_l.support.gradle.structure.model.repositories.search;
 
-import com.android.ide.common.repository.GradleVersion;
-import com.google.common.collect.Lists;
-import com.intellij.openapi.diagnostic.Logger;
-import org.jdom.Document;
-import org.jdom.Element;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
-import java.io.IOException;
-import java.nio.file.FileVisitResult;
 import java.nio.file.Path;
-import java.nio.file.SimpleFileVisitor;
-import java.nio.file.attribute.BasicFileAttributes;
-import java.util.List;
-import java.util.Objects;
-
-import static com.google.common.base.Strings.nullToEmpty;
-import static com.intellij.openapi.util.JDOMUtil.loadDocument;
-import static com.intellij.openapi.util.io.FileUtil.notNullize;
-import static java.nio.file.FileVisitResult.CONTINUE;
-import static java.nio.file.FileVisitResult.SKIP_SUBTREE;
-import static java.nio.file.Files.walkFileTree;
+import java.util.*;
 
 public class LocalMavenRepository extends ArtifactRepository {
   @NotNull private final Path myRootLocation;
@@ -62,87 +44,17 @@ public class LocalMavenRepository extends ArtifactRepository {
   @Override
   @NotNull
   protected SearchResult doSearch(@NotNull SearchRequest request) {
-    List<FoundArtifact> foundArtifacts = Lists.newArrayList();
-
-    try {
-      walkFileTree(myRootLocation, new SimpleFileVisitor<Path>() {
-        @Override
-        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
-          File parent = dir.toFile();
-          File mavenMetadataFile = new File(parent, "maven-metadata.xml");
-
-          if (mavenMetadataFile.isFile()) {
-            Match match = isMatch(mavenMetadataFile, request);
-            if (match != null) {
-              List<GradleVersion> versions = Lists.newArrayList();
-              for (File child : notNullize(parent.listFiles())) {
-                if (child.isDirectory()) {
-                  String version = child.getName();
-                  versions.add(GradleVersion.parse(version));
-                }
-              }
-
-              FoundArtifact artifact = new FoundArtifact(myName, match.groupId, match.artifactName, versions);
-              foundArtifacts.add(artifact);
-            }
-            return SKIP_SUBTREE;
-          }
-          return CONTINUE;
-        }
-      });
-    }
-    catch (Throwable e) {
-      String msg = String.format("Failed to search local repository '%1$s'", myRootLocation);
-      Logger.getInstance(LocalMavenRepository.class).warn(msg, e);
-    }
-
-    return new SearchResult(myName, foundArtifacts, foundArtifacts.size());
+    return doSearchAll(Collections.singletonList(request)).get(request);
   }
 
-  @Nullable
-  private static Match isMatch(@NotNull File mavenMetadataFile, @NotNull SearchRequest request) {
-    String groupId = request.getGroupId();
-    String artifactName = request.getArtifactName();
-
-    try {
-      Document document = loadDocument(mavenMetadataFile);
-      Element rootElement = document.getRootElement();
-      if (rootElement != null) {
-        Element groupIdElement = rootElement.getChild("groupId");
-        if (groupId != null && groupIdElement == null) {
-          return null;
-        }
-        groupId = nullToEmpty(groupId);
-        String currentGroupId = nullToEmpty(groupIdElement.getValue());
-        if (!currentGroupId.contains(groupId)) {
-          return null;
-        }
-
-        Element artifactIdElement = rootElement.getChild("artifactId");
-        if (artifactIdElement == null) {
-          return null;
-        }
-        String currentArtifactName = artifactIdElement.getValue();
-        if (currentArtifactName.contains(artifactName)) {
-          return new Match(currentArtifactName, nullToEmpty(currentGroupId));
-        }
-      }
-    }
-    catch (Throwable e) {
-      String msg = String.format("Failed to parse '%1$s'", mavenMetadataFile.getPath());
-      Logger.getInstance(LocalMavenRepository.class).warn(msg, e);
-    }
-    return null;
-  }
-
-  private static class Match {
-    @NotNull final String artifactName;
-    @NotNull final String groupId;
-
-    Match(@NotNull String artifactName, @NotNull String groupId) {
-      this.artifactName = artifactName;
-      this.groupId = groupId;
-    }
+  @Override
+  @NotNull
+  protected Map<SearchRequest, SearchResult> doSearchAll(@NotNull Collection<SearchRequest> requests) {
+    LocalMavenRepositoryIndex index = LocalMavenRepositoryIndex.getInstance(myRootLocation);
+    Map<SearchRequest, SearchResult> results = new HashMap<>();
+    index.searchAll(myName, requests).forEach(
+      (request, foundArtifacts) -> results.put(request, new SearchResult(myName, foundArtifacts, foundArtifacts.size())));
+    return results;
   }
 
   @Override
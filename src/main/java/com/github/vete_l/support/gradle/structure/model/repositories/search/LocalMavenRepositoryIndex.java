@@ -0,0 +1,398 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.vete_l.support.gradle.structure.model.repositories.search;
+
+import com.android.ide.common.repository.GradleVersion;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.hash.Hashing;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import org.jdom.Document;
+import org.jdom.Element;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.intellij.openapi.util.JDOMUtil.loadDocument;
+import static com.intellij.openapi.util.io.FileUtil.*;
+import static java.nio.file.FileVisitResult.CONTINUE;
+import static java.nio.file.FileVisitResult.SKIP_SUBTREE;
+import static java.nio.file.Files.walkFileTree;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * Index of the artifacts (folders containing a maven-metadata.xml file) of a local Maven repository, and of their versions.
+ * <p>
+ * The index is built by walking the whole repository once, and is stored under the IDE's system folder, so it survives restarts.
+ * Afterwards, refreshing the index only checks the timestamps of the folders it knows about: only the folders whose timestamp changed are
+ * listed again, and a maven-metadata.xml file is only parsed again if it, or its artifact's folder, changed.
+ */
+class LocalMavenRepositoryIndex {
+  private static final int MAGIC = 0x4c4d5249; // "LMRI"
+  // Increase the value when changing the format of the index file.
+  private static final int FORMAT_VERSION = 1;
+  private static final String MAVEN_METADATA_FILE_NAME = "maven-metadata.xml";
+  // Searches usually come in bursts (e.g. one per library declared in a project), which do not need to check the repository again.
+  private static final long MIN_REFRESH_INTERVAL_MS = 5000;
+
+  private static final Map<Path, LocalMavenRepositoryIndex> ourIndices = new ConcurrentHashMap<>();
+
+  @NotNull private final Path myRootLocation;
+  @NotNull private final File myIndexFile;
+
+  // Guarded by "this". Keys are paths relative to the root of the repository, using '/' as separator.
+  @NotNull private final Map<String, Long> myFolderTimestamps = new HashMap<>();
+  @NotNull private final Map<String, Artifact> myArtifacts = new TreeMap<>();
+  private boolean myLoaded;
+  private boolean myModified;
+  private long myLastRefreshTime;
+
+  @NotNull
+  static LocalMavenRepositoryIndex getInstance(@NotNull Path rootLocation) {
+    return ourIndices.computeIfAbsent(rootLocation.toAbsolutePath(), path -> new LocalMavenRepositoryIndex(path, getIndexFile(path)));
+  }
+
+  @NotNull
+  private static File getIndexFile(@NotNull Path rootLocation) {
+    String name = Hashing.murmur3_128().hashString(rootLocation.toString(), StandardCharsets.UTF_8).toString() + ".idx";
+    return new File(PathManager.getSystemPath(), join("android", "maven-index", name));
+  }
+
+  @VisibleForTesting
+  LocalMavenRepositoryIndex(@NotNull Path rootLocation, @NotNull File indexFile) {
+    myRootLocation = rootLocation;
+    myIndexFile = indexFile;
+  }
+
+  /**
+   * Returns, for each of the given requests, the artifacts whose group ID contains the request's group ID (if any) and whose artifact ID
+   * contains the request's artifact name. The index is refreshed once, and the artifacts are checked against all the requests in one pass.
+   */
+  @NotNull
+  synchronized Map<SearchRequest, List<FoundArtifact>> searchAll(@NotNull String repositoryName,
+                                                                  @NotNull Collection<SearchRequest> requests) {
+    refresh();
+    Map<SearchRequest, List<FoundArtifact>> foundArtifacts = new LinkedHashMap<>();
+    for (SearchRequest request : requests) {
+      foundArtifacts.put(request, new ArrayList<>());
+    }
+    for (Artifact artifact : myArtifacts.values()) {
+      if (artifact.myGroupId == null || artifact.myArtifactId == null) {
+        continue;
+      }
+      for (SearchRequest request : requests) {
+        String groupId = request.getGroupId();
+        if ((groupId == null || artifact.myGroupId.contains(groupId)) && artifact.myArtifactId.contains(request.getArtifactName())) {
+          FoundArtifact found = new FoundArtifact(repositoryName, artifact.myGroupId, artifact.myArtifactId, artifact.getVersions());
+          foundArtifacts.get(request).add(found);
+        }
+      }
+    }
+    return foundArtifacts;
+  }
+
+  private void refresh() {
+    if (!myLoaded) {
+      myLoaded = true;
+      load();
+    }
+    long now = System.currentTimeMillis();
+    if (now - myLastRefreshTime < MIN_REFRESH_INTERVAL_MS) {
+      return;
+    }
+    myLastRefreshTime = now;
+
+    if (myFolderTimestamps.isEmpty() && myArtifacts.isEmpty()) {
+      scan(myRootLocation.toFile());
+    }
+    else {
+      refreshFolders();
+      refreshArtifacts();
+    }
+    if (myModified) {
+      save();
+    }
+  }
+
+  private void refreshFolders() {
+    for (String folderPath : new ArrayList<>(myFolderTimestamps.keySet())) {
+      Long timestamp = myFolderTimestamps.get(folderPath);
+      if (timestamp == null) {
+        continue; // Removed while refreshing one of its parents.
+      }
+      File folder = getFile(folderPath);
+      if (!folder.isDirectory()) {
+        removeAll(folderPath);
+        continue;
+      }
+      if (folder.lastModified() == timestamp) {
+        continue;
+      }
+      // Files or folders were added to or removed from this folder.
+      if (new File(folder, MAVEN_METADATA_FILE_NAME).isFile()) {
+        removeAll(folderPath);
+        scan(folder);
+        continue;
+      }
+      myFolderTimestamps.put(folderPath, folder.lastModified());
+      myModified = true;
+      for (File child : notNullize(folder.listFiles())) {
+        String childPath = getKey(child);
+        if (child.isDirectory() && !myFolderTimestamps.containsKey(childPath) && !myArtifacts.containsKey(childPath)) {
+          scan(child);
+        }
+      }
+    }
+  }
+
+  private void refreshArtifacts() {
+    for (String artifactPath : new ArrayList<>(myArtifacts.keySet())) {
+      Artifact artifact = myArtifacts.get(artifactPath);
+      if (artifact == null) {
+        continue;
+      }
+      File folder = getFile(artifactPath);
+      File metadataFile = new File(folder, MAVEN_METADATA_FILE_NAME);
+      if (!metadataFile.isFile()) {
+        removeAll(artifactPath);
+        if (folder.isDirectory()) {
+          scan(folder);
+        }
+        continue;
+      }
+      if (folder.lastModified() != artifact.myFolderTimestamp || metadataFile.lastModified() != artifact.myMetadataTimestamp) {
+        myArtifacts.put(artifactPath, readArtifact(folder, metadataFile));
+        myModified = true;
+      }
+    }
+  }
+
+  private void scan(@NotNull File folder) {
+    myModified = true;
+    try {
+      walkFileTree(folder.toPath(), new SimpleFileVisitor<Path>() {
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+          File parent = dir.toFile();
+          File mavenMetadataFile = new File(parent, MAVEN_METADATA_FILE_NAME);
+          if (mavenMetadataFile.isFile()) {
+            myArtifacts.put(getKey(parent), readArtifact(parent, mavenMetadataFile));
+            return SKIP_SUBTREE;
+          }
+          myFolderTimestamps.put(getKey(parent), parent.lastModified());
+          return CONTINUE;
+        }
+      });
+    }
+    catch (Throwable e) {
+      String msg = String.format("Failed to index local repository '%1$s'", folder.getPath());
+      getLog().warn(msg, e);
+    }
+  }
+
+  @NotNull
+  private static Artifact readArtifact(@NotNull File folder, @NotNull File mavenMetadataFile) {
+    // Take the timestamps before reading, so changes made while reading are found by the next refresh.
+    long folderTimestamp = folder.lastModified();
+    long metadataTimestamp = mavenMetadataFile.lastModified();
+
+    String groupId = null;
+    String artifactId = null;
+    try {
+      Document document = loadDocument(mavenMetadataFile);
+      Element rootElement = document.getRootElement();
+      if (rootElement != null) {
+        Element groupIdElement = rootElement.getChild("groupId");
+        Element artifactIdElement = rootElement.getChild("artifactId");
+        if (groupIdElement != null && artifactIdElement != null) {
+          groupId = groupIdElement.getValue();
+          artifactId = artifactIdElement.getValue();
+        }
+      }
+    }
+    catch (Throwable e) {
+      String msg = String.format("Failed to parse '%1$s'", mavenMetadataFile.getPath());
+      getLog().warn(msg, e);
+    }
+
+    List<String> versions = new ArrayList<>();
+    for (File child : notNullize(folder.listFiles())) {
+      if (child.isDirectory()) {
+        versions.add(child.getName());
+      }
+    }
+    return new Artifact(groupId, artifactId, versions, folderTimestamp, metadataTimestamp);
+  }
+
+  private void removeAll(@NotNull String path) {
+    String prefix = path.isEmpty() ? "" : path + "/";
+    myFolderTimestamps.keySet().removeIf(key -> key.equals(path) || key.startsWith(prefix));
+    myArtifacts.keySet().removeIf(key -> key.equals(path) || key.startsWith(prefix));
+    myModified = true;
+  }
+
+  @NotNull
+  private String getKey(@NotNull File file) {
+    return toSystemIndependentName(myRootLocation.relativize(file.toPath()).toString());
+  }
+
+  @NotNull
+  private File getFile(@NotNull String relativePath) {
+    return relativePath.isEmpty() ? myRootLocation.toFile() : myRootLocation.resolve(relativePath).toFile();
+  }
+
+  private void load() {
+    if (!myIndexFile.isFile()) {
+      return;
+    }
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(myIndexFile)))) {
+      if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || !in.readUTF().equals(myRootLocation.toString())) {
+        return;
+      }
+      int folderCount = in.readInt();
+      for (int i = 0; i < folderCount; i++) {
+        String path = in.readUTF();
+        myFolderTimestamps.put(path, in.readLong());
+      }
+      int artifactCount = in.readInt();
+      for (int i = 0; i < artifactCount; i++) {
+        String path = in.readUTF();
+        myArtifacts.put(path, Artifact.read(in));
+      }
+    }
+    catch (IOException e) {
+      // The index will be built again.
+      getLog().info(String.format("Failed to load the index of local repository '%1$s'", myRootLocation), e);
+      myFolderTimestamps.clear();
+      myArtifacts.clear();
+    }
+  }
+
+  private void save() {
+    File tempFile = new File(myIndexFile.getPath() + ".tmp");
+    try {
+      createParentDirs(myIndexFile);
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeUTF(myRootLocation.toString());
+        out.writeInt(myFolderTimestamps.size());
+        for (Map.Entry<String, Long> entry : myFolderTimestamps.entrySet()) {
+          out.writeUTF(entry.getKey());
+          out.writeLong(entry.getValue());
+        }
+        out.writeInt(myArtifacts.size());
+        for (Map.Entry<String, Artifact> entry : myArtifacts.entrySet()) {
+          out.writeUTF(entry.getKey());
+          entry.getValue().write(out);
+        }
+      }
+      Files.move(tempFile.toPath(), myIndexFile.toPath(), REPLACE_EXISTING, ATOMIC_MOVE);
+      myModified = false;
+    }
+    catch (IOException e) {
+      getLog().warn(String.format("Failed to save the index of local repository '%1$s'", myRootLocation), e);
+      delete(tempFile);
+    }
+  }
+
+  @NotNull
+  private static Logger getLog() {
+    return Logger.getInstance(LocalMavenRepositoryIndex.class);
+  }
+
+  private static class Artifact {
+    // null if the maven-metadata.xml file could not be parsed, or does not contain a group ID or an artifact ID.
+    @Nullable final String myGroupId;
+    @Nullable final String myArtifactId;
+    @NotNull final List<String> myVersions;
+    final long myFolderTimestamp;
+    final long myMetadataTimestamp;
+    // Parsed on first use.
+    @Nullable private List<GradleVersion> myParsedVersions;
+
+    Artifact(@Nullable String groupId,
+             @Nullable String artifactId,
+             @NotNull List<String> versions,
+             long folderTimestamp,
+             long metadataTimestamp) {
+      myGroupId = groupId;
+      myArtifactId = artifactId;
+      myVersions = versions;
+      myFolderTimestamp = folderTimestamp;
+      myMetadataTimestamp = metadataTimestamp;
+    }
+
+    @NotNull
+    List<GradleVersion> getVersions() {
+      if (myParsedVersions == null) {
+        List<GradleVersion> versions = new ArrayList<>(myVersions.size());
+        for (String version : myVersions) {
+          GradleVersion parsed = GradleVersion.tryParse(version);
+          if (parsed != null) {
+            versions.add(parsed);
+          }
+        }
+        myParsedVersions = versions;
+      }
+      return myParsedVersions;
+    }
+
+    void write(@NotNull DataOutput out) throws IOException {
+      boolean hasIds = myGroupId != null && myArtifactId != null;
+      out.writeBoolean(hasIds);
+      if (hasIds) {
+        out.writeUTF(myGroupId);
+        out.writeUTF(myArtifactId);
+      }
+      out.writeInt(myVersions.size());
+      for (String version : myVersions) {
+        out.writeUTF(version);
+      }
+      out.writeLong(myFolderTimestamp);
+      out.writeLong(myMetadataTimestamp);
+    }
+
+    @NotNull
+    static Artifact read(@NotNull DataInput in) throws IOException {
+      String groupId = null;
+      String artifactId = null;
+      if (in.readBoolean()) {
+        groupId = in.readUTF();
+        artifactId = in.readUTF();
+      }
+      int versionCount = in.readInt();
+      if (versionCount < 0) {
+        throw new StreamCorruptedException("Invalid version count: " + versionCount);
+      }
+      List<String> versions = new ArrayList<>(versionCount);
+      for (int i = 0; i < versionCount; i++) {
+        versions.add(in.readUTF());
+      }
+      return new Artifact(groupId, artifactId, versions, in.readLong(), in.readLong());
+    }
+  }
+}
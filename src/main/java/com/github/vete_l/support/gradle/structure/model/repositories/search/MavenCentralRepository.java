@@ -16,6 +16,7 @@
 package com.github.vete_l.support.gradle.structure.model.repositories.search;
 
 import com.android.ide.common.repository.GradleVersion;
+import com.android.tools.idea.gradle.service.repo.VersionMetadataCache;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Splitter;
 import com.google.common.collect.Lists;
@@ -26,13 +27,17 @@ import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
 import java.io.Reader;
-import java.util.List;
+import java.util.*;
 
 import static com.android.SdkConstants.GRADLE_PATH_SEPARATOR;
 import static com.intellij.openapi.util.JDOMUtil.load;
+import static com.intellij.openapi.util.text.StringUtil.isEmpty;
 import static com.intellij.openapi.util.text.StringUtil.isNotEmpty;
 
 public class MavenCentralRepository extends ArtifactRepository {
+  // Keeps the URL of a batched query reasonably short.
+  private static final int MAX_REQUESTS_PER_QUERY = 20;
+
   @Override
   @NotNull
   public String getName() {
@@ -44,10 +49,77 @@ public class MavenCentralRepository extends ArtifactRepository {
     return true;
   }
 
+  @Override
+  @NotNull
+  protected VersionMetadataCache.Source getVersionMetadataSource() {
+    return VersionMetadataCache.Source.MAVEN_CENTRAL;
+  }
+
   @Override
   @NotNull
   protected SearchResult doSearch(@NotNull SearchRequest request) throws Exception {
-    String url = createRequestUrl(request);
+    return sendRequest(createRequestUrl(request));
+  }
+
+  /**
+   * Sends the requests in batches: each batch is a single query that "OR"s the artifacts of its requests. Requests for a page other than
+   * the first one are sent on their own.
+   */
+  @Override
+  @NotNull
+  protected Map<SearchRequest, SearchResult> doSearchAll(@NotNull Collection<SearchRequest> requests) throws Exception {
+    Map<SearchRequest, SearchResult> results = new HashMap<>();
+    List<SearchRequest> batchableRequests = new ArrayList<>();
+    for (SearchRequest request : requests) {
+      if (request.getStart() == 0) {
+        batchableRequests.add(request);
+      }
+      else {
+        results.put(request, search(request));
+      }
+    }
+    for (List<SearchRequest> batch : Lists.partition(batchableRequests, MAX_REQUESTS_PER_QUERY)) {
+      if (batch.size() == 1) {
+        results.put(batch.get(0), search(batch.get(0)));
+        continue;
+      }
+      SearchResult batchResult;
+      try {
+        batchResult = sendRequest(createBatchRequestUrl(batch));
+      }
+      catch (Exception e) {
+        batchResult = new SearchResult(getName(), e);
+      }
+      for (SearchRequest request : batch) {
+        results.put(request, getResult(request, batchResult));
+      }
+    }
+    return results;
+  }
+
+  @NotNull
+  private SearchResult getResult(@NotNull SearchRequest request, @NotNull SearchResult batchResult) {
+    Exception error = batchResult.getError();
+    if (error != null) {
+      return new SearchResult(getName(), error);
+    }
+    // The query matches group and artifact IDs exactly, so the artifacts found for each request can be told apart.
+    String groupId = request.getGroupId();
+    List<FoundArtifact> artifacts = new ArrayList<>();
+    for (FoundArtifact artifact : batchResult.getArtifacts()) {
+      if (artifact.getName().equals(request.getArtifactName()) && (isEmpty(groupId) || artifact.getGroupId().equals(groupId))) {
+        artifacts.add(artifact);
+      }
+    }
+    int totalFound = artifacts.size();
+    if (artifacts.size() > request.getRowCount()) {
+      artifacts = new ArrayList<>(artifacts.subList(0, request.getRowCount()));
+    }
+    return new SearchResult(getName(), artifacts, totalFound);
+  }
+
+  @NotNull
+  private SearchResult sendRequest(@NotNull String url) throws IOException {
     return HttpRequests.request(url).accept("application/xml").connect(request1 -> {
       try {
         return parse(request1.getReader());
@@ -59,6 +131,31 @@ public class MavenCentralRepository extends ArtifactRepository {
     });
   }
 
+  @VisibleForTesting
+  @NotNull
+  static String createBatchRequestUrl(@NotNull List<SearchRequest> requests) {
+    int rowCount = 0;
+    StringBuilder query = new StringBuilder();
+    for (SearchRequest request : requests) {
+      rowCount += request.getRowCount();
+      if (query.length() > 0) {
+        query.append("+OR+");
+      }
+      query.append("(");
+      appendQuery(request, query);
+      query.append(")");
+    }
+    return "https://search.maven.org/solrsearch/select?rows=" + rowCount + "&start=0&wt=xml&q=" + query;
+  }
+
+  private static void appendQuery(@NotNull SearchRequest request, @NotNull StringBuilder buffer) {
+    String groupId = request.getGroupId();
+    if (isNotEmpty(groupId)) {
+      buffer.append("g:\"").append(groupId).append("\"+AND+");
+    }
+    buffer.append("a:\"").append(request.getArtifactName()).append("\"");
+  }
+
   @VisibleForTesting
   @NotNull
   static String createRequestUrl(@NotNull SearchRequest request) {
@@ -68,11 +165,7 @@ public class MavenCentralRepository extends ArtifactRepository {
           .append("start=").append(request.getStart()).append("&")
           .append("wt=xml&")
           .append("q=");
-    String groupId = request.getGroupId();
-    if (isNotEmpty(groupId)) {
-      buffer.append("g:\"").append(groupId).append("\"+AND+");
-    }
-    buffer.append("a:\"").append(request.getArtifactName()).append("\"");
+    appendQuery(request, buffer);
     return buffer.toString();
   }
 
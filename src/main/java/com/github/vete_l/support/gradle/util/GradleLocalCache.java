@@ -17,7 +17,6 @@ package com.github.vete_l.support.gradle.util;
 
 import com.android.ide.common.repository.GradleCoordinate;
 import com.android.ide.common.repository.GradleVersion;
-import com.google.common.collect.Lists;
 import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.project.Project;
 import org.jetbrains.annotations.NotNull;
@@ -25,19 +24,16 @@ import org.jetbrains.annotations.Nullable;
 import org.jetbrains.plugins.gradle.settings.GradleSettings;
 
 import java.io.File;
-import java.util.Collection;
-import java.util.LinkedHashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static com.android.SdkConstants.DOT_GRADLE;
-import static com.intellij.openapi.util.io.FileUtil.join;
-import static com.intellij.openapi.util.io.FileUtil.notNullize;
 import static com.intellij.openapi.util.text.StringUtil.isNotEmpty;
 import static com.intellij.util.SystemProperties.getUserHome;
-import static java.util.Collections.sort;
 
 public class GradleLocalCache {
+  @NotNull private final Map<File, GradleServiceDirectoryIndex> myIndices = new ConcurrentHashMap<>();
+
   @NotNull
   public static GradleLocalCache getInstance() {
     return ServiceManager.getService(GradleLocalCache.class);
@@ -60,94 +56,69 @@ public class GradleLocalCache {
                                                  @NotNull String artifactId,
                                                  @Nullable Project project,
                                                  @Nullable String versionPrefix) {
-    for (File gradleServicePath : getGradleServicePaths(project)) {
-      GradleVersion version = findLatestVersionInGradleCache(gradleServicePath, groupId, artifactId, versionPrefix);
-      if (version != null) {
-        return version;
-      }
-    }
-    return null;
+    return findLatestArtifactVersion(getIndices(project), groupId, artifactId, versionPrefix);
   }
 
-  @Nullable
-  private static GradleVersion findLatestVersionInGradleCache(@NotNull File gradleServicePath,
-                                                              @NotNull String groupId,
-                                                              @NotNull String artifactId,
-                                                              @Nullable String versionPrefix) {
-    File gradleCacheFolder = new File(gradleServicePath, "caches");
-    if (!gradleCacheFolder.isDirectory()) {
-      return null;
-    }
-    List<GradleVersion> versions = Lists.newArrayList();
-    for (File moduleFolder : notNullize(gradleCacheFolder.listFiles())) {
-      if (!isDirectoryWithNamePrefix(moduleFolder, "modules-")) {
-        continue;
-      }
-      for (File metadataFolder : notNullize(moduleFolder.listFiles())) {
-        if (!isDirectoryWithNamePrefix(metadataFolder, "metadata-")) {
-          continue;
-        }
-        File versionFolder = new File(metadataFolder, join("descriptors", groupId, artifactId));
-        if (!versionFolder.isDirectory()) {
-          continue;
+  /**
+   * Looks up the newest version of each of the given artifacts in the Gradle cache. The version of each artifact must start with the
+   * artifact's revision, without its trailing '+' (e.g. "25.+" looks for a "25" prefix.)
+   *
+   * @return the versions found. Artifacts that are not in the Gradle cache are not in the map.
+   */
+  @NotNull
+  public Map<GradleCoordinate, GradleVersion> findLatestArtifactVersions(@NotNull Collection<GradleCoordinate> artifactCoordinates,
+                                                                         @Nullable Project project) {
+    List<GradleServiceDirectoryIndex> indices = getIndices(project);
+    Map<GradleCoordinate, GradleVersion> versions = new LinkedHashMap<>();
+    for (GradleCoordinate coordinate : artifactCoordinates) {
+      String groupId = coordinate.getGroupId();
+      String artifactId = coordinate.getArtifactId();
+      if (isNotEmpty(groupId) && isNotEmpty(artifactId)) {
+        String versionPrefix = coordinate.getRevision();
+        if (versionPrefix.endsWith("+")) {
+          versionPrefix = versionPrefix.substring(0, versionPrefix.length() - 1);
         }
-        for (File versionFile : notNullize(versionFolder.listFiles())) {
-          String version = versionFile.getName();
-          if ((versionPrefix == null || version.startsWith(versionPrefix)) && !version.isEmpty() && Character.isDigit(version.charAt(0))) {
-            GradleVersion parsedVersion = GradleVersion.tryParse(version);
-            if (parsedVersion != null) {
-              versions.add(parsedVersion);
-            }
-          }
+        GradleVersion version = findLatestArtifactVersion(indices, groupId, artifactId, versionPrefix);
+        if (version != null) {
+          versions.put(coordinate, version);
         }
       }
     }
-    int versionCount = versions.size();
-    if (versionCount == 1) {
-      return versions.get(0);
-    }
-    else if (versionCount > 1) {
-      sort(versions);
-      return versions.get(versionCount - 1);
-    }
-    return null;
+    return versions;
   }
 
-  private static boolean isDirectoryWithNamePrefix(@NotNull File file, @NotNull String prefix) {
-    return file.getName().startsWith(prefix) && file.isDirectory();
+  @Nullable
+  private static GradleVersion findLatestArtifactVersion(@NotNull List<GradleServiceDirectoryIndex> indices,
+                                                         @NotNull String groupId,
+                                                         @NotNull String artifactId,
+                                                         @Nullable String versionPrefix) {
+    for (GradleServiceDirectoryIndex index : indices) {
+      GradleVersion version = index.findLatestArtifactVersion(groupId, artifactId, versionPrefix);
+      if (version != null) {
+        return version;
+      }
+    }
+    return null;
   }
 
   public boolean containsGradleWrapperVersion(@NotNull String gradleVersion, @NotNull Project project) {
-    String distFolderName = "gradle-" + gradleVersion;
-    String wrapperDirNamePrefix = distFolderName + "-";
-
-    // Try both distributions "all" and "bin".
-    String[] wrapperFolderNames = {wrapperDirNamePrefix + "all", wrapperDirNamePrefix + "bin"};
-
-    for (File gradleServicePath : getGradleServicePaths(project)) {
-      for (String wrapperFolderName : wrapperFolderNames) {
-        File wrapperFolderPath = new File(gradleServicePath, join("wrapper", "dists", wrapperFolderName));
-        if (!wrapperFolderPath.isDirectory()) {
-          continue;
-        }
-        // There is a folder that contains the actual distribution
-        // Example: // ~/.gradle/wrapper/dists/gradle-2.1-all/27drb4udbjf4k88eh2ffdc0n55/gradle-2.1
-        for (File mayBeDistParent : notNullize(wrapperFolderPath.listFiles())) {
-          if (!mayBeDistParent.isDirectory()) {
-            continue;
-          }
-          for (File mayBeDistFolder : notNullize(mayBeDistParent.listFiles())) {
-            if (mayBeDistFolder.isDirectory() && distFolderName.equals(mayBeDistFolder.getName())) {
-              return true;
-            }
-          }
-        }
+    for (GradleServiceDirectoryIndex index : getIndices(project)) {
+      if (index.containsWrapperDistribution(gradleVersion)) {
+        return true;
       }
     }
-
     return false;
   }
 
+  @NotNull
+  private List<GradleServiceDirectoryIndex> getIndices(@Nullable Project project) {
+    List<GradleServiceDirectoryIndex> indices = new ArrayList<>();
+    for (File gradleServicePath : getGradleServicePaths(project)) {
+      indices.add(myIndices.computeIfAbsent(gradleServicePath, GradleServiceDirectoryIndex::new));
+    }
+    return indices;
+  }
+
   @NotNull
   private static Collection<File> getGradleServicePaths(@Nullable Project project) {
     Set<File> paths = new LinkedHashSet<>();
@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.vete_l.support.gradle.util;
+
+import com.android.ide.common.repository.GradleVersion;
+import com.google.common.annotations.VisibleForTesting;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.util.*;
+import java.util.function.LongSupplier;
+
+import static com.intellij.openapi.util.io.FileUtil.join;
+import static com.intellij.openapi.util.io.FileUtil.notNullize;
+
+/**
+ * Index of the artifact descriptors in the dependency cache ("caches/modules-&#42;/metadata-&#42;/descriptors") and of the distributions
+ * downloaded by the Gradle wrapper ("wrapper/dists") of a Gradle service directory (e.g. ~/.gradle).
+ * <p>
+ * A folder is listed when it is first needed, and listed again only when its timestamp changes. Timestamps are checked at most once every
+ * few seconds, since lookups usually come in bursts (e.g. one per dependency of a new module.)
+ */
+class GradleServiceDirectoryIndex {
+  private static final long MIN_REFRESH_INTERVAL_MS = 5000;
+
+  @NotNull private final File myServicePath;
+  @NotNull private final LongSupplier myClock;
+
+  // Guarded by "this".
+  @NotNull private final Map<File, Listing> myListings = new HashMap<>();
+
+  GradleServiceDirectoryIndex(@NotNull File servicePath) {
+    this(servicePath, System::currentTimeMillis);
+  }
+
+  @VisibleForTesting
+  GradleServiceDirectoryIndex(@NotNull File servicePath, @NotNull LongSupplier clock) {
+    myServicePath = servicePath;
+    myClock = clock;
+  }
+
+  /**
+   * @return the newest version of the given artifact found in the dependency cache whose name starts with the given prefix (if any.)
+   */
+  @Nullable
+  synchronized GradleVersion findLatestArtifactVersion(@NotNull String groupId, @NotNull String artifactId, @Nullable String versionPrefix) {
+    GradleVersion latest = null;
+    for (File descriptorsFolder : getDescriptorsFolders()) {
+      List<GradleVersion> versions = list(new File(descriptorsFolder, join(groupId, artifactId))).getVersions();
+      // Versions are sorted from newest to oldest.
+      for (GradleVersion version : versions) {
+        if (latest != null && version.compareTo(latest) <= 0) {
+          break;
+        }
+        if (versionPrefix == null || version.toString().startsWith(versionPrefix)) {
+          latest = version;
+          break;
+        }
+      }
+    }
+    return latest;
+  }
+
+  /**
+   * @param gradleVersion a Gradle version, such as "4.1".
+   * @return {@code true} if the "all" or "bin" distribution of the given version was downloaded by the Gradle wrapper.
+   */
+  synchronized boolean containsWrapperDistribution(@NotNull String gradleVersion) {
+    String distFolderName = "gradle-" + gradleVersion;
+    String wrapperDirNamePrefix = distFolderName + "-";
+
+    // There is a folder that contains the actual distribution
+    // Example: // ~/.gradle/wrapper/dists/gradle-2.1-all/27drb4udbjf4k88eh2ffdc0n55/gradle-2.1
+    for (File wrapperFolder : list(new File(myServicePath, join("wrapper", "dists"))).myFolders) {
+      String name = wrapperFolder.getName();
+      if (!name.equals(wrapperDirNamePrefix + "all") && !name.equals(wrapperDirNamePrefix + "bin")) {
+        continue;
+      }
+      for (File mayBeDistParent : list(wrapperFolder).myFolders) {
+        for (File mayBeDistFolder : list(mayBeDistParent).myFolders) {
+          if (distFolderName.equals(mayBeDistFolder.getName())) {
+            return true;
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  @NotNull
+  private List<File> getDescriptorsFolders() {
+    List<File> descriptorsFolders = new ArrayList<>();
+    for (File moduleFolder : list(new File(myServicePath, "caches")).myFolders) {
+      if (!moduleFolder.getName().startsWith("modules-")) {
+        continue;
+      }
+      for (File metadataFolder : list(moduleFolder).myFolders) {
+        if (metadataFolder.getName().startsWith("metadata-")) {
+          descriptorsFolders.add(new File(metadataFolder, "descriptors"));
+        }
+      }
+    }
+    return descriptorsFolders;
+  }
+
+  @NotNull
+  private Listing list(@NotNull File folder) {
+    long now = myClock.getAsLong();
+    Listing listing = myListings.get(folder);
+    if (listing != null && now - listing.myCheckTime < MIN_REFRESH_INTERVAL_MS) {
+      return listing;
+    }
+    // lastModified() returns 0 if the folder does not exist.
+    long timestamp = folder.lastModified();
+    if (listing == null || listing.myTimestamp != timestamp) {
+      listing = new Listing(timestamp, timestamp != 0 ? notNullize(folder.listFiles()) : new File[0]);
+      myListings.put(folder, listing);
+    }
+    listing.myCheckTime = now;
+    return listing;
+  }
+
+  private static class Listing {
+    final long myTimestamp;
+    @NotNull final List<File> myFolders = new ArrayList<>();
+    long myCheckTime;
+
+    // Only computed for the folders of artifacts.
+    @Nullable private List<GradleVersion> myVersions;
+
+    Listing(long timestamp, @NotNull File[] children) {
+      myTimestamp = timestamp;
+      for (File child : children) {
+        if (child.isDirectory()) {
+          myFolders.add(child);
+        }
+      }
+    }
+
+    /**
+     * @return the versions named by the folders listed, from newest to oldest.
+     */
+    @NotNull
+    List<GradleVersion> getVersions() {
+      if (myVersions == null) {
+        myVersions = new ArrayList<>();
+        for (File versionFolder : myFolders) {
+          String version = versionFolder.getName();
+          if (!version.isEmpty() && Character.isDigit(version.charAt(0))) {
+            GradleVersion parsedVersion = GradleVersion.tryParse(version);
+            if (parsedVersion != null) {
+              myVersions.add(parsedVersion);
+            }
+          }
+        }
+        myVersions.sort(Collections.reverseOrder());
+      }
+      return myVersions;
+    }
+  }
+}
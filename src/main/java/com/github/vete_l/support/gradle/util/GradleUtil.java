@@ -26,6 +26,7 @@ import com.android.tools.idea.gradle.dsl.model.GradleBuildModel;
 import com.android.tools.idea.gradle.dsl.model.android.AndroidModel;
 import com.android.tools.idea.gradle.project.facet.gradle.GradleFacet;
 import com.android.tools.idea.gradle.project.model.AndroidModuleModel;
+import com.android.tools.idea.gradle.project.model.DependencyCoordinateIndex;
 import com.android.tools.idea.gradle.project.model.NdkModuleModel;
 import com.android.tools.idea.gradle.project.model.ide.android.IdeAndroidArtifact;
 import com.android.tools.idea.gradle.project.model.ide.android.IdeAndroidProject;
@@ -583,21 +584,14 @@ public final class GradleUtil {
    * @return {@code true} if the project depends on the given artifact (including transitively)
    */
   public static boolean dependsOn(@NonNull AndroidModuleModel androidModel, @NonNull String artifact) {
-    IdeDependencies dependencies = androidModel.getSelectedMainCompileLevel2Dependencies();
-    return dependsOnAndroidLibrary(dependencies, artifact);
+    return androidModel.getSelectedMainDependencyIndex().findAndroidLibrary(artifact) != null;
   }
 
   /**
    * Same as {@link #dependsOn(AndroidModuleModel, String)} but searches the list of Java Libraries
    */
   public static boolean dependsOnJavaLibrary(@NonNull AndroidModuleModel androidModel, @NonNull String artifact) {
-    IdeDependencies dependencies = androidModel.getSelectedMainCompileLevel2Dependencies();
-    for (Library library : dependencies.getJavaLibraries()) {
-      if (dependsOn(library, artifact)) {
-        return true;
-      }
-    }
-    return false;
+    return androidModel.getSelectedMainDependencyIndex().findJavaLibrary(artifact) != null;
   }
   /**
    * @param androidModel the Android model to check
@@ -606,14 +600,8 @@ public final class GradleUtil {
    */
   @Nullable
   public static GradleVersion getModuleDependencyVersion(@NonNull AndroidModuleModel androidModel, @NonNull String artifact) {
-    IdeDependencies dependencies = androidModel.getSelectedMainCompileLevel2Dependencies();
-    for (Library library : dependencies.getAndroidLibraries()) {
-      String version = getDependencyVersion(library, artifact);
-      if (version != null) {
-        return GradleVersion.tryParse(version);
-      }
-    }
-    return null;
+    DependencyCoordinateIndex.Dependency dependency = androidModel.getSelectedMainDependencyIndex().findAndroidLibrary(artifact);
+    return dependency != null ? GradleVersion.tryParse(dependency.getVersion()) : null;
   }
 
   /**
@@ -625,28 +613,8 @@ public final class GradleUtil {
    * @return {@code true} if the project depends on the given artifact (including transitively)
    */
   public static boolean dependsOnAndroidTest(@NonNull AndroidModuleModel androidModel, @NonNull String artifact) {
-    IdeDependencies dependencies = androidModel.getSelectedAndroidTestCompileDependencies();
-    if (dependencies == null) {
-      return false;
-    }
-    return dependsOnAndroidLibrary(dependencies, artifact);
-  }
-
-  /**
-   * Returns {@code true} if the given dependencies include the given artifact, which consists of a group id and an artifact id, such as
-   * {@link SdkConstants#APPCOMPAT_LIB_ARTIFACT}.
-   *
-   * @param dependencies the Gradle dependencies object to check
-   * @param artifact     the artifact
-   * @return {@code true} if the dependencies include the given artifact (including transitively)
-   */
-  private static boolean dependsOnAndroidLibrary(@NonNull IdeDependencies dependencies, @NonNull String artifact) {
-    for (Library library : dependencies.getAndroidLibraries()) {
-      if (dependsOn(library, artifact)) {
-        return true;
-      }
-    }
-    return false;
+    DependencyCoordinateIndex index = androidModel.getSelectedAndroidTestDependencyIndex();
+    return index != null && index.findAndroidLibrary(artifact) != null;
   }
 
   /**
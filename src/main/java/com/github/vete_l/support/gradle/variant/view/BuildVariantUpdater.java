@@ -22,6 +22,8 @@ import com.android.tools.idea.gradle.project.facet.ndk.NdkFacet;
 import com.android.tools.idea.gradle.project.model.AndroidModuleModel;
 import com.android.tools.idea.gradle.project.model.NdkModuleModel;
 import com.android.tools.idea.gradle.project.model.NdkModuleModel.NdkVariant;
+import com.android.tools.idea.gradle.project.sync.GradleSyncInvoker;
+import com.android.tools.idea.gradle.project.sync.GradleSyncListener;
 import com.android.tools.idea.gradle.project.sync.setup.module.AndroidModuleSetupStep;
 import com.android.tools.idea.gradle.project.sync.setup.module.NdkModuleSetupStep;
 import com.android.tools.idea.gradle.project.sync.setup.module.android.CompilerOutputModuleSetupStep;
@@ -38,17 +40,18 @@ import com.intellij.openapi.module.Module;
 import com.intellij.openapi.module.ModuleManager;
 import com.intellij.openapi.progress.EmptyProgressIndicator;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootManager;
 import com.intellij.openapi.ui.Messages;
 import org.jetbrains.android.facet.AndroidFacet;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
+import java.util.*;
 
 import static com.android.tools.idea.gradle.util.GradleUtil.findModuleByGradlePath;
+import static com.android.tools.idea.gradle.util.GradleUtil.getGradlePath;
 import static com.android.tools.idea.gradle.util.Projects.executeProjectChanges;
+import static com.google.wireless.android.sdk.stats.GradleSyncStats.Trigger.TRIGGER_USER_REQUEST;
 import static com.intellij.openapi.util.text.StringUtil.isEmpty;
 import static com.intellij.openapi.util.text.StringUtil.isNotEmpty;
 import static com.intellij.util.ExceptionUtil.rethrowAllAsUnchecked;
@@ -75,15 +78,24 @@ class BuildVariantUpdater {
 
   /**
    * Updates a module's structure when the user selects a build variant from the tool window.
+   * <p>
+   * If the model of the selected variant was skipped by a single-variant sync, the module and its dependencies are synced again to obtain
+   * it, and the variants of the dependencies are updated once sync finishes. In that case this method returns {@code false}, and the given
+   * callback is invoked when the update is done.
    *
    * @param project          the module's project.
    * @param moduleName       the module's name.
    * @param buildVariantName the name of the selected build variant.
+   * @param afterSync        invoked when the variant is selected after syncing the module.
    * @return {@code true} if the module update was successful, {@code false} otherwise.
    */
   boolean updateSelectedVariant(@NotNull Project project,
                                 @NotNull String moduleName,
-                                @NotNull String buildVariantName) {
+                                @NotNull String buildVariantName,
+                                @NotNull Runnable afterSync) {
+    if (requestSyncIfVariantNotFetched(project, moduleName, buildVariantName, afterSync)) {
+      return false;
+    }
     List<AndroidFacet> affectedAndroidFacets = new ArrayList<>();
     List<NdkFacet> affectedNdkFacets = new ArrayList<>();
     executeProjectChanges(project, () -> {
@@ -97,6 +109,74 @@ class BuildVariantUpdater {
     return !affectedAndroidFacets.isEmpty() || !affectedNdkFacets.isEmpty();
   }
 
+  private boolean requestSyncIfVariantNotFetched(@NotNull Project project,
+                                                 @NotNull String moduleName,
+                                                 @NotNull String variant,
+                                                 @NotNull Runnable afterSync) {
+    Module module = findModule(project, moduleName);
+    AndroidFacet androidFacet = module != null ? AndroidFacet.getInstance(module) : null;
+    AndroidModuleModel androidModel = androidFacet != null ? AndroidModuleModel.get(androidFacet) : null;
+    if (androidModel == null || androidModel.isVariantFetched(variant) || !androidModel.getVariantNames().contains(variant)) {
+      return false;
+    }
+    // Sync selects the variant stored in the facet, and obtains the models of the variants of the dependencies it needs.
+    androidFacet.getProperties().SELECTED_BUILD_VARIANT = variant;
+    GradleSyncInvoker.Request request = new GradleSyncInvoker.Request().setTrigger(TRIGGER_USER_REQUEST);
+    request.setModuleGradlePaths(getGradlePathsOfModuleAndDependencies(module));
+    GradleSyncInvoker.getInstance().requestProjectSync(project, request, new GradleSyncListener.Adapter() {
+      @Override
+      public void syncSucceeded(@NotNull Project project) {
+        selectDependencyVariantsAfterSync(project, moduleName, variant);
+        afterSync.run();
+      }
+    });
+    return true;
+  }
+
+  @NotNull
+  private static Set<String> getGradlePathsOfModuleAndDependencies(@NotNull Module module) {
+    Set<Module> visited = new HashSet<>();
+    Deque<Module> queue = new ArrayDeque<>();
+    queue.add(module);
+    while (!queue.isEmpty()) {
+      Module current = queue.remove();
+      if (visited.add(current)) {
+        queue.addAll(Arrays.asList(ModuleRootManager.getInstance(current).getDependencies()));
+      }
+    }
+    Set<String> gradlePaths = new LinkedHashSet<>();
+    for (Module current : visited) {
+      String gradlePath = getGradlePath(current);
+      if (gradlePath != null) {
+        gradlePaths.add(gradlePath);
+      }
+    }
+    return gradlePaths;
+  }
+
+  /**
+   * Sync already selected the given variant in the module, this method updates the variants of the modules it depends on.
+   */
+  private void selectDependencyVariantsAfterSync(@NotNull Project project, @NotNull String moduleName, @NotNull String variant) {
+    List<AndroidFacet> affectedAndroidFacets = new ArrayList<>();
+    executeProjectChanges(project, () -> {
+      Module module = findModule(project, moduleName);
+      AndroidFacet androidFacet = module != null ? AndroidFacet.getInstance(module) : null;
+      AndroidModuleModel androidModel = androidFacet != null ? AndroidModuleModel.get(androidFacet) : null;
+      if (androidModel == null || !variant.equals(androidModel.getSelectedVariant().getName())) {
+        return;
+      }
+      selectDependencyVariants(project, androidModel, affectedAndroidFacets);
+      if (!affectedAndroidFacets.isEmpty()) {
+        PostSyncProjectSetup.Request setupRequest = new PostSyncProjectSetup.Request();
+        setupRequest.setGenerateSourcesAfterSync(false).setCleanProjectAfterSync(false);
+
+        PostSyncProjectSetup.getInstance(project).setUpProject(setupRequest, new EmptyProgressIndicator());
+        generateSourcesIfNeeded(project, affectedAndroidFacets);
+      }
+    });
+  }
+
   private void doUpdate(@NotNull Project project,
                         @NotNull String moduleName,
                         @NotNull String variant,
@@ -148,7 +228,13 @@ class BuildVariantUpdater {
     androidModel.setSelectedVariantName(variantToSelect);
     androidModel.syncSelectedVariantAndTestArtifact(androidFacet);
     Module module = setUpModule(androidFacet.getModule(), androidModel);
+    selectDependencyVariants(module.getProject(), androidModel, affectedFacets);
+    return true;
+  }
 
+  private void selectDependencyVariants(@NotNull Project project,
+                                        @NotNull AndroidModuleModel androidModel,
+                                        @NotNull List<AndroidFacet> affectedFacets) {
     for (Library library : androidModel.getSelectedMainCompileLevel2Dependencies().getModuleDependencies()) {
       String gradlePath = library.getProjectPath();
       if (isEmpty(gradlePath)) {
@@ -156,10 +242,9 @@ class BuildVariantUpdater {
       }
       String projectVariant = library.getVariant();
       if (isNotEmpty(projectVariant)) {
-        ensureVariantIsSelected(module.getProject(), gradlePath, projectVariant, affectedFacets);
+        ensureVariantIsSelected(project, gradlePath, projectVariant, affectedFacets);
       }
     }
-    return true;
   }
 
   private boolean updateSelectedVariant(@NotNull NdkFacet ndkFacet,
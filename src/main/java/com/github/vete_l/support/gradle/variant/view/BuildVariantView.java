@@ -525,7 +525,7 @@ public class BuildVariantView {
 
   @VisibleForTesting
   void buildVariantSelected(@NotNull String moduleName, @NotNull String variantName) {
-    if (myUpdater.updateSelectedVariant(myProject, moduleName, variantName)) {
+    if (myUpdater.updateSelectedVariant(myProject, moduleName, variantName, this::invokeListeners)) {
       invokeListeners();
     }
   }
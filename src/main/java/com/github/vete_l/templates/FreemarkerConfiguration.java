@@ -19,12 +19,35 @@ import com.github.vete_l.templates.propertyAdapters.PropertyObjectWrapper;
 import com.google.common.base.Charsets;
 import freemarker.template.Configuration;
 import freemarker.template.TemplateExceptionHandler;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A Freemarker {@link Configuration} initialized with sensible built-in values for instantiating
  * Android project templates.
  */
 public final class FreemarkerConfiguration extends Configuration {
+  private static final Map<File, Configuration> ourSharedConfigurations = new ConcurrentHashMap<>();
+
+  /**
+   * Returns a configuration that loads templates from the given root folder of a set of templates (see
+   * {@link StudioTemplateLoader#getTemplateRootFolder()}), shared by all the renderings of those templates. FreeMarker keeps the
+   * templates it compiled, and compiles them again only when their file changes, so rendering the same templates again does not parse
+   * them again. Templates are looked up by their "root://" name (see {@link StudioTemplateLoader#findTemplate(File)}), which does not
+   * depend on the rendering.
+   */
+  @NotNull
+  public static Configuration getSharedConfiguration(@NotNull File templateRootFolder) {
+    return ourSharedConfigurations.computeIfAbsent(templateRootFolder, folder -> {
+      Configuration configuration = new FreemarkerConfiguration();
+      configuration.setTemplateLoader(new StudioTemplateLoader(folder));
+      return configuration;
+    });
+  }
+
   public FreemarkerConfiguration() {
     setDefaultEncoding(Charsets.UTF_8.name());
     setLocalizedLookup(false);
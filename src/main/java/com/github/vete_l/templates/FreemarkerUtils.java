@@ -16,6 +16,7 @@
 package com.github.vete_l.templates;
 
 import com.github.vete_l.templates.recipe.RenderingContext;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.LinkedHashMultimap;
 import freemarker.template.TemplateException;
 import org.jetbrains.annotations.NotNull;
@@ -27,6 +28,7 @@ import java.io.StringWriter;
 import java.io.Writer;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Various utility methods to help classes interact with and initialize freemarker with Android
@@ -34,6 +36,13 @@ import java.util.Map;
  */
 public final class FreemarkerUtils {
 
+  /**
+   * Names of the builtin methods of {@link #createParameterMap} that read other values of the data model, or the state of the
+   * project. The other builtin methods only depend on their arguments.
+   */
+  public static final Set<String> DATA_MODEL_METHODS = ImmutableSet.of(
+    "getAppManifestDir", "getApplicationTheme", "getConfigurationName", "hasDependency", "isGradleComponentPluginUsed");
+
   /**
    * Create a parameter map that represents a data model which should be passed into
    * {@link freemarker.template.Template#process(Object, Writer)}. This model will be initialized
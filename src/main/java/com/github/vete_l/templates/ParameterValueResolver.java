@@ -17,32 +17,62 @@ package com.github.vete_l.templates;
 
 import com.github.vete_l.templates.Parameter.Constraint;
 import com.google.common.base.Objects;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static com.intellij.openapi.util.text.StringUtil.isEmptyOrSpaces;
 
 /**
  * Class which handles setting up the relationships between a bunch of {@link Parameter}s and then
  * resolves them.
+ * <p>
+ * The parameters whose value is computed from an expression are sorted once, so each one is
+ * evaluated after the parameters it references. An instance remembers the values of its last
+ * resolution: resolving again (e.g. after the user changed a value in a wizard) only evaluates
+ * the parameters that reference, directly or not, a value that changed.
+ * <p>
+ * Most builtin methods (see {@link FreemarkerUtils#createParameterMap}) only convert their arguments, so calling one does not add
+ * any dependency. The ones that read the data model ({@link FreemarkerUtils#DATA_MODEL_METHODS}) may read any value: an expression
+ * calling one is considered to reference all the parameters, and it is evaluated on each resolution, since it may also read values
+ * that are not parameters, or the project. So are the parameters with a {@link Constraint#UNIQUE} constraint, whose value depends on
+ * the project through the {@link Deduplicator}.
  */
 public final class ParameterValueResolver {
 
   @NotNull private static final Deduplicator DO_NOTHING_DEDUPLICATOR = (parameter, value) -> value;
-  @NotNull private final Set<Parameter> myComputedParameters = Sets.newHashSet();
-  @NotNull private final Set<Parameter> myStaticParameters = Sets.newHashSet();
+  // Anything that looks like a name in an expression. Names that are not parameters (e.g. builtin methods) are harmless.
+  @NotNull private static final Pattern NAME_PATTERN = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+  @NotNull private final List<Parameter> myParameters = new ArrayList<>();
+  // Names referenced by the expression of each parameter that has one.
+  @NotNull private final Map<Parameter, Set<String>> myReferencedNames = new HashMap<>();
+  // Parameters whose expression calls a builtin method reading the data model. They are considered to reference all the parameters.
+  @NotNull private final Set<Parameter> myDataModelReaders = new HashSet<>();
+  // Parameters evaluated on each resolution, even if none of the values they reference changed.
+  @NotNull private final Set<Parameter> myAlwaysEvaluated = new HashSet<>();
+  // Groups of parameters with an expression, sorted so that a group is after the groups it references. A group of more than one
+  // parameter, or a parameter referencing itself, is a cycle: its values are computed until they are stable.
+  @NotNull private final List<List<Parameter>> myEvaluationOrder;
   @NotNull private final Deduplicator myDeduplicator;
   @NotNull private final StringEvaluator myStringEvaluator = new StringEvaluator();
-  @NotNull private final Map<Parameter, Object> myUserValues;
-  @NotNull private final Map<String, Object> myAdditionalValues;
+
+  // State of the last resolution. myLastInputs is null if there was none, or if it failed.
+  @Nullable private Map<String, Object> myLastInputs;
+  @NotNull private Map<String, Object> myLastValues = ImmutableMap.of();
+  @NotNull private Set<Parameter> myLastComputedParameters = ImmutableSet.of();
+  private int myLastEvaluationCount;
 
   /**
    * @see #resolve(Iterable, Map, Map, Deduplicator)
@@ -67,29 +97,51 @@ public final class ParameterValueResolver {
                                                @NotNull Map<Parameter, Object> userValues,
                                                @NotNull Map<String, Object> additionalValues,
                                                @NotNull Deduplicator deduplicator) throws CircularParameterDependencyException {
-    ParameterValueResolver resolver = new ParameterValueResolver(parameters, userValues, additionalValues, deduplicator);
-    return resolver.resolve();
+    ParameterValueResolver resolver = new ParameterValueResolver(parameters, deduplicator);
+    return resolver.resolve(userValues, additionalValues);
   }
 
-  private ParameterValueResolver(@NotNull Iterable<Parameter> parameters,
-                                 @NotNull Map<Parameter, Object> userValues,
-                                 @NotNull Map<String, Object> additionalValues,
-                                 @NotNull Deduplicator deduplicator) {
-    myUserValues = userValues;
-    myAdditionalValues = additionalValues;
+  /**
+   * Creates a resolver that can be used to resolve the given parameters many times, e.g. each time the user changes a value in a
+   * wizard step.
+   *
+   * @param parameters   parameters to resolve
+   * @param deduplicator a function that ensures uniqueness of the parameter value
+   */
+  public ParameterValueResolver(@NotNull Iterable<Parameter> parameters, @NotNull Deduplicator deduplicator) {
+    ListMultimap<String, Parameter> parametersById = ArrayListMultimap.create();
     for (Parameter parameter : parameters) {
       if (parameter != null && !isEmptyOrSpaces(parameter.id)) {
-        if (!isEmptyOrSpaces(getSuggestOrInitial(parameter)) && !userValues.containsKey(parameter)) {
-          myComputedParameters.add(parameter);
-        }
-        else {
-          myStaticParameters.add(parameter);
+        myParameters.add(parameter);
+        String expression = getSuggestOrInitial(parameter);
+        if (!isEmptyOrSpaces(expression)) {
+          Set<String> referencedNames = getReferencedNames(expression);
+          myReferencedNames.put(parameter, referencedNames);
+          if (!Collections.disjoint(referencedNames, FreemarkerUtils.DATA_MODEL_METHODS)) {
+            myDataModelReaders.add(parameter);
+            myAlwaysEvaluated.add(parameter);
+          }
+          if (parameter.constraints.contains(Constraint.UNIQUE)) {
+            myAlwaysEvaluated.add(parameter);
+          }
+          parametersById.put(parameter.id, parameter);
         }
       }
     }
+    myEvaluationOrder = new EvaluationOrderBuilder(parametersById).build();
     myDeduplicator = deduplicator;
   }
 
+  @NotNull
+  private static Set<String> getReferencedNames(@NotNull String expression) {
+    Set<String> names = new HashSet<>();
+    Matcher matcher = NAME_PATTERN.matcher(expression);
+    while (matcher.find()) {
+      names.add(matcher.group());
+    }
+    return names;
+  }
+
   @NotNull
   private static String getSuggestOrInitial(Parameter parameter) {
     return isEmptyOrSpaces(parameter.suggest) && parameter.constraints.contains(Constraint.UNIQUE) ? parameter.initial : parameter.suggest;
@@ -106,36 +158,67 @@ public final class ParameterValueResolver {
   }
 
   /**
-   * Returns a map of parameters to their resolved values.
+   * Returns a map of parameters to their resolved values. Only the parameters affected by the values that changed since the last
+   * resolution, and the ones that may depend on the project, are evaluated again.
+   *
+   * @param userValues       parameter values supplied by the user.
+   * @param additionalValues parameters that were not declared by the template but are instead a part of our "runtime"
    */
   @NotNull
-  public Map<Parameter, Object> resolve() throws CircularParameterDependencyException {
-    Map<String, Object> staticValues = getStaticParameterValues(myUserValues, myAdditionalValues);
-    Map<String, Object> computedValues = computeParameterValues(staticValues);
+  public Map<Parameter, Object> resolve(@NotNull Map<Parameter, Object> userValues,
+                                        @NotNull Map<String, Object> additionalValues) throws CircularParameterDependencyException {
+    Set<Parameter> computedParameters = Sets.newHashSet();
+    Set<Parameter> staticParameters = Sets.newHashSet();
+    for (Parameter parameter : myParameters) {
+      if (myReferencedNames.containsKey(parameter) && !userValues.containsKey(parameter)) {
+        computedParameters.add(parameter);
+      }
+      else {
+        staticParameters.add(parameter);
+      }
+    }
+
+    Map<String, Object> staticValues = getStaticParameterValues(staticParameters, userValues, additionalValues);
+    Map<String, Object> lastInputs = myLastInputs;
+    myLastInputs = null;
+    myLastEvaluationCount = 0;
+    Map<String, Object> computedValues = computeParameterValues(computedParameters, staticValues, lastInputs);
+    myLastInputs = staticValues;
+    myLastValues = computedValues;
+    myLastComputedParameters = computedParameters;
 
     HashMap<Parameter, Object> allValues = Maps.newHashMapWithExpectedSize(computedValues.size() + staticValues.size());
-    for (Parameter parameter : Iterables.concat(myStaticParameters, myComputedParameters)) {
+    for (Parameter parameter : Iterables.concat(staticParameters, computedParameters)) {
       allValues.put(parameter, computedValues.get(parameter.id));
     }
     return allValues;
   }
 
+  /**
+   * @return the number of parameter values computed by the last resolution.
+   */
+  public int getLastEvaluationCount() {
+    return myLastEvaluationCount;
+  }
+
   @Nullable
   private Object computeParameterValue(@NotNull Parameter computedParameter, @NotNull Map<String, Object> currentValues) {
     String suggest = getSuggestOrInitial(computedParameter);
 
     assert !isEmptyOrSpaces(suggest);
+    myLastEvaluationCount++;
     String value = myStringEvaluator.evaluate(suggest, currentValues);
     value = myDeduplicator.deduplicate(computedParameter, value);
     return decodeInitialValue(computedParameter, value);
   }
 
   @NotNull
-  private Map<String, Object> getStaticParameterValues(@NotNull Map<Parameter, Object> userValues,
-                                                       @NotNull Map<String, Object> additionalValues) {
-    final Map<String, Object> knownValues = Maps.newHashMapWithExpectedSize(myStaticParameters.size() + additionalValues.size());
+  private static Map<String, Object> getStaticParameterValues(@NotNull Set<Parameter> staticParameters,
+                                                              @NotNull Map<Parameter, Object> userValues,
+                                                              @NotNull Map<String, Object> additionalValues) {
+    final Map<String, Object> knownValues = Maps.newHashMapWithExpectedSize(staticParameters.size() + additionalValues.size());
     knownValues.putAll(additionalValues);
-    for (Parameter parameter : myStaticParameters) {
+    for (Parameter parameter : staticParameters) {
       Object value;
       if (userValues.containsKey(parameter)) {
         value = userValues.get(parameter);
@@ -153,18 +236,82 @@ public final class ParameterValueResolver {
   }
 
   /**
-   * Computes values of the parameters with non-static default values.
+   * Computes values of the parameters with non-static default values, in evaluation order.
    *
-   * These parameters may depend on other computable parameters. We do not have that information
-   * (expressions are evaluated with FreeMarker), so we keep reevaluating the parameter values until
-   * they stabilize.
+   * @param lastInputs the static values of the last resolution, or {@code null} if all the parameters need to be evaluated.
    */
   @NotNull
-  private Map<String, Object> computeParameterValues(@NotNull Map<String, Object> staticValues) throws
-                                                                                                CircularParameterDependencyException {
-    Map<String, Object> computedValues = Maps.newHashMapWithExpectedSize(myComputedParameters.size() + staticValues.size());
+  private Map<String, Object> computeParameterValues(@NotNull Set<Parameter> computedParameters,
+                                                     @NotNull Map<String, Object> staticValues,
+                                                     @Nullable Map<String, Object> lastInputs) throws CircularParameterDependencyException {
+    Map<String, Object> computedValues = Maps.newHashMapWithExpectedSize(computedParameters.size() + staticValues.size());
     computedValues.putAll(staticValues);
-    for (Parameter parameter : myComputedParameters) {
+
+    // Names whose value is not the same as in the last resolution.
+    Set<String> changedNames = new HashSet<>();
+    if (lastInputs != null) {
+      for (Map.Entry<String, Object> entry : staticValues.entrySet()) {
+        String name = entry.getKey();
+        if (!lastInputs.containsKey(name) || !Objects.equal(lastInputs.get(name), entry.getValue())) {
+          changedNames.add(name);
+        }
+      }
+      for (String name : lastInputs.keySet()) {
+        if (!staticValues.containsKey(name)) {
+          changedNames.add(name);
+        }
+      }
+    }
+    for (Parameter parameter : computedParameters) {
+      boolean wasComputed = lastInputs != null && myLastComputedParameters.contains(parameter);
+      computedValues.put(parameter.id, wasComputed ? myLastValues.get(parameter.id) : "");
+    }
+
+    for (List<Parameter> group : myEvaluationOrder) {
+      List<Parameter> parameters = new ArrayList<>(group.size());
+      boolean evaluate = lastInputs == null;
+      for (Parameter parameter : group) {
+        if (computedParameters.contains(parameter)) {
+          parameters.add(parameter);
+          if (!myLastComputedParameters.contains(parameter) || myAlwaysEvaluated.contains(parameter) ||
+              !Collections.disjoint(myReferencedNames.get(parameter), changedNames)) {
+            evaluate = true;
+          }
+        }
+      }
+      if (parameters.isEmpty() || !evaluate) {
+        continue;
+      }
+      Map<String, Object> previousValues = new HashMap<>();
+      for (Parameter parameter : parameters) {
+        previousValues.put(parameter.id, computedValues.get(parameter.id));
+      }
+      if (parameters.size() == 1 && !isCycle(group)) {
+        Parameter parameter = parameters.get(0);
+        computedValues.put(parameter.id, computeParameterValue(parameter, computedValues));
+      }
+      else {
+        computeCycleValues(parameters, computedValues);
+      }
+      for (Parameter parameter : parameters) {
+        if (!Objects.equal(previousValues.get(parameter.id), computedValues.get(parameter.id))) {
+          changedNames.add(parameter.id);
+        }
+      }
+    }
+    return computedValues;
+  }
+
+  private boolean isCycle(@NotNull List<Parameter> group) {
+    return group.size() > 1 || myReferencedNames.get(group.get(0)).contains(group.get(0).id);
+  }
+
+  /**
+   * Computes values of parameters that depend on each other. We keep reevaluating the parameter values until they stabilize.
+   */
+  private void computeCycleValues(@NotNull List<Parameter> parameters, @NotNull Map<String, Object> computedValues)
+    throws CircularParameterDependencyException {
+    for (Parameter parameter : parameters) {
       computedValues.put(parameter.id, "");
     }
 
@@ -175,12 +322,12 @@ public final class ParameterValueResolver {
     // Update: it turns out we do have circular dependencies which in most cases turn into
     // a stable situation, but worst case is 2 times the number of iterations since a value
     // can also be modified because of a "unique" qualifier.
-    final int maxIterations = 2 * myComputedParameters.size();
+    final int maxIterations = 2 * parameters.size();
     Map<String, Object> updatedValues = ImmutableMap.of();
     for (int i = 0; i <= maxIterations; i++) {
-      updatedValues = computeUpdatedValues(computedValues);
+      updatedValues = computeUpdatedValues(parameters, computedValues);
       if (updatedValues.isEmpty()) {
-        return computedValues;
+        return;
       }
       else {
         computedValues.putAll(updatedValues);
@@ -190,9 +337,9 @@ public final class ParameterValueResolver {
   }
 
   @NotNull
-  private Map<String, Object> computeUpdatedValues(@NotNull Map<String, Object> values) {
-    Map<String, Object> updatedValues = Maps.newHashMapWithExpectedSize(myComputedParameters.size());
-    for (Parameter computedParameter : myComputedParameters) {
+  private Map<String, Object> computeUpdatedValues(@NotNull List<Parameter> parameters, @NotNull Map<String, Object> values) {
+    Map<String, Object> updatedValues = Maps.newHashMapWithExpectedSize(parameters.size());
+    for (Parameter computedParameter : parameters) {
       Object value = computeParameterValue(computedParameter, values);
       String id = computedParameter.id;
       if (!Objects.equal(values.get(id), value)) {
@@ -202,6 +349,79 @@ public final class ParameterValueResolver {
     return updatedValues;
   }
 
+  /**
+   * Sorts the parameters with an expression by finding the strongly connected components (Tarjan's algorithm) of the graph where a
+   * parameter points to the parameters it references. Components are found dependencies first.
+   */
+  private class EvaluationOrderBuilder {
+    @NotNull private final ListMultimap<String, Parameter> myParametersById;
+    @NotNull private final List<List<Parameter>> myGroups = new ArrayList<>();
+    @NotNull private final Map<Parameter, Integer> myIndices = new HashMap<>();
+    @NotNull private final Map<Parameter, Integer> myLowLinks = new HashMap<>();
+    @NotNull private final Deque<Parameter> myStack = new ArrayDeque<>();
+    @NotNull private final Set<Parameter> myOnStack = new HashSet<>();
+
+    EvaluationOrderBuilder(@NotNull ListMultimap<String, Parameter> parametersById) {
+      myParametersById = parametersById;
+    }
+
+    @NotNull
+    List<List<Parameter>> build() {
+      for (Parameter parameter : myParametersById.values()) {
+        if (!myIndices.containsKey(parameter)) {
+          visit(parameter);
+        }
+      }
+      return ImmutableList.copyOf(myGroups);
+    }
+
+    private void visit(@NotNull Parameter parameter) {
+      int index = myIndices.size();
+      myIndices.put(parameter, index);
+      myLowLinks.put(parameter, index);
+      myStack.push(parameter);
+      myOnStack.add(parameter);
+
+      for (Parameter referenced : getReferencedParameters(parameter)) {
+        if (!myIndices.containsKey(referenced)) {
+          visit(referenced);
+          myLowLinks.put(parameter, Math.min(myLowLinks.get(parameter), myLowLinks.get(referenced)));
+        }
+        else if (myOnStack.contains(referenced)) {
+          myLowLinks.put(parameter, Math.min(myLowLinks.get(parameter), myIndices.get(referenced)));
+        }
+      }
+
+      if (myLowLinks.get(parameter) == index) {
+        List<Parameter> group = new ArrayList<>();
+        Parameter member;
+        do {
+          member = myStack.pop();
+          myOnStack.remove(member);
+          group.add(member);
+        }
+        while (member != parameter);
+        myGroups.add(group);
+      }
+    }
+
+    @NotNull
+    private Collection<Parameter> getReferencedParameters(@NotNull Parameter parameter) {
+      if (myDataModelReaders.contains(parameter)) {
+        return myParametersById.values();
+      }
+      List<Parameter> referenced = new ArrayList<>();
+      for (String name : myReferencedNames.get(parameter)) {
+        referenced.addAll(myParametersById.get(name));
+      }
+      return referenced;
+    }
+  }
+
+  /**
+   * Makes the value of a parameter with a {@link Constraint#UNIQUE} constraint unique, e.g. in the project. It is not expected to
+   * change the value of other parameters.
+   */
   public interface Deduplicator {
     @Nullable
     String deduplicate(@NotNull Parameter parameter, @Nullable String value);
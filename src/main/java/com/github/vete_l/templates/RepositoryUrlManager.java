@@ -26,13 +26,11 @@ import com.android.repository.io.FileOp;
 import com.android.repository.io.FileOpUtils;
 import com.android.sdklib.repository.AndroidSdkHandler;
 import com.android.tools.idea.gradle.eclipse.ImportModule;
+import com.android.tools.idea.gradle.service.repo.VersionMetadataCache;
 import com.android.tools.idea.gradle.util.EmbeddedDistributionPaths;
 import com.android.tools.idea.gradle.util.GradleLocalCache;
-import com.android.tools.idea.lint.LintIdeClient;
 import com.android.tools.idea.sdk.AndroidSdks;
 import com.android.tools.idea.sdk.progress.StudioLoggerProgressIndicator;
-import com.android.tools.lint.checks.GradleDetector;
-import com.android.tools.lint.client.api.LintClient;
 import com.android.utils.FileUtils;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Multimap;
@@ -59,6 +57,7 @@ import java.util.function.Predicate;
 import static com.android.SdkConstants.FD_EXTRAS;
 import static com.android.SdkConstants.FD_M2_REPOSITORY;
 import static com.android.ide.common.repository.GradleCoordinate.COMPARE_PLUS_LOWER;
+import static com.android.tools.idea.gradle.service.repo.VersionMetadataCache.Source.MAVEN_CENTRAL;
 import static com.github.vete_l.templates.SupportLibrary.PLAY_SERVICES;
 
 /**
@@ -435,7 +434,7 @@ public class RepositoryUrlManager {
     }
 
     // Regular Gradle dependency? Look in Gradle cache.
-    GradleVersion versionFound = GradleLocalCache.getInstance().findLatestArtifactVersion(coordinate, project, revision);
+    GradleVersion versionFound = GradleLocalCache.getInstance().findLatestArtifactVersion(coordinate, project, versionPrefix);
     if (versionFound != null) {
       return versionFound.toString();
     }
@@ -452,13 +451,11 @@ public class RepositoryUrlManager {
 
     // Perform network lookup to resolve current best version, if possible.
     if (project != null) {
-      LintClient client = new LintIdeClient(project);
-      GradleVersion latest = GradleDetector.getLatestVersionFromRemoteRepo(client, coordinate, filter, coordinate.isPreview());
+      // The filter only accepts versions starting with the requested prefix.
+      GradleVersion latest =
+        VersionMetadataCache.getInstance().findLatestVersion(MAVEN_CENTRAL, groupId, artifactId, filter, coordinate.isPreview());
       if (latest != null) {
-        String latestString = latest.toString();
-        if (latestString.startsWith(revision)) {
-          return latestString;
-        }
+        return latest.toString();
       }
     }
 
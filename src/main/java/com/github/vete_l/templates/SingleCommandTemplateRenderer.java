@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.vete_l.templates;
+
+import com.android.tools.idea.project.BuildSystemService;
+import com.github.vete_l.templates.recipe.RenderingContext;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.Result;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.startup.StartupManager;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.impl.source.PostprocessReformattingAspect;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.android.tools.idea.gradle.util.Projects.isBuildWithGradle;
+
+/**
+ * Renders several templates one after the other, e.g. one per feature module generated by a script, as a single undoable command. Unlike
+ * calling {@link Template#render(RenderingContext, boolean)} for each of them:
+ * <ul>
+ * <li>all the templates are rendered in a single write command action, which can be undone at once</li>
+ * <li>the generated files that need it are reformatted in one pass, and documents are committed once</li>
+ * <li>at most one build system sync is requested, at the end, if any template changed the build files</li>
+ * <li>no dialogs are shown: errors are thrown and warnings are logged</li>
+ * </ul>
+ * Each template still writes its files as it is rendered, as {@link Template#render(RenderingContext, boolean)} does. Rendering stops at
+ * the first template that fails.
+ */
+public final class SingleCommandTemplateRenderer {
+  private static final Logger LOG = Logger.getInstance(SingleCommandTemplateRenderer.class);
+
+  @NotNull private final Project myProject;
+  @NotNull private final String myCommandName;
+  @NotNull private final List<Job> myJobs = new ArrayList<>();
+  @NotNull private final Set<File> myTargetFiles = new LinkedHashSet<>();
+
+  public SingleCommandTemplateRenderer(@NotNull Project project, @NotNull String commandName) {
+    myProject = project;
+    myCommandName = commandName;
+  }
+
+  /**
+   * Adds a template to render.
+   *
+   * @param params     the values of the template's parameters.
+   * @param outputRoot the root directory where the template will be expanded.
+   * @param moduleRoot the root of the module the template is expanded into.
+   */
+  @NotNull
+  public SingleCommandTemplateRenderer add(@NotNull Template template,
+                                   @NotNull Map<String, Object> params,
+                                   @NotNull File outputRoot,
+                                   @NotNull File moduleRoot) {
+    myJobs.add(new Job(template, params, outputRoot, moduleRoot));
+    return this;
+  }
+
+  /**
+   * Renders all the templates added, in the order they were added. If a template fails, the templates after it are not rendered, but the
+   * files written so far are still reformatted, and a sync is still requested if they changed the build files.
+   *
+   * @return {@code true} if all the templates were rendered.
+   */
+  public boolean render() {
+    long startTimeMillis = System.currentTimeMillis();
+    List<RenderingContext> contexts = new ArrayList<>(myJobs.size());
+    for (Job job : myJobs) {
+      contexts.add(RenderingContext.Builder.newContext(job.myTemplate, myProject)
+                     .withCommandName(myCommandName)
+                     .withParams(job.myParams)
+                     .withOutputRoot(job.myOutputRoot)
+                     .withModuleRoot(job.myModuleRoot)
+                     .withPerformSync(false)
+                     .withShowErrors(false)
+                     .build());
+    }
+
+    // The write command action of each template is nested in this one.
+    int renderedCount = new WriteCommandAction<Integer>(myProject, myCommandName) {
+      @Override
+      protected void run(@NotNull Result<Integer> result) {
+        if (myProject.isInitialized()) {
+          result.setResult(renderAll(contexts));
+        }
+        else {
+          PostprocessReformattingAspect reformattingAspect = PostprocessReformattingAspect.getInstance(myProject);
+          result.setResult(reformattingAspect.disablePostprocessFormattingInside(() -> renderAll(contexts)));
+        }
+      }
+    }.execute().getResultObject();
+    // Includes the template that failed, if any, which may have written some of its files.
+    List<RenderingContext> renderedContexts = contexts.subList(0, Math.min(renderedCount + 1, contexts.size()));
+
+    Set<File> filesToReformat = new LinkedHashSet<>();
+    boolean syncNeeded = false;
+    for (RenderingContext context : renderedContexts) {
+      myTargetFiles.addAll(context.getTargetFiles());
+      if (context.shouldReformat()) {
+        filesToReformat.addAll(context.getTargetFiles());
+      }
+      syncNeeded |= context.isSyncNeeded();
+    }
+
+    if (!filesToReformat.isEmpty()) {
+      StartupManager.getInstance(myProject)
+        .runWhenProjectIsInitialized(() -> TemplateUtils.reformatAndRearrange(myProject, filesToReformat));
+    }
+    ApplicationManager.getApplication().invokeAndWait(PsiDocumentManager.getInstance(myProject)::commitAllDocuments);
+
+    if (syncNeeded && !myProject.isDefault() && isBuildWithGradle(myProject)) {
+      BuildSystemService buildSystemService = BuildSystemService.getInstance(myProject);
+      assert buildSystemService != null;
+      buildSystemService.syncProject(myProject);
+    }
+
+    long elapsedMillis = System.currentTimeMillis() - startTimeMillis;
+    LOG.info(String.format("Rendered %1$d of %2$d template(s) (%3$d file(s)) in %4$d ms (%5$.1f templates/s)", renderedCount, myJobs.size(),
+                           myTargetFiles.size(), elapsedMillis, renderedCount * 1000.0 / Math.max(elapsedMillis, 1)));
+    return renderedCount == myJobs.size();
+  }
+
+  /**
+   * @return the files created or modified by the templates rendered by {@link #render()}.
+   */
+  @NotNull
+  public Set<File> getTargetFiles() {
+    return myTargetFiles;
+  }
+
+  /**
+   * @return the number of templates rendered, up to and excluding the first one that failed.
+   */
+  private int renderAll(@NotNull List<RenderingContext> contexts) {
+    for (int i = 0; i < myJobs.size(); i++) {
+      Job job = myJobs.get(i);
+      if (!job.myTemplate.doRender(contexts.get(i))) {
+        LOG.warn(String.format("Failed to render template '%1$s' into '%2$s'", job.myTemplate.getRootPath(), job.myModuleRoot));
+        return i;
+      }
+    }
+    return myJobs.size();
+  }
+
+  private static final class Job {
+    @NotNull final Template myTemplate;
+    @NotNull final Map<String, Object> myParams;
+    @NotNull final File myOutputRoot;
+    @NotNull final File myModuleRoot;
+
+    Job(@NotNull Template template, @NotNull Map<String, Object> params, @NotNull File outputRoot, @NotNull File moduleRoot) {
+      myTemplate = template;
+      myParams = params;
+      myOutputRoot = outputRoot;
+      myModuleRoot = moduleRoot;
+    }
+  }
+}
@@ -17,15 +17,13 @@ package com.github.vete_l.templates;
 
 import com.android.annotations.NonNull;
 import com.android.annotations.Nullable;
-import freemarker.cache.TemplateLoader;
 import freemarker.template.Configuration;
 import freemarker.template.Template;
 
 import java.io.IOException;
-import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
-import java.util.Map;
+import java.util.*;
 
 /**
  * A Freemarker wrapper which can evaluate simple strings. Used to evaluate
@@ -35,62 +33,109 @@ import java.util.Map;
  * full template files (from resources, merging into existing files etc) this
  * evaluator supports only simple strings, referencing only values from the
  * provided map (and builtin functions).
+ * <p>
+ * The same expressions are evaluated over and over (e.g. on each change in a wizard
+ * step), so compiled expressions are shared by all the evaluators, and each evaluator
+ * updates its parameter map in place instead of creating a new one for each evaluation.
+ * Instances are not thread-safe.
  */
-public class StringEvaluator implements TemplateLoader {
-  private Configuration myFreemarker;
-  private String myCurrentExpression;
-
+public class StringEvaluator {
   private static final String BOOLEAN_TEMPLATE = "<#if (%s)>true<#else>false</#if>";
+  private static final int MAX_CACHED_TEMPLATES = 500;
 
-  public StringEvaluator() {
-    myFreemarker = new FreemarkerConfiguration();
-    myFreemarker.setTemplateLoader(this);
-  }
+  // Configurations and templates are thread-safe once set up.
+  private static final Configuration ourFreemarker = new FreemarkerConfiguration();
+  private static final TemplateCache ourTemplates = new TemplateCache();
+  private static final TemplateCache ourBooleanTemplates = new TemplateCache();
+
+  // The builtin methods of the parameter map keep a reference to it, so the same map is updated for each evaluation.
+  private final Map<String, Object> myParameterMap = FreemarkerUtils.createParameterMap(Collections.emptyMap());
+  private final Map<String, Object> myBuiltinValues = new HashMap<>(myParameterMap);
+  private final Set<String> myInputNames = new HashSet<>();
+  private final StringWriter myOutput = new StringWriter();
 
   /** Evaluates the given expression, with the given set of arguments */
   @Nullable
   public String evaluate(@NonNull String expression, @NonNull Map<String, Object> inputs) {
     try {
-      myCurrentExpression = expression;
-      Template inputsTemplate = myFreemarker.getTemplate(expression);
-      StringWriter out = new StringWriter();
-      Map<String, Object> args = FreemarkerUtils.createParameterMap(inputs);
-      inputsTemplate.process(args, out);
-      out.flush();
-      return out.toString();
+      return process(ourTemplates.get(expression, false), inputs);
     } catch (Exception e) {
       return null;
     }
   }
 
   public boolean evaluateBooleanExpression(@NonNull String expression, @NonNull Map<String, Object> inputs, boolean defaultValue) {
+    Template template;
     try {
-      myCurrentExpression = String.format(BOOLEAN_TEMPLATE, expression);
-      String result = evaluate(myCurrentExpression, inputs);
-      return Boolean.parseBoolean(result);
-    } catch (Exception e) {
+      template = ourBooleanTemplates.get(expression, true);
+    } catch (IllegalFormatException e) {
       return defaultValue;
+    } catch (Exception e) {
+      return false;
+    }
+    String result;
+    try {
+      result = process(template, inputs);
+    } catch (Exception e) {
+      result = null;
     }
+    return Boolean.parseBoolean(result);
   }
 
-  // ---- Implements TemplateLoader ----
-
-  @Override
-  public Object findTemplateSource(String name) throws IOException {
-    return myCurrentExpression;
+  @NonNull
+  private String process(@NonNull Template template, @NonNull Map<String, Object> inputs) throws Exception {
+    updateParameterMap(inputs);
+    myOutput.getBuffer().setLength(0);
+    template.process(myParameterMap, myOutput);
+    return myOutput.toString();
   }
 
-  @Override
-  public long getLastModified(Object templateSource) {
-    return 0;
+  private void updateParameterMap(@NonNull Map<String, Object> inputs) {
+    for (Iterator<String> iterator = myInputNames.iterator(); iterator.hasNext(); ) {
+      String name = iterator.next();
+      if (!inputs.containsKey(name)) {
+        iterator.remove();
+        // Inputs may hide a builtin value, which is visible again once they are gone.
+        Object builtinValue = myBuiltinValues.get(name);
+        if (builtinValue != null) {
+          myParameterMap.put(name, builtinValue);
+        }
+        else {
+          myParameterMap.remove(name);
+        }
+      }
+    }
+    for (Map.Entry<String, Object> input : inputs.entrySet()) {
+      myInputNames.add(input.getKey());
+      myParameterMap.put(input.getKey(), input.getValue());
+    }
   }
 
-  @Override
-  public Reader getReader(Object templateSource, String encoding) throws IOException {
-    return new StringReader(myCurrentExpression);
-  }
+  /**
+   * Compiled expressions, by expression. The least recently used ones are evicted once the cache is full.
+   */
+  private static class TemplateCache {
+    private final Map<String, Template> myTemplates = new LinkedHashMap<String, Template>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Template> eldest) {
+        return size() > MAX_CACHED_TEMPLATES;
+      }
+    };
 
-  @Override
-  public void closeTemplateSource(Object templateSource) throws IOException {
+    @NonNull
+    Template get(@NonNull String expression, boolean isBoolean) throws IOException {
+      synchronized (myTemplates) {
+        Template template = myTemplates.get(expression);
+        if (template != null) {
+          return template;
+        }
+      }
+      String source = isBoolean ? String.format(BOOLEAN_TEMPLATE, expression) : expression;
+      Template template = new Template(source, new StringReader(source), ourFreemarker);
+      synchronized (myTemplates) {
+        myTemplates.put(expression, template);
+      }
+      return template;
+    }
   }
 }
@@ -23,7 +23,6 @@ import com.github.vete_l.templates.FreemarkerUtils.TemplateUserVisibleException;
 import com.github.vete_l.templates.recipe.Recipe;
 import com.github.vete_l.templates.recipe.RecipeExecutor;
 import com.github.vete_l.templates.recipe.RenderingContext;
-import com.android.utils.XmlUtils;
 import com.google.common.base.Joiner;
 import com.google.common.collect.Lists;
 import com.google.wireless.android.sdk.stats.AndroidStudioEvent;
@@ -45,16 +44,9 @@ import com.intellij.psi.impl.source.PostprocessReformattingAspect;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.xml.sax.Attributes;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
-import org.xml.sax.helpers.DefaultHandler;
 
 import javax.xml.bind.JAXBException;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.parsers.SAXParserFactory;
 import java.io.File;
-import java.io.IOException;
-import java.io.StringReader;
 import java.util.List;
 import java.util.Map;
 
@@ -357,7 +349,7 @@ public class Template {
    * to render with dry run set to false.
    * Errors may be shown regardless of the dry run flag.
    */
-  private boolean doRender(@NotNull RenderingContext context) {
+  boolean doRender(@NotNull RenderingContext context) {
     TemplateMetadata metadata = getMetadata();
     assert metadata != null;
 
@@ -461,7 +453,7 @@ public class Template {
     String xml;
     if (hasExtension(file, DOT_XML)) {
       // Just read the file
-      xml = TemplateUtils.readTextFromDisk(getTemplateFile(file));
+      xml = TemplateDefinitionCache.readTextFromDisk(getTemplateFile(file));
       if (xml == null) {
         return;
       }
@@ -478,75 +470,53 @@ public class Template {
   }
 
   private void processXml(@NotNull final RenderingContext context, @NotNull String xml) throws TemplateProcessingException {
-    try {
-      xml = XmlUtils.stripBom(xml);
-      InputSource inputSource = new InputSource(new StringReader(xml));
-      SAXParserFactory.newInstance().newSAXParser().parse(inputSource, new DefaultHandler() {
-        @Override
-        public void startElement(String uri, String localName, String name, Attributes attributes) throws SAXException {
-          try {
-            Map<String, Object> paramMap = context.getParamMap();
-            if (TAG_PARAMETER.equals(name)) {
-              String id = attributes.getValue(ATTR_ID);
-              if (!paramMap.containsKey(id)) {
-                String value = attributes.getValue(ATTR_DEFAULT);
-                Object mapValue = value;
-                if (value != null && !value.isEmpty()) {
-                  String type = attributes.getValue(ATTR_TYPE);
-                  if ("boolean".equals(type)) {
-                    mapValue = Boolean.valueOf(value);
-                  }
-                }
-                paramMap.put(id, mapValue);
-              }
-            }
-            else if (TAG_GLOBAL.equals(name)) {
-              String id = attributes.getValue(ATTR_ID);
-              if (!paramMap.containsKey(id)) {
-                paramMap.put(id, TypedVariable.parseGlobal(attributes));
-              }
-            }
-            else if (TAG_GLOBALS.equals(name)) {
-              // Handle evaluation of variables
-              File globalsFile = getPath(attributes, ATTR_FILE);
-              if (globalsFile != null) {
-                processFile(context, globalsFile);
-              } // else: <globals> root element
-            }
-            else if (TAG_EXECUTE.equals(name)) {
-              File recipeFile = getPath(attributes, ATTR_FILE);
-              if (recipeFile != null) {
-                executeRecipeFile(context, recipeFile);
-              }
-            }
-            else if (!name.equals("template") &&
-                     !name.equals("category") &&
-                     !name.equals("option") &&
-                     !name.equals(TAG_THUMBS) &&
-                     !name.equals(TAG_THUMB) &&
-                     !name.equals(TAG_ICONS) &&
-                     !name.equals(TAG_DEPENDENCY) &&
-                     !name.equals(TAG_FORMFACTOR)) {
-              LOG.error("WARNING: Unknown template directive " + name);
+    for (TemplateDefinitionCache.Directive directive : TemplateDefinitionCache.getDirectives(xml)) {
+      String name = directive.getName();
+      Attributes attributes = directive.getAttributes();
+      Map<String, Object> paramMap = context.getParamMap();
+      if (TAG_PARAMETER.equals(name)) {
+        String id = attributes.getValue(ATTR_ID);
+        if (!paramMap.containsKey(id)) {
+          String value = attributes.getValue(ATTR_DEFAULT);
+          Object mapValue = value;
+          if (value != null && !value.isEmpty()) {
+            String type = attributes.getValue(ATTR_TYPE);
+            if ("boolean".equals(type)) {
+              mapValue = Boolean.valueOf(value);
             }
           }
-          catch (TemplateProcessingException e) {
-            throw new SAXException(e);
-          }
+          paramMap.put(id, mapValue);
         }
-      });
-    }
-    catch (SAXException ex) {
-      if (ex.getCause() instanceof TemplateProcessingException) {
-        throw (TemplateProcessingException)ex.getCause();
       }
-      throw new TemplateProcessingException(ex);
-    }
-    catch (ParserConfigurationException ex) {
-      throw new TemplateProcessingException(ex);
-    }
-    catch (IOException ex) {
-      throw new TemplateProcessingException(ex);
+      else if (TAG_GLOBAL.equals(name)) {
+        String id = attributes.getValue(ATTR_ID);
+        if (!paramMap.containsKey(id)) {
+          paramMap.put(id, TypedVariable.parseGlobal(attributes));
+        }
+      }
+      else if (TAG_GLOBALS.equals(name)) {
+        // Handle evaluation of variables
+        File globalsFile = getPath(attributes, ATTR_FILE);
+        if (globalsFile != null) {
+          processFile(context, globalsFile);
+        } // else: <globals> root element
+      }
+      else if (TAG_EXECUTE.equals(name)) {
+        File recipeFile = getPath(attributes, ATTR_FILE);
+        if (recipeFile != null) {
+          executeRecipeFile(context, recipeFile);
+        }
+      }
+      else if (!name.equals("template") &&
+               !name.equals("category") &&
+               !name.equals("option") &&
+               !name.equals(TAG_THUMBS) &&
+               !name.equals(TAG_THUMB) &&
+               !name.equals(TAG_ICONS) &&
+               !name.equals(TAG_DEPENDENCY) &&
+               !name.equals(TAG_FORMFACTOR)) {
+        LOG.error("WARNING: Unknown template directive " + name);
+      }
     }
   }
 
@@ -558,9 +528,7 @@ public class Template {
       @Override
       public void process(@NotNull String xml) throws TemplateProcessingException {
         try {
-          xml = XmlUtils.stripBom(xml);
-
-          Recipe recipe = Recipe.parse(new StringReader(xml));
+          Recipe recipe = TemplateDefinitionCache.getRecipe(xml);
           RecipeExecutor recipeExecutor = context.getRecipeExecutor();
           TemplateMetadata metadata = getMetadata();
           assert metadata != null;
@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.vete_l.templates;
+
+import com.android.utils.XmlUtils;
+import com.github.vete_l.templates.FreemarkerUtils.TemplateProcessingException;
+import com.github.vete_l.templates.recipe.Recipe;
+import com.google.common.collect.ImmutableList;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the parsed form of the files that define a template: template.xml and globals files as lists of {@link Directive}s, and recipe
+ * files as {@link Recipe}s. Files processed by FreeMarker are cached by their processed text, since their content depends on the
+ * parameters of each rendering; the others are cached by path and timestamp. Rendering the same template again, with the same
+ * parameters, then does not parse any XML.
+ * <p>
+ * Cached values are shared by all the renderings and must not be modified.
+ */
+final class TemplateDefinitionCache {
+  private static final int MAX_CACHED_DEFINITIONS = 200;
+
+  private static final Map<File, FileText> ourFiles = createLruMap();
+  private static final Map<String, List<Directive>> ourDirectives = createLruMap();
+  private static final Map<String, Recipe> ourRecipes = createLruMap();
+
+  private TemplateDefinitionCache() {
+  }
+
+  @NotNull
+  private static <K, V> Map<K, V> createLruMap() {
+    return new LinkedHashMap<K, V>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+        return size() > MAX_CACHED_DEFINITIONS;
+      }
+    };
+  }
+
+  /**
+   * Returns the text of the given file, read again only if the file changed since it was last read.
+   *
+   * @return the text of the file, or {@code null} if it could not be read.
+   */
+  @Nullable
+  static String readTextFromDisk(@NotNull File file) {
+    long lastModified = file.lastModified();
+    long length = file.length();
+    synchronized (ourFiles) {
+      FileText cached = ourFiles.get(file);
+      if (cached != null && cached.myLastModified == lastModified && cached.myLength == length) {
+        return cached.myText;
+      }
+    }
+    String text = TemplateUtils.readTextFromDisk(file);
+    if (text != null) {
+      synchronized (ourFiles) {
+        ourFiles.put(file, new FileText(text, lastModified, length));
+      }
+    }
+    return text;
+  }
+
+  /**
+   * Returns the elements of the given template definition (e.g. the contents of template.xml), in document order.
+   */
+  @NotNull
+  static List<Directive> getDirectives(@NotNull String xml) throws TemplateProcessingException {
+    synchronized (ourDirectives) {
+      List<Directive> directives = ourDirectives.get(xml);
+      if (directives != null) {
+        return directives;
+      }
+    }
+    List<Directive> directives = parseDirectives(xml);
+    synchronized (ourDirectives) {
+      ourDirectives.put(xml, directives);
+    }
+    return directives;
+  }
+
+  @NotNull
+  private static List<Directive> parseDirectives(@NotNull String xml) throws TemplateProcessingException {
+    ImmutableList.Builder<Directive> directives = ImmutableList.builder();
+    try {
+      InputSource inputSource = new InputSource(new StringReader(XmlUtils.stripBom(xml)));
+      SAXParserFactory.newInstance().newSAXParser().parse(inputSource, new DefaultHandler() {
+        @Override
+        public void startElement(String uri, String localName, String name, Attributes attributes) {
+          directives.add(new Directive(name, new AttributesImpl(attributes)));
+        }
+      });
+    }
+    catch (SAXException | ParserConfigurationException | IOException ex) {
+      throw new TemplateProcessingException(ex);
+    }
+    return directives.build();
+  }
+
+  /**
+   * Returns the recipe with the given contents. The recipe is shared: its instructions must be stateless.
+   */
+  @NotNull
+  static Recipe getRecipe(@NotNull String xml) throws JAXBException {
+    synchronized (ourRecipes) {
+      Recipe recipe = ourRecipes.get(xml);
+      if (recipe != null) {
+        return recipe;
+      }
+    }
+    Recipe recipe = Recipe.parse(new StringReader(XmlUtils.stripBom(xml)));
+    synchronized (ourRecipes) {
+      ourRecipes.put(xml, recipe);
+    }
+    return recipe;
+  }
+
+  /**
+   * An element of a template definition, with its attributes.
+   */
+  static final class Directive {
+    @NotNull private final String myName;
+    @NotNull private final Attributes myAttributes;
+
+    Directive(@NotNull String name, @NotNull Attributes attributes) {
+      myName = name;
+      myAttributes = attributes;
+    }
+
+    @NotNull
+    String getName() {
+      return myName;
+    }
+
+    @NotNull
+    Attributes getAttributes() {
+      return myAttributes;
+    }
+  }
+
+  private static final class FileText {
+    @NotNull final String myText;
+    final long myLastModified;
+    final long myLength;
+
+    FileText(@NotNull String text, long lastModified, long length) {
+      myText = text;
+      myLastModified = lastModified;
+      myLength = length;
+    }
+  }
+}
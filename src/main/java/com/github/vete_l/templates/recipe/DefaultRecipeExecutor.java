@@ -404,6 +404,9 @@ public final class DefaultRecipeExecutor implements RecipeExecutor {
       }
     }
     Project project = myContext.getProject();
+    if (myNeedsSync) {
+      myContext.setSyncNeeded();
+    }
     if (myNeedsSync &&
         myContext.performSync() &&
         !project.isDefault() &&
@@ -40,6 +40,8 @@ import static com.android.SdkConstants.DOT_FTL;
  */
 @XmlRootElement(name = "recipe")
 public class Recipe implements RecipeInstruction {
+  @Nullable private static JAXBContext ourJaxbContext;
+
   // @formatter:off
   @XmlElements({
     @XmlElement(name = "copy", type = CopyInstruction.class),
@@ -80,7 +82,7 @@ public class Recipe implements RecipeInstruction {
   }
 
   private static Recipe unmarshal(@NotNull Reader xmlReader) throws JAXBException {
-    Unmarshaller unmarshaller = JAXBContext.newInstance(Recipe.class).createUnmarshaller();
+    Unmarshaller unmarshaller = getJaxbContext().createUnmarshaller();
     unmarshaller.setEventHandler(new ValidationEventHandler() {
       @Override
       public boolean handleEvent(ValidationEvent event) {
@@ -90,6 +92,17 @@ public class Recipe implements RecipeInstruction {
     return (Recipe)unmarshaller.unmarshal(xmlReader);
   }
 
+  @NotNull
+  private static JAXBContext getJaxbContext() throws JAXBException {
+    // Creating a context is expensive, and contexts are thread-safe.
+    synchronized (Recipe.class) {
+      if (ourJaxbContext == null) {
+        ourJaxbContext = JAXBContext.newInstance(Recipe.class);
+      }
+      return ourJaxbContext;
+    }
+  }
+
   @NotNull
   private static File cloneWithoutFreemarkerSuffix(@NotNull File file) {
     File clone = new File(file.getPath());
@@ -69,6 +69,7 @@ public class RenderingContext {
   private final Collection<String> myWarnings;
   private final boolean myDryRun;
   private final boolean myShowErrors;
+  private boolean mySyncNeeded;
 
   private RenderingContext(@Nullable Project project,
                            @NotNull File initialTemplatePath,
@@ -96,8 +97,7 @@ public class RenderingContext {
     myDryRun = dryRun;
     myShowErrors = showErrors;
     myLoader = new StudioTemplateLoader(initialTemplatePath);
-    myFreemarker = new FreemarkerConfiguration();
-    myFreemarker.setTemplateLoader(myLoader);
+    myFreemarker = FreemarkerConfiguration.getSharedConfiguration(myLoader.getTemplateRootFolder());
     mySourceFiles = outSourceFiles != null ? outSourceFiles : Lists.newArrayList();
     myTargetFiles = outTargetFiles != null ? outTargetFiles : Lists.newArrayList();
     myFilesToOpen = outOpenFiles != null ? outOpenFiles : Lists.newArrayList();
@@ -154,6 +154,18 @@ public class RenderingContext {
     return myPerformSync;
   }
 
+  /**
+   * @return true if the template changed the build files, so the build system needs a sync (whether or not {@link #performSync()}
+   * allowed the rendering to request it.)
+   */
+  public boolean isSyncNeeded() {
+    return mySyncNeeded;
+  }
+
+  void setSyncNeeded() {
+    mySyncNeeded = true;
+  }
+
   /**
    * If true show errors.
    * A false means errors are thrown as a {@link RuntimeException} for the IDE to handle.
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.vete_l.support.gradle.project.build.invoker;
+
+import com.android.ide.common.blame.Message;
+import com.android.ide.common.blame.SourceFilePosition;
+import com.android.ide.common.blame.parser.ParsingFailedException;
+import com.android.ide.common.blame.parser.PatternAwareOutputParser;
+import com.android.ide.common.blame.parser.util.OutputLineReader;
+import com.android.tools.idea.gradle.output.parser.BuildOutputParser;
+import com.android.utils.ILogger;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link StreamingBuildOutputParser}.
+ */
+public class StreamingBuildOutputParserTest {
+  private static final int MAX_SEGMENT_LENGTH = 64;
+
+  private final List<PatternAwareOutputParser> myParsers =
+    Arrays.asList(new ErrorParser(), new FailureSummaryParser(), new FailingParser());
+
+  @Test
+  public void messagesAreTheSameAsWithBatchParsing() {
+    StringBuilder output = new StringBuilder();
+    output.append("> Task :lib:compileJava\n");
+    output.append("e: lib error\n");
+    output.append("> Task :app:compileJava\n");
+    // A verbose task, split in several segments.
+    for (int i = 0; i < 20; i++) {
+      output.append("note: processing element ").append(i).append("\n\n");
+    }
+    output.append("e: app error\n");
+    output.append("\n");
+    output.append("FAILURE: Build failed with an exception.\n");
+    output.append("\n");
+    output.append("* What went wrong:\n");
+    output.append("Execution failed for task ':app:compileJava'.\n");
+    output.append("> Compilation failed; see the compiler error output for details.\n");
+    output.append("\n");
+    output.append("* Try:\n");
+    output.append("Run with --stacktrace option to get the stack trace.\n");
+    output.append("\n");
+    output.append("BUILD FAILED in 3s\n");
+
+    List<Message> batchMessages = new BuildOutputParser(myParsers).parseGradleOutput(output.toString(), true);
+    assertEquals(3, batchMessages.size());
+
+    List<Message> consumedMessages = new ArrayList<>();
+    StreamingBuildOutputParser parser = new StreamingBuildOutputParser(myParsers, consumedMessages::addAll, MAX_SEGMENT_LENGTH);
+    appendInChunks(parser, output.toString());
+    assertEquals(batchMessages, parser.finish());
+    assertEquals(batchMessages, consumedMessages);
+    assertFalse(parser.isParsingFailed());
+  }
+
+  @Test
+  public void parsingFailureDropsAllMessagesLikeBatchParsing() {
+    String output = "> Task :lib:compileJava\n" +
+                    "e: lib error\n" +
+                    "> Task :app:compileJava\n" +
+                    "!!!\n";
+
+    assertEquals(0, new BuildOutputParser(myParsers).parseGradleOutput(output, true).size());
+
+    StreamingBuildOutputParser parser = new StreamingBuildOutputParser(myParsers, messages -> {}, MAX_SEGMENT_LENGTH);
+    appendInChunks(parser, output);
+    assertEquals(0, parser.finish().size());
+    assertTrue(parser.isParsingFailed());
+  }
+
+  @Test
+  public void longLinesAreCut() {
+    StringBuilder line = new StringBuilder("e: ");
+    for (int i = 0; i < 10 * MAX_SEGMENT_LENGTH; i++) {
+      line.append('x');
+    }
+    StreamingBuildOutputParser parser = new StreamingBuildOutputParser(myParsers, messages -> {}, MAX_SEGMENT_LENGTH);
+    appendInChunks(parser, line + "\n");
+    List<Message> messages = parser.finish();
+    assertEquals(1, messages.size());
+    assertEquals(MAX_SEGMENT_LENGTH - "e: ".length(), messages.get(0).getText().length());
+  }
+
+  private static void appendInChunks(@NotNull StreamingBuildOutputParser parser, @NotNull String output) {
+    // Chunks of uneven sizes, which do not end at line breaks.
+    int start = 0;
+    for (int chunkLength = 1; start < output.length(); chunkLength = chunkLength % 7 + 1) {
+      int end = Math.min(output.length(), start + chunkLength);
+      parser.append(output.substring(start, end));
+      start = end;
+    }
+  }
+
+  @NotNull
+  private static Message error(@NotNull String text) {
+    return new Message(Message.Kind.ERROR, text, SourceFilePosition.UNKNOWN);
+  }
+
+  // "e: <text>" lines.
+  private static class ErrorParser implements PatternAwareOutputParser {
+    @Override
+    public boolean parse(@NotNull String line, @NotNull OutputLineReader reader, @NotNull List<Message> messages, @NotNull ILogger logger) {
+      if (!line.startsWith("e: ")) {
+        return false;
+      }
+      messages.add(error(line.substring("e: ".length())));
+      return true;
+    }
+  }
+
+  // The failure summary, whose "What went wrong" section comes after a blank line.
+  private static class FailureSummaryParser implements PatternAwareOutputParser {
+    @Override
+    public boolean parse(@NotNull String line, @NotNull OutputLineReader reader, @NotNull List<Message> messages, @NotNull ILogger logger) {
+      if (!line.startsWith("FAILURE: ")) {
+        return false;
+      }
+      StringBuilder text = new StringBuilder();
+      boolean inWhatWentWrong = false;
+      String next;
+      while ((next = reader.readLine()) != null && !next.startsWith("* Try:")) {
+        if (next.equals("* What went wrong:")) {
+          inWhatWentWrong = true;
+        }
+        else if (inWhatWentWrong && !next.isEmpty()) {
+          text.append(next).append('\n');
+        }
+      }
+      if (!inWhatWentWrong) {
+        return false;
+      }
+      messages.add(error(text.toString().trim()));
+      return true;
+    }
+  }
+
+  private static class FailingParser implements PatternAwareOutputParser {
+    @Override
+    public boolean parse(@NotNull String line, @NotNull OutputLineReader reader, @NotNull List<Message> messages, @NotNull ILogger logger)
+      throws ParsingFailedException {
+      if (line.equals("!!!")) {
+        throw new ParsingFailedException();
+      }
+      return false;
+    }
+  }
+}
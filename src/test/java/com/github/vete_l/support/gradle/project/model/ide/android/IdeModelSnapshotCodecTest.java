@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.vete_l.support.gradle.project.model.ide.android;
+
+import com.android.builder.model.SourceProvider;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link IdeModelSnapshotCodec}.
+ */
+public class IdeModelSnapshotCodecTest {
+  private IdeSourceProvider mySourceProvider;
+
+  @Before
+  public void setUp() {
+    SourceProvider provider = mock(SourceProvider.class);
+    when(provider.getName()).thenReturn("main");
+    when(provider.getManifestFile()).thenReturn(new File("src/main/AndroidManifest.xml"));
+    when(provider.getJavaDirectories()).thenReturn(Arrays.asList(new File("src/main/java"), new File("src/main/kotlin")));
+    when(provider.getResDirectories()).thenReturn(Arrays.asList(new File("src/main/res"), new File("build/generated/res")));
+    mySourceProvider = new IdeSourceProvider(provider, new ModelCache());
+  }
+
+  @Test
+  public void encodeAndDecode() throws IOException {
+    Object decoded = IdeModelSnapshotCodec.decode(IdeModelSnapshotCodec.encode(mySourceProvider));
+    assertNotSame(mySourceProvider, decoded);
+    assertEquals(mySourceProvider, decoded);
+    assertEquals(mySourceProvider.hashCode(), decoded.hashCode());
+  }
+
+  @Test
+  public void sharedObjectsAreStillSharedAfterDecoding() throws IOException {
+    ArrayList<IdeSourceProvider> providers = new ArrayList<>(Arrays.asList(mySourceProvider, mySourceProvider));
+    List<?> decoded = (List<?>)IdeModelSnapshotCodec.decode(IdeModelSnapshotCodec.encode(providers));
+    assertEquals(providers, decoded);
+    assertSame(decoded.get(0), decoded.get(1));
+  }
+
+  @Test
+  public void decodeJavaSerializedSnapshot() throws IOException {
+    Object decoded = IdeModelSnapshotCodec.decode(IdeModelSnapshotCodec.encodeWithJavaSerialization(mySourceProvider));
+    assertEquals(mySourceProvider, decoded);
+  }
+
+  @Test(expected = InvalidClassException.class)
+  public void decodeSnapshotWithUnknownVersion() throws IOException {
+    byte[] snapshot = IdeModelSnapshotCodec.encode(mySourceProvider);
+    // The format version follows the magic number.
+    snapshot[7] = 99;
+    IdeModelSnapshotCodec.decode(snapshot);
+  }
+}
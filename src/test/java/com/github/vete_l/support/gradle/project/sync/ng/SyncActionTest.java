@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.vete_l.support.gradle.project.sync.ng;
+
+import com.android.builder.model.AndroidProject;
+import com.android.java.model.ArtifactModel;
+import com.android.java.model.JavaProject;
+import com.android.tools.idea.gradle.project.sync.ng.SyncAction.ModuleModels;
+import org.gradle.tooling.BuildController;
+import org.gradle.tooling.model.DomainObjectSet;
+import org.gradle.tooling.model.GradleProject;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for {@link SyncAction}.
+ */
+public class SyncActionTest {
+  @Test
+  public void moduleModelsWithMissingModelsSurviveSerialization() throws Exception {
+    GradleProject gradleProject = mock(GradleProject.class, withSettings().serializable());
+    DomainObjectSet<?> tasks = mock(DomainObjectSet.class, withSettings().serializable());
+    when(tasks.iterator()).thenAnswer(invocation -> Collections.emptyIterator());
+    doReturn(tasks).when(gradleProject).getTasks();
+    when(gradleProject.getPath()).thenReturn(":lib");
+
+    // The module provides none of the models it is asked for.
+    BuildController controller = mock(BuildController.class);
+    when(controller.findModel(any(GradleProject.class), any(Class.class))).thenReturn(null);
+
+    ModuleModels models = new ModuleModels(gradleProject, Collections.emptySet(), Collections.emptySet());
+    models.populate(gradleProject, controller);
+    verify(controller, times(1)).findModel(gradleProject, JavaProject.class);
+
+    ModuleModels deserialized = serializeAndDeserialize(models);
+    assertEquals(":lib", deserialized.getGradlePath());
+    assertNull(deserialized.findModel(JavaProject.class));
+    assertNull(deserialized.findModel(AndroidProject.class));
+    assertNull(deserialized.findModel(ArtifactModel.class));
+    assertFalse(deserialized.hasModel(JavaProject.class));
+    assertTrue(deserialized.hasModel(GradleProject.class));
+  }
+
+  private static ModuleModels serializeAndDeserialize(ModuleModels models) throws IOException, ClassNotFoundException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(models);
+    }
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      return (ModuleModels)in.readObject();
+    }
+  }
+}
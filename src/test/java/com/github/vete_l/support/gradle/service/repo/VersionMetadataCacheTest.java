@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.vete_l.support.gradle.service.repo;
+
+import com.android.ide.common.repository.GradleVersion;
+import com.android.tools.idea.gradle.service.repo.VersionMetadataCache;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.android.tools.idea.gradle.service.repo.VersionMetadataCache.Source.MAVEN_CENTRAL;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link VersionMetadataCache}.
+ */
+public class VersionMetadataCacheTest {
+  private static final String METADATA_PATH = "/com/example/lib/maven-metadata.xml";
+  private static final String METADATA = "<metadata><versioning><versions>" +
+                                         "<version>1.0</version><version>1.1</version>" +
+                                         "</versions></versioning></metadata>";
+
+  private HttpServer myServer;
+  private final AtomicInteger myStatusCode = new AtomicInteger(200);
+  private final AtomicInteger myRequestCount = new AtomicInteger();
+  private final AtomicLong myTime = new AtomicLong(TimeUnit.DAYS.toMillis(1));
+  private VersionMetadataCache myCache;
+
+  @Before
+  public void setUp() throws IOException {
+    myServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    myServer.createContext("/", exchange -> {
+      myRequestCount.incrementAndGet();
+      int statusCode = exchange.getRequestURI().getPath().equals(METADATA_PATH) ? myStatusCode.get() : 404;
+      byte[] body = statusCode == 200 ? METADATA.getBytes(StandardCharsets.UTF_8) : new byte[0];
+      exchange.sendResponseHeaders(statusCode, body.length > 0 ? body.length : -1);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    });
+    myServer.start();
+    String url = "http://localhost:" + myServer.getAddress().getPort() + "/";
+    myCache = new VersionMetadataCache(Collections.singletonMap(MAVEN_CENTRAL, url), null, 10, myTime::get);
+  }
+
+  @After
+  public void tearDown() {
+    myServer.stop(0);
+  }
+
+  @Test
+  public void failureAfterSuccessKeepsCachedVersions() {
+    assertEquals(versions("1.1", "1.0"), myCache.getVersions(MAVEN_CENTRAL, "com.example", "lib"));
+
+    // The entry expired, and the repository fails.
+    myTime.addAndGet(TimeUnit.DAYS.toMillis(2));
+    myStatusCode.set(503);
+    assertEquals(versions("1.1", "1.0"), myCache.getVersions(MAVEN_CENTRAL, "com.example", "lib"));
+    assertEquals(GradleVersion.parse("1.1"), myCache.getCachedLatestVersion(MAVEN_CENTRAL, "com.example", "lib"));
+    assertEquals(2, myRequestCount.get());
+
+    // The failed download is not retried right away.
+    assertEquals(versions("1.1", "1.0"), myCache.getVersions(MAVEN_CENTRAL, "com.example", "lib"));
+    assertEquals(2, myRequestCount.get());
+
+    // Once the repository is back, the versions are downloaded again.
+    myTime.addAndGet(TimeUnit.MINUTES.toMillis(2));
+    myStatusCode.set(200);
+    assertEquals(versions("1.1", "1.0"), myCache.getVersions(MAVEN_CENTRAL, "com.example", "lib"));
+    assertEquals(3, myRequestCount.get());
+    assertEquals(versions("1.1", "1.0"), myCache.getCachedVersions(MAVEN_CENTRAL, "com.example", "lib"));
+  }
+
+  @Test
+  public void failureIsNotCachedAsNotFound() {
+    myStatusCode.set(500);
+    assertEquals(Collections.emptyList(), myCache.getVersions(MAVEN_CENTRAL, "com.example", "lib"));
+    assertNull(myCache.getCachedVersions(MAVEN_CENTRAL, "com.example", "lib"));
+  }
+
+  @Test
+  public void missingArtifactIsCachedAsNotFound() {
+    assertEquals(Collections.emptyList(), myCache.getVersions(MAVEN_CENTRAL, "com.example", "missing"));
+    assertEquals(Collections.emptyList(), myCache.getCachedVersions(MAVEN_CENTRAL, "com.example", "missing"));
+    assertEquals(Collections.emptyList(), myCache.getVersions(MAVEN_CENTRAL, "com.example", "missing"));
+    assertEquals(1, myRequestCount.get());
+  }
+
+  private static List<GradleVersion> versions(String... versions) {
+    GradleVersion[] parsed = new GradleVersion[versions.length];
+    for (int i = 0; i < versions.length; i++) {
+      parsed[i] = GradleVersion.parse(versions[i]);
+    }
+    return Arrays.asList(parsed);
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.vete_l.templates;
+
+import com.google.common.collect.ImmutableMap;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link ParameterValueResolver}.
+ */
+public class ParameterValueResolverTest {
+  private static final ParameterValueResolver.Deduplicator DO_NOTHING_DEDUPLICATOR = (parameter, value) -> value;
+
+  @Test
+  public void onlyParametersReferencingChangedValuesAreEvaluatedAgain() throws Exception {
+    TemplateMetadata metadata = createMetadata(
+      "<parameter id='packageName' type='string' default='com.example' />",
+      "<parameter id='activityClass' type='string' default='MainActivity' />",
+      // Calls a builtin method which only converts its argument.
+      "<parameter id='layoutName' type='string' suggest='${activityToLayout(activityClass)}' />",
+      "<parameter id='menuName' type='string' suggest='${layoutName}_menu' />",
+      "<parameter id='activityTitle' type='string' suggest='${activityClass}' />",
+      "<parameter id='fullClassName' type='string' suggest='${packageName}.${activityClass}' />");
+    Parameter packageName = metadata.getParameter("packageName");
+    Parameter activityClass = metadata.getParameter("activityClass");
+    ParameterValueResolver resolver = new ParameterValueResolver(metadata.getParameters(), DO_NOTHING_DEDUPLICATOR);
+
+    Map<Parameter, Object> values = resolver.resolve(Collections.emptyMap(), Collections.emptyMap());
+    assertEquals(4, resolver.getLastEvaluationCount());
+    assertEquals("activity_main_menu", values.get(metadata.getParameter("menuName")));
+
+    resolver.resolve(Collections.emptyMap(), Collections.emptyMap());
+    assertEquals(0, resolver.getLastEvaluationCount());
+
+    resolver.resolve(ImmutableMap.of(packageName, "org.example"), Collections.emptyMap());
+    assertEquals(1, resolver.getLastEvaluationCount());
+
+    values = resolver.resolve(ImmutableMap.of(packageName, "org.example", activityClass, "DetailActivity"), Collections.emptyMap());
+    assertEquals(4, resolver.getLastEvaluationCount());
+    assertEquals("activity_detail_menu", values.get(metadata.getParameter("menuName")));
+    assertEquals("org.example.DetailActivity", values.get(metadata.getParameter("fullClassName")));
+  }
+
+  @Test
+  public void uniqueParametersAreAlwaysEvaluated() throws Exception {
+    TemplateMetadata metadata = createMetadata(
+      "<parameter id='activityClass' type='string' default='MainActivity' />",
+      "<parameter id='layoutName' type='string' suggest='${activityToLayout(activityClass)}' constraints='layout|unique' />");
+    ParameterValueResolver resolver = new ParameterValueResolver(metadata.getParameters(), DO_NOTHING_DEDUPLICATOR);
+
+    resolver.resolve(Collections.emptyMap(), Collections.emptyMap());
+    assertEquals(1, resolver.getLastEvaluationCount());
+    resolver.resolve(Collections.emptyMap(), Collections.emptyMap());
+    assertEquals(1, resolver.getLastEvaluationCount());
+  }
+
+  @Test(expected = CircularParameterDependencyException.class)
+  public void unstableCycleIsReported() throws Exception {
+    TemplateMetadata metadata = createMetadata(
+      "<parameter id='first' type='string' suggest='${second}x' />",
+      "<parameter id='second' type='string' suggest='${first}x' />");
+    ParameterValueResolver.resolve(metadata.getParameters(), Collections.emptyMap(), Collections.emptyMap());
+  }
+
+  @NotNull
+  private static TemplateMetadata createMetadata(@NotNull String... parameters) throws Exception {
+    String xml = "<template name='Test'>" + String.join("", parameters) + "</template>";
+    Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new InputSource(new StringReader(xml)));
+    return new TemplateMetadata(document);
+  }
+}